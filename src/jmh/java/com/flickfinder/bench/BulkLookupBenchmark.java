@@ -0,0 +1,118 @@
+package com.flickfinder.bench;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.flickfinder.dao.MovieDAO;
+import com.flickfinder.model.Movie;
+import com.flickfinder.model.Person;
+import com.flickfinder.util.Database;
+
+/**
+ * Compares resolving a page of ids one at a time with the bulk DAO methods.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BulkLookupBenchmark {
+
+	/**
+	 * The number of ids to resolve.
+	 */
+	@Param({ "10", "100", "1000" })
+	public int ids;
+
+	/**
+	 * The dataset.
+	 */
+	Fixtures fixtures;
+
+	/**
+	 * The DAO under test.
+	 */
+	MovieDAO movieDAO;
+
+	/**
+	 * Random movie ids, about one in ten of them missing.
+	 */
+	List<Integer> movieIds;
+
+	/**
+	 * Opens the synthetic dataset and picks the ids.
+	 */
+	@Setup(Level.Trial)
+	public void setUp() throws SQLException {
+		fixtures = Fixtures.open("synthetic");
+		Database.getInstance(fixtures.getConnection());
+		movieDAO = new MovieDAO();
+
+		Random random = new Random(1028);
+		movieIds = new ArrayList<>();
+		while (movieIds.size() < ids) {
+			int id = 1 + random.nextInt(Fixtures.SYNTHETIC_MOVIES * 11 / 10);
+			if (!movieIds.contains(id)) {
+				movieIds.add(id);
+			}
+		}
+	}
+
+	@Benchmark
+	public List<Movie> getMovieByIdEach() throws SQLException {
+		List<Movie> movies = new ArrayList<>();
+		for (int id : movieIds) {
+			Movie movie = movieDAO.getMovieById(id);
+			if (movie != null) {
+				movies.add(movie);
+			}
+		}
+		return movies;
+	}
+
+	@Benchmark
+	public Map<Integer, Movie> getMoviesByIds() throws SQLException {
+		return movieDAO.getMoviesByIds(movieIds);
+	}
+
+	@Benchmark
+	public List<List<Person>> getStarsByMovieEach() throws SQLException {
+		List<List<Person>> stars = new ArrayList<>();
+		for (int id : movieIds) {
+			stars.add(movieDAO.getStarsByMovie(id));
+		}
+		return stars;
+	}
+
+	@Benchmark
+	public Map<Integer, List<Person>> getStarsByMovies() throws SQLException {
+		return movieDAO.getStarsByMovies(movieIds);
+	}
+
+	/**
+	 * Closes the dataset.
+	 */
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		fixtures.close();
+	}
+}
@@ -0,0 +1,108 @@
+package com.flickfinder.bench;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.flickfinder.catalog.CollaboratorIndex;
+import com.flickfinder.catalog.CreditAdjacency;
+
+/**
+ * Finds the top 10 collaborators of the most prolific star with a GROUP BY
+ * over both credit tables (with the covering indexes), by counting over the
+ * adjacency lists, and from the precomputed answers.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CollaboratorBenchmark {
+
+	/**
+	 * The query an SQL-only version would run.
+	 */
+	static final String SQL = "with credits as (select movie_id, person_id from stars"
+			+ " union select movie_id, person_id from directors)"
+			+ " select b.person_id, count(*) as shared from credits a, credits b"
+			+ " where a.person_id = ? and b.movie_id = a.movie_id and b.person_id != a.person_id"
+			+ " group by b.person_id order by shared desc, b.person_id limit ?";
+
+	/**
+	 * The dataset to query, see {@link Fixtures}.
+	 */
+	@Param({ "seeder", "synthetic", "movies.db" })
+	public String dataset;
+
+	/**
+	 * The dataset.
+	 */
+	Fixtures fixtures;
+
+	CollaboratorIndex counted;
+	CollaboratorIndex precomputed;
+
+	/**
+	 * Opens the dataset and builds the indexes.
+	 */
+	@Setup(Level.Trial)
+	public void setUp() throws SQLException {
+		fixtures = Fixtures.openOptimized(dataset);
+		CreditAdjacency credits = CreditAdjacency.load(fixtures.getConnection());
+		counted = CollaboratorIndex.of(credits);
+		precomputed = CollaboratorIndex.of(credits);
+		long start = System.nanoTime();
+		precomputed.precompute(1000);
+		System.out.printf("Precomputed %d people in %d ms%n", precomputed.getPrecomputed(),
+				(System.nanoTime() - start) / 1_000_000);
+	}
+
+	@Benchmark
+	public int sql() throws SQLException {
+		try (PreparedStatement ps = fixtures.getConnection().prepareStatement(SQL)) {
+			ps.setInt(1, fixtures.personId);
+			ps.setInt(2, 10);
+			int rows = 0;
+			try (ResultSet rs = ps.executeQuery()) {
+				while (rs.next()) {
+					rows += rs.getInt(1);
+				}
+			}
+			return rows;
+		}
+	}
+
+	@Benchmark
+	public int[][] counted() {
+		return counted.top(fixtures.personId, 10);
+	}
+
+	@Benchmark
+	public int[][] precomputed() {
+		return precomputed.top(fixtures.personId, 10);
+	}
+
+	/**
+	 * Closes the dataset.
+	 */
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		fixtures.close();
+	}
+}
@@ -0,0 +1,271 @@
+package com.flickfinder.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.sqlite.SQLiteConfig;
+
+import com.flickfinder.util.OptimizedDatabase;
+import com.flickfinder.util.Seeder;
+
+/**
+ * The datasets that the benchmarks run against.
+ *
+ * <ul>
+ * <li>{@code seeder} is the five row database from the tests.</li>
+ * <li>{@code synthetic} has the same schema, filled with generated rows so that
+ * queries have realistic amounts of work to do.</li>
+ * <li>{@code movies.db} is the real database in src/main/resources.</li>
+ * </ul>
+ *
+ * Each dataset also knows a few keys to query with, so the benchmarks do not
+ * have to hard code ids that only exist in one of them.
+ */
+public final class Fixtures {
+
+	/**
+	 * The path of the real database.
+	 */
+	public static final String MOVIES_DB = "src/main/resources/movies.db";
+
+	/**
+	 * The number of movies in the synthetic dataset.
+	 */
+	public static final int SYNTHETIC_MOVIES = 100_000;
+
+	/**
+	 * The number of people in the synthetic dataset.
+	 */
+	public static final int SYNTHETIC_PEOPLE = 200_000;
+
+	/**
+	 * The connection to the dataset.
+	 */
+	private final Connection connection;
+
+	/**
+	 * The movie with the most stars.
+	 */
+	public final int movieId;
+
+	/**
+	 * The person who starred in the most movies.
+	 */
+	public final int personId;
+
+	/**
+	 * The person who directed the most movies.
+	 */
+	public final int directorId;
+
+	/**
+	 * The year with the most rated movies.
+	 */
+	public final int year;
+
+	private Fixtures(Connection connection) throws SQLException {
+		this.connection = connection;
+		this.movieId = queryInt("select movie_id from stars group by movie_id order by count(*) desc limit 1");
+		this.personId = queryInt("select person_id from stars group by person_id order by count(*) desc limit 1");
+		this.directorId = queryInt("select person_id from directors group by person_id order by count(*) desc limit 1");
+		this.year = queryInt("select year from movies, ratings where ratings.movie_id = movies.id"
+				+ " group by year order by count(*) desc limit 1");
+	}
+
+	/**
+	 * Opens a dataset by name.
+	 *
+	 * @param dataset {@code seeder}, {@code synthetic} or {@code movies.db}
+	 * @return the dataset
+	 * @throws SQLException if the dataset cannot be opened
+	 */
+	public static Fixtures open(String dataset) throws SQLException {
+		switch (dataset) {
+		case "seeder":
+			return new Fixtures(new Seeder("jdbc:sqlite::memory:").getConnection());
+		case "synthetic":
+			Connection connection = new Seeder("jdbc:sqlite::memory:").getConnection();
+			populate(connection, SYNTHETIC_MOVIES, SYNTHETIC_PEOPLE);
+			return new Fixtures(connection);
+		case "movies.db":
+			if (!new File(MOVIES_DB).exists()) {
+				throw new IllegalStateException(MOVIES_DB + " not found, run mvn generate-resources first");
+			}
+			SQLiteConfig config = new SQLiteConfig();
+			config.setReadOnly(true);
+			return new Fixtures(DriverManager.getConnection("jdbc:sqlite:" + MOVIES_DB, config.toProperties()));
+		default:
+			throw new IllegalArgumentException("Unknown dataset: " + dataset);
+		}
+	}
+
+	/**
+	 * Opens a dataset with the covering indexes of {@link OptimizedDatabase}.
+	 * The in-memory datasets are indexed in place, movies.db through an indexed
+	 * copy in target.
+	 *
+	 * @param dataset {@code seeder}, {@code synthetic} or {@code movies.db}
+	 * @return the dataset
+	 * @throws SQLException if the dataset cannot be opened
+	 */
+	public static Fixtures openOptimized(String dataset) throws SQLException {
+		if (!dataset.equals("movies.db")) {
+			Fixtures fixtures = open(dataset);
+			OptimizedDatabase.optimize(fixtures.connection);
+			return fixtures;
+		}
+		if (!new File(MOVIES_DB).exists()) {
+			throw new IllegalStateException(MOVIES_DB + " not found, run mvn generate-resources first");
+		}
+		try {
+			Path copy = OptimizedDatabase.prepare(Path.of(MOVIES_DB), Path.of("target/movies-optimized.db"));
+			SQLiteConfig config = new SQLiteConfig();
+			config.setReadOnly(true);
+			return new Fixtures(DriverManager.getConnection("jdbc:sqlite:" + copy, config.toProperties()));
+		} catch (IOException e) {
+			throw new SQLException("Could not copy " + MOVIES_DB, e);
+		}
+	}
+
+	/**
+	 * Replaces the rows of a Seeder database with generated ones.
+	 * The random seed is fixed, so every run generates the same data.
+	 *
+	 * @param connection a connection to a Seeder database
+	 * @param movies     the number of movies to generate
+	 * @param people     the number of people to generate
+	 * @throws SQLException if a database error occurs
+	 */
+	public static void populate(Connection connection, int movies, int people) throws SQLException {
+		Random random = new Random(1028);
+		connection.setAutoCommit(false);
+		try (Statement stmt = connection.createStatement()) {
+			for (String table : new String[] { "movies", "people", "stars", "directors", "ratings" }) {
+				stmt.execute("delete from " + table);
+			}
+		}
+
+		try (PreparedStatement ps = connection.prepareStatement("insert into people (id, name, birth) values (?, ?, ?)")) {
+			for (int id = 1; id <= people; id++) {
+				ps.setInt(1, id);
+				ps.setString(2, "Person " + id);
+				ps.setInt(3, 1900 + random.nextInt(100));
+				ps.addBatch();
+			}
+			ps.executeBatch();
+		}
+
+		try (PreparedStatement movie = connection.prepareStatement("insert into movies (id, title, year) values (?, ?, ?)");
+				PreparedStatement star = connection.prepareStatement("insert into stars (movie_id, person_id) values (?, ?)");
+				PreparedStatement director = connection
+						.prepareStatement("insert into directors (movie_id, person_id) values (?, ?)");
+				PreparedStatement rating = connection
+						.prepareStatement("insert into ratings (movie_id, rating, votes) values (?, ?, ?)")) {
+			for (int id = 1; id <= movies; id++) {
+				movie.setInt(1, id);
+				movie.setString(2, "Movie " + id);
+				movie.setInt(3, 1950 + random.nextInt(74));
+				movie.addBatch();
+
+				// a skewed cast, so some people are far more prolific than others
+				for (int i = 0; i < 4; i++) {
+					star.setInt(1, id);
+					star.setInt(2, 1 + (int) (people * Math.pow(random.nextDouble(), 3)));
+					star.addBatch();
+				}
+				director.setInt(1, id);
+				director.setInt(2, 1 + random.nextInt(people));
+				director.addBatch();
+
+				if (random.nextInt(5) != 0) {
+					rating.setInt(1, id);
+					rating.setDouble(2, Math.round((1 + random.nextDouble() * 9) * 10) / 10.0);
+					rating.setInt(3, random.nextInt(2_000_000));
+					rating.addBatch();
+				}
+			}
+			movie.executeBatch();
+			star.executeBatch();
+			director.executeBatch();
+			rating.executeBatch();
+		}
+		connection.commit();
+		connection.setAutoCommit(true);
+	}
+
+	/**
+	 * Returns the connection to the dataset.
+	 *
+	 * @return the connection
+	 */
+	public Connection getConnection() {
+		return connection;
+	}
+
+	/**
+	 * Returns the ids of the people who starred in something.
+	 *
+	 * @return the person ids
+	 * @throws SQLException if a database error occurs
+	 */
+	public int[] personIds() throws SQLException {
+		return queryInts("select distinct person_id from stars order by person_id");
+	}
+
+	/**
+	 * Returns the ids of the movies that have stars.
+	 *
+	 * @return the movie ids
+	 * @throws SQLException if a database error occurs
+	 */
+	public int[] movieIds() throws SQLException {
+		return queryInts("select distinct movie_id from stars order by movie_id");
+	}
+
+	/**
+	 * Returns the years that have rated movies.
+	 *
+	 * @return the years
+	 * @throws SQLException if a database error occurs
+	 */
+	public int[] years() throws SQLException {
+		return queryInts("select distinct year from movies, ratings where ratings.movie_id = movies.id order by year");
+	}
+
+	private int[] queryInts(String sql) throws SQLException {
+		try (Statement stmt = connection.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+			List<Integer> values = new ArrayList<>();
+			while (rs.next()) {
+				values.add(rs.getInt(1));
+			}
+			return values.stream().mapToInt(Integer::intValue).toArray();
+		}
+	}
+
+	/**
+	 * Closes the connection to the dataset.
+	 */
+	public void close() {
+		try {
+			connection.close();
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+	}
+
+	private int queryInt(String sql) throws SQLException {
+		try (Statement stmt = connection.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+			return rs.next() ? rs.getInt(1) : 0;
+		}
+	}
+}
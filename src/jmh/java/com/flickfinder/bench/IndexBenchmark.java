@@ -0,0 +1,151 @@
+package com.flickfinder.bench;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.flickfinder.dao.MovieDAO;
+import com.flickfinder.dao.PersonDAO;
+import com.flickfinder.model.Movie;
+import com.flickfinder.model.MovieRating;
+import com.flickfinder.model.Person;
+import com.flickfinder.util.Database;
+import com.flickfinder.util.OptimizedDatabase;
+
+/**
+ * Benchmarks for the lookups that the covering indexes of
+ * {@link OptimizedDatabase} are for, with and without them.
+ *
+ * Run the main method to print the query plans of the lookups before and after,
+ * e.g. with -Dbench.main=com.flickfinder.bench.IndexBenchmark -Dbench.args=synthetic.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IndexBenchmark {
+
+	/**
+	 * The SQL of the lookups, as the DAOs run it.
+	 */
+	static final String[][] QUERIES = {
+			{ "MovieDAO.getStarsByMovie",
+					"select * from people, stars where stars.movie_id = ? and stars.person_id = people.id" },
+			{ "PersonDAO.getMoviesByStar",
+					"select * from movies, stars where stars.person_id = ? and stars.movie_id = movies.id" },
+			{ "MovieDAO.getDirectorsByMovie",
+					"select * from people, directors where directors.movie_id = ? and directors.person_id = people.id" },
+			{ "PersonDAO.getMoviesByDirector",
+					"select * from movies, directors where directors.person_id = ? and directors.movie_id = movies.id" },
+			{ "MovieDAO.getMoviesByRatingOrder", "select * from movies, ratings where ratings.movie_id = movies.id"
+					+ " and movies.year = ? and ratings.votes > ? order by ratings.rating desc, ratings.rowid limit ?" } };
+
+	/**
+	 * The dataset to query, see {@link Fixtures}.
+	 */
+	@Param({ "seeder", "synthetic", "movies.db" })
+	public String dataset;
+
+	/**
+	 * The database as it is ({@code original}) or with the covering indexes
+	 * ({@code optimized}).
+	 */
+	@Param({ "original", "optimized" })
+	public String layout;
+
+	/**
+	 * The dataset.
+	 */
+	Fixtures fixtures;
+
+	MovieDAO movieDAO;
+	PersonDAO personDAO;
+
+	/**
+	 * Opens the dataset and creates the DAOs.
+	 */
+	@Setup(Level.Trial)
+	public void setUp() throws SQLException {
+		fixtures = layout.equals("optimized") ? Fixtures.openOptimized(dataset) : Fixtures.open(dataset);
+		Database.getInstance(fixtures.getConnection());
+		movieDAO = new MovieDAO();
+		personDAO = new PersonDAO();
+	}
+
+	@Benchmark
+	public List<Person> getStarsByMovie() throws SQLException {
+		return movieDAO.getStarsByMovie(fixtures.movieId);
+	}
+
+	@Benchmark
+	public List<Movie> getMoviesByStar() throws SQLException {
+		return personDAO.getMoviesByStar(fixtures.personId);
+	}
+
+	@Benchmark
+	public List<Person> getDirectorsByMovie() throws SQLException {
+		return movieDAO.getDirectorsByMovie(fixtures.movieId);
+	}
+
+	@Benchmark
+	public List<Movie> getMoviesByDirector() throws SQLException {
+		return personDAO.getMoviesByDirector(fixtures.directorId);
+	}
+
+	@Benchmark
+	public List<MovieRating> getMoviesByRatingOrder() throws SQLException {
+		return movieDAO.getMoviesByRatingOrder(fixtures.year, 1000, 50);
+	}
+
+	/**
+	 * Closes the dataset.
+	 */
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		fixtures.close();
+	}
+
+	/**
+	 * Prints the query plan of each lookup without and with the covering indexes.
+	 *
+	 * @param args the dataset, {@code synthetic} if not given
+	 * @throws SQLException if a dataset cannot be opened
+	 */
+	public static void main(String[] args) throws SQLException {
+		String dataset = args.length > 0 ? args[0] : "synthetic";
+		Fixtures original = Fixtures.open(dataset);
+		Fixtures optimized = Fixtures.openOptimized(dataset);
+		try {
+			for (String[] query : QUERIES) {
+				System.out.println(query[0]);
+				System.out.println("  before:");
+				for (String step : OptimizedDatabase.explain(original.getConnection(), query[1])) {
+					System.out.println("    " + step);
+				}
+				System.out.println("  after:");
+				for (String step : OptimizedDatabase.explain(optimized.getConnection(), query[1])) {
+					System.out.println("    " + step);
+				}
+			}
+		} finally {
+			original.close();
+			optimized.close();
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package com.flickfinder.bench;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.flickfinder.controller.JsonCache;
+import com.flickfinder.dao.MovieDAO;
+import com.flickfinder.model.Movie;
+import com.flickfinder.util.Database;
+
+import io.javalin.json.JavalinJackson;
+
+/**
+ * Compares serializing a single movie with Jackson, as ctx.json(...) does, with
+ * copying its JSON out of the off-heap cache, from several threads at once.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class JsonCacheBenchmark {
+
+	/**
+	 * The dataset to load the movies from, see {@link Fixtures}.
+	 */
+	@Param({ "seeder", "synthetic", "movies.db" })
+	public String dataset;
+
+	/**
+	 * The mapper that Javalin uses.
+	 */
+	ObjectMapper mapper;
+
+	/**
+	 * The movies requested, in turn.
+	 */
+	Movie[] movies;
+
+	/**
+	 * The cache, filled with every movie.
+	 */
+	JsonCache cache;
+
+	/**
+	 * Loads the movies and fills the cache.
+	 */
+	@Setup(Level.Trial)
+	public void setUp() throws SQLException, JsonProcessingException {
+		Fixtures fixtures = Fixtures.open(dataset);
+		Database.getInstance(fixtures.getConnection());
+		List<Movie> loaded = new MovieDAO().getAllMovies(10_000);
+		fixtures.close();
+		mapper = new JavalinJackson().getMapper();
+		movies = loaded.toArray(new Movie[0]);
+		cache = new JsonCache(64L << 20);
+		for (Movie movie : movies) {
+			cache.put(movie.getId(), mapper.writeValueAsBytes(movie));
+		}
+	}
+
+	/**
+	 * The movie each thread asks for next.
+	 */
+	@State(Scope.Thread)
+	public static class Cursor {
+		int next;
+	}
+
+	@Benchmark
+	public byte[] serialize(Cursor cursor) throws JsonProcessingException {
+		return mapper.writeValueAsBytes(movies[cursor.next++ % movies.length]);
+	}
+
+	@Benchmark
+	public byte[] cached(Cursor cursor) {
+		return cache.get(movies[cursor.next++ % movies.length].getId());
+	}
+}
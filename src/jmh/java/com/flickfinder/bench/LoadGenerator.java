@@ -0,0 +1,249 @@
+package com.flickfinder.bench;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import com.flickfinder.AppConfig;
+import com.flickfinder.metrics.LatencyHistogram;
+import com.flickfinder.util.Database;
+
+import io.javalin.Javalin;
+import io.javalin.util.ConcurrencyUtil;
+
+/**
+ * Sends the load of a {@link Scenario} to the server and reports throughput
+ * and latency percentiles, per route and overall.
+ *
+ * In an open scenario a request is due every 1/rate seconds, whether or not
+ * the earlier ones have been answered, as with real users. In a closed one a
+ * fixed number of clients each send a request when the last one is answered,
+ * optionally paced to an interval. Every request runs on its own virtual
+ * thread (platform threads before Java 21) with a blocking send.
+ *
+ * Latency is measured from when a request was due, not from when it was sent.
+ * A server that stalls also holds back the requests that should have been
+ * sent during the stall; timing only from the send would leave that waiting
+ * out and make the high percentiles look far better than users see them
+ * (coordinated omission). The service time from the actual send is reported
+ * too. A closed scenario without an interval has no due times, so both
+ * numbers are service times there.
+ *
+ * Run it with
+ *
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Dbench.main=com.flickfinder.bench.LoadGenerator \
+ *     -Dbench.args="src/jmh/scenarios/browse.scenario synthetic"
+ * </pre>
+ *
+ * where the arguments are the scenario file, the dataset (see {@link Fixtures})
+ * and optionally the URL of a server that is already running on the same
+ * data. Without a URL, the server is started in this JVM on the dataset, with
+ * the indexes of {@link com.flickfinder.util.OptimizedDatabase}.
+ */
+public final class LoadGenerator {
+
+	/**
+	 * The port that the server runs on when it is started here.
+	 */
+	static final int PORT = 6300;
+
+	private final Scenario scenario;
+	private final String target;
+	private final HttpClient client;
+	private final ExecutorService threads;
+	private final int[] movies;
+	private final int[] people;
+	private final int[] years;
+
+	private LoadGenerator(Scenario scenario, String target, Fixtures fixtures) throws Exception {
+		this.scenario = scenario;
+		this.target = target;
+		this.threads = ConcurrencyUtil.executorService("LoadGenerator", true);
+		this.client = HttpClient.newBuilder().executor(threads).version(HttpClient.Version.HTTP_1_1).build();
+		this.movies = fixtures.movieIds();
+		this.people = fixtures.personIds();
+		this.years = fixtures.years();
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 1) {
+			System.out.println("Usage: LoadGenerator <scenario file> [dataset] [server URL]");
+			return;
+		}
+		Scenario scenario = Scenario.parse(Path.of(args[0]));
+		String dataset = args.length > 1 ? args[1] : "synthetic";
+		String url = args.length > 2 ? args[2] : null;
+		if (!ConcurrencyUtil.isLoomAvailable()) {
+			System.out.println("Virtual threads need Java 21, requests are sent from platform threads");
+		}
+
+		// the server reads the indexed copy of movies.db, so the dataset gets the same indexes
+		Fixtures fixtures = Fixtures.openOptimized(dataset);
+		Javalin app = null;
+		if (url == null) {
+			Database.getInstance(fixtures.getConnection());
+			// all the load comes from one address, which the rate limit is there to stop
+			if (System.getProperty(AppConfig.RATE_LIMIT_PROPERTY) == null) {
+				System.setProperty(AppConfig.RATE_LIMIT_PROPERTY, "0");
+			}
+			app = AppConfig.startServer(PORT);
+			url = "http://localhost:" + PORT;
+		}
+		LoadGenerator generator = new LoadGenerator(scenario, url, fixtures);
+		try {
+			System.out.println(args[0] + ": " + scenario + ", against " + url);
+			if (scenario.warmupSeconds > 0) {
+				generator.run(scenario.warmupSeconds);
+			}
+			System.out.print(generator.run(scenario.seconds).report());
+		} finally {
+			generator.threads.shutdownNow();
+			if (app != null) {
+				app.stop();
+			}
+			fixtures.close();
+		}
+	}
+
+	/**
+	 * Sends the scenario's load for a while.
+	 *
+	 * @param seconds how long to send for
+	 * @return the results
+	 */
+	private Results run(int seconds) throws InterruptedException {
+		Results results = new Results();
+		long start = System.nanoTime();
+		long end = start + TimeUnit.SECONDS.toNanos(seconds);
+		if (scenario.open) {
+			long interval = 1_000_000_000L / scenario.rate;
+			Random random = new Random();
+			for (long due = start; due < end; due += interval) {
+				waitUntil(due);
+				int route = scenario.pick(random);
+				String path = scenario.path(route, random, movies, people, years);
+				long scheduled = due;
+				results.inFlight.increment();
+				threads.execute(() -> send(results, route, path, scheduled));
+			}
+		} else {
+			long interval = TimeUnit.MILLISECONDS.toNanos(scenario.intervalMillis);
+			for (int c = 0; c < scenario.connections; c++) {
+				results.inFlight.increment();
+				threads.execute(() -> {
+					Random random = ThreadLocalRandom.current();
+					for (long due = System.nanoTime(); due < end; due += interval) {
+						if (interval > 0) {
+							waitUntil(due);
+						} else {
+							due = System.nanoTime();
+						}
+						int route = scenario.pick(random);
+						results.inFlight.increment();
+						send(results, route, scenario.path(route, random, movies, people, years), due);
+					}
+					results.inFlight.decrement();
+				});
+			}
+		}
+		// let the requests that are still out come back
+		while (results.inFlight.sum() > 0 && System.nanoTime() - end < TimeUnit.SECONDS.toNanos(30)) {
+			Thread.sleep(10);
+		}
+		results.elapsedNanos = System.nanoTime() - start;
+		return results;
+	}
+
+	private void send(Results results, int route, String path, long due) {
+		HttpRequest request = HttpRequest.newBuilder(URI.create(target + path)).build();
+		long sent = System.nanoTime();
+		boolean ok;
+		try {
+			ok = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200;
+		} catch (Exception e) {
+			ok = false;
+		}
+		long done = System.nanoTime();
+		results.record(route, ok, done - due, done - sent);
+		results.inFlight.decrement();
+	}
+
+	private static void waitUntil(long due) {
+		for (long wait = due - System.nanoTime(); wait > 0; wait = due - System.nanoTime()) {
+			LockSupport.parkNanos(wait);
+		}
+	}
+
+	/**
+	 * The latencies and counts of a run.
+	 */
+	private final class Results {
+
+		final List<LatencyHistogram> latency = new ArrayList<>();
+		final List<LatencyHistogram> service = new ArrayList<>();
+		final List<LongAdder> errors = new ArrayList<>();
+		final LatencyHistogram allLatency = new LatencyHistogram();
+		final LatencyHistogram allService = new LatencyHistogram();
+		final LongAdder allErrors = new LongAdder();
+		final LongAdder inFlight = new LongAdder();
+		long elapsedNanos;
+
+		Results() {
+			for (int i = 0; i < scenario.routes.size(); i++) {
+				latency.add(new LatencyHistogram());
+				service.add(new LatencyHistogram());
+				errors.add(new LongAdder());
+			}
+		}
+
+		void record(int route, boolean ok, long latencyNanos, long serviceNanos) {
+			if (!ok) {
+				errors.get(route).increment();
+				allErrors.increment();
+				return;
+			}
+			latency.get(route).record(latencyNanos);
+			service.get(route).record(serviceNanos);
+			allLatency.record(latencyNanos);
+			allService.record(serviceNanos);
+		}
+
+		String report() {
+			StringBuilder report = new StringBuilder(String.format("%-28s %6s %9s %7s %11s %8s %8s %8s %8s%n",
+					"route", "weight", "requests", "errors", "requests/s", "p50 ms", "p99 ms", "p99.9 ms",
+					"svc p99"));
+			for (int i = 0; i < scenario.routes.size(); i++) {
+				report.append(row(scenario.routes.get(i), String.valueOf(scenario.weights.get(i)),
+						latency.get(i), service.get(i), errors.get(i).sum()));
+			}
+			report.append(row("all", "", allLatency, allService, allErrors.sum()));
+			report.append(String.format("%nlatency from the due time (corrected): p50 %.2f ms, p99 %.2f ms,"
+					+ " p99.9 %.2f ms%nservice time from the send:             p50 %.2f ms, p99 %.2f ms,"
+					+ " p99.9 %.2f ms%n", millis(allLatency, 50), millis(allLatency, 99), millis(allLatency, 99.9),
+					millis(allService, 50), millis(allService, 99), millis(allService, 99.9)));
+			return report.toString();
+		}
+
+		private String row(String route, String weight, LatencyHistogram latency, LatencyHistogram service,
+				long errors) {
+			return String.format("%-28s %6s %9d %7d %11.0f %8.2f %8.2f %8.2f %8.2f%n", route, weight,
+					latency.getCount(), errors, latency.getCount() * 1e9 / elapsedNanos, millis(latency, 50),
+					millis(latency, 99), millis(latency, 99.9), millis(service, 99));
+		}
+
+		private double millis(LatencyHistogram histogram, double percentile) {
+			return histogram.getValueAtPercentile(percentile) / 1e3;
+		}
+	}
+}
@@ -0,0 +1,160 @@
+package com.flickfinder.bench;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.flickfinder.AppConfig;
+import com.flickfinder.util.Database;
+
+import io.javalin.Javalin;
+
+/**
+ * A closed loop load test that compares running requests on platform threads
+ * with virtual threads and the {@link com.flickfinder.util.DatabaseExecutor}.
+ *
+ * For each mode and number of connections, that many clients each send a
+ * request, wait for the answer and send the next, for a fixed time. The
+ * throughput and latency percentiles of every mode are printed as a table.
+ *
+ * Run it with
+ *
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Dbench.main=com.flickfinder.bench.LoadTest \
+ *     -Dbench.args="synthetic 1000,10000,50000 10"
+ * </pre>
+ *
+ * where the arguments are the dataset (see {@link Fixtures}), the numbers of
+ * connections and the seconds to run each for. The client runs in the same JVM
+ * as the server, and every connection needs a local port and a file
+ * descriptor, so tens of thousands of connections need a raised
+ * {@code ulimit -n} and {@code net.ipv4.ip_local_port_range}; failed requests
+ * are counted as errors.
+ */
+public final class LoadTest {
+
+	/**
+	 * The port that the server runs on during the test.
+	 */
+	static final int PORT = 6200;
+
+	/**
+	 * The most latencies kept per run, for the percentiles.
+	 */
+	static final int MAX_SAMPLES = 4_000_000;
+
+	private LoadTest() {
+	}
+
+	public static void main(String[] args) throws Exception {
+		String dataset = args.length > 0 ? args[0] : "synthetic";
+		int[] connections = Arrays.stream((args.length > 1 ? args[1] : "1000,10000,50000").split(","))
+				.mapToInt(Integer::parseInt).toArray();
+		int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+		Fixtures fixtures = Fixtures.open(dataset);
+		String[] routes = { "/movies/" + fixtures.movieId, "/movies/" + fixtures.movieId + "/stars",
+				"/movies/ratings/" + fixtures.year, "/people/" + fixtures.personId,
+				"/people/" + fixtures.personId + "/movies" };
+
+		StringBuilder table = new StringBuilder(
+				String.format("%-9s %11s %10s %12s %9s %9s %8s%n", "mode", "connections", "requests", "requests/s",
+						"p50 ms", "p99 ms", "errors"));
+		for (String mode : new String[] { "platform", AppConfig.VIRTUAL_THREADS }) {
+			System.setProperty(AppConfig.THREADS_PROPERTY, mode);
+			Database.getInstance(fixtures.getConnection());
+			Javalin app = AppConfig.startServer(PORT);
+			try {
+				// warm up the JIT and the indexes before measuring
+				run(routes, 64, 3);
+				for (int clients : connections) {
+					table.append(String.format("%-9s %11d %s%n", mode, clients, run(routes, clients, seconds)));
+				}
+				if (Database.getInstance().getExecutor() != null) {
+					System.out.println(Database.getInstance().getExecutor());
+				}
+			} finally {
+				app.stop();
+			}
+		}
+		System.clearProperty(AppConfig.THREADS_PROPERTY);
+		fixtures.close();
+		System.out.print(table);
+	}
+
+	/**
+	 * Runs a number of clients against the routes for a while.
+	 *
+	 * @return the row of the results table
+	 */
+	private static String run(String[] routes, int clients, int seconds) throws InterruptedException {
+		ExecutorService clientThreads = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+		HttpClient client = HttpClient.newBuilder().executor(clientThreads).version(HttpClient.Version.HTTP_1_1)
+				.build();
+		HttpRequest[] requests = new HttpRequest[routes.length];
+		for (int i = 0; i < routes.length; i++) {
+			requests[i] = HttpRequest.newBuilder(URI.create("http://localhost:" + PORT + routes[i])).build();
+		}
+
+		AtomicLongArray latencies = new AtomicLongArray(MAX_SAMPLES);
+		AtomicInteger samples = new AtomicInteger();
+		LongAdder completed = new LongAdder();
+		LongAdder errors = new LongAdder();
+		CountDownLatch done = new CountDownLatch(clients);
+		long start = System.nanoTime();
+		long deadline = start + seconds * 1_000_000_000L;
+
+		for (int i = 0; i < clients; i++) {
+			new Object() {
+				int next;
+
+				void send() {
+					if (System.nanoTime() > deadline) {
+						done.countDown();
+						return;
+					}
+					long sent = System.nanoTime();
+					client.sendAsync(requests[next++ % requests.length], HttpResponse.BodyHandlers.discarding())
+							.whenComplete((response, error) -> {
+								if (error != null || response.statusCode() != 200) {
+									errors.increment();
+								} else {
+									completed.increment();
+									int sample = samples.getAndIncrement();
+									if (sample < MAX_SAMPLES) {
+										latencies.set(sample, System.nanoTime() - sent);
+									}
+								}
+								send();
+							});
+				}
+			}.send();
+		}
+		done.await();
+		long elapsed = System.nanoTime() - start;
+		clientThreads.shutdownNow();
+
+		long[] sorted = new long[Math.min(samples.get(), MAX_SAMPLES)];
+		for (int i = 0; i < sorted.length; i++) {
+			sorted[i] = latencies.get(i);
+		}
+		Arrays.sort(sorted);
+		return String.format("%10d %12.0f %9.2f %9.2f %8d", completed.sum(), completed.sum() * 1e9 / elapsed,
+				percentile(sorted, 0.50), percentile(sorted, 0.99), errors.sum());
+	}
+
+	private static double percentile(long[] sorted, double fraction) {
+		if (sorted.length == 0) {
+			return 0;
+		}
+		return sorted[Math.min(sorted.length - 1, (int) (sorted.length * fraction))] / 1e6;
+	}
+}
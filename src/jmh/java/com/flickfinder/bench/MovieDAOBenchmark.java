@@ -0,0 +1,116 @@
+package com.flickfinder.bench;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.flickfinder.dao.CatalogMovieDAO;
+import com.flickfinder.dao.MovieDAO;
+import com.flickfinder.model.Movie;
+import com.flickfinder.model.MovieRating;
+import com.flickfinder.model.Person;
+import com.flickfinder.util.Database;
+
+/**
+ * Benchmarks for every query in the MovieDAO.
+ * Throughput mode tells us how many calls per second we can make, sample time
+ * mode gives us the latency percentiles.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MovieDAOBenchmark {
+
+	/**
+	 * The dataset to query, see {@link Fixtures}.
+	 */
+	@Param({ "seeder", "synthetic", "movies.db" })
+	public String dataset;
+
+	/**
+	 * Where the DAO reads from: {@code sqlite}, {@code sqlite} with the ratings
+	 * leaderboard in a {@code ratingIndex}, or the in-memory {@code catalog}.
+	 */
+	@Param({ "sqlite", "ratingIndex", "catalog" })
+	public String backend;
+
+	/**
+	 * The dataset.
+	 */
+	Fixtures fixtures;
+
+	/**
+	 * The DAO under test.
+	 */
+	MovieDAO movieDAO;
+
+	/**
+	 * Opens the dataset and creates the DAO.
+	 */
+	@Setup(Level.Trial)
+	public void setUp() throws SQLException {
+		fixtures = Fixtures.open(dataset);
+		Database.getInstance(fixtures.getConnection());
+		switch (backend) {
+		case "catalog":
+			movieDAO = new CatalogMovieDAO(Database.getInstance().getCatalog(),
+					Database.getInstance().getRatingIndex());
+			break;
+		case "ratingIndex":
+			movieDAO = new MovieDAO(Database.getInstance().getRatingIndex());
+			break;
+		default:
+			movieDAO = new MovieDAO();
+		}
+	}
+
+	@Benchmark
+	public List<Movie> getAllMovies() throws SQLException {
+		return movieDAO.getAllMovies(50);
+	}
+
+	@Benchmark
+	public Movie getMovieById() throws SQLException {
+		return movieDAO.getMovieById(fixtures.movieId);
+	}
+
+	@Benchmark
+	public List<Person> getStarsByMovie() throws SQLException {
+		return movieDAO.getStarsByMovie(fixtures.movieId);
+	}
+
+	@Benchmark
+	public List<Person> getDirectorsByMovie() throws SQLException {
+		return movieDAO.getDirectorsByMovie(fixtures.movieId);
+	}
+
+	@Benchmark
+	public List<MovieRating> getMoviesByRatingOrder() throws SQLException {
+		return movieDAO.getMoviesByRatingOrder(fixtures.year, 1000, 50);
+	}
+
+	/**
+	 * Closes the dataset.
+	 */
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		fixtures.close();
+	}
+}
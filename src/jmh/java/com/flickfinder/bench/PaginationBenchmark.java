@@ -0,0 +1,120 @@
+package com.flickfinder.bench;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.flickfinder.dao.MovieDAO;
+import com.flickfinder.model.Movie;
+import com.flickfinder.util.Database;
+
+/**
+ * Shows that keyset pagination costs the same on every page, while OFFSET gets
+ * slower the deeper the page is. Both fetch the same page of movies.
+ */
+@BenchmarkMode({ Mode.AverageTime, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PaginationBenchmark {
+
+	/**
+	 * The number of movies on a page.
+	 */
+	static final int PAGE_SIZE = 10;
+
+	/**
+	 * The dataset to page through. The Seeder database is too small for this.
+	 */
+	@Param({ "synthetic", "movies.db" })
+	public String dataset;
+
+	/**
+	 * The page to fetch, from the start to the end of the synthetic table.
+	 */
+	@Param({ "1", "100", "1000", "5000", "10000" })
+	public int page;
+
+	Fixtures fixtures;
+	MovieDAO movieDAO;
+
+	/**
+	 * The last id of the previous page, which is what a cursor holds.
+	 */
+	int afterId;
+
+	/**
+	 * Opens the dataset and works out where the page starts.
+	 */
+	@Setup(Level.Trial)
+	public void setUp() throws SQLException {
+		fixtures = Fixtures.open(dataset);
+		Database.getInstance(fixtures.getConnection());
+		movieDAO = new MovieDAO();
+		if (page == 1) {
+			return;
+		}
+		try (PreparedStatement ps = fixtures.getConnection()
+				.prepareStatement("select id from movies order by id limit 1 offset ?")) {
+			ps.setInt(1, skipped() - 1);
+			try (ResultSet rs = ps.executeQuery()) {
+				afterId = rs.next() ? rs.getInt(1) : 0;
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of movies before the page.
+	 */
+	private int skipped() {
+		return (page - 1) * PAGE_SIZE;
+	}
+
+	@Benchmark
+	public List<Movie> keyset() throws SQLException {
+		return movieDAO.getMoviesAfter(afterId, PAGE_SIZE);
+	}
+
+	@Benchmark
+	public List<Movie> offset() throws SQLException {
+		List<Movie> movies = new ArrayList<>();
+		try (PreparedStatement ps = fixtures.getConnection()
+				.prepareStatement("select * from movies order by id limit ? offset ?")) {
+			ps.setInt(1, PAGE_SIZE);
+			ps.setInt(2, skipped());
+			try (ResultSet rs = ps.executeQuery()) {
+				while (rs.next()) {
+					movies.add(new Movie(rs.getInt("id"), rs.getString("title"), rs.getInt("year")));
+				}
+			}
+		}
+		return movies;
+	}
+
+	/**
+	 * Closes the dataset.
+	 */
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		fixtures.close();
+	}
+}
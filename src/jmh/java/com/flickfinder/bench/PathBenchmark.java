@@ -0,0 +1,94 @@
+package com.flickfinder.bench;
+
+import java.sql.SQLException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.flickfinder.catalog.CoStarGraph;
+
+/**
+ * Measures degrees of separation searches between random pairs of people.
+ *
+ * Most pairs in the synthetic dataset are connected, and since the casts are
+ * skewed the chains usually run through one of the prolific people.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PathBenchmark {
+
+	/**
+	 * The dataset to search, see {@link Fixtures}.
+	 */
+	@Param({ "synthetic", "movies.db" })
+	public String dataset;
+
+	/**
+	 * The dataset.
+	 */
+	Fixtures fixtures;
+
+	/**
+	 * The graph under test.
+	 */
+	CoStarGraph graph;
+
+	/**
+	 * The pairs of person ids to search between.
+	 */
+	int[] from;
+	int[] to;
+
+	/**
+	 * The next pair.
+	 */
+	int next;
+
+	/**
+	 * Opens the dataset, builds the graph and picks the pairs.
+	 */
+	@Setup(Level.Trial)
+	public void setUp() throws SQLException {
+		fixtures = Fixtures.open(dataset);
+		long start = System.nanoTime();
+		graph = CoStarGraph.load(fixtures.getConnection());
+		System.out.println(graph + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+
+		Random random = new Random(1028);
+		from = new int[1024];
+		to = new int[1024];
+		int[] ids = fixtures.personIds();
+		for (int i = 0; i < from.length; i++) {
+			from[i] = ids[random.nextInt(ids.length)];
+			to[i] = ids[random.nextInt(ids.length)];
+		}
+	}
+
+	@Benchmark
+	public int[][] findPath() {
+		int i = next++ & 1023;
+		return graph.findPath(from[i], to[i], 6, 500);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		fixtures.close();
+	}
+}
@@ -0,0 +1,112 @@
+package com.flickfinder.bench;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.flickfinder.dao.CatalogPersonDAO;
+import com.flickfinder.dao.PersonDAO;
+import com.flickfinder.model.Credits;
+import com.flickfinder.model.Movie;
+import com.flickfinder.model.Person;
+import com.flickfinder.util.Database;
+
+/**
+ * Benchmarks for every query in the PersonDAO.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PersonDAOBenchmark {
+
+	/**
+	 * The dataset to query, see {@link Fixtures}.
+	 */
+	@Param({ "seeder", "synthetic", "movies.db" })
+	public String dataset;
+
+	/**
+	 * Where the DAO reads from: {@code sqlite} or the in-memory {@code catalog}.
+	 */
+	@Param({ "sqlite", "catalog" })
+	public String backend;
+
+	/**
+	 * The dataset.
+	 */
+	Fixtures fixtures;
+
+	/**
+	 * The DAO under test.
+	 */
+	PersonDAO personDAO;
+
+	/**
+	 * Opens the dataset and creates the DAO.
+	 */
+	@Setup(Level.Trial)
+	public void setUp() throws SQLException {
+		fixtures = Fixtures.open(dataset);
+		Database.getInstance(fixtures.getConnection());
+		personDAO = backend.equals("catalog") ? new CatalogPersonDAO(Database.getInstance().getCatalog()) : new PersonDAO();
+	}
+
+	@Benchmark
+	public List<Person> getAllPeople() throws SQLException {
+		return personDAO.getAllPeople(50);
+	}
+
+	@Benchmark
+	public Person getPersonById() throws SQLException {
+		return personDAO.getPersonById(fixtures.personId);
+	}
+
+	@Benchmark
+	public List<Movie> getMoviesByStar() throws SQLException {
+		return personDAO.getMoviesByStar(fixtures.personId);
+	}
+
+	@Benchmark
+	public List<Movie> getMoviesByDirector() throws SQLException {
+		return personDAO.getMoviesByDirector(fixtures.directorId);
+	}
+
+	@Benchmark
+	public Credits getCredits() throws SQLException {
+		return personDAO.getCredits(fixtures.directorId);
+	}
+
+	/**
+	 * The two lookups that getCredits replaces, for comparison.
+	 */
+	@Benchmark
+	public Credits getCreditsSeparately() throws SQLException {
+		return new Credits(personDAO.getMoviesByStar(fixtures.directorId),
+				personDAO.getMoviesByDirector(fixtures.directorId));
+	}
+
+	/**
+	 * Closes the dataset.
+	 */
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		fixtures.close();
+	}
+}
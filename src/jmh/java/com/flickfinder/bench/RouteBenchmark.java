@@ -0,0 +1,136 @@
+package com.flickfinder.bench;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.flickfinder.AppConfig;
+import com.flickfinder.util.Database;
+
+import io.javalin.Javalin;
+
+/**
+ * Benchmarks for full requests through the server started by
+ * {@link AppConfig#startServer(int)}, so routing, the controllers, the DAOs and
+ * JSON serialization are all included.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RouteBenchmark {
+
+	/**
+	 * The port that the server runs on during the benchmark.
+	 */
+	static final int PORT = 6100;
+
+	/**
+	 * The dataset to serve, see {@link Fixtures}.
+	 */
+	@Param({ "seeder", "synthetic", "movies.db" })
+	public String dataset;
+
+	Fixtures fixtures;
+	Javalin app;
+	HttpClient client;
+
+	HttpRequest movies;
+	HttpRequest movie;
+	HttpRequest stars;
+	HttpRequest ratings;
+	HttpRequest people;
+	HttpRequest person;
+	HttpRequest personMovies;
+
+	/**
+	 * Opens the dataset and starts the server.
+	 */
+	@Setup(Level.Trial)
+	public void setUp() throws SQLException {
+		fixtures = Fixtures.open(dataset);
+		Database.getInstance(fixtures.getConnection());
+		app = AppConfig.startServer(PORT);
+		client = HttpClient.newHttpClient();
+
+		movies = request("/movies");
+		movie = request("/movies/" + fixtures.movieId);
+		stars = request("/movies/" + fixtures.movieId + "/stars");
+		ratings = request("/movies/ratings/" + fixtures.year);
+		people = request("/people");
+		person = request("/people/" + fixtures.personId);
+		personMovies = request("/people/" + fixtures.personId + "/movies");
+	}
+
+	private static HttpRequest request(String path) {
+		return HttpRequest.newBuilder(URI.create("http://localhost:" + PORT + path)).build();
+	}
+
+	private byte[] send(HttpRequest request) throws IOException, InterruptedException {
+		return client.send(request, HttpResponse.BodyHandlers.ofByteArray()).body();
+	}
+
+	@Benchmark
+	public byte[] getAllMovies() throws IOException, InterruptedException {
+		return send(movies);
+	}
+
+	@Benchmark
+	public byte[] getMovieById() throws IOException, InterruptedException {
+		return send(movie);
+	}
+
+	@Benchmark
+	public byte[] getPeopleByMovieId() throws IOException, InterruptedException {
+		return send(stars);
+	}
+
+	@Benchmark
+	public byte[] getRatingsByYear() throws IOException, InterruptedException {
+		return send(ratings);
+	}
+
+	@Benchmark
+	public byte[] getAllPeople() throws IOException, InterruptedException {
+		return send(people);
+	}
+
+	@Benchmark
+	public byte[] getPersonById() throws IOException, InterruptedException {
+		return send(person);
+	}
+
+	@Benchmark
+	public byte[] getMoviesStarringPerson() throws IOException, InterruptedException {
+		return send(personMovies);
+	}
+
+	/**
+	 * Stops the server and closes the dataset.
+	 */
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		app.stop();
+		fixtures.close();
+	}
+}
@@ -0,0 +1,186 @@
+package com.flickfinder.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A load scenario for {@link LoadGenerator}: how to send the load, and a
+ * weighted mix of routes to send it to.
+ *
+ * A scenario file has one setting per line, and blank lines and lines starting
+ * with # are ignored:
+ *
+ * <pre>
+ * mode open              # open (constant arrival rate) or closed
+ * rate 2000              # open: requests per second
+ * connections 64         # closed: clients, each sends after the last answer
+ * interval 20            # closed, optional: ms between a client's requests
+ * seconds 30             # how long to measure
+ * warmup 5               # how long to run first, unmeasured
+ * route 40 /movies
+ * route 30 /movies/{movie}/stars
+ * route 20 /movies/ratings/{year}
+ * route 10 /people/{person}/movies
+ * </pre>
+ *
+ * A route is picked for each request with a probability proportional to its
+ * weight. {movie}, {person} and {year} are replaced with a random movie, star
+ * or year of the dataset.
+ */
+final class Scenario {
+
+	/**
+	 * Whether requests are sent at a constant rate rather than by a fixed number
+	 * of clients.
+	 */
+	boolean open = true;
+
+	/**
+	 * The requests per second of an open scenario.
+	 */
+	int rate = 1000;
+
+	/**
+	 * The clients of a closed scenario.
+	 */
+	int connections = 64;
+
+	/**
+	 * The time between the requests of one client of a closed scenario, in
+	 * milliseconds, or 0 to send as soon as the last one is answered.
+	 */
+	int intervalMillis;
+
+	int seconds = 30;
+	int warmupSeconds = 5;
+
+	final List<String> routes = new ArrayList<>();
+	final List<Integer> weights = new ArrayList<>();
+	private int totalWeight;
+
+	/**
+	 * Reads a scenario file.
+	 *
+	 * @param file the scenario file
+	 * @return the scenario
+	 * @throws IOException              if the file cannot be read
+	 * @throws IllegalArgumentException if a line is not a valid setting
+	 */
+	static Scenario parse(Path file) throws IOException {
+		Scenario scenario = new Scenario();
+		int number = 0;
+		for (String line : Files.readAllLines(file)) {
+			number++;
+			int comment = line.indexOf('#');
+			String[] words = (comment < 0 ? line : line.substring(0, comment)).trim().split("\\s+");
+			if (words[0].isEmpty()) {
+				continue;
+			}
+			try {
+				switch (words[0]) {
+				case "mode":
+					if (!words[1].equals("open") && !words[1].equals("closed")) {
+						throw new IllegalArgumentException("mode is open or closed");
+					}
+					scenario.open = words[1].equals("open");
+					break;
+				case "rate":
+					scenario.rate = positive(words[1]);
+					break;
+				case "connections":
+					scenario.connections = positive(words[1]);
+					break;
+				case "interval":
+					scenario.intervalMillis = Integer.parseInt(words[1]);
+					break;
+				case "seconds":
+					scenario.seconds = positive(words[1]);
+					break;
+				case "warmup":
+					scenario.warmupSeconds = Integer.parseInt(words[1]);
+					break;
+				case "route":
+					scenario.add(positive(words[1]), words[2]);
+					break;
+				default:
+					throw new IllegalArgumentException("unknown setting " + words[0]);
+				}
+			} catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+				throw new IllegalArgumentException(file + ":" + number + ": " + line.trim() + " (" + e.getMessage()
+						+ ")", e);
+			}
+		}
+		if (scenario.routes.isEmpty()) {
+			throw new IllegalArgumentException(file + " has no routes");
+		}
+		return scenario;
+	}
+
+	private static int positive(String value) {
+		int number = Integer.parseInt(value);
+		if (number <= 0) {
+			throw new IllegalArgumentException(value + " is not positive");
+		}
+		return number;
+	}
+
+	void add(int weight, String route) {
+		routes.add(route);
+		weights.add(weight);
+		totalWeight += weight;
+	}
+
+	/**
+	 * Picks a route by weight.
+	 *
+	 * @param random the random numbers to use
+	 * @return the index of the route
+	 */
+	int pick(Random random) {
+		int ticket = random.nextInt(totalWeight);
+		for (int i = 0; i < weights.size(); i++) {
+			ticket -= weights.get(i);
+			if (ticket < 0) {
+				return i;
+			}
+		}
+		return weights.size() - 1;
+	}
+
+	/**
+	 * Fills in the placeholders of a route.
+	 *
+	 * @param route   the index of the route
+	 * @param random  the random numbers to use
+	 * @param movies  the movie ids to pick from
+	 * @param people  the person ids to pick from
+	 * @param years   the years to pick from
+	 * @return the path to request
+	 */
+	String path(int route, Random random, int[] movies, int[] people, int[] years) {
+		String path = routes.get(route);
+		if (path.indexOf('{') < 0) {
+			return path;
+		}
+		return path.replace("{movie}", String.valueOf(movies[random.nextInt(movies.length)]))
+				.replace("{person}", String.valueOf(people[random.nextInt(people.length)]))
+				.replace("{year}", String.valueOf(years[random.nextInt(years.length)]));
+	}
+
+	/**
+	 * Describes how the load is sent.
+	 *
+	 * @return a string representation of the scenario
+	 */
+	@Override
+	public String toString() {
+		String load = open ? "open loop at " + rate + " requests/s"
+				: "closed loop with " + connections + " connections"
+						+ (intervalMillis > 0 ? " every " + intervalMillis + " ms" : "");
+		return load + " for " + seconds + " s after " + warmupSeconds + " s of warmup";
+	}
+}
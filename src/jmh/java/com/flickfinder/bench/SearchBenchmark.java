@@ -0,0 +1,94 @@
+package com.flickfinder.bench;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.flickfinder.search.Fts5Search;
+import com.flickfinder.search.IndexSearch;
+import com.flickfinder.search.SearchEngine;
+
+/**
+ * Compares the in-process inverted index with the SQLite FTS5 sidecar.
+ *
+ * The queries are a rare term, and a rare term together with one that is in
+ * every title of the synthetic dataset, which is the worst case for both
+ * engines.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SearchBenchmark {
+
+	/**
+	 * The dataset to search, see {@link Fixtures}.
+	 */
+	@Param({ "synthetic", "movies.db" })
+	public String dataset;
+
+	/**
+	 * The search engine: the inverted {@code index} or {@code fts5}.
+	 */
+	@Param({ "index", "fts5" })
+	public String engine;
+
+	/**
+	 * The query.
+	 */
+	@Param({ "4242", "movie 4242", "the dark knight" })
+	public String query;
+
+	/**
+	 * The dataset.
+	 */
+	Fixtures fixtures;
+
+	/**
+	 * The search engine under test.
+	 */
+	SearchEngine searchEngine;
+
+	/**
+	 * Opens the dataset and builds the index.
+	 */
+	@Setup(Level.Trial)
+	public void setUp() throws SQLException {
+		fixtures = Fixtures.open(dataset);
+		searchEngine = engine.equals("fts5") ? Fts5Search.open(fixtures.getConnection(), "jdbc:sqlite::memory:")
+				: IndexSearch.load(fixtures.getConnection());
+		System.out.println(searchEngine);
+	}
+
+	@Benchmark
+	public List<Integer> searchMovies() throws SQLException {
+		return searchEngine.searchMovies(query, 50);
+	}
+
+	/**
+	 * Closes the dataset and the sidecar.
+	 */
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		if (searchEngine instanceof Fts5Search) {
+			((Fts5Search) searchEngine).close();
+		}
+		fixtures.close();
+	}
+}
@@ -0,0 +1,93 @@
+package com.flickfinder.bench;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.flickfinder.dao.MovieDAO;
+import com.flickfinder.dao.PersonDAO;
+import com.flickfinder.model.Movie;
+import com.flickfinder.model.MovieRating;
+import com.flickfinder.model.Person;
+import com.flickfinder.util.Database;
+
+import io.javalin.json.JavalinJackson;
+
+/**
+ * Benchmarks for turning lists of models into JSON, using the same Jackson
+ * mapper as Javalin's ctx.json(...).
+ * The lists are loaded from the dataset once, so only serialization is timed.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SerializationBenchmark {
+
+	/**
+	 * The dataset to load the lists from, see {@link Fixtures}.
+	 */
+	@Param({ "seeder", "synthetic", "movies.db" })
+	public String dataset;
+
+	/**
+	 * The number of items in each list.
+	 */
+	@Param({ "50", "1000" })
+	public int size;
+
+	/**
+	 * The mapper that Javalin uses.
+	 */
+	ObjectMapper mapper;
+
+	List<Movie> movies;
+	List<Person> people;
+	List<MovieRating> ratings;
+
+	/**
+	 * Loads the lists from the dataset.
+	 */
+	@Setup(Level.Trial)
+	public void setUp() throws SQLException {
+		Fixtures fixtures = Fixtures.open(dataset);
+		Database.getInstance(fixtures.getConnection());
+		movies = new MovieDAO().getAllMovies(size);
+		people = new PersonDAO().getAllPeople(size);
+		ratings = new MovieDAO().getMoviesByRatingOrder(fixtures.year, 0, size);
+		fixtures.close();
+		mapper = new JavalinJackson().getMapper();
+	}
+
+	@Benchmark
+	public byte[] movies() throws JsonProcessingException {
+		return mapper.writeValueAsBytes(movies);
+	}
+
+	@Benchmark
+	public byte[] people() throws JsonProcessingException {
+		return mapper.writeValueAsBytes(people);
+	}
+
+	@Benchmark
+	public byte[] movieRatings() throws JsonProcessingException {
+		return mapper.writeValueAsBytes(ratings);
+	}
+}
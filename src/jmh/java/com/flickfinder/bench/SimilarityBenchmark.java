@@ -0,0 +1,109 @@
+package com.flickfinder.bench;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.flickfinder.catalog.SimilarityIndex;
+import com.flickfinder.catalog.SimilarityIndex.Matches;
+
+/**
+ * Finds the 10 movies most similar to the movie with the most stars from the
+ * MinHash buckets and by scoring every movie, and prints how long the buckets
+ * took to build, their size and how many of the exact top 10 they find, in
+ * all and of those sharing at least half their credits.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SimilarityBenchmark {
+
+	/**
+	 * The dataset to query, see {@link Fixtures}.
+	 */
+	@Param({ "seeder", "synthetic", "movies.db" })
+	public String dataset;
+
+	/**
+	 * Whether to weight the similarity by rating.
+	 */
+	@Param({ "false", "true" })
+	public boolean weighted;
+
+	/**
+	 * The dataset.
+	 */
+	Fixtures fixtures;
+
+	SimilarityIndex index;
+
+	/**
+	 * Opens the dataset, builds the index and compares its answers with the
+	 * exact scan for a sample of movies.
+	 */
+	@Setup(Level.Trial)
+	public void setUp() throws SQLException {
+		fixtures = Fixtures.openOptimized(dataset);
+		index = SimilarityIndex.load(fixtures.getConnection());
+		System.out.println(index);
+
+		int[] movieIds = fixtures.movieIds();
+		int step = Math.max(1, movieIds.length / 200);
+		int relevant = 0;
+		int found = 0;
+		int close = 0;
+		int closeFound = 0;
+		for (int i = 0; i < movieIds.length; i += step) {
+			Matches exact = index.exact(movieIds[i], 10, weighted);
+			Matches similar = index.similar(movieIds[i], 10, weighted);
+			for (int a = 0; a < exact.size(); a++) {
+				boolean isClose = exact.score(a) >= 0.5;
+				relevant++;
+				close += isClose ? 1 : 0;
+				for (int b = 0; b < similar.size(); b++) {
+					if (similar.movieId(b) == exact.movieId(a)) {
+						found++;
+						closeFound += isClose ? 1 : 0;
+					}
+				}
+			}
+		}
+		System.out.printf("Found %d of the exact top 10 of %d movies (%.1f%%)%n", found,
+				(movieIds.length + step - 1) / step, 100.0 * found / Math.max(1, relevant));
+		System.out.printf("Found %d of the %d with a score of 0.5 or more%n", closeFound, close);
+	}
+
+	@Benchmark
+	public Matches exact() {
+		return index.exact(fixtures.movieId, 10, weighted);
+	}
+
+	@Benchmark
+	public Matches lsh() {
+		return index.similar(fixtures.movieId, 10, weighted);
+	}
+
+	/**
+	 * Closes the dataset.
+	 */
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		fixtures.close();
+	}
+}
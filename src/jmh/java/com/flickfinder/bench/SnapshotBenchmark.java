@@ -0,0 +1,83 @@
+package com.flickfinder.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.flickfinder.catalog.CatalogSnapshot;
+import com.flickfinder.catalog.ColumnarCatalog;
+
+/**
+ * Compares loading the catalog from SQLite with mapping it from a snapshot,
+ * which is what the server does at startup with the catalog backend.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SnapshotBenchmark {
+
+	/**
+	 * The dataset to load, see {@link Fixtures}.
+	 */
+	@Param({ "synthetic", "movies.db" })
+	public String dataset;
+
+	/**
+	 * The dataset.
+	 */
+	Fixtures fixtures;
+
+	/**
+	 * The snapshot of the dataset.
+	 */
+	Path snapshot;
+
+	/**
+	 * Opens the dataset and writes its snapshot.
+	 */
+	@Setup(Level.Trial)
+	public void setUp() throws SQLException, IOException {
+		fixtures = Fixtures.open(dataset);
+		snapshot = Files.createTempFile("catalog", ".snapshot");
+		CatalogSnapshot.write(ColumnarCatalog.load(fixtures.getConnection()), snapshot);
+		System.out.println("Snapshot is " + Files.size(snapshot) + " bytes");
+	}
+
+	@Benchmark
+	public ColumnarCatalog load() throws SQLException {
+		return ColumnarCatalog.load(fixtures.getConnection());
+	}
+
+	@Benchmark
+	public ColumnarCatalog map() throws IOException {
+		return CatalogSnapshot.map(snapshot);
+	}
+
+	/**
+	 * Closes the dataset and deletes the snapshot.
+	 */
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		fixtures.close();
+		Files.deleteIfExists(snapshot);
+	}
+}
@@ -0,0 +1,86 @@
+package com.flickfinder.bench;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.flickfinder.catalog.RatingAggregator;
+import com.flickfinder.catalog.RatingIndex;
+import com.flickfinder.model.RatingStats;
+
+/**
+ * Sums the rating statistics of every year on fork-join pools of 1 to 8
+ * threads, to show how /stats/ratings scales with cores. A pool of more threads
+ * than the machine has cores shows no further gain.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StatsBenchmark {
+
+	/**
+	 * The dataset to sum, see {@link Fixtures}.
+	 */
+	@Param({ "seeder", "synthetic", "movies.db" })
+	public String dataset;
+
+	/**
+	 * The threads of the pool.
+	 */
+	@Param({ "1", "2", "4", "8" })
+	public int parallelism;
+
+	/**
+	 * Whether to group by decade rather than by year.
+	 */
+	@Param({ "false", "true" })
+	public boolean byDecade;
+
+	RatingIndex index;
+	ForkJoinPool pool;
+
+	/**
+	 * Builds the rating index of the dataset and starts the pool.
+	 */
+	@Setup(Level.Trial)
+	public void setUp() throws SQLException {
+		Fixtures fixtures = Fixtures.open(dataset);
+		try {
+			index = RatingIndex.load(fixtures.getConnection());
+		} finally {
+			fixtures.close();
+		}
+		pool = new ForkJoinPool(parallelism);
+	}
+
+	@Benchmark
+	public List<RatingStats> aggregate() {
+		return RatingAggregator.aggregate(index, Integer.MIN_VALUE, Integer.MAX_VALUE, byDecade, pool);
+	}
+
+	/**
+	 * Stops the pool.
+	 */
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		pool.shutdown();
+	}
+}
@@ -1,12 +1,41 @@
 package com.flickfinder;
 
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import com.flickfinder.catalog.CoStarGraph;
+import com.flickfinder.catalog.CollaboratorIndex;
+import com.flickfinder.catalog.ColumnarCatalog;
+import com.flickfinder.catalog.RatingIndex;
+import com.flickfinder.catalog.SimilarityIndex;
+import com.flickfinder.controller.CollaboratorController;
+import com.flickfinder.controller.HttpCache;
+import com.flickfinder.controller.JsonCache;
 import com.flickfinder.controller.MovieController;
+import com.flickfinder.controller.PathController;
+import com.flickfinder.controller.RateLimiter;
+import com.flickfinder.dao.CatalogMovieDAO;
+import com.flickfinder.dao.CatalogPersonDAO;
 import com.flickfinder.dao.MovieDAO;
 import com.flickfinder.controller.PersonController;
+import com.flickfinder.controller.SearchController;
+import com.flickfinder.controller.SimilarController;
+import com.flickfinder.controller.StatsController;
 import com.flickfinder.dao.PersonDAO;
+import com.flickfinder.metrics.Metrics;
+import com.flickfinder.search.Fts5Search;
+import com.flickfinder.search.SearchEngine;
+import com.flickfinder.util.ConnectionPool;
+import com.flickfinder.util.Database;
+import com.flickfinder.util.DatabaseExecutor;
+import com.flickfinder.util.SingleFlight;
 
 import io.javalin.Javalin;
 import io.javalin.http.staticfiles.Location;
+import io.javalin.util.ConcurrencyUtil;
 
 /**
  * This class is used to configure the Javalin web server.
@@ -16,6 +45,141 @@ import io.javalin.http.staticfiles.Location;
 
 public class AppConfig {
 
+	/**
+	 * The system property that selects where the DAOs read from.
+	 */
+	public static final String BACKEND_PROPERTY = "flickfinder.backend";
+
+	/**
+	 * The value of {@link #BACKEND_PROPERTY} for the in-memory catalog.
+	 */
+	public static final String CATALOG_BACKEND = "catalog";
+
+	/**
+	 * The system property that turns the precomputed ratings leaderboard off.
+	 */
+	public static final String RATING_INDEX_PROPERTY = "flickfinder.ratings.index";
+
+	/**
+	 * The system property with the path of the binary snapshot that the catalog
+	 * is mapped from.
+	 */
+	public static final String SNAPSHOT_PROPERTY = "flickfinder.snapshot";
+
+	/**
+	 * The system property that selects the search engine.
+	 */
+	public static final String SEARCH_PROPERTY = "flickfinder.search";
+
+	/**
+	 * The value of {@link #SEARCH_PROPERTY} for the SQLite FTS5 sidecar.
+	 */
+	public static final String FTS5_SEARCH = "fts5";
+
+	/**
+	 * The system property with the path of the FTS5 sidecar database.
+	 */
+	public static final String SEARCH_SIDECAR_PROPERTY = "flickfinder.search.sidecar";
+
+	/**
+	 * The system property that selects the threads requests run on.
+	 */
+	public static final String THREADS_PROPERTY = "flickfinder.threads";
+
+	/**
+	 * The value of {@link #THREADS_PROPERTY} for virtual threads.
+	 */
+	public static final String VIRTUAL_THREADS = "virtual";
+
+	/**
+	 * The system property with how many queries may wait for the
+	 * {@link DatabaseExecutor}.
+	 */
+	public static final String DB_QUEUE_PROPERTY = "flickfinder.db.queue";
+
+	/**
+	 * The system property with how many bytes of serialized movies and people
+	 * to keep off the heap, split evenly between the two.
+	 */
+	public static final String JSON_CACHE_PROPERTY = "flickfinder.json.cache";
+
+	/**
+	 * The default of {@link #JSON_CACHE_PROPERTY}, 64 MB.
+	 */
+	static final long DEFAULT_JSON_CACHE_BYTES = 64L << 20;
+
+	/**
+	 * The system property with how many of the most prolific people have their
+	 * top collaborators counted at startup.
+	 */
+	public static final String COLLABORATORS_PRECOMPUTE_PROPERTY = "flickfinder.collaborators.precompute";
+
+	/**
+	 * The default of {@link #COLLABORATORS_PRECOMPUTE_PROPERTY}.
+	 */
+	static final int DEFAULT_COLLABORATORS_PRECOMPUTE = 1000;
+
+	/**
+	 * The system property with how many tokens a second each client's rate
+	 * limit bucket refills at.
+	 */
+	public static final String RATE_LIMIT_PROPERTY = "flickfinder.ratelimit";
+
+	/**
+	 * The default of {@link #RATE_LIMIT_PROPERTY}.
+	 */
+	static final int DEFAULT_RATE_LIMIT = 100;
+
+	/**
+	 * The system property with the most tokens a client's bucket holds.
+	 */
+	public static final String RATE_LIMIT_BURST_PROPERTY = "flickfinder.ratelimit.burst";
+
+	/**
+	 * The default of {@link #RATE_LIMIT_BURST_PROPERTY}.
+	 */
+	static final int DEFAULT_RATE_LIMIT_BURST = 200;
+
+	/**
+	 * The system property with how many tokens a request to a list route takes,
+	 * where a single movie or person takes one.
+	 */
+	public static final String RATE_LIMIT_LIST_COST_PROPERTY = "flickfinder.ratelimit.listcost";
+
+	/**
+	 * The default of {@link #RATE_LIMIT_LIST_COST_PROPERTY}.
+	 */
+	static final int DEFAULT_RATE_LIMIT_LIST_COST = 10;
+
+	/**
+	 * The system property with the comma separated API keys that get a bucket
+	 * of their own.
+	 */
+	public static final String RATE_LIMIT_KEYS_PROPERTY = "flickfinder.ratelimit.keys";
+
+	/**
+	 * The list routes, which read, sort or stream many rows. Requests to them
+	 * cost {@link #RATE_LIMIT_LIST_COST_PROPERTY} tokens, as does
+	 * /movies/ratings/{year}.
+	 */
+	static final Set<String> LIST_ROUTES = Set.of("/movies", "/people", "/search", "/stats/ratings");
+
+	/**
+	 * The system property that sends the database work of each request in the
+	 * X-Queries header.
+	 */
+	public static final String DEBUG_PROPERTY = "flickfinder.debug";
+
+	/**
+	 * The Cache-Control policy for a single movie or person and its relations.
+	 */
+	static final String CACHE_ENTITY = "public, max-age=3600";
+
+	/**
+	 * The Cache-Control policy for lists, leaderboards and search results.
+	 */
+	static final String CACHE_LIST = "public, max-age=300";
+
 	/**
 	 * Sets up the routes and the static files location.
 	 * 
@@ -23,8 +187,30 @@ public class AppConfig {
 	 * @return The Javalin object that represents the running server.
 	 */
 	public static Javalin startServer(int port) {
+		/**
+		 * Queries run on one platform thread per pooled connection, behind a
+		 * bounded queue. The routes hand their queries over without waiting, and
+		 * answer 429 when the queue is full.
+		 * With -Dflickfinder.threads=virtual requests also run on virtual threads,
+		 * so the queries they do make themselves do not pin the carrier threads.
+		 */
+		DatabaseExecutor executor = new DatabaseExecutor(Database.getInstance().getPool().getSize(),
+				Integer.getInteger(DB_QUEUE_PROPERTY, DatabaseExecutor.DEFAULT_QUEUE_CAPACITY));
+		Database.getInstance().setExecutor(executor);
+		boolean virtualThreads = VIRTUAL_THREADS.equals(System.getProperty(THREADS_PROPERTY));
+		if (virtualThreads && !ConcurrencyUtil.isLoomAvailable()) {
+			System.out.println("Virtual threads need Java 21, requests run on platform threads");
+		}
+
 		Javalin app = Javalin.create(config -> {
 			config.staticFiles.add("/public", Location.CLASSPATH);
+			config.useVirtualThreads = virtualThreads;
+			config.events(events -> events.serverStopped(() -> {
+				if (Database.getInstance().getExecutor() == executor) {
+					Database.getInstance().setExecutor(null);
+				}
+				executor.shutdown();
+			}));
 		}).start(port);
 
 
@@ -34,26 +220,300 @@ public class AppConfig {
 
 
 		MovieDAO movieDao = new MovieDAO();
-		MovieController movieController = new MovieController(movieDao);
 		PersonDAO personDao = new PersonDAO();
-		PersonController personController = new PersonController(personDao);
+
+		/**
+		 * With -Dflickfinder.backend=catalog the DAOs answer from an in-memory copy
+		 * of the database instead of SQLite.
+		 */
+		ColumnarCatalog catalog = null;
+		if (CATALOG_BACKEND.equals(System.getProperty(BACKEND_PROPERTY))) {
+			String snapshot = System.getProperty(SNAPSHOT_PROPERTY);
+			if (snapshot != null) {
+				Database.getInstance().setSnapshot(Path.of(snapshot));
+			}
+			try {
+				catalog = Database.getInstance().getCatalog();
+				personDao = new CatalogPersonDAO(catalog);
+			} catch (SQLException e) {
+				// carry on with SQLite
+				e.printStackTrace();
+			}
+		}
+
+		/**
+		 * The ratings leaderboard is answered from an index built at startup,
+		 * unless -Dflickfinder.ratings.index=false. The catalog is loaded first so
+		 * the index is built from it, and the catalog backend always uses the
+		 * index since it has no SQL to fall back on.
+		 */
+		if (catalog != null || !"false".equals(System.getProperty(RATING_INDEX_PROPERTY))) {
+			try {
+				RatingIndex ratings = Database.getInstance().getRatingIndex();
+				movieDao = catalog != null ? new CatalogMovieDAO(catalog, ratings) : new MovieDAO(ratings);
+			} catch (SQLException e) {
+				// carry on with the SQL query
+				e.printStackTrace();
+			}
+		}
+
+		/**
+		 * Search uses an inverted index built at startup, or with
+		 * -Dflickfinder.search=fts5 a SQLite FTS5 index in a sidecar database.
+		 */
+		SearchEngine searchEngine = null;
+		if (FTS5_SEARCH.equals(System.getProperty(SEARCH_PROPERTY))) {
+			String sidecar = "jdbc:sqlite:" + System.getProperty(SEARCH_SIDECAR_PROPERTY, "movies-search.db");
+			try {
+				searchEngine = Database.getInstance().withConnection(connection -> Fts5Search.open(connection, sidecar));
+			} catch (SQLException e) {
+				// carry on with the inverted index
+				e.printStackTrace();
+			}
+		}
+		if (searchEngine == null) {
+			try {
+				searchEngine = Database.getInstance().getSearchIndex();
+			} catch (SQLException e) {
+				app.stop();
+				throw new IllegalStateException("Could not build the search index", e);
+			}
+		}
+
+		/**
+		 * Degrees of separation are searched in a graph of who starred with whom,
+		 * built at startup.
+		 */
+		CoStarGraph coStarGraph;
+		try {
+			coStarGraph = Database.getInstance().getCoStarGraph();
+		} catch (SQLException e) {
+			app.stop();
+			throw new IllegalStateException("Could not build the co-star graph", e);
+		}
+
+		/**
+		 * Top collaborators are counted from the stars and directors adjacency,
+		 * and ahead of time for the most prolific people unless
+		 * -Dflickfinder.collaborators.precompute=0.
+		 */
+		CollaboratorIndex collaboratorIndex;
+		try {
+			collaboratorIndex = Database.getInstance().getCollaboratorIndex();
+		} catch (SQLException e) {
+			app.stop();
+			throw new IllegalStateException("Could not build the collaborator index", e);
+		}
+		collaboratorIndex.precompute(Integer.getInteger(COLLABORATORS_PRECOMPUTE_PROPERTY, DEFAULT_COLLABORATORS_PRECOMPUTE));
+
+		/**
+		 * Similar movies are found from MinHash buckets of each movie's cast and
+		 * directors, built at startup.
+		 */
+		SimilarityIndex similarityIndex;
+		try {
+			similarityIndex = Database.getInstance().getSimilarityIndex();
+		} catch (SQLException e) {
+			app.stop();
+			throw new IllegalStateException("Could not build the similarity index", e);
+		}
+
+		/**
+		 * Rating statistics are summed from the rating index, which is built at
+		 * startup even when the leaderboard uses the SQL query.
+		 */
+		RatingIndex ratingIndex;
+		try {
+			ratingIndex = Database.getInstance().getRatingIndex();
+		} catch (SQLException e) {
+			app.stop();
+			throw new IllegalStateException("Could not build the rating index", e);
+		}
+
+		/**
+		 * Single movies and people are sent from a cache of their JSON, unless
+		 * -Dflickfinder.json.cache=0.
+		 */
+		long jsonCacheBytes = Long.getLong(JSON_CACHE_PROPERTY, DEFAULT_JSON_CACHE_BYTES);
+		JsonCache movieJson = jsonCacheBytes >= 2 ? new JsonCache(jsonCacheBytes / 2) : null;
+		JsonCache personJson = jsonCacheBytes >= 2 ? new JsonCache(jsonCacheBytes / 2) : null;
+
+		MovieController movieController = new MovieController(movieDao, movieJson);
+		PersonController personController = new PersonController(personDao, personJson);
+		SearchController searchController = new SearchController(searchEngine, movieDao, personDao);
+		PathController pathController = new PathController(coStarGraph, movieDao, personDao);
+		StatsController statsController = new StatsController(ratingIndex);
+		CollaboratorController collaboratorController = new CollaboratorController(collaboratorIndex, personDao);
+		SimilarController similarController = new SimilarController(similarityIndex, movieDao);
+
 
 
+		/**
+		 * The database does not change while the server runs, so every route
+		 * sends an ETag and answers 304 when the client already has the response.
+		 */
+		HttpCache httpCache;
+		try {
+			httpCache = new HttpCache(Database.getInstance().getVersion());
+		} catch (SQLException e) {
+			app.stop();
+			throw new IllegalStateException("Could not read the database version", e);
+		}
+
+		/**
+		 * Every route records its latency, status and DAO calls, and /metrics
+		 * exports them together with the database and cache counters in
+		 * Prometheus format. With -Dflickfinder.debug=true each response also
+		 * says which queries it made.
+		 */
+		Metrics metrics = Metrics.getInstance();
+		metrics.setQueryHeader(Boolean.getBoolean(DEBUG_PROPERTY));
+		registerMetrics(metrics, httpCache, executor);
+		if (movieJson != null) {
+			registerMetrics(metrics, "movie", movieJson);
+			registerMetrics(metrics, "person", personJson);
+		}
+		registerMetrics(metrics, similarityIndex);
+
+		/**
+		 * Each client, by IP address or known API key, has a token bucket that
+		 * every request takes from before its route runs, and the list routes
+		 * take more. An empty bucket is a 429. -Dflickfinder.ratelimit=0 turns
+		 * this off.
+		 */
+		int rate = Integer.getInteger(RATE_LIMIT_PROPERTY, DEFAULT_RATE_LIMIT);
+		if (rate > 0) {
+			int listCost = Integer.getInteger(RATE_LIMIT_LIST_COST_PROPERTY, DEFAULT_RATE_LIMIT_LIST_COST);
+			Set<String> apiKeys = Arrays.stream(System.getProperty(RATE_LIMIT_KEYS_PROPERTY, "").split(","))
+					.map(String::trim).filter(key -> !key.isEmpty()).collect(Collectors.toSet());
+			RateLimiter rateLimiter = new RateLimiter(rate,
+					Integer.getInteger(RATE_LIMIT_BURST_PROPERTY, DEFAULT_RATE_LIMIT_BURST),
+					ctx -> requestCost(ctx.path(), listCost), apiKeys);
+			app.before(rateLimiter::admit);
+			registerMetrics(metrics, rateLimiter);
+		}
 
 		/**
 		 * Below are the routes for the application.
 		 */
-		app.get("/movies/ratings/{year}", movieController::getRatingsByYear);
-		app.get("/movies", movieController::getAllMovies);
-		app.get("/movies/{id}", movieController::getMovieById);
-		app.get("/movies/{id}/stars", movieController::getPeopleByMovieId);
+		app.get("/movies/ratings/{year}", metrics.timed(httpCache.cached(CACHE_LIST, movieController::getRatingsByYear)));
+		app.get("/movies", metrics.timed(httpCache.cached(CACHE_LIST, movieController::getAllMovies)));
+		app.get("/movies/stars", metrics.timed(httpCache.cached(CACHE_ENTITY, movieController::getPeopleByMovieIds)));
+		app.get("/movies/{id}", metrics.timed(httpCache.cached(CACHE_ENTITY, movieController::getMovieById)));
+		app.get("/movies/{id}/stars", metrics.timed(httpCache.cached(CACHE_ENTITY, movieController::getPeopleByMovieId)));
+		app.get("/movies/{id}/directors", metrics.timed(httpCache.cached(CACHE_ENTITY, movieController::getDirectorsByMovieId)));
+		app.get("/movies/{id}/similar", metrics.timed(httpCache.cached(CACHE_ENTITY, similarController::getSimilar)));
+
+		app.get("/people", metrics.timed(httpCache.cached(CACHE_LIST, personController::getAllPeople)));
+		app.get("/people/{id}", metrics.timed(httpCache.cached(CACHE_ENTITY, personController::getPersonById)));
+		app.get("/people/{id}/movies", metrics.timed(httpCache.cached(CACHE_ENTITY, personController::getMoviesStarringPerson)));
+		app.get("/people/{id}/directed", metrics.timed(httpCache.cached(CACHE_ENTITY, personController::getMoviesDirectedByPerson)));
+		app.get("/people/{id}/credits", metrics.timed(httpCache.cached(CACHE_ENTITY, personController::getCredits)));
+		app.get("/people/{a}/path/{b}", metrics.timed(httpCache.cached(CACHE_ENTITY, pathController::getPath)));
+		app.get("/people/{id}/collaborators", metrics.timed(httpCache.cached(CACHE_ENTITY, collaboratorController::getCollaborators)));
 
-		app.get("/people", personController::getAllPeople);
-		app.get("/people/{id}", personController::getPersonById);
-		app.get("/people/{id}/movies", personController::getMoviesStarringPerson);
+		app.get("/stats/ratings", metrics.timed(httpCache.cached(CACHE_LIST, statsController::getRatingStats)));
+
+		app.get("/search", metrics.timed(httpCache.cached(CACHE_LIST, searchController::search)));
+
+		app.after(httpCache::finish);
+		app.after(metrics::finish);
+
+		app.get("/metrics", ctx -> ctx.contentType(Metrics.CONTENT_TYPE).result(metrics.scrape()));
+		app.get("/metrics/http-cache", ctx -> ctx.json(httpCache));
+		app.get("/metrics/db-executor", ctx -> ctx.json(executor));
 
 		return app;
 
 	}
 
+	/**
+	 * Returns how many rate limit tokens a request to a path takes. The metrics
+	 * are not limited, so a scrape is never turned away.
+	 *
+	 * @param path     the path of the request
+	 * @param listCost the tokens a list route takes
+	 * @return the tokens the request takes
+	 */
+	static int requestCost(String path, int listCost) {
+		if (path.length() > 1 && path.endsWith("/")) {
+			path = path.substring(0, path.length() - 1);
+		}
+		if (path.equals("/metrics") || path.startsWith("/metrics/")) {
+			return 0;
+		}
+		return LIST_ROUTES.contains(path) || path.startsWith("/movies/ratings/") ? listCost : 1;
+	}
+
+	/**
+	 * Adds the counters of the connection pool, the HTTP cache, the database
+	 * executor and the lookup coalescing to the metrics.
+	 */
+	private static void registerMetrics(Metrics metrics, HttpCache httpCache, DatabaseExecutor executor) {
+		ConnectionPool pool = Database.getInstance().getPool();
+		metrics.gauge("flickfinder_db_pool_size", "Connections in the pool.", pool::getSize);
+		metrics.gauge("flickfinder_db_pool_in_use", "Connections checked out right now.", pool::getInUse);
+		metrics.gauge("flickfinder_db_pool_open_statements", "Cached prepared statements across the pool.",
+				pool::getOpenStatements);
+		metrics.counter("flickfinder_db_pool_checkouts_total", "Connections checked out.", pool::getCheckouts);
+		metrics.counter("flickfinder_db_pool_waits_total", "Checkouts that had to wait for a connection.",
+				pool::getWaits);
+		metrics.counter("flickfinder_db_pool_wait_seconds_total", "Time spent waiting for a connection.",
+				() -> pool.getWaitNanos() / 1e9);
+		metrics.counter("flickfinder_db_pool_timeouts_total", "Checkouts that gave up waiting.", pool::getTimeouts);
+
+		metrics.counter("flickfinder_http_cache_requests_total", "Requests to cached routes.", httpCache::getRequests);
+		metrics.counter("flickfinder_http_cache_not_modified_total", "Requests answered with 304 Not Modified.",
+				httpCache::getNotModified);
+
+		metrics.gauge("flickfinder_db_executor_queued", "Queries waiting for a database thread.", executor::getQueued);
+		metrics.gauge("flickfinder_db_executor_active", "Database threads running a query.", executor::getActive);
+		metrics.counter("flickfinder_db_executor_rejected_total", "Queries turned away because the queue was full.",
+				executor::getRejected);
+
+		SingleFlight singleFlight = Database.getInstance().getSingleFlight();
+		metrics.counter("flickfinder_db_lookups_total", "Keyed lookups, before coalescing.", singleFlight::getCalls);
+		metrics.counter("flickfinder_db_lookups_coalesced_total", "Keyed lookups that shared a query already in flight.",
+				singleFlight::getCoalesced);
+	}
+
+	/**
+	 * Adds the counters of a JSON cache to the metrics.
+	 */
+	private static void registerMetrics(Metrics metrics, String entity, JsonCache jsonCache) {
+		String prefix = "flickfinder_json_cache_" + entity;
+		metrics.gauge(prefix + "_entries", "Cached " + entity + " JSON documents.", jsonCache::getEntries);
+		metrics.gauge(prefix + "_bytes", "Direct memory allocated for cached " + entity + " JSON.",
+				jsonCache::getAllocatedBytes);
+		metrics.counter(prefix + "_hits_total", "Single " + entity + " requests sent from the cache.",
+				jsonCache::getHits);
+		metrics.counter(prefix + "_misses_total", "Single " + entity + " requests that were not cached.",
+				jsonCache::getMisses);
+		metrics.counter(prefix + "_evictions_total", "Cached " + entity + " JSON dropped to stay within the budget.",
+				jsonCache::getEvictions);
+	}
+
+	/**
+	 * Adds the counters of the rate limiter to the metrics.
+	 */
+	private static void registerMetrics(Metrics metrics, RateLimiter rateLimiter) {
+		metrics.gauge("flickfinder_rate_limit_clients", "Clients whose token bucket has not refilled.",
+				rateLimiter::getClients);
+		metrics.counter("flickfinder_rate_limit_allowed_total", "Requests let through by the rate limiter.",
+				rateLimiter::getAllowed);
+		metrics.counter("flickfinder_rate_limit_rejected_total", "Requests answered with 429 by the rate limiter.",
+				rateLimiter::getRejected);
+	}
+
+	/**
+	 * Adds the build time and size of the similarity index to the metrics. Its
+	 * lookups are timed with the /movies/{id}/similar route.
+	 */
+	private static void registerMetrics(Metrics metrics, SimilarityIndex similarityIndex) {
+		metrics.gauge("flickfinder_similarity_build_seconds", "Time taken to build the similar movies buckets.",
+				() -> similarityIndex.getBuildMillis() / 1e3);
+		metrics.gauge("flickfinder_similarity_memory_bytes", "Heap used by the similar movies index.",
+				similarityIndex::getMemoryBytes);
+	}
+
 }
\ No newline at end of file
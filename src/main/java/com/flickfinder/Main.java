@@ -1,6 +1,12 @@
 package com.flickfinder;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+
 import com.flickfinder.util.Database;
+import com.flickfinder.util.OptimizedDatabase;
+import com.flickfinder.util.PragmaProfile;
 
 /**
  * Entry point of the application.
@@ -13,6 +19,24 @@ public class Main {
      */
     static int port = 8000;
 
+    /**
+     * The number of read only connections to open to the database.
+     * Set it with -Dflickfinder.db.pool=N, zero shares a single connection.
+     */
+    static int poolSize = Integer.getInteger("flickfinder.db.pool", Runtime.getRuntime().availableProcessors());
+
+    /**
+     * The PRAGMAs to apply to each pooled connection.
+     * Set it with -Dflickfinder.db.pragmas=NONE|READ_ONLY|READ_ONLY_WAL.
+     */
+    static PragmaProfile pragmaProfile = PragmaProfile.fromName(System.getProperty("flickfinder.db.pragmas"));
+
+    /**
+     * Where to keep the indexed copy of movies.db that the server reads from.
+     * Set it with -Dflickfinder.db.optimized=PATH, or false to read movies.db itself.
+     */
+    static String optimizedPath = System.getProperty("flickfinder.db.optimized", "movies-optimized.db");
+
     /**
      * Set up a Javalin server and the database.
      * 
@@ -21,14 +45,25 @@ public class Main {
     public static void main(String[] args) {
 
         // This gives us a path to the database file, which is in the resources folder.
-        final String dbPath = "src/main/resources/movies.db";
+        String dbPath = "src/main/resources/movies.db";
+
+        // movies.db has no indexes for the lookups, so we read from an indexed copy of it
+        if (!"false".equals(optimizedPath)) {
+            try {
+                dbPath = OptimizedDatabase.prepare(Path.of(dbPath), Path.of(optimizedPath)).toString();
+            } catch (IOException | SQLException e) {
+                // carry on with movies.db
+                e.printStackTrace();
+            }
+        }
 
         /**
          * This sets up the database connection and starts the server.
          * In this case, we are using a connection string to connect to the database.
          * For testing, we are using an in-memory database.
+         * The server runs requests concurrently, so we open a pool of read only connections.
          */
-        Database.getInstance("jdbc:sqlite:" + dbPath);
+        Database.getInstance("jdbc:sqlite:" + dbPath, poolSize, pragmaProfile);
         // start the server
         AppConfig.startServer(port);
     }
@@ -0,0 +1,132 @@
+package com.flickfinder.catalog;
+
+import java.nio.IntBuffer;
+
+/**
+ * A compressed sparse row (CSR) adjacency list.
+ *
+ * The neighbours of every source are stored next to each other in one int
+ * array, and a second array holds where each source's neighbours start. The
+ * neighbours of source i are {@code target(k)} for k from {@code start(i)} up
+ * to (but not including) {@code end(i)}, in the order the rows were added.
+ *
+ * Sources and targets are indexes into the catalog columns, not database ids.
+ * Both arrays are buffers, so a list can also be read in place from a memory
+ * mapped {@link CatalogSnapshot}.
+ */
+public final class Adjacency {
+
+	/**
+	 * Where the neighbours of each source start, with one extra entry at the end.
+	 */
+	final IntBuffer offsets;
+
+	/**
+	 * The neighbours of every source, back to back.
+	 */
+	final IntBuffer targets;
+
+	Adjacency(IntBuffer offsets, IntBuffer targets) {
+		this.offsets = offsets;
+		this.targets = targets;
+	}
+
+	/**
+	 * Builds an adjacency list from a list of edges.
+	 * Edges with a negative source or target are skipped.
+	 *
+	 * @param sources the number of sources
+	 * @param from    the source of each edge
+	 * @param to      the target of each edge
+	 * @param edges   the number of edges in the arrays
+	 * @return the adjacency list
+	 */
+	static Adjacency build(int sources, int[] from, int[] to, int edges) {
+		int[] offsets = new int[sources + 1];
+		for (int e = 0; e < edges; e++) {
+			if (from[e] >= 0 && to[e] >= 0) {
+				offsets[from[e] + 1]++;
+			}
+		}
+		for (int i = 0; i < sources; i++) {
+			offsets[i + 1] += offsets[i];
+		}
+
+		int[] targets = new int[offsets[sources]];
+		int[] next = new int[sources];
+		for (int e = 0; e < edges; e++) {
+			if (from[e] >= 0 && to[e] >= 0) {
+				targets[offsets[from[e]] + next[from[e]]++] = to[e];
+			}
+		}
+		return new Adjacency(IntBuffer.wrap(offsets), IntBuffer.wrap(targets));
+	}
+
+	/**
+	 * Returns where the neighbours of a source start.
+	 *
+	 * @param source the index of the source
+	 * @return the position of its first neighbour
+	 */
+	public int start(int source) {
+		return offsets.get(source);
+	}
+
+	/**
+	 * Returns where the neighbours of a source end (exclusive).
+	 *
+	 * @param source the index of the source
+	 * @return the position after its last neighbour
+	 */
+	public int end(int source) {
+		return offsets.get(source + 1);
+	}
+
+	/**
+	 * Returns the number of neighbours of a source.
+	 *
+	 * @param source the index of the source
+	 * @return the number of neighbours
+	 */
+	public int degree(int source) {
+		return offsets.get(source + 1) - offsets.get(source);
+	}
+
+	/**
+	 * Returns the neighbour at a position.
+	 *
+	 * @param position a position between start and end of a source
+	 * @return the index of the neighbour
+	 */
+	public int target(int position) {
+		return targets.get(position);
+	}
+
+	/**
+	 * Returns the number of sources.
+	 *
+	 * @return the number of sources
+	 */
+	public int sources() {
+		return offsets.limit() - 1;
+	}
+
+	/**
+	 * Returns the number of edges.
+	 *
+	 * @return the number of edges
+	 */
+	public int edges() {
+		return targets.limit();
+	}
+
+	/**
+	 * Returns the number of bytes the adjacency list uses, on the heap or in the
+	 * mapped snapshot.
+	 *
+	 * @return the size in bytes
+	 */
+	public long getMemoryBytes() {
+		return 4L * offsets.limit() + 4L * targets.limit();
+	}
+}
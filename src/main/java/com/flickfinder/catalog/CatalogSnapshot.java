@@ -0,0 +1,285 @@
+package com.flickfinder.catalog;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.util.zip.CRC32C;
+
+/**
+ * A binary file holding a {@link ColumnarCatalog}, which the server maps into
+ * memory instead of loading the catalog from SQLite.
+ *
+ * Every column of the catalog is written as one section of fixed width values:
+ * the id, year and birth columns, the rating columns, the offsets and targets
+ * of each adjacency list, and the offsets and UTF-8 bytes of the titles and
+ * names. A mapped catalog reads its values straight out of the sections, so
+ * nothing is deserialized and opening a snapshot takes milliseconds. The pages
+ * live in the page cache rather than on the heap, so several servers on one
+ * host share them.
+ *
+ * The file starts with a header:
+ *
+ * <pre>
+ * int  magic       0x46464353 ("FFCS")
+ * int  version     {@link #VERSION}
+ * long checksum    CRC32C of everything after the header
+ * int  sections    the number of sections
+ * int  (padding)
+ * long sourceSize      the size of the database file it was written from
+ * long sourceModified  that file's modification time, in milliseconds
+ * long offset, long length    of each section, in bytes
+ * </pre>
+ *
+ * Values are little endian and every section starts on an 8 byte boundary.
+ * A snapshot with another magic number, version or checksum is refused, so a
+ * server never reads a file written by an incompatible build or a truncated
+ * copy. So is a snapshot of another version of the database file, so a server
+ * whose movies.db was replaced does not keep serving the old catalog.
+ */
+public final class CatalogSnapshot {
+
+	/**
+	 * Marks a file as a catalog snapshot.
+	 */
+	static final int MAGIC = 0x46464353;
+
+	/**
+	 * The version of the format. Bump it whenever the layout changes.
+	 */
+	public static final int VERSION = 3;
+
+	/**
+	 * The number of sections, in the order they are written.
+	 */
+	static final int SECTIONS = 19;
+
+	/**
+	 * Where the section table starts, after the fixed fields of the header.
+	 */
+	static final int TABLE_BYTES = 40;
+
+	static final int HEADER_BYTES = TABLE_BYTES + 16 * SECTIONS;
+
+	private CatalogSnapshot() {
+	}
+
+	/**
+	 * Writes a catalog to a snapshot file, replacing the file if it exists.
+	 *
+	 * @param catalog the catalog to write
+	 * @param file    the snapshot file
+	 * @throws IOException if the file cannot be written
+	 */
+	public static void write(ColumnarCatalog catalog, Path file) throws IOException {
+		write(catalog, file, null);
+	}
+
+	/**
+	 * Writes a catalog to a snapshot file, replacing the file if it exists, and
+	 * records the database file it was loaded from.
+	 *
+	 * @param catalog the catalog to write
+	 * @param file    the snapshot file
+	 * @param source  the database file the catalog was loaded from, or null if
+	 *                it has none
+	 * @throws IOException if the file cannot be written
+	 */
+	public static void write(ColumnarCatalog catalog, Path file, Path source) throws IOException {
+		long[] stamp = stamp(source);
+		ByteBuffer[] sections = sections(catalog);
+		long size = HEADER_BYTES;
+		for (ByteBuffer section : sections) {
+			size = align(size) + section.remaining();
+		}
+		if (size > Integer.MAX_VALUE) {
+			throw new IOException("The catalog is too large for a snapshot: " + size + " bytes");
+		}
+
+		ByteBuffer out = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+		out.putInt(MAGIC).putInt(VERSION).putLong(0).putInt(SECTIONS).putInt(0).putLong(stamp[0]).putLong(stamp[1]);
+		int position = HEADER_BYTES;
+		for (ByteBuffer section : sections) {
+			position = (int) align(position);
+			out.putLong((long) position).putLong((long) section.remaining());
+			out.put(position, section, section.position(), section.remaining());
+			position += section.remaining();
+		}
+		out.putLong(8, checksum(out));
+
+		// write next to the file and move it into place, so a server never maps a
+		// snapshot that is half written
+		Path partial = file.resolveSibling(file.getFileName() + ".partial");
+		try (FileChannel channel = FileChannel.open(partial, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			out.rewind();
+			while (out.hasRemaining()) {
+				channel.write(out);
+			}
+			channel.force(true);
+		}
+		Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Maps a snapshot file into memory as a catalog, whatever database it was
+	 * written from.
+	 *
+	 * @param file the snapshot file
+	 * @return the catalog, which reads from the file
+	 * @throws IOException if the file cannot be read, or is not a valid snapshot
+	 *                     of this version
+	 */
+	public static ColumnarCatalog map(Path file) throws IOException {
+		return map(file, null, false);
+	}
+
+	/**
+	 * Maps a snapshot file into memory as a catalog, if it was written from the
+	 * given database file as it is now.
+	 *
+	 * @param file   the snapshot file
+	 * @param source the database file the catalog should come from, or null if
+	 *               it has none
+	 * @return the catalog, which reads from the file
+	 * @throws IOException if the file cannot be read, is not a valid snapshot of
+	 *                     this version, or was written from another database
+	 */
+	public static ColumnarCatalog map(Path file, Path source) throws IOException {
+		return map(file, source, true);
+	}
+
+	private static ColumnarCatalog map(Path file, Path source, boolean checkSource) throws IOException {
+		long start = System.nanoTime();
+		MappedByteBuffer mapped;
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			if (channel.size() < HEADER_BYTES || channel.size() > Integer.MAX_VALUE) {
+				throw new IOException(file + " is not a catalog snapshot");
+			}
+			// the mapping stays valid after the channel is closed
+			mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		ByteBuffer in = mapped.order(ByteOrder.LITTLE_ENDIAN);
+		if (in.getInt(0) != MAGIC) {
+			throw new IOException(file + " is not a catalog snapshot");
+		}
+		if (in.getInt(4) != VERSION) {
+			throw new IOException(file + " is a version " + in.getInt(4) + " snapshot, expected version " + VERSION);
+		}
+		if (in.getInt(16) != SECTIONS || in.getLong(8) != checksum(in)) {
+			throw new IOException(file + " is corrupt, its checksum does not match");
+		}
+		if (checkSource) {
+			long[] stamp = stamp(source);
+			if (in.getLong(24) != stamp[0] || in.getLong(32) != stamp[1]) {
+				throw new IOException(file + " was written from another version of " + source);
+			}
+		}
+
+		ByteBuffer[] sections = new ByteBuffer[SECTIONS];
+		for (int i = 0; i < SECTIONS; i++) {
+			long offset = in.getLong(TABLE_BYTES + 16 * i);
+			long length = in.getLong(TABLE_BYTES + 8 + 16 * i);
+			if (offset < HEADER_BYTES || length < 0 || offset + length > in.limit()) {
+				throw new IOException(file + " is corrupt, section " + i + " is out of bounds");
+			}
+			sections[i] = in.slice((int) offset, (int) length).order(ByteOrder.LITTLE_ENDIAN);
+		}
+
+		int s = 0;
+		IntBuffer movieIds = sections[s++].asIntBuffer();
+		IntBuffer movieYears = sections[s++].asIntBuffer();
+		StringArena movieTitles = new StringArena(sections[s++], sections[s++].asIntBuffer());
+		IntBuffer personIds = sections[s++].asIntBuffer();
+		IntBuffer personBirths = sections[s++].asIntBuffer();
+		StringArena personNames = new StringArena(sections[s++], sections[s++].asIntBuffer());
+		IntBuffer ratingMovies = sections[s++].asIntBuffer();
+		DoubleBuffer ratingValues = sections[s++].asDoubleBuffer();
+		IntBuffer ratingVotes = sections[s++].asIntBuffer();
+		Adjacency starsByMovie = new Adjacency(sections[s++].asIntBuffer(), sections[s++].asIntBuffer());
+		Adjacency moviesByStar = new Adjacency(sections[s++].asIntBuffer(), sections[s++].asIntBuffer());
+		Adjacency directorsByMovie = new Adjacency(sections[s++].asIntBuffer(), sections[s++].asIntBuffer());
+		Adjacency moviesByDirector = new Adjacency(sections[s++].asIntBuffer(), sections[s++].asIntBuffer());
+
+		long loadMillis = (System.nanoTime() - start) / 1_000_000;
+		return new ColumnarCatalog(movieIds, movieYears, movieTitles, personIds, personBirths, personNames,
+				ratingMovies, ratingValues, ratingVotes, starsByMovie, moviesByStar, directorsByMovie, moviesByDirector,
+				loadMillis);
+	}
+
+	/**
+	 * Returns the columns of a catalog as little endian bytes, in section order.
+	 */
+	private static ByteBuffer[] sections(ColumnarCatalog catalog) {
+		return new ByteBuffer[] { bytes(catalog.movieIds), bytes(catalog.movieYears),
+				catalog.movieTitles.bytes.duplicate().rewind(), bytes(catalog.movieTitles.offsets),
+				bytes(catalog.personIds), bytes(catalog.personBirths), catalog.personNames.bytes.duplicate().rewind(),
+				bytes(catalog.personNames.offsets), bytes(catalog.ratingMovies), bytes(catalog.ratingValues),
+				bytes(catalog.ratingVotes), bytes(catalog.starsByMovie.offsets), bytes(catalog.starsByMovie.targets),
+				bytes(catalog.moviesByStar.offsets), bytes(catalog.moviesByStar.targets),
+				bytes(catalog.directorsByMovie.offsets), bytes(catalog.directorsByMovie.targets),
+				bytes(catalog.moviesByDirector.offsets), bytes(catalog.moviesByDirector.targets) };
+	}
+
+	private static ByteBuffer bytes(IntBuffer values) {
+		ByteBuffer bytes = ByteBuffer.allocate(4 * values.limit()).order(ByteOrder.LITTLE_ENDIAN);
+		bytes.asIntBuffer().put(values.duplicate().rewind());
+		return bytes;
+	}
+
+	private static ByteBuffer bytes(DoubleBuffer values) {
+		ByteBuffer bytes = ByteBuffer.allocate(8 * values.limit()).order(ByteOrder.LITTLE_ENDIAN);
+		bytes.asDoubleBuffer().put(values.duplicate().rewind());
+		return bytes;
+	}
+
+	private static long align(long position) {
+		return (position + 7) & ~7L;
+	}
+
+	/**
+	 * Returns the size and modification time of a database file, or -1 for both
+	 * if there is no file.
+	 */
+	private static long[] stamp(Path source) throws IOException {
+		if (source == null) {
+			return new long[] { -1, -1 };
+		}
+		return new long[] { Files.size(source), Files.getLastModifiedTime(source).toMillis() };
+	}
+
+	/**
+	 * Returns the CRC32C of everything after the header.
+	 */
+	private static long checksum(ByteBuffer file) {
+		CRC32C crc = new CRC32C();
+		crc.update(file.slice(HEADER_BYTES, file.limit() - HEADER_BYTES));
+		return crc.getValue();
+	}
+
+	/**
+	 * Writes the snapshot of a database ahead of time.
+	 *
+	 * @param args the path of movies.db and the path of the snapshot
+	 * @throws Exception if the snapshot cannot be written
+	 */
+	public static void main(String[] args) throws Exception {
+		String source = args.length > 0 ? args[0] : "src/main/resources/movies.db";
+		Path file = Path.of(args.length > 1 ? args[1] : "movies.snapshot");
+		ColumnarCatalog catalog;
+		try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + source)) {
+			catalog = ColumnarCatalog.load(connection);
+		}
+		write(catalog, file, Path.of(source));
+		System.out.println("Wrote " + file + " (" + Files.size(file) + " bytes) from " + catalog);
+	}
+}
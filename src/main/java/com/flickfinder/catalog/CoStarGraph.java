@@ -0,0 +1,370 @@
+package com.flickfinder.catalog;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import com.flickfinder.catalog.ColumnarCatalog.IntList;
+
+/**
+ * The graph of people who starred in the same movie, for finding the shortest
+ * chain of actor, movie, actor, ... between two people.
+ *
+ * The graph is the stars table in both directions as {@link Adjacency} lists:
+ * the movies of each person and the stars of each movie. Only the ids are kept,
+ * so it is much smaller than the whole catalog.
+ *
+ * Paths are found with a bidirectional breadth first search, expanding whole
+ * layers from whichever end has the smaller frontier, and every movie is only
+ * expanded once from each end. The visited marks, parents and frontiers live in
+ * scratch buffers that are reused between searches, so a search allocates next
+ * to nothing. A buffer is only used by one search at a time; we keep a small
+ * pool of them rather than one per thread, since with a pool the number of
+ * buffers follows the number of concurrent searches.
+ */
+public final class CoStarGraph {
+
+	/**
+	 * The result of a search when no path was found within the hop limit.
+	 */
+	public static final int[][] NO_PATH = new int[0][];
+
+	private final int[] personIds;
+	private final int[] movieIds;
+	private final Adjacency moviesByStar;
+	private final Adjacency starsByMovie;
+
+	/**
+	 * Scratch buffers that are not in use.
+	 */
+	private final ConcurrentLinkedQueue<Scratch> scratch = new ConcurrentLinkedQueue<>();
+
+	private CoStarGraph(int[] personIds, int[] movieIds, Adjacency moviesByStar, Adjacency starsByMovie) {
+		this.personIds = personIds;
+		this.movieIds = movieIds;
+		this.moviesByStar = moviesByStar;
+		this.starsByMovie = starsByMovie;
+	}
+
+	/**
+	 * Loads the graph from the people, movies and stars tables.
+	 *
+	 * @param connection a connection to the database
+	 * @return the graph
+	 * @throws SQLException if a database error occurs
+	 */
+	public static CoStarGraph load(Connection connection) throws SQLException {
+		return of(CreditAdjacency.load(connection));
+	}
+
+	/**
+	 * Returns the graph of a catalog that is already in memory, sharing its
+	 * adjacency lists.
+	 *
+	 * @param catalog the catalog
+	 * @return the graph
+	 */
+	public static CoStarGraph of(ColumnarCatalog catalog) {
+		return of(CreditAdjacency.of(catalog));
+	}
+
+	/**
+	 * Returns the graph of credit adjacency lists that are already loaded,
+	 * sharing them.
+	 *
+	 * @param credits the adjacency lists
+	 * @return the graph
+	 */
+	public static CoStarGraph of(CreditAdjacency credits) {
+		return new CoStarGraph(credits.personIds, credits.movieIds, credits.moviesByStar, credits.starsByMovie);
+	}
+
+	/**
+	 * Returns whether a person is in the graph.
+	 *
+	 * @param personId the id of the person
+	 * @return true if the person exists
+	 */
+	public boolean hasPerson(int personId) {
+		return Arrays.binarySearch(personIds, personId) >= 0;
+	}
+
+	/**
+	 * Finds a shortest chain of people from one person to another, where each
+	 * person starred in a movie with the next.
+	 *
+	 * @param fromId       the id of the first person
+	 * @param toId         the id of the last person
+	 * @param maxHops      the most movies the chain may go through
+	 * @param budgetMillis how long the search may take
+	 * @return the person ids of the chain (from first to last) and the movie ids
+	 *         that join them, as two arrays; {@link #NO_PATH} if there is no
+	 *         chain within the hop limit or one of the people does not exist
+	 * @throws PathTimeoutException if the search runs out of time
+	 */
+	public int[][] findPath(int fromId, int toId, int maxHops, long budgetMillis) {
+		int from = Arrays.binarySearch(personIds, fromId);
+		int to = Arrays.binarySearch(personIds, toId);
+		if (from < 0 || to < 0) {
+			return NO_PATH;
+		}
+		if (from == to) {
+			return new int[][] { { fromId }, {} };
+		}
+
+		Scratch s = scratch.poll();
+		if (s == null) {
+			s = new Scratch(personIds.length, movieIds.length);
+		}
+		try {
+			return search(s, from, to, maxHops, System.nanoTime() + budgetMillis * 1_000_000);
+		} finally {
+			scratch.offer(s);
+		}
+	}
+
+	private int[][] search(Scratch s, int from, int to, int maxHops, long deadline) {
+		s.start();
+		s.visit(from, Scratch.FORWARD, -1, -1);
+		s.visit(to, Scratch.BACKWARD, -1, -1);
+		s.frontier[Scratch.FORWARD].add(from);
+		s.frontier[Scratch.BACKWARD].add(to);
+
+		for (int hops = 0; hops < maxHops; hops++) {
+			IntList forward = s.frontier[Scratch.FORWARD];
+			IntList backward = s.frontier[Scratch.BACKWARD];
+			if (forward.size() == 0 || backward.size() == 0) {
+				break;
+			}
+			int side = forward.size() <= backward.size() ? Scratch.FORWARD : Scratch.BACKWARD;
+			if (expand(s, side, deadline)) {
+				return path(s, side);
+			}
+		}
+		return NO_PATH;
+	}
+
+	/**
+	 * Expands one side's frontier by a layer.
+	 * The first person found that the other side has already reached joins the
+	 * two halves; every meeting in a layer gives a chain of the same length.
+	 *
+	 * @return true if the sides met
+	 */
+	private boolean expand(Scratch s, int side, long deadline) {
+		if (System.nanoTime() > deadline) {
+			throw new PathTimeoutException();
+		}
+		IntList frontier = s.frontier[side];
+		IntList next = s.next;
+		next.clear();
+		for (int i = 0; i < frontier.size(); i++) {
+			int person = frontier.get(i);
+			for (int k = moviesByStar.start(person); k < moviesByStar.end(person); k++) {
+				int movie = moviesByStar.target(k);
+				if (!s.expandMovie(movie, side)) {
+					continue;
+				}
+				for (int j = starsByMovie.start(movie); j < starsByMovie.end(movie); j++) {
+					int costar = starsByMovie.target(j);
+					int reached = s.side(costar);
+					if (reached == side) {
+						continue;
+					}
+					if (reached >= 0) {
+						s.meet(person, movie, costar);
+						return true;
+					}
+					s.visit(costar, side, person, movie);
+					next.add(costar);
+				}
+			}
+			if ((i & 255) == 255 && System.nanoTime() > deadline) {
+				throw new PathTimeoutException();
+			}
+		}
+		s.next = frontier;
+		s.frontier[side] = next;
+		return false;
+	}
+
+	/**
+	 * Joins the chain back to each end at the meeting point.
+	 */
+	private int[][] path(Scratch s, int side) {
+		IntList people = new IntList();
+		IntList movies = new IntList();
+		// from the side that was expanding back to its end, then forwards to the other
+		IntList near = new IntList();
+		IntList nearMovies = new IntList();
+		for (int person = s.meetFrom; person >= 0; person = s.parent[person]) {
+			near.add(person);
+			if (s.via[person] >= 0) {
+				nearMovies.add(s.via[person]);
+			}
+		}
+		for (int i = near.size() - 1; i >= 0; i--) {
+			people.add(near.get(i));
+		}
+		for (int i = nearMovies.size() - 1; i >= 0; i--) {
+			movies.add(nearMovies.get(i));
+		}
+		movies.add(s.meetMovie);
+		for (int person = s.meetTo; person >= 0; person = s.parent[person]) {
+			people.add(person);
+			if (s.via[person] >= 0) {
+				movies.add(s.via[person]);
+			}
+		}
+
+		int[] personPath = new int[people.size()];
+		int[] moviePath = new int[movies.size()];
+		for (int i = 0; i < personPath.length; i++) {
+			// the chain was built from the expanding side, so turn it around if that was the end
+			int at = side == Scratch.FORWARD ? i : personPath.length - 1 - i;
+			personPath[i] = personIds[people.get(at)];
+		}
+		for (int i = 0; i < moviePath.length; i++) {
+			int at = side == Scratch.FORWARD ? i : moviePath.length - 1 - i;
+			moviePath[i] = movieIds[movies.get(at)];
+		}
+		return new int[][] { personPath, moviePath };
+	}
+
+	/**
+	 * Returns the number of people in the graph.
+	 *
+	 * @return the number of people
+	 */
+	public int personCount() {
+		return personIds.length;
+	}
+
+	/**
+	 * Returns the number of bytes the graph's arrays use on the heap, not counting
+	 * scratch buffers.
+	 *
+	 * @return the size of the graph in bytes
+	 */
+	public long getMemoryBytes() {
+		return 4L * (personIds.length + movieIds.length) + moviesByStar.getMemoryBytes()
+				+ starsByMovie.getMemoryBytes();
+	}
+
+	/**
+	 * Returns a summary of the graph.
+	 * This is primarily used for debugging purposes.
+	 *
+	 * @return a string representation of the graph
+	 */
+	@Override
+	public String toString() {
+		return "CoStarGraph [people=" + personIds.length + ", movies=" + movieIds.length + ", stars="
+				+ starsByMovie.edges() + ", memoryBytes=" + getMemoryBytes() + "]";
+	}
+
+	/**
+	 * Thrown when a path search runs out of time.
+	 */
+	public static final class PathTimeoutException extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		PathTimeoutException() {
+			super("Path search ran out of time");
+		}
+	}
+
+	/**
+	 * The working memory of one search.
+	 *
+	 * Instead of clearing the marks before each search, every search gets a new
+	 * generation number and a mark only counts if it has the current one.
+	 */
+	private static final class Scratch {
+
+		static final int FORWARD = 0;
+		static final int BACKWARD = 1;
+
+		/**
+		 * Per person, generation * 2 + the side that reached them.
+		 */
+		final int[] personMarks;
+
+		/**
+		 * Per movie, generation * 4 + a bit for each side that expanded it.
+		 */
+		final int[] movieMarks;
+
+		/**
+		 * Per reached person, the person they were reached from and the movie they
+		 * share, or -1 for the two ends.
+		 */
+		final int[] parent;
+		final int[] via;
+
+		final IntList[] frontier = { new IntList(), new IntList() };
+		IntList next = new IntList();
+
+		int generation;
+		int meetFrom;
+		int meetMovie;
+		int meetTo;
+
+		Scratch(int people, int movies) {
+			personMarks = new int[people];
+			movieMarks = new int[movies];
+			parent = new int[people];
+			via = new int[people];
+		}
+
+		void start() {
+			generation++;
+			if (generation >= (1 << 29)) {
+				// the marks would overflow, start over
+				Arrays.fill(personMarks, 0);
+				Arrays.fill(movieMarks, 0);
+				generation = 1;
+			}
+			frontier[FORWARD].clear();
+			frontier[BACKWARD].clear();
+		}
+
+		/**
+		 * Returns the side that reached a person, or -1.
+		 */
+		int side(int person) {
+			int mark = personMarks[person];
+			return mark >> 1 == generation ? mark & 1 : -1;
+		}
+
+		void visit(int person, int side, int from, int movie) {
+			personMarks[person] = generation << 1 | side;
+			parent[person] = from;
+			via[person] = movie;
+		}
+
+		/**
+		 * Marks a movie as expanded by a side.
+		 *
+		 * @return false if that side has already expanded it
+		 */
+		boolean expandMovie(int movie, int side) {
+			int mark = movieMarks[movie];
+			int sides = mark >> 2 == generation ? mark & 3 : 0;
+			int bit = 1 << side;
+			if ((sides & bit) != 0) {
+				return false;
+			}
+			movieMarks[movie] = generation << 2 | sides | bit;
+			return true;
+		}
+
+		void meet(int from, int movie, int to) {
+			meetFrom = from;
+			meetMovie = movie;
+			meetTo = to;
+		}
+	}
+}
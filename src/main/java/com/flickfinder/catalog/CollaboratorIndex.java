@@ -0,0 +1,363 @@
+package com.flickfinder.catalog;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Finds the people who most often worked on the same movies as a person,
+ * starring in or directing them.
+ *
+ * The stars and directors tables are kept as {@link Adjacency} lists in both
+ * directions. For a person we walk their movies, and for each movie the other
+ * people on it, and count how many of the movies each of them shares in an
+ * open addressing int to int table. A bounded heap then keeps the best few
+ * counts, so a prolific person with tens of thousands of collaborators costs
+ * one pass over them and no sort or boxing.
+ *
+ * The answers for the most prolific people, whose walks are the longest, can
+ * be computed ahead of time with {@link #precompute(int)}.
+ */
+public final class CollaboratorIndex {
+
+	/**
+	 * The most collaborators a lookup returns, and how many are kept for the
+	 * precomputed people.
+	 */
+	public static final int MAX_LIMIT = 100;
+
+	private final int[] personIds;
+	private final Adjacency moviesByStar;
+	private final Adjacency starsByMovie;
+	private final Adjacency moviesByDirector;
+	private final Adjacency directorsByMovie;
+
+	/**
+	 * The top {@link #MAX_LIMIT} collaborators of the precomputed people, keyed
+	 * by person index.
+	 */
+	private final Map<Integer, int[][]> precomputed = new ConcurrentHashMap<>();
+
+	private CollaboratorIndex(int[] personIds, Adjacency moviesByStar, Adjacency starsByMovie,
+			Adjacency moviesByDirector, Adjacency directorsByMovie) {
+		this.personIds = personIds;
+		this.moviesByStar = moviesByStar;
+		this.starsByMovie = starsByMovie;
+		this.moviesByDirector = moviesByDirector;
+		this.directorsByMovie = directorsByMovie;
+	}
+
+	/**
+	 * Loads the index from the people, movies, stars and directors tables.
+	 *
+	 * @param connection a connection to the database
+	 * @return the index
+	 * @throws SQLException if a database error occurs
+	 */
+	public static CollaboratorIndex load(Connection connection) throws SQLException {
+		return of(CreditAdjacency.load(connection));
+	}
+
+	/**
+	 * Returns the index of a catalog that is already in memory, sharing its
+	 * adjacency lists.
+	 *
+	 * @param catalog the catalog
+	 * @return the index
+	 */
+	public static CollaboratorIndex of(ColumnarCatalog catalog) {
+		return of(CreditAdjacency.of(catalog));
+	}
+
+	/**
+	 * Returns the index of credit adjacency lists that are already loaded,
+	 * sharing them.
+	 *
+	 * @param credits the adjacency lists
+	 * @return the index
+	 */
+	public static CollaboratorIndex of(CreditAdjacency credits) {
+		return new CollaboratorIndex(credits.personIds, credits.moviesByStar, credits.starsByMovie,
+				credits.moviesByDirector, credits.directorsByMovie);
+	}
+
+	/**
+	 * Returns the people who share the most movies with a person, most shared
+	 * first and by id when they share as many.
+	 *
+	 * @param personId the id of the person
+	 * @param limit    the most collaborators to return, at most {@link #MAX_LIMIT}
+	 * @return the ids of the collaborators and the number of movies each shares,
+	 *         as two arrays; null if there is no such person
+	 */
+	public int[][] top(int personId, int limit) {
+		int person = Arrays.binarySearch(personIds, personId);
+		if (person < 0) {
+			return null;
+		}
+		limit = Math.max(0, Math.min(limit, MAX_LIMIT));
+		int[][] top = precomputed.get(person);
+		if (top == null) {
+			top = count(person, limit);
+		}
+		int size = Math.min(limit, top[0].length);
+		return new int[][] { Arrays.copyOf(top[0], size), Arrays.copyOf(top[1], size) };
+	}
+
+	/**
+	 * Counts the collaborators of the people who starred in or directed the
+	 * most movies, so their lookups are answered without a walk.
+	 *
+	 * @param people how many people to count ahead of time, none if it is not
+	 *               positive
+	 */
+	public void precompute(int people) {
+		TopK prolific = new TopK(Math.max(0, Math.min(people, personIds.length)));
+		for (int person = 0; person < personIds.length; person++) {
+			prolific.offer(person, moviesByStar.degree(person) + moviesByDirector.degree(person));
+		}
+		for (int person : prolific.drain()[0]) {
+			precomputed.put(person, count(person, MAX_LIMIT));
+		}
+	}
+
+	/**
+	 * Returns the number of people whose collaborators were counted ahead of
+	 * time.
+	 *
+	 * @return the number of precomputed people
+	 */
+	public int getPrecomputed() {
+		return precomputed.size();
+	}
+
+	/**
+	 * Walks the movies of a person and counts the people on them.
+	 *
+	 * @return the collaborator ids and their counts, best first
+	 */
+	private int[][] count(int person, int limit) {
+		int[] movies = movies(person);
+		int others = 0;
+		for (int movie : movies) {
+			others += starsByMovie.degree(movie) + directorsByMovie.degree(movie);
+		}
+
+		Counter counter = new Counter(others);
+		for (int movie : movies) {
+			for (int k = starsByMovie.start(movie); k < starsByMovie.end(movie); k++) {
+				counter.add(starsByMovie.target(k), movie, person);
+			}
+			for (int k = directorsByMovie.start(movie); k < directorsByMovie.end(movie); k++) {
+				counter.add(directorsByMovie.target(k), movie, person);
+			}
+		}
+
+		TopK top = new TopK(limit);
+		counter.offerTo(top);
+		int[][] result = top.drain();
+		for (int i = 0; i < result[0].length; i++) {
+			result[0][i] = personIds[result[0][i]];
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the movies a person starred in or directed, each once.
+	 */
+	private int[] movies(int person) {
+		int[] movies = new int[moviesByStar.degree(person) + moviesByDirector.degree(person)];
+		int n = 0;
+		for (int k = moviesByStar.start(person); k < moviesByStar.end(person); k++) {
+			movies[n++] = moviesByStar.target(k);
+		}
+		for (int k = moviesByDirector.start(person); k < moviesByDirector.end(person); k++) {
+			movies[n++] = moviesByDirector.target(k);
+		}
+		Arrays.sort(movies);
+		int unique = 0;
+		for (int i = 0; i < movies.length; i++) {
+			if (i == 0 || movies[i] != movies[i - 1]) {
+				movies[unique++] = movies[i];
+			}
+		}
+		return Arrays.copyOf(movies, unique);
+	}
+
+	/**
+	 * Returns the number of bytes the index's arrays use, including the
+	 * precomputed answers.
+	 *
+	 * @return the size of the index in bytes
+	 */
+	public long getMemoryBytes() {
+		long bytes = 4L * personIds.length + moviesByStar.getMemoryBytes() + starsByMovie.getMemoryBytes()
+				+ moviesByDirector.getMemoryBytes() + directorsByMovie.getMemoryBytes();
+		for (int[][] top : precomputed.values()) {
+			bytes += 8L * top[0].length;
+		}
+		return bytes;
+	}
+
+	/**
+	 * Returns a summary of the index.
+	 * This is primarily used for debugging purposes.
+	 *
+	 * @return a string representation of the index
+	 */
+	@Override
+	public String toString() {
+		return "CollaboratorIndex [people=" + personIds.length + ", stars=" + starsByMovie.edges() + ", directors="
+				+ directorsByMovie.edges() + ", precomputed=" + precomputed.size() + ", memoryBytes="
+				+ getMemoryBytes() + "]";
+	}
+
+	/**
+	 * An open addressing table from person index to the number of movies they
+	 * share with the person being looked up. Each slot also remembers the last
+	 * movie it was counted for, so someone who both starred in and directed a
+	 * movie counts it once.
+	 */
+	static final class Counter {
+
+		private final int[] keys;
+		private final int[] counts;
+		private final int[] lastMovies;
+		private final int mask;
+
+		/**
+		 * @param expected the most distinct people that will be added
+		 */
+		Counter(int expected) {
+			int capacity = Integer.highestOneBit(Math.max(2, expected) * 2 - 1) << 1;
+			keys = new int[capacity];
+			counts = new int[capacity];
+			lastMovies = new int[capacity];
+			mask = capacity - 1;
+			// a key of -1 marks an empty slot
+			Arrays.fill(keys, -1);
+		}
+
+		void add(int key, int movie, int skip) {
+			if (key == skip) {
+				return;
+			}
+			int i = hash(key) & mask;
+			while (keys[i] != key && keys[i] != -1) {
+				i = (i + 1) & mask;
+			}
+			if (keys[i] == -1) {
+				keys[i] = key;
+				counts[i] = 1;
+				lastMovies[i] = movie;
+			} else if (lastMovies[i] != movie) {
+				counts[i]++;
+				lastMovies[i] = movie;
+			}
+		}
+
+		void offerTo(TopK top) {
+			for (int i = 0; i < keys.length; i++) {
+				if (keys[i] != -1) {
+					top.offer(keys[i], counts[i]);
+				}
+			}
+		}
+
+		private static int hash(int key) {
+			int h = key * 0x9e3779b9;
+			return h ^ (h >>> 16);
+		}
+	}
+
+	/**
+	 * Keeps the keys with the highest scores seen so far in a min-heap of fixed
+	 * size, with ties going to the lower key.
+	 */
+	static final class TopK {
+
+		private final int[] keys;
+		private final int[] scores;
+		private int size;
+
+		TopK(int limit) {
+			keys = new int[limit];
+			scores = new int[limit];
+		}
+
+		void offer(int key, int score) {
+			if (size < keys.length) {
+				keys[size] = key;
+				scores[size] = score;
+				siftUp(size++);
+			} else if (size > 0 && worse(0, key, score)) {
+				keys[0] = key;
+				scores[0] = score;
+				siftDown(0);
+			}
+		}
+
+		/**
+		 * Empties the heap.
+		 *
+		 * @return the keys and their scores, best first
+		 */
+		int[][] drain() {
+			int[][] result = { new int[size], new int[size] };
+			while (size > 0) {
+				result[0][size - 1] = keys[0];
+				result[1][size - 1] = scores[0];
+				size--;
+				keys[0] = keys[size];
+				scores[0] = scores[size];
+				siftDown(0);
+			}
+			return result;
+		}
+
+		/**
+		 * Returns whether the entry at a position ranks below the given one.
+		 */
+		private boolean worse(int i, int key, int score) {
+			return scores[i] < score || scores[i] == score && keys[i] > key;
+		}
+
+		private void siftUp(int i) {
+			while (i > 0) {
+				int parent = (i - 1) / 2;
+				if (!worse(i, keys[parent], scores[parent])) {
+					return;
+				}
+				swap(i, parent);
+				i = parent;
+			}
+		}
+
+		private void siftDown(int i) {
+			while (true) {
+				int worst = i;
+				for (int child = 2 * i + 1; child <= 2 * i + 2 && child < size; child++) {
+					if (worse(child, keys[worst], scores[worst])) {
+						worst = child;
+					}
+				}
+				if (worst == i) {
+					return;
+				}
+				swap(i, worst);
+				i = worst;
+			}
+		}
+
+		private void swap(int a, int b) {
+			int key = keys[a];
+			int score = scores[a];
+			keys[a] = keys[b];
+			scores[a] = scores[b];
+			keys[b] = key;
+			scores[b] = score;
+		}
+	}
+}
@@ -0,0 +1,515 @@
+package com.flickfinder.catalog;
+
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+
+import com.flickfinder.model.Movie;
+import com.flickfinder.model.MovieRating;
+import com.flickfinder.model.Person;
+
+/**
+ * An in-memory, read only copy of movies.db stored column by column.
+ *
+ * movies.db never changes while the server runs, so we can load the movies,
+ * people, stars, directors and ratings tables once and answer queries without
+ * going to SQLite. Every column is a primitive array, titles and names live in
+ * a {@link StringArena}, and the stars and directors tables are turned into
+ * {@link Adjacency} lists in both directions.
+ *
+ * Rows are addressed by index. Movies and people are sorted by id, so an id is
+ * turned into an index with a binary search. The ratings table keeps its own
+ * row order, because that is the order SQLite returns ties in.
+ *
+ * The columns are buffers rather than arrays, so that a catalog can either be
+ * loaded onto the heap from SQLite or read in place from a memory mapped
+ * {@link CatalogSnapshot}.
+ */
+public final class ColumnarCatalog {
+
+	/**
+	 * Stands for a null release year, which would otherwise read as year 0.
+	 */
+	static final int NO_YEAR = Integer.MIN_VALUE;
+
+	final IntBuffer movieIds;
+	/**
+	 * The release year of each movie, {@link #NO_YEAR} where it is null.
+	 */
+	final IntBuffer movieYears;
+	final StringArena movieTitles;
+
+	final IntBuffer personIds;
+	final IntBuffer personBirths;
+	final StringArena personNames;
+
+	final IntBuffer ratingMovies;
+	final DoubleBuffer ratingValues;
+	final IntBuffer ratingVotes;
+
+	final Adjacency starsByMovie;
+	final Adjacency moviesByStar;
+	final Adjacency directorsByMovie;
+	final Adjacency moviesByDirector;
+
+	/**
+	 * How long the catalog took to load, in milliseconds.
+	 */
+	private final long loadMillis;
+
+	ColumnarCatalog(IntBuffer movieIds, IntBuffer movieYears, StringArena movieTitles, IntBuffer personIds,
+			IntBuffer personBirths, StringArena personNames, IntBuffer ratingMovies, DoubleBuffer ratingValues,
+			IntBuffer ratingVotes, Adjacency starsByMovie, Adjacency moviesByStar, Adjacency directorsByMovie,
+			Adjacency moviesByDirector, long loadMillis) {
+		this.movieIds = movieIds;
+		this.movieYears = movieYears;
+		this.movieTitles = movieTitles;
+		this.personIds = personIds;
+		this.personBirths = personBirths;
+		this.personNames = personNames;
+		this.ratingMovies = ratingMovies;
+		this.ratingValues = ratingValues;
+		this.ratingVotes = ratingVotes;
+		this.starsByMovie = starsByMovie;
+		this.moviesByStar = moviesByStar;
+		this.directorsByMovie = directorsByMovie;
+		this.moviesByDirector = moviesByDirector;
+		this.loadMillis = loadMillis;
+	}
+
+	/**
+	 * Loads every table into a new catalog.
+	 *
+	 * @param connection the connection to read from
+	 * @return the catalog
+	 * @throws SQLException if a database error occurs
+	 */
+	public static ColumnarCatalog load(Connection connection) throws SQLException {
+		long start = System.nanoTime();
+
+		IntList movieIds = new IntList();
+		IntList movieYears = new IntList();
+		StringArena.Builder movieTitles = new StringArena.Builder();
+		try (Statement stmt = connection.createStatement();
+				ResultSet rs = stmt.executeQuery("select id, title, year from movies order by id")) {
+			while (rs.next()) {
+				movieIds.add(rs.getInt(1));
+				movieTitles.add(rs.getString(2));
+				int year = rs.getInt(3);
+				movieYears.add(rs.wasNull() ? NO_YEAR : year);
+			}
+		}
+
+		IntList personIds = new IntList();
+		IntList personBirths = new IntList();
+		StringArena.Builder personNames = new StringArena.Builder();
+		try (Statement stmt = connection.createStatement();
+				ResultSet rs = stmt.executeQuery("select id, name, birth from people order by id")) {
+			while (rs.next()) {
+				personIds.add(rs.getInt(1));
+				personNames.add(rs.getString(2));
+				personBirths.add(rs.getInt(3));
+			}
+		}
+
+		int[] movies = movieIds.toArray();
+		int[] people = personIds.toArray();
+
+		IntList ratingMovies = new IntList();
+		IntList ratingVotes = new IntList();
+		double[] ratingValues = new double[64];
+		try (Statement stmt = connection.createStatement();
+				ResultSet rs = stmt.executeQuery("select movie_id, rating, votes from ratings order by rowid")) {
+			while (rs.next()) {
+				int movie = Arrays.binarySearch(movies, rs.getInt(1));
+				// a rating for a movie that does not exist never joins, so we drop it
+				if (movie < 0) {
+					continue;
+				}
+				if (ratingMovies.size() == ratingValues.length) {
+					ratingValues = Arrays.copyOf(ratingValues, ratingValues.length * 2);
+				}
+				ratingValues[ratingMovies.size()] = rs.getDouble(2);
+				ratingMovies.add(movie);
+				ratingVotes.add(rs.getInt(3));
+			}
+		}
+
+		Adjacency[] stars = loadEdges(connection, "stars", movies, people);
+		Adjacency[] directors = loadEdges(connection, "directors", movies, people);
+
+		long loadMillis = (System.nanoTime() - start) / 1_000_000;
+		return new ColumnarCatalog(IntBuffer.wrap(movies), IntBuffer.wrap(movieYears.toArray()), movieTitles.build(),
+				IntBuffer.wrap(people), IntBuffer.wrap(personBirths.toArray()), personNames.build(),
+				IntBuffer.wrap(ratingMovies.toArray()), DoubleBuffer.wrap(Arrays.copyOf(ratingValues, ratingMovies.size())),
+				IntBuffer.wrap(ratingVotes.toArray()), stars[0], stars[1], directors[0], directors[1], loadMillis);
+	}
+
+	/**
+	 * Loads a movie to person table into adjacency lists in both directions.
+	 * Rows are read in rowid order, which is the order SQLite joins them in.
+	 */
+	static Adjacency[] loadEdges(Connection connection, String table, int[] movies, int[] people)
+			throws SQLException {
+		IntList from = new IntList();
+		IntList to = new IntList();
+		try (Statement stmt = connection.createStatement();
+				ResultSet rs = stmt.executeQuery("select movie_id, person_id from " + table + " order by rowid")) {
+			while (rs.next()) {
+				from.add(Arrays.binarySearch(movies, rs.getInt(1)));
+				to.add(Arrays.binarySearch(people, rs.getInt(2)));
+			}
+		}
+		int[] movieSide = from.toArray();
+		int[] personSide = to.toArray();
+		return new Adjacency[] { Adjacency.build(movies.length, movieSide, personSide, movieSide.length),
+				Adjacency.build(people.length, personSide, movieSide, movieSide.length) };
+	}
+
+	/**
+	 * Returns the index of a movie.
+	 *
+	 * @param id the id of the movie
+	 * @return the index of the movie, or -1 if there is no such movie
+	 */
+	public int movieIndex(int id) {
+		int index = binarySearch(movieIds, id);
+		return index < 0 ? -1 : index;
+	}
+
+	/**
+	 * Returns the index of a person.
+	 *
+	 * @param id the id of the person
+	 * @return the index of the person, or -1 if there is no such person
+	 */
+	public int personIndex(int id) {
+		int index = binarySearch(personIds, id);
+		return index < 0 ? -1 : index;
+	}
+
+	/**
+	 * Returns the index of the first movie with an id greater than the given one.
+	 *
+	 * @param id the id to start after
+	 * @return the index of the next movie, or movieCount() if there is none
+	 */
+	public int movieIndexAfter(int id) {
+		return indexAfter(movieIds, id);
+	}
+
+	/**
+	 * Returns the index of the first person with an id greater than the given one.
+	 *
+	 * @param id the id to start after
+	 * @return the index of the next person, or personCount() if there is none
+	 */
+	public int personIndexAfter(int id) {
+		return indexAfter(personIds, id);
+	}
+
+	private static int indexAfter(IntBuffer ids, int id) {
+		int index = binarySearch(ids, id);
+		// a miss returns -(insertion point) - 1, a hit is skipped over
+		return index < 0 ? -index - 1 : index + 1;
+	}
+
+	/**
+	 * Does the same as {@link Arrays#binarySearch(int[], int)} on a buffer of
+	 * sorted ids.
+	 */
+	private static int binarySearch(IntBuffer ids, int id) {
+		int low = 0;
+		int high = ids.limit() - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int value = ids.get(mid);
+			if (value < id) {
+				low = mid + 1;
+			} else if (value > id) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -(low + 1);
+	}
+
+	/**
+	 * Returns the number of movies.
+	 *
+	 * @return the number of movies
+	 */
+	public int movieCount() {
+		return movieIds.limit();
+	}
+
+	/**
+	 * Returns the id of a movie.
+	 *
+	 * @param index the index of the movie
+	 * @return the id of the movie
+	 */
+	public int movieId(int index) {
+		return movieIds.get(index);
+	}
+
+	/**
+	 * Returns the release year of a movie.
+	 *
+	 * @param index the index of the movie
+	 * @return the release year of the movie, 0 if it has none as JDBC reads a
+	 *         null
+	 */
+	public int movieYear(int index) {
+		int year = movieYears.get(index);
+		return year == NO_YEAR ? 0 : year;
+	}
+
+	/**
+	 * Returns whether a movie has a release year.
+	 *
+	 * @param index the index of the movie
+	 * @return false if the year is null in the database
+	 */
+	public boolean hasMovieYear(int index) {
+		return movieYears.get(index) != NO_YEAR;
+	}
+
+	/**
+	 * Returns the title of a movie.
+	 *
+	 * @param index the index of the movie
+	 * @return the title of the movie
+	 */
+	public String movieTitle(int index) {
+		return movieTitles.get(index);
+	}
+
+	/**
+	 * Returns the number of people.
+	 *
+	 * @return the number of people
+	 */
+	public int personCount() {
+		return personIds.limit();
+	}
+
+	/**
+	 * Returns the id of a person.
+	 *
+	 * @param index the index of the person
+	 * @return the id of the person
+	 */
+	public int personId(int index) {
+		return personIds.get(index);
+	}
+
+	/**
+	 * Returns the birth year of a person.
+	 *
+	 * @param index the index of the person
+	 * @return the birth year of the person
+	 */
+	public int personBirth(int index) {
+		return personBirths.get(index);
+	}
+
+	/**
+	 * Returns the name of a person.
+	 *
+	 * @param index the index of the person
+	 * @return the name of the person
+	 */
+	public String personName(int index) {
+		return personNames.get(index);
+	}
+
+	/**
+	 * Returns the number of rows in the ratings table.
+	 *
+	 * @return the number of ratings
+	 */
+	public int ratingCount() {
+		return ratingMovies.limit();
+	}
+
+	/**
+	 * Returns the index of the movie that a rating row belongs to.
+	 *
+	 * @param row the rating row
+	 * @return the index of the movie
+	 */
+	public int ratingMovie(int row) {
+		return ratingMovies.get(row);
+	}
+
+	/**
+	 * Returns the rating of a rating row.
+	 *
+	 * @param row the rating row
+	 * @return the rating
+	 */
+	public double ratingValue(int row) {
+		return ratingValues.get(row);
+	}
+
+	/**
+	 * Returns the number of votes of a rating row.
+	 *
+	 * @param row the rating row
+	 * @return the number of votes
+	 */
+	public int ratingVotes(int row) {
+		return ratingVotes.get(row);
+	}
+
+	/**
+	 * Returns the people that starred in each movie, by movie index.
+	 *
+	 * @return the stars of each movie
+	 */
+	public Adjacency starsByMovie() {
+		return starsByMovie;
+	}
+
+	/**
+	 * Returns the movies that each person starred in, by person index.
+	 *
+	 * @return the movies of each star
+	 */
+	public Adjacency moviesByStar() {
+		return moviesByStar;
+	}
+
+	/**
+	 * Returns the people that directed each movie, by movie index.
+	 *
+	 * @return the directors of each movie
+	 */
+	public Adjacency directorsByMovie() {
+		return directorsByMovie;
+	}
+
+	/**
+	 * Returns the movies that each person directed, by person index.
+	 *
+	 * @return the movies of each director
+	 */
+	public Adjacency moviesByDirector() {
+		return moviesByDirector;
+	}
+
+	/**
+	 * Creates a Movie object for a movie index.
+	 *
+	 * @param index the index of the movie
+	 * @return the movie
+	 */
+	public Movie movie(int index) {
+		return new Movie(movieIds.get(index), movieTitles.get(index), movieYear(index));
+	}
+
+	/**
+	 * Creates a Person object for a person index.
+	 *
+	 * @param index the index of the person
+	 * @return the person
+	 */
+	public Person person(int index) {
+		return new Person(personIds.get(index), personNames.get(index), personBirths.get(index));
+	}
+
+	/**
+	 * Creates a MovieRating object for a rating row.
+	 *
+	 * @param row the rating row
+	 * @return the movie rating
+	 */
+	public MovieRating movieRating(int row) {
+		int movie = ratingMovies.get(row);
+		return new MovieRating(movieIds.get(movie), movieTitles.get(movie), movieYear(movie), ratingValues.get(row),
+				ratingVotes.get(row));
+	}
+
+	/**
+	 * Returns how long the catalog took to load.
+	 *
+	 * @return the load time in milliseconds
+	 */
+	public long getLoadMillis() {
+		return loadMillis;
+	}
+
+	/**
+	 * Returns whether the catalog is read from a memory mapped snapshot rather
+	 * than the heap.
+	 *
+	 * @return true if the columns are mapped
+	 */
+	public boolean isMapped() {
+		return movieIds.isDirect();
+	}
+
+	/**
+	 * Returns the number of bytes the catalog's columns use, on the heap or in
+	 * the mapped snapshot.
+	 *
+	 * @return the size of the catalog in bytes
+	 */
+	public long getMemoryBytes() {
+		return 4L * (movieIds.limit() + movieYears.limit() + personIds.limit() + personBirths.limit()
+				+ ratingMovies.limit() + ratingVotes.limit()) + 8L * ratingValues.limit() + movieTitles.getMemoryBytes()
+				+ personNames.getMemoryBytes() + starsByMovie.getMemoryBytes() + moviesByStar.getMemoryBytes()
+				+ directorsByMovie.getMemoryBytes() + moviesByDirector.getMemoryBytes();
+	}
+
+	/**
+	 * Returns a summary of the catalog.
+	 * This is primarily used for debugging purposes.
+	 *
+	 * @return a string representation of the catalog
+	 */
+	@Override
+	public String toString() {
+		return "ColumnarCatalog [movies=" + movieCount() + ", people=" + personCount() + ", ratings="
+				+ ratingCount() + ", stars=" + starsByMovie.edges() + ", directors=" + directorsByMovie.edges()
+				+ ", loadMillis=" + loadMillis + ", memoryBytes=" + getMemoryBytes() + ", mapped=" + isMapped() + "]";
+	}
+
+	/**
+	 * A growable list of ints, so loading does not box every value.
+	 */
+	static final class IntList {
+
+		private int[] values = new int[64];
+		private int size;
+
+		void add(int value) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = value;
+		}
+
+		int get(int index) {
+			return values[index];
+		}
+
+		int size() {
+			return size;
+		}
+
+		void clear() {
+			size = 0;
+		}
+
+		int[] toArray() {
+			return Arrays.copyOf(values, size);
+		}
+	}
+}
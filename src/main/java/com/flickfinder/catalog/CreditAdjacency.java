@@ -0,0 +1,107 @@
+package com.flickfinder.catalog;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import com.flickfinder.catalog.ColumnarCatalog.IntList;
+
+/**
+ * The stars and directors tables as {@link Adjacency} lists in both
+ * directions, with the movie and person ids they are indexed by.
+ *
+ * This is the part of the catalog that {@link CoStarGraph},
+ * {@link CollaboratorIndex} and {@link SimilarityIndex} walk. It is loaded once
+ * and handed to each of them, so the credit tables are only scanned once at
+ * startup and their edges are only in memory once, whether or not the whole
+ * catalog is loaded.
+ */
+public final class CreditAdjacency {
+
+	final int[] personIds;
+	final int[] movieIds;
+	final Adjacency starsByMovie;
+	final Adjacency moviesByStar;
+	final Adjacency directorsByMovie;
+	final Adjacency moviesByDirector;
+
+	private CreditAdjacency(int[] personIds, int[] movieIds, Adjacency starsByMovie, Adjacency moviesByStar,
+			Adjacency directorsByMovie, Adjacency moviesByDirector) {
+		this.personIds = personIds;
+		this.movieIds = movieIds;
+		this.starsByMovie = starsByMovie;
+		this.moviesByStar = moviesByStar;
+		this.directorsByMovie = directorsByMovie;
+		this.moviesByDirector = moviesByDirector;
+	}
+
+	/**
+	 * Loads the adjacency lists from the people, movies, stars and directors
+	 * tables.
+	 *
+	 * @param connection a connection to the database
+	 * @return the adjacency lists
+	 * @throws SQLException if a database error occurs
+	 */
+	public static CreditAdjacency load(Connection connection) throws SQLException {
+		int[] people = ids(connection, "select id from people order by id");
+		int[] movies = ids(connection, "select id from movies order by id");
+		Adjacency[] stars = ColumnarCatalog.loadEdges(connection, "stars", movies, people);
+		Adjacency[] directors = ColumnarCatalog.loadEdges(connection, "directors", movies, people);
+		return new CreditAdjacency(people, movies, stars[0], stars[1], directors[0], directors[1]);
+	}
+
+	/**
+	 * Returns the adjacency lists of a catalog that is already in memory,
+	 * sharing them.
+	 *
+	 * @param catalog the catalog
+	 * @return the adjacency lists
+	 */
+	public static CreditAdjacency of(ColumnarCatalog catalog) {
+		int[] people = new int[catalog.personCount()];
+		for (int i = 0; i < people.length; i++) {
+			people[i] = catalog.personId(i);
+		}
+		int[] movies = new int[catalog.movieCount()];
+		for (int i = 0; i < movies.length; i++) {
+			movies[i] = catalog.movieId(i);
+		}
+		return new CreditAdjacency(people, movies, catalog.starsByMovie(), catalog.moviesByStar(),
+				catalog.directorsByMovie(), catalog.moviesByDirector());
+	}
+
+	private static int[] ids(Connection connection, String sql) throws SQLException {
+		IntList ids = new IntList();
+		try (Statement stmt = connection.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+			while (rs.next()) {
+				ids.add(rs.getInt(1));
+			}
+		}
+		return ids.toArray();
+	}
+
+	/**
+	 * Returns the number of bytes the ids and adjacency lists use.
+	 *
+	 * @return the size in bytes
+	 */
+	public long getMemoryBytes() {
+		return 4L * personIds.length + 4L * movieIds.length + starsByMovie.getMemoryBytes()
+				+ moviesByStar.getMemoryBytes() + directorsByMovie.getMemoryBytes() + moviesByDirector.getMemoryBytes();
+	}
+
+	/**
+	 * Returns a summary of the adjacency lists.
+	 * This is primarily used for debugging purposes.
+	 *
+	 * @return a string representation of the adjacency lists
+	 */
+	@Override
+	public String toString() {
+		return "CreditAdjacency [people=" + personIds.length + ", movies=" + movieIds.length + ", stars="
+				+ starsByMovie.edges() + ", directors=" + directorsByMovie.edges() + ", memoryBytes="
+				+ getMemoryBytes() + "]";
+	}
+}
@@ -0,0 +1,254 @@
+package com.flickfinder.catalog;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import com.flickfinder.model.RatingStats;
+
+/**
+ * Rating statistics per year or per decade, computed from the arrays of a
+ * {@link RatingIndex}.
+ *
+ * The rows of the index are sorted by year, so the rows of a range of years
+ * are one run of the rating and vote arrays. The run is split in half at a
+ * year boundary until the pieces are small, and the pieces are summed on a
+ * fork-join pool. Each task fills its own counts and histograms and adds its
+ * children's into them when it joins them, so nothing is shared between
+ * threads and nothing is locked.
+ */
+public final class RatingAggregator {
+
+	/**
+	 * The fewest rows worth splitting into two tasks.
+	 */
+	static final int SEQUENTIAL_ROWS = 8192;
+
+	private RatingAggregator() {
+	}
+
+	/**
+	 * Returns the statistics of each year or decade from one year to another, on
+	 * the common pool. Years and decades without rated movies are left out.
+	 *
+	 * @param index    the rating index
+	 * @param from     the first year, inclusive
+	 * @param to       the last year, inclusive
+	 * @param byDecade whether to group by decade rather than by year
+	 * @return the statistics in year order
+	 */
+	public static List<RatingStats> aggregate(RatingIndex index, int from, int to, boolean byDecade) {
+		return aggregate(index, from, to, byDecade, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Returns the statistics of each year or decade from one year to another.
+	 * Years and decades without rated movies are left out.
+	 *
+	 * @param index    the rating index
+	 * @param from     the first year, inclusive
+	 * @param to       the last year, inclusive
+	 * @param byDecade whether to group by decade rather than by year
+	 * @param pool     the pool to sum on
+	 * @return the statistics in year order
+	 */
+	public static List<RatingStats> aggregate(RatingIndex index, int from, int to, boolean byDecade,
+			ForkJoinPool pool) {
+		return aggregate(index, from, to, byDecade, pool, SEQUENTIAL_ROWS);
+	}
+
+	static List<RatingStats> aggregate(RatingIndex index, int from, int to, boolean byDecade, ForkJoinPool pool,
+			int sequentialRows) {
+		List<RatingStats> stats = new ArrayList<>();
+		int first = lowerBound(index.years, from);
+		int last = to == Integer.MAX_VALUE ? index.years.length : lowerBound(index.years, to + 1);
+		if (first >= last) {
+			return stats;
+		}
+
+		Groups groups = new Groups(index.years[first], index.years[last - 1], byDecade);
+		Partial total = pool.invoke(new Sum(index, groups, first, last, sequentialRows));
+		for (int g = 0; g < groups.count; g++) {
+			if (total.movies[g] == 0) {
+				continue;
+			}
+			int start = groups.start(g);
+			stats.add(new RatingStats(Math.max(start, from), Math.min(start + groups.step - 1, to), total.movies[g],
+					total.ratingSums[g] / total.movies[g], total.minRatings[g], total.maxRatings[g],
+					total.votes[g], Arrays.copyOfRange(total.ratingHistogram, g * RatingStats.RATING_BUCKETS,
+							(g + 1) * RatingStats.RATING_BUCKETS),
+					Arrays.copyOfRange(total.voteHistogram, g * RatingStats.VOTE_BUCKETS,
+							(g + 1) * RatingStats.VOTE_BUCKETS)));
+		}
+		return stats;
+	}
+
+	/**
+	 * Returns the first position in a sorted array whose value is at least the
+	 * key.
+	 */
+	private static int lowerBound(int[] values, int key) {
+		int position = Arrays.binarySearch(values, key);
+		return position < 0 ? -position - 1 : position;
+	}
+
+	/**
+	 * Returns the rating histogram bucket of a rating, 0 to 9.
+	 */
+	static int ratingBucket(double rating) {
+		return Math.max(0, Math.min(RatingStats.RATING_BUCKETS - 1, (int) rating));
+	}
+
+	/**
+	 * Returns the vote histogram bucket of a number of votes, 0 for fewer than
+	 * 10 up to 6 for a million or more.
+	 */
+	static int voteBucket(int votes) {
+		int bucket = 0;
+		for (int limit = 10; votes >= limit && bucket < RatingStats.VOTE_BUCKETS - 1; limit *= 10) {
+			bucket++;
+		}
+		return bucket;
+	}
+
+	/**
+	 * The years or decades of a request, numbered from 0.
+	 */
+	private static final class Groups {
+
+		final int step;
+		final int first;
+		final int count;
+
+		Groups(int firstYear, int lastYear, boolean byDecade) {
+			this.step = byDecade ? 10 : 1;
+			this.first = Math.floorDiv(firstYear, step);
+			this.count = Math.floorDiv(lastYear, step) - first + 1;
+		}
+
+		int of(int year) {
+			return Math.floorDiv(year, step) - first;
+		}
+
+		int start(int group) {
+			return (first + group) * step;
+		}
+	}
+
+	/**
+	 * The sums of the rows a task has seen, with one slot per group.
+	 */
+	private static final class Partial {
+
+		final long[] movies;
+		final double[] ratingSums;
+		final double[] minRatings;
+		final double[] maxRatings;
+		final long[] votes;
+		final long[] ratingHistogram;
+		final long[] voteHistogram;
+
+		Partial(int groups) {
+			movies = new long[groups];
+			ratingSums = new double[groups];
+			minRatings = new double[groups];
+			maxRatings = new double[groups];
+			votes = new long[groups];
+			ratingHistogram = new long[groups * RatingStats.RATING_BUCKETS];
+			voteHistogram = new long[groups * RatingStats.VOTE_BUCKETS];
+			Arrays.fill(minRatings, Double.POSITIVE_INFINITY);
+			Arrays.fill(maxRatings, Double.NEGATIVE_INFINITY);
+		}
+
+		/**
+		 * Adds the sums of another task into these.
+		 */
+		void add(Partial other) {
+			for (int g = 0; g < movies.length; g++) {
+				movies[g] += other.movies[g];
+				ratingSums[g] += other.ratingSums[g];
+				minRatings[g] = Math.min(minRatings[g], other.minRatings[g]);
+				maxRatings[g] = Math.max(maxRatings[g], other.maxRatings[g]);
+				votes[g] += other.votes[g];
+			}
+			for (int i = 0; i < ratingHistogram.length; i++) {
+				ratingHistogram[i] += other.ratingHistogram[i];
+			}
+			for (int i = 0; i < voteHistogram.length; i++) {
+				voteHistogram[i] += other.voteHistogram[i];
+			}
+		}
+	}
+
+	/**
+	 * Sums the rows of a range of years of the index.
+	 */
+	private static final class Sum extends RecursiveTask<Partial> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final transient RatingIndex index;
+		private final transient Groups groups;
+		private final int firstYear;
+		private final int endYear;
+		private final int sequentialRows;
+
+		Sum(RatingIndex index, Groups groups, int firstYear, int endYear, int sequentialRows) {
+			this.index = index;
+			this.groups = groups;
+			this.firstYear = firstYear;
+			this.endYear = endYear;
+			this.sequentialRows = sequentialRows;
+		}
+
+		@Override
+		protected Partial compute() {
+			int[] yearStarts = index.yearStarts;
+			int rows = yearStarts[endYear] - yearStarts[firstYear];
+			if (rows <= sequentialRows || endYear - firstYear == 1) {
+				return sum();
+			}
+
+			// split at the first year that starts at or after the middle row
+			int middle = lowerBound(yearStarts, yearStarts[firstYear] + rows / 2);
+			middle = Math.max(firstYear + 1, Math.min(endYear - 1, middle));
+			Sum right = new Sum(index, groups, middle, endYear, sequentialRows);
+			right.fork();
+			Partial partial = new Sum(index, groups, firstYear, middle, sequentialRows).compute();
+			partial.add(right.join());
+			return partial;
+		}
+
+		private Partial sum() {
+			Partial partial = new Partial(groups.count);
+			double[] ratings = index.ratings;
+			int[] votes = index.votes;
+			for (int y = firstYear; y < endYear; y++) {
+				int g = groups.of(index.years[y]);
+				long movies = 0;
+				double ratingSum = 0;
+				double min = partial.minRatings[g];
+				double max = partial.maxRatings[g];
+				long voteSum = 0;
+				for (int row = index.yearStarts[y]; row < index.yearStarts[y + 1]; row++) {
+					double rating = ratings[row];
+					movies++;
+					ratingSum += rating;
+					min = Math.min(min, rating);
+					max = Math.max(max, rating);
+					voteSum += votes[row];
+					partial.ratingHistogram[g * RatingStats.RATING_BUCKETS + ratingBucket(rating)]++;
+					partial.voteHistogram[g * RatingStats.VOTE_BUCKETS + voteBucket(votes[row])]++;
+				}
+				partial.movies[g] += movies;
+				partial.ratingSums[g] += ratingSum;
+				partial.minRatings[g] = min;
+				partial.maxRatings[g] = max;
+				partial.votes[g] += voteSum;
+			}
+			return partial;
+		}
+	}
+}
@@ -0,0 +1,212 @@
+package com.flickfinder.catalog;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.flickfinder.catalog.ColumnarCatalog.IntList;
+import com.flickfinder.model.MovieRating;
+
+/**
+ * The rated movies of every year, sorted by rating, so the ratings leaderboard
+ * is a walk down a list instead of a join and a sort on every request.
+ *
+ * The rows are kept in one set of parallel arrays, ordered by year, then by
+ * rating from highest to lowest. Movies with the same rating keep the order of
+ * the ratings table, which is the order the SQL query returns them in.
+ * {@link #yearStarts} points at the first row of each year in {@link #years}.
+ * {@link RatingAggregator} reads the year, rating and vote arrays directly.
+ *
+ * The database is read only, so the index is built once and never changes.
+ */
+public final class RatingIndex {
+
+	/**
+	 * The distinct years that have rated movies, in ascending order.
+	 */
+	final int[] years;
+
+	/**
+	 * The first row of each year, with one extra entry for the end of the last
+	 * year.
+	 */
+	final int[] yearStarts;
+
+	private final int[] movieIds;
+	private final String[] movieTitles;
+	final double[] ratings;
+	final int[] votes;
+
+	private final long buildMillis;
+
+	private RatingIndex(int[] years, int[] yearStarts, int[] movieIds, String[] movieTitles, double[] ratings,
+			int[] votes, long buildMillis) {
+		this.years = years;
+		this.yearStarts = yearStarts;
+		this.movieIds = movieIds;
+		this.movieTitles = movieTitles;
+		this.ratings = ratings;
+		this.votes = votes;
+		this.buildMillis = buildMillis;
+	}
+
+	/**
+	 * Builds the index with one query over the ratings and movies tables.
+	 *
+	 * @param connection a connection to the database
+	 * @return the index
+	 * @throws SQLException if a database error occurs
+	 */
+	public static RatingIndex load(Connection connection) throws SQLException {
+		long start = System.nanoTime();
+		Rows rows = new Rows();
+		// a movie without a year never matches "movies.year = ?", so we leave it out
+		String sql = "select movies.id, movies.title, movies.year, ratings.rating, ratings.votes"
+				+ " from ratings, movies where ratings.movie_id = movies.id and movies.year is not null"
+				+ " order by ratings.rowid";
+		try (Statement stmt = connection.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+			while (rs.next()) {
+				rows.add(rs.getInt(1), rs.getString(2), rs.getInt(3), rs.getDouble(4), rs.getInt(5));
+			}
+		}
+		return rows.build(start);
+	}
+
+	/**
+	 * Builds the index from a catalog that is already in memory.
+	 *
+	 * @param catalog the catalog
+	 * @return the index
+	 */
+	public static RatingIndex build(ColumnarCatalog catalog) {
+		long start = System.nanoTime();
+		Rows rows = new Rows();
+		for (int row = 0; row < catalog.ratingCount(); row++) {
+			int movie = catalog.ratingMovie(row);
+			// as in load, a movie without a year is left out
+			if (!catalog.hasMovieYear(movie)) {
+				continue;
+			}
+			rows.add(catalog.movieId(movie), catalog.movieTitle(movie), catalog.movieYear(movie),
+					catalog.ratingValue(row), catalog.ratingVotes(row));
+		}
+		return rows.build(start);
+	}
+
+	/**
+	 * Returns the movies of a year ordered by their rating, highest first.
+	 * This gives the same results as MovieDAO's SQL query, in the same order.
+	 *
+	 * @param year  the year of the movies
+	 * @param votes only movies with more votes than this are returned
+	 * @param limit the number of movies to return, a negative limit means no
+	 *              limit
+	 * @return the movies by rating order
+	 */
+	public List<MovieRating> top(int year, int votes, int limit) {
+		List<MovieRating> movieRatings = new ArrayList<>();
+		int y = Arrays.binarySearch(years, year);
+		if (y < 0) {
+			return movieRatings;
+		}
+		for (int row = yearStarts[y]; row < yearStarts[y + 1] && (limit < 0 || movieRatings.size() < limit); row++) {
+			if (this.votes[row] > votes) {
+				movieRatings.add(new MovieRating(movieIds[row], movieTitles[row], year, ratings[row], this.votes[row]));
+			}
+		}
+		return movieRatings;
+	}
+
+	/**
+	 * Returns the number of rated movies in the index.
+	 *
+	 * @return the number of rows
+	 */
+	public int size() {
+		return movieIds.length;
+	}
+
+	/**
+	 * Returns how long the index took to build.
+	 *
+	 * @return the build time in milliseconds
+	 */
+	public long getBuildMillis() {
+		return buildMillis;
+	}
+
+	/**
+	 * Returns a summary of the index.
+	 * This is primarily used for debugging purposes.
+	 *
+	 * @return a string representation of the index
+	 */
+	@Override
+	public String toString() {
+		return "RatingIndex [ratings=" + size() + ", years=" + years.length + ", buildMillis=" + buildMillis + "]";
+	}
+
+	/**
+	 * The rows of the index in ratings table order, before they are sorted.
+	 */
+	private static final class Rows {
+
+		private final IntList movieIds = new IntList();
+		private final List<String> movieTitles = new ArrayList<>();
+		private final IntList years = new IntList();
+		private double[] ratings = new double[64];
+		private final IntList votes = new IntList();
+
+		void add(int movieId, String title, int year, double rating, int votes) {
+			if (movieIds.size() == ratings.length) {
+				ratings = Arrays.copyOf(ratings, ratings.length * 2);
+			}
+			ratings[movieIds.size()] = rating;
+			movieIds.add(movieId);
+			movieTitles.add(title);
+			years.add(year);
+			this.votes.add(votes);
+		}
+
+		RatingIndex build(long start) {
+			int size = movieIds.size();
+			int[] rowYears = years.toArray();
+
+			// Arrays.sort on objects is stable, so ties stay in table order
+			Integer[] order = new Integer[size];
+			for (int i = 0; i < size; i++) {
+				order[i] = i;
+			}
+			Arrays.sort(order, (a, b) -> rowYears[a] != rowYears[b] ? Integer.compare(rowYears[a], rowYears[b])
+					: Double.compare(ratings[b], ratings[a]));
+
+			int[] sortedIds = new int[size];
+			String[] sortedTitles = new String[size];
+			double[] sortedRatings = new double[size];
+			int[] sortedVotes = new int[size];
+			IntList distinctYears = new IntList();
+			IntList yearStarts = new IntList();
+			int[] ids = movieIds.toArray();
+			int[] rowVotes = votes.toArray();
+			for (int i = 0; i < size; i++) {
+				int row = order[i];
+				if (i == 0 || rowYears[row] != rowYears[order[i - 1]]) {
+					distinctYears.add(rowYears[row]);
+					yearStarts.add(i);
+				}
+				sortedIds[i] = ids[row];
+				sortedTitles[i] = movieTitles.get(row);
+				sortedRatings[i] = ratings[row];
+				sortedVotes[i] = rowVotes[row];
+			}
+			yearStarts.add(size);
+
+			return new RatingIndex(distinctYears.toArray(), yearStarts.toArray(), sortedIds, sortedTitles,
+					sortedRatings, sortedVotes, (System.nanoTime() - start) / 1_000_000);
+		}
+	}
+}
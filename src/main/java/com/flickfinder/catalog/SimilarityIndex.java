@@ -0,0 +1,560 @@
+package com.flickfinder.catalog;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+
+import com.flickfinder.catalog.ColumnarCatalog.IntList;
+
+/**
+ * Finds the movies whose cast and directors overlap most with a movie's.
+ *
+ * The credits of a movie are the people who starred in or directed it, and two
+ * movies are as similar as the Jaccard index of their credits: the people they
+ * share over the people on either. Comparing a movie with every other one is a
+ * pass over the whole catalog, so candidates come from locality sensitive
+ * hashing instead. Each movie gets a MinHash signature of {@code bands * rows}
+ * minimums, one per hash function, and each band of {@code rows} minimums is
+ * hashed to a bucket key. Two movies share a bucket in some band with
+ * probability {@code 1 - (1 - J^rows)^bands} for a Jaccard index J, which with
+ * the default 16 bands of 2 rows is over 99% from J = 0.5 and about 50% at
+ * J = 0.2.
+ *
+ * The buckets of each band are one sorted run of keys with the movies beside
+ * them, so a lookup is a binary search per band. The signatures themselves are
+ * not kept: the movie being looked up has its own worked out again. The
+ * candidates are then ranked by their exact overlap from the {@link Adjacency}
+ * lists, optionally weighted by their rating.
+ */
+public final class SimilarityIndex {
+
+	/**
+	 * The most similar movies a lookup returns.
+	 */
+	public static final int MAX_LIMIT = 100;
+
+	/**
+	 * The default number of bands.
+	 */
+	static final int BANDS = 16;
+
+	/**
+	 * The default number of minimums in each band.
+	 */
+	static final int ROWS = 2;
+
+	/**
+	 * The rating that unrated movies are weighted by.
+	 */
+	static final double UNRATED = 5.0;
+
+	private final int[] movieIds;
+	private final Adjacency starsByMovie;
+	private final Adjacency directorsByMovie;
+
+	/**
+	 * The rating of each movie by index, NaN if it has none.
+	 */
+	private final float[] ratings;
+
+	private final int bands;
+	private final int rows;
+
+	/**
+	 * One seed per hash function, {@code bands * rows} of them.
+	 */
+	private final int[] seeds;
+
+	/**
+	 * The number of movies with any credits, which is the length of each band.
+	 */
+	private final int hashed;
+
+	/**
+	 * The bucket keys of each band in ascending order, band after band, and the
+	 * movie index of each key.
+	 */
+	private final int[] bandKeys;
+	private final int[] bandMovies;
+
+	private final long buildNanos;
+
+	private SimilarityIndex(int[] movieIds, Adjacency starsByMovie, Adjacency directorsByMovie, float[] ratings,
+			int bands, int rows) {
+		long start = System.nanoTime();
+		this.movieIds = movieIds;
+		this.starsByMovie = starsByMovie;
+		this.directorsByMovie = directorsByMovie;
+		this.ratings = ratings;
+		this.bands = bands;
+		this.rows = rows;
+		this.seeds = new int[bands * rows];
+		for (int i = 0; i < seeds.length; i++) {
+			seeds[i] = mix(0x5bd1e995 + i);
+		}
+
+		int credited = 0;
+		for (int movie = 0; movie < movieIds.length; movie++) {
+			if (starsByMovie.degree(movie) + directorsByMovie.degree(movie) > 0) {
+				credited++;
+			}
+		}
+		this.hashed = credited;
+
+		// a key and its movie are packed into one long so each band sorts once
+		long[][] buckets = new long[bands][hashed];
+		int n = 0;
+		int[] keys = new int[bands];
+		for (int movie = 0; movie < movieIds.length; movie++) {
+			int[] credits = credits(movie);
+			if (credits.length == 0) {
+				continue;
+			}
+			bandKeys(credits, keys);
+			for (int band = 0; band < bands; band++) {
+				buckets[band][n] = (long) keys[band] << 32 | movie;
+			}
+			n++;
+		}
+
+		this.bandKeys = new int[bands * hashed];
+		this.bandMovies = new int[bands * hashed];
+		for (int band = 0; band < bands; band++) {
+			long[] bucket = buckets[band];
+			Arrays.sort(bucket);
+			for (int i = 0; i < hashed; i++) {
+				bandKeys[band * hashed + i] = (int) (bucket[i] >> 32);
+				bandMovies[band * hashed + i] = (int) bucket[i];
+			}
+			buckets[band] = null;
+		}
+		this.buildNanos = System.nanoTime() - start;
+	}
+
+	/**
+	 * Loads the index from the movies, people, stars, directors and ratings
+	 * tables.
+	 *
+	 * @param connection a connection to the database
+	 * @return the index
+	 * @throws SQLException if a database error occurs
+	 */
+	public static SimilarityIndex load(Connection connection) throws SQLException {
+		return of(CreditAdjacency.load(connection), connection);
+	}
+
+	/**
+	 * Returns the index of credit adjacency lists that are already loaded,
+	 * sharing them, with the ratings read from the ratings table.
+	 *
+	 * @param credits    the adjacency lists
+	 * @param connection a connection to the database
+	 * @return the index
+	 * @throws SQLException if a database error occurs
+	 */
+	public static SimilarityIndex of(CreditAdjacency credits, Connection connection) throws SQLException {
+		int[] movies = credits.movieIds;
+		float[] ratings = new float[movies.length];
+		Arrays.fill(ratings, Float.NaN);
+		try (Statement stmt = connection.createStatement();
+				ResultSet rs = stmt.executeQuery("select movie_id, rating from ratings")) {
+			while (rs.next()) {
+				int movie = Arrays.binarySearch(movies, rs.getInt(1));
+				if (movie >= 0) {
+					ratings[movie] = rs.getFloat(2);
+				}
+			}
+		}
+		return new SimilarityIndex(movies, credits.starsByMovie, credits.directorsByMovie, ratings, BANDS, ROWS);
+	}
+
+	/**
+	 * Returns the index of a catalog that is already in memory, sharing its
+	 * adjacency lists.
+	 *
+	 * @param catalog the catalog
+	 * @return the index
+	 */
+	public static SimilarityIndex of(ColumnarCatalog catalog) {
+		return of(CreditAdjacency.of(catalog), catalog);
+	}
+
+	/**
+	 * Returns the index of credit adjacency lists that are already loaded,
+	 * sharing them, with the ratings of a catalog.
+	 *
+	 * @param credits the adjacency lists of the catalog
+	 * @param catalog the catalog
+	 * @return the index
+	 */
+	public static SimilarityIndex of(CreditAdjacency credits, ColumnarCatalog catalog) {
+		int[] movies = credits.movieIds;
+		float[] ratings = new float[movies.length];
+		Arrays.fill(ratings, Float.NaN);
+		for (int row = 0; row < catalog.ratingCount(); row++) {
+			ratings[catalog.ratingMovie(row)] = (float) catalog.ratingValue(row);
+		}
+		return new SimilarityIndex(movies, credits.starsByMovie, credits.directorsByMovie, ratings, BANDS, ROWS);
+	}
+
+	/**
+	 * Returns the movies that share the most of a movie's cast and directors,
+	 * from the movies that share a bucket with it in any band.
+	 * They are ranked by the Jaccard index of their credits, times their rating
+	 * out of 10 if weighted, then by how many people they share and then by id.
+	 * Movies that share no one are left out.
+	 *
+	 * @param movieId  the id of the movie
+	 * @param limit    the most movies to return, at most {@link #MAX_LIMIT}
+	 * @param weighted whether to weight the similarity by rating, with unrated
+	 *                 movies counted as a 5
+	 * @return the similar movies, best first; null if there is no such movie
+	 */
+	public Matches similar(int movieId, int limit, boolean weighted) {
+		int movie = Arrays.binarySearch(movieIds, movieId);
+		if (movie < 0) {
+			return null;
+		}
+		limit = Math.max(0, Math.min(limit, MAX_LIMIT));
+		int[] credits = credits(movie);
+		if (credits.length == 0 || limit == 0) {
+			return new TopScores(0).drain(movieIds);
+		}
+
+		int[] keys = new int[bands];
+		bandKeys(credits, keys);
+		IntList candidates = new IntList();
+		for (int band = 0; band < bands; band++) {
+			int from = band * hashed;
+			int to = from + hashed;
+			for (int i = lowerBound(from, to, keys[band]); i < to && bandKeys[i] == keys[band]; i++) {
+				if (bandMovies[i] != movie) {
+					candidates.add(bandMovies[i]);
+				}
+			}
+		}
+		int[] unique = candidates.toArray();
+		Arrays.sort(unique);
+
+		TopScores top = new TopScores(limit);
+		for (int i = 0; i < unique.length; i++) {
+			if (i == 0 || unique[i] != unique[i - 1]) {
+				offer(top, credits, unique[i], weighted);
+			}
+		}
+		return top.drain(movieIds);
+	}
+
+	/**
+	 * Returns the same ranking as {@link #similar(int, int, boolean)} over every
+	 * movie instead of the candidates, to measure what the buckets miss and what
+	 * they save.
+	 *
+	 * @param movieId  the id of the movie
+	 * @param limit    the most movies to return, at most {@link #MAX_LIMIT}
+	 * @param weighted whether to weight the similarity by rating
+	 * @return the similar movies, best first; null if there is no such movie
+	 */
+	public Matches exact(int movieId, int limit, boolean weighted) {
+		int movie = Arrays.binarySearch(movieIds, movieId);
+		if (movie < 0) {
+			return null;
+		}
+		limit = Math.max(0, Math.min(limit, MAX_LIMIT));
+		int[] credits = credits(movie);
+		TopScores top = new TopScores(limit);
+		for (int other = 0; other < movieIds.length && credits.length > 0; other++) {
+			if (other != movie) {
+				offer(top, credits, other, weighted);
+			}
+		}
+		return top.drain(movieIds);
+	}
+
+	/**
+	 * Scores a candidate against the credits of the movie being looked up.
+	 */
+	private void offer(TopScores top, int[] credits, int candidate, boolean weighted) {
+		int[] other = credits(candidate);
+		int shared = 0;
+		for (int i = 0, j = 0; i < credits.length && j < other.length;) {
+			if (credits[i] < other[j]) {
+				i++;
+			} else if (credits[i] > other[j]) {
+				j++;
+			} else {
+				shared++;
+				i++;
+				j++;
+			}
+		}
+		if (shared == 0) {
+			return;
+		}
+		double score = (double) shared / (credits.length + other.length - shared);
+		if (weighted) {
+			score *= (Float.isNaN(ratings[candidate]) ? UNRATED : ratings[candidate]) / 10;
+		}
+		top.offer(candidate, shared, score);
+	}
+
+	/**
+	 * Returns the people who starred in or directed a movie, each once and in
+	 * ascending order.
+	 */
+	private int[] credits(int movie) {
+		int[] people = new int[starsByMovie.degree(movie) + directorsByMovie.degree(movie)];
+		int n = 0;
+		for (int k = starsByMovie.start(movie); k < starsByMovie.end(movie); k++) {
+			people[n++] = starsByMovie.target(k);
+		}
+		for (int k = directorsByMovie.start(movie); k < directorsByMovie.end(movie); k++) {
+			people[n++] = directorsByMovie.target(k);
+		}
+		Arrays.sort(people);
+		int unique = 0;
+		for (int i = 0; i < people.length; i++) {
+			if (i == 0 || people[i] != people[i - 1]) {
+				people[unique++] = people[i];
+			}
+		}
+		return unique == people.length ? people : Arrays.copyOf(people, unique);
+	}
+
+	/**
+	 * Works out the MinHash signature of a set of credits and hashes each band of
+	 * it to a bucket key.
+	 */
+	private void bandKeys(int[] credits, int[] keys) {
+		for (int band = 0; band < bands; band++) {
+			int key = band;
+			for (int row = 0; row < rows; row++) {
+				int seed = seeds[band * rows + row];
+				int min = Integer.MAX_VALUE;
+				for (int person : credits) {
+					min = Math.min(min, mix(person ^ seed));
+				}
+				key = mix(key * 31 + min);
+			}
+			keys[band] = key;
+		}
+	}
+
+	/**
+	 * Returns the first position in a run of the band keys that is not below a
+	 * key.
+	 */
+	private int lowerBound(int from, int to, int key) {
+		while (from < to) {
+			int mid = (from + to) >>> 1;
+			if (bandKeys[mid] < key) {
+				from = mid + 1;
+			} else {
+				to = mid;
+			}
+		}
+		return from;
+	}
+
+	/**
+	 * The finalizer of MurmurHash3, a bijection on ints that mixes every bit of
+	 * the input into every bit of the output.
+	 */
+	static int mix(int h) {
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return h;
+	}
+
+	/**
+	 * Returns how long the buckets took to build.
+	 *
+	 * @return the build time in milliseconds
+	 */
+	public double getBuildMillis() {
+		return buildNanos / 1e6;
+	}
+
+	/**
+	 * Returns the number of bytes the index's arrays use, including the
+	 * adjacency lists it shares with a catalog.
+	 *
+	 * @return the size of the index in bytes
+	 */
+	public long getMemoryBytes() {
+		return 4L * movieIds.length + 4L * ratings.length + 4L * seeds.length + 4L * bandKeys.length
+				+ 4L * bandMovies.length + starsByMovie.getMemoryBytes() + directorsByMovie.getMemoryBytes();
+	}
+
+	/**
+	 * Returns a summary of the index.
+	 * This is primarily used for debugging purposes.
+	 *
+	 * @return a string representation of the index
+	 */
+	@Override
+	public String toString() {
+		return "SimilarityIndex [movies=" + movieIds.length + ", hashed=" + hashed + ", bands=" + bands + ", rows="
+				+ rows + ", buildMillis=" + Math.round(getBuildMillis()) + ", memoryBytes=" + getMemoryBytes()
+				+ "]";
+	}
+
+	/**
+	 * The movies a lookup found, best first.
+	 */
+	public static final class Matches {
+
+		private final int[] movieIds;
+		private final int[] shared;
+		private final double[] scores;
+
+		Matches(int[] movieIds, int[] shared, double[] scores) {
+			this.movieIds = movieIds;
+			this.shared = shared;
+			this.scores = scores;
+		}
+
+		/**
+		 * Returns the number of movies found.
+		 *
+		 * @return the number of movies
+		 */
+		public int size() {
+			return movieIds.length;
+		}
+
+		/**
+		 * Returns the id of a movie.
+		 *
+		 * @param i the rank of the movie, from 0
+		 * @return the id of the movie
+		 */
+		public int movieId(int i) {
+			return movieIds[i];
+		}
+
+		/**
+		 * Returns how many people a movie shares with the one looked up.
+		 *
+		 * @param i the rank of the movie, from 0
+		 * @return the number of shared people
+		 */
+		public int shared(int i) {
+			return shared[i];
+		}
+
+		/**
+		 * Returns the score a movie was ranked by.
+		 *
+		 * @param i the rank of the movie, from 0
+		 * @return the Jaccard index of the credits, weighted if asked for
+		 */
+		public double score(int i) {
+			return scores[i];
+		}
+	}
+
+	/**
+	 * Keeps the movies with the highest scores seen so far in a min-heap of
+	 * fixed size, with ties going to the movie sharing more people and then to
+	 * the lower index.
+	 */
+	static final class TopScores {
+
+		private final int[] movies;
+		private final int[] shared;
+		private final double[] scores;
+		private int size;
+
+		TopScores(int limit) {
+			movies = new int[limit];
+			shared = new int[limit];
+			scores = new double[limit];
+		}
+
+		void offer(int movie, int common, double score) {
+			if (size < movies.length) {
+				set(size, movie, common, score);
+				siftUp(size++);
+			} else if (size > 0 && worse(0, movie, common, score)) {
+				set(0, movie, common, score);
+				siftDown(0);
+			}
+		}
+
+		/**
+		 * Empties the heap.
+		 *
+		 * @param movieIds the id of each movie index
+		 * @return the movies, best first
+		 */
+		Matches drain(int[] movieIds) {
+			Matches result = new Matches(new int[size], new int[size], new double[size]);
+			while (size > 0) {
+				result.movieIds[size - 1] = movieIds[movies[0]];
+				result.shared[size - 1] = shared[0];
+				result.scores[size - 1] = scores[0];
+				size--;
+				set(0, movies[size], shared[size], scores[size]);
+				siftDown(0);
+			}
+			return result;
+		}
+
+		/**
+		 * Returns whether the entry at a position ranks below the given one.
+		 */
+		private boolean worse(int i, int movie, int common, double score) {
+			if (scores[i] != score) {
+				return scores[i] < score;
+			}
+			return shared[i] < common || shared[i] == common && movies[i] > movie;
+		}
+
+		private void set(int i, int movie, int common, double score) {
+			movies[i] = movie;
+			shared[i] = common;
+			scores[i] = score;
+		}
+
+		private void siftUp(int i) {
+			while (i > 0) {
+				int parent = (i - 1) / 2;
+				if (!worse(i, movies[parent], shared[parent], scores[parent])) {
+					return;
+				}
+				swap(i, parent);
+				i = parent;
+			}
+		}
+
+		private void siftDown(int i) {
+			while (true) {
+				int worst = i;
+				for (int child = 2 * i + 1; child <= 2 * i + 2 && child < size; child++) {
+					if (worse(child, movies[worst], shared[worst], scores[worst])) {
+						worst = child;
+					}
+				}
+				if (worst == i) {
+					return;
+				}
+				swap(i, worst);
+				i = worst;
+			}
+		}
+
+		private void swap(int a, int b) {
+			int movie = movies[a];
+			int common = shared[a];
+			double score = scores[a];
+			set(a, movies[b], shared[b], scores[b]);
+			set(b, movie, common, score);
+		}
+	}
+}
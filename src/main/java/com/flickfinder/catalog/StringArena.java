@@ -0,0 +1,114 @@
+package com.flickfinder.catalog;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Stores many strings in one UTF-8 byte array.
+ *
+ * A String object costs a header, a backing array and a hash field on top of
+ * its characters, which adds up over millions of titles and names. The arena
+ * keeps all of the bytes back to back with an offset per string, and only
+ * creates a String when one is asked for.
+ *
+ * The bytes and offsets are usually arrays on the heap, but can also be read in
+ * place from a memory mapped {@link CatalogSnapshot}.
+ */
+public final class StringArena {
+
+	/**
+	 * The UTF-8 bytes of every string, back to back.
+	 */
+	final ByteBuffer bytes;
+
+	/**
+	 * Where each string starts in {@link #bytes}. There is one extra entry at the
+	 * end so the length of string i is offsets[i + 1] - offsets[i].
+	 */
+	final IntBuffer offsets;
+
+	StringArena(ByteBuffer bytes, IntBuffer offsets) {
+		this.bytes = bytes;
+		this.offsets = offsets;
+	}
+
+	/**
+	 * Returns the string at an index.
+	 *
+	 * @param index the index of the string
+	 * @return the string
+	 */
+	public String get(int index) {
+		int start = offsets.get(index);
+		int length = offsets.get(index + 1) - start;
+		if (bytes.hasArray()) {
+			return new String(bytes.array(), bytes.arrayOffset() + start, length, StandardCharsets.UTF_8);
+		}
+		byte[] encoded = new byte[length];
+		bytes.get(start, encoded);
+		return new String(encoded, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Returns the number of strings in the arena.
+	 *
+	 * @return the number of strings
+	 */
+	public int size() {
+		return offsets.limit() - 1;
+	}
+
+	/**
+	 * Returns the number of bytes the arena uses, on the heap or in the mapped
+	 * snapshot.
+	 *
+	 * @return the size of the arena in bytes
+	 */
+	public long getMemoryBytes() {
+		return bytes.limit() + 4L * offsets.limit();
+	}
+
+	/**
+	 * Builds an arena by appending strings in index order.
+	 */
+	public static final class Builder {
+
+		private byte[] bytes = new byte[1024];
+		private int[] offsets = new int[64];
+		private int size;
+		private int length;
+
+		/**
+		 * Appends a string to the arena. A null string is stored as an empty one.
+		 *
+		 * @param value the string to append
+		 * @return the index of the string
+		 */
+		public int add(String value) {
+			byte[] encoded = value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+			if (length + encoded.length > bytes.length) {
+				bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + encoded.length));
+			}
+			System.arraycopy(encoded, 0, bytes, length, encoded.length);
+			if (size + 2 > offsets.length) {
+				offsets = Arrays.copyOf(offsets, offsets.length * 2);
+			}
+			offsets[size] = length;
+			length += encoded.length;
+			offsets[size + 1] = length;
+			return size++;
+		}
+
+		/**
+		 * Returns the arena, trimmed to the strings that were added.
+		 *
+		 * @return the arena
+		 */
+		public StringArena build() {
+			return new StringArena(ByteBuffer.wrap(Arrays.copyOf(bytes, length)),
+					IntBuffer.wrap(Arrays.copyOf(offsets, size + 1)));
+		}
+	}
+}
@@ -0,0 +1,47 @@
+package com.flickfinder.controller;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Parses the {@code ?ids=} parameter of the bulk routes.
+ *
+ * The ids are a comma separated list, e.g. {@code ?ids=1,2,3}. Duplicates are
+ * dropped and the order is kept.
+ */
+final class BatchIds {
+
+	/**
+	 * The most ids one request may ask for.
+	 */
+	static final int MAX_IDS = 1000;
+
+	private BatchIds() {
+	}
+
+	/**
+	 * Parses a list of ids.
+	 *
+	 * @param param the value of the ids parameter, or null if it was not sent
+	 * @return the distinct ids, in the order given
+	 * @throws IllegalArgumentException if an id is not a number, or there are no
+	 *                                  ids or too many of them
+	 */
+	static List<Integer> parse(String param) {
+		if (param == null) {
+			throw new IllegalArgumentException("No ids");
+		}
+		Set<Integer> ids = new LinkedHashSet<>();
+		for (String id : param.split(",")) {
+			if (!id.isBlank()) {
+				ids.add(Integer.parseInt(id.trim()));
+			}
+		}
+		if (ids.isEmpty() || ids.size() > MAX_IDS) {
+			throw new IllegalArgumentException("Expected between 1 and " + MAX_IDS + " ids");
+		}
+		return new ArrayList<>(ids);
+	}
+}
@@ -0,0 +1,102 @@
+package com.flickfinder.controller;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import com.flickfinder.catalog.CollaboratorIndex;
+import com.flickfinder.dao.PersonDAO;
+import com.flickfinder.model.Collaborator;
+import com.flickfinder.model.Person;
+
+import io.javalin.http.Context;
+
+/**
+ * The controller for the top collaborators endpoint.
+ *
+ * The collaborator index counts who shares the most movies with a person, and
+ * the DAO looks the people up in bulk.
+ */
+public class CollaboratorController {
+
+	/**
+	 * The number of collaborators when the request does not give a limit.
+	 */
+	static final int DEFAULT_LIMIT = 10;
+
+	/**
+	 * Who starred in or directed the same movies.
+	 */
+	private final CollaboratorIndex index;
+
+	/**
+	 * The person data access object.
+	 */
+	private final PersonDAO personDAO;
+
+	/**
+	 * Constructs a CollaboratorController object.
+	 *
+	 * @param index     the collaborator index
+	 * @param personDAO the person data access object
+	 */
+	public CollaboratorController(CollaboratorIndex index, PersonDAO personDAO) {
+		this.index = index;
+		this.personDAO = personDAO;
+	}
+
+	/**
+	 * Returns the people who most often starred in or directed the same movies
+	 * as a person, with how many movies they share, most first.
+	 * The limit parameter is the number of people to return. (default 10,
+	 * limited to 100)
+	 * If the id or limit is not a number, or the limit is not positive, a 400
+	 * status code is returned.
+	 * If the person does not exist, a 404 status code is returned.
+	 * If a database error occurs, a 500 status code is returned, or a 429 if the
+	 * database is too busy to take the query.
+	 *
+	 * @param ctx the Javalin context
+	 */
+	public void getCollaborators(Context ctx) {
+		int id;
+		int limit = DEFAULT_LIMIT;
+		try {
+			id = Integer.parseInt(ctx.pathParam("id"));
+			if (ctx.queryParam("limit") != null) {
+				limit = Integer.parseInt(ctx.queryParam("limit"));
+			}
+		} catch (NumberFormatException e) {
+			ctx.status(400);
+			ctx.result("Invalid id or limit");
+			return;
+		}
+		if (limit <= 0) {
+			ctx.status(400);
+			ctx.result("Invalid id or limit");
+			return;
+		}
+
+		int[][] top = index.top(id, limit);
+		if (top == null) {
+			ctx.status(404);
+			ctx.result("Person not found");
+			return;
+		}
+
+		List<Integer> ids = new ArrayList<>(top[0].length);
+		for (int person : top[0]) {
+			ids.add(person);
+		}
+		CompletableFuture<Map<Integer, Person>> lookup = ids.isEmpty() ? CompletableFuture.completedFuture(Map.of())
+				: personDAO.getPeopleByIdsAsync(ids);
+		DatabaseResponses.respond(ctx, lookup.thenApply(people -> {
+			List<Collaborator> collaborators = new ArrayList<>(ids.size());
+			for (int i = 0; i < top[0].length; i++) {
+				collaborators.add(new Collaborator(people.get(top[0][i]), top[1][i]));
+			}
+			return collaborators;
+		}), ctx::json);
+	}
+}
@@ -0,0 +1,74 @@
+package com.flickfinder.controller;
+
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+import com.flickfinder.util.DatabaseBusyException;
+
+import io.javalin.http.Context;
+
+/**
+ * Sends the results of the async DAO methods.
+ *
+ * The routes hand the DAO's future to Javalin with {@link Context#future}, so
+ * the request thread is free while the query waits for a connection. When the
+ * database executor's queue is full the query is not run at all and the client
+ * gets a 429 with a Retry-After header, rather than waiting behind work the
+ * server cannot keep up with.
+ */
+final class DatabaseResponses {
+
+	private DatabaseResponses() {
+	}
+
+	/**
+	 * Sends the result of a query once it is done.
+	 *
+	 * @param <T>      the type of the result
+	 * @param ctx      the Javalin context
+	 * @param result   the result of the query
+	 * @param onResult writes the response, called with the result
+	 */
+	static <T> void respond(Context ctx, CompletableFuture<T> result, Consumer<T> onResult) {
+		ctx.future(() -> result.handle((value, error) -> {
+			if (error != null) {
+				fail(ctx, error);
+			} else {
+				onResult.accept(value);
+			}
+			return null;
+		}));
+	}
+
+	/**
+	 * Sends the response for a failed query.
+	 * A full queue is a 429 with a Retry-After header and any other database
+	 * error is a 500. Anything else is not ours to handle and is thrown again.
+	 *
+	 * @param ctx   the Javalin context
+	 * @param error the reason the query failed
+	 */
+	static void fail(Context ctx, Throwable error) {
+		while ((error instanceof CompletionException || error instanceof ExecutionException)
+				&& error.getCause() != null) {
+			error = error.getCause();
+		}
+
+		if (error instanceof DatabaseBusyException) {
+			ctx.status(429);
+			ctx.header("Retry-After", String.valueOf(((DatabaseBusyException) error).getRetryAfterSeconds()));
+			ctx.result("Too many requests");
+		} else if (error instanceof SQLException) {
+			ctx.status(500);
+			ctx.result("Database error");
+			error.printStackTrace();
+		} else if (error instanceof RuntimeException) {
+			throw (RuntimeException) error;
+		} else {
+			throw new CompletionException(error);
+		}
+	}
+}
@@ -0,0 +1,204 @@
+package com.flickfinder.controller;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.javalin.http.Context;
+import io.javalin.http.Handler;
+
+/**
+ * HTTP caching for the read only routes.
+ *
+ * movies.db does not change while the server runs, so a response only depends
+ * on the database and the request. The strong ETag of a response is a hash of
+ * the database version, the path, the query parameters (in sorted order) and
+ * whether the client asked for NDJSON. It can be worked out before the route
+ * runs, so when the client's If-None-Match matches, we answer 304 without
+ * querying the database at all.
+ *
+ * Routes opt in by wrapping their handler with {@link #cached(String, Handler)}
+ * in AppConfig, which also sets their Cache-Control policy. Only 200 responses
+ * carry the ETag and policy, {@link #finish(Context)} sends errors with
+ * Cache-Control: no-store.
+ *
+ * If-None-Match: * matches any response that exists, which is only known once
+ * the route has run, so {@link #finish(Context)} turns a 200 into a 304 for it
+ * and a missing movie or person is still a 404.
+ */
+public class HttpCache {
+
+	/**
+	 * The version of the database, part of every ETag.
+	 */
+	private final String version;
+
+	private final LongAdder requests = new LongAdder();
+	private final LongAdder notModified = new LongAdder();
+
+	/**
+	 * Constructs an HttpCache object for a version of the database.
+	 *
+	 * @param version the database version, see
+	 *                {@link com.flickfinder.util.Database#getVersion()}
+	 */
+	public HttpCache(String version) {
+		this.version = version;
+	}
+
+	/**
+	 * Wraps a route handler with ETag and Cache-Control handling.
+	 *
+	 * @param cacheControl the Cache-Control header for successful responses
+	 * @param handler      the route handler
+	 * @return the wrapped handler
+	 */
+	public Handler cached(String cacheControl, Handler handler) {
+		return ctx -> {
+			requests.increment();
+			String etag = etag(ctx);
+			// headers have to be set before a streamed body starts
+			ctx.header("ETag", etag);
+			ctx.header("Cache-Control", cacheControl);
+			ctx.header("Vary", "Accept");
+
+			if (matches(ctx.header("If-None-Match"), etag)) {
+				notModified.increment();
+				ctx.status(304);
+				return;
+			}
+
+			handler.handle(ctx);
+		};
+	}
+
+	/**
+	 * Takes the ETag and caching policy off a cached route's response if it
+	 * failed. This is registered as an after handler, since a route that answers
+	 * with a future has not got its status yet when its handler returns.
+	 *
+	 * @param ctx the Javalin context
+	 */
+	public void finish(Context ctx) {
+		int status = ctx.statusCode();
+		if (status != 200 && status != 304 && ctx.res().getHeader("ETag") != null) {
+			ctx.removeHeader("ETag");
+			ctx.header("Cache-Control", "no-store");
+		} else if (status == 200 && ctx.res().getHeader("ETag") != null && isWildcard(ctx.header("If-None-Match"))
+				&& !ctx.res().isCommitted()) {
+			// a streamed body has already gone out, so it stays a 200
+			notModified.increment();
+			ctx.status(304);
+			ctx.result("");
+		}
+	}
+
+	/**
+	 * Returns the strong ETag for a request.
+	 *
+	 * @param ctx the Javalin context
+	 * @return the quoted ETag
+	 */
+	String etag(Context ctx) {
+		StringBuilder key = new StringBuilder(version).append('\n').append(ctx.path());
+		for (Map.Entry<String, List<String>> param : new TreeMap<>(ctx.queryParamMap()).entrySet()) {
+			key.append('\n').append(param.getKey()).append('=').append(String.join(",", param.getValue()));
+		}
+		if (JsonStreaming.isNdjson(ctx)) {
+			key.append('\n').append(JsonStreaming.NDJSON);
+		}
+
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.toString().getBytes(StandardCharsets.UTF_8));
+			StringBuilder etag = new StringBuilder("\"");
+			for (int i = 0; i < 12; i++) {
+				etag.append(Character.forDigit((digest[i] >> 4) & 0xf, 16)).append(Character.forDigit(digest[i] & 0xf, 16));
+			}
+			return etag.append('"').toString();
+		} catch (NoSuchAlgorithmException e) {
+			// every JVM has SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Returns whether an If-None-Match header matches an ETag.
+	 * If-None-Match uses the weak comparison, so a W/ prefix is ignored. A
+	 * wildcard does not match here, see {@link #isWildcard(String)}.
+	 *
+	 * @param ifNoneMatch the header, may be null
+	 * @param etag        the quoted ETag of the response
+	 * @return true if the client's copy is current
+	 */
+	static boolean matches(String ifNoneMatch, String etag) {
+		if (ifNoneMatch == null) {
+			return false;
+		}
+		for (String candidate : ifNoneMatch.split(",")) {
+			String tag = candidate.trim();
+			if (tag.startsWith("W/")) {
+				tag = tag.substring(2);
+			}
+			if (tag.equals(etag)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns whether an If-None-Match header is the wildcard, which matches any
+	 * current representation of the resource.
+	 *
+	 * @param ifNoneMatch the header, may be null
+	 * @return true if the header is *
+	 */
+	static boolean isWildcard(String ifNoneMatch) {
+		return ifNoneMatch != null && ifNoneMatch.trim().equals("*");
+	}
+
+	/**
+	 * Returns the number of requests to cached routes.
+	 *
+	 * @return the number of requests
+	 */
+	public long getRequests() {
+		return requests.sum();
+	}
+
+	/**
+	 * Returns the number of requests answered with 304 Not Modified.
+	 *
+	 * @return the number of 304 responses
+	 */
+	public long getNotModified() {
+		return notModified.sum();
+	}
+
+	/**
+	 * Returns the fraction of requests to cached routes that were answered with
+	 * 304 Not Modified.
+	 *
+	 * @return the 304 ratio, between 0 and 1
+	 */
+	public double getNotModifiedRatio() {
+		long total = requests.sum();
+		return total == 0 ? 0 : (double) notModified.sum() / total;
+	}
+
+	/**
+	 * Returns the cache counters.
+	 * This is primarily used for debugging purposes.
+	 *
+	 * @return a string representation of the cache
+	 */
+	@Override
+	public String toString() {
+		return "HttpCache [version=" + version + ", requests=" + getRequests() + ", notModified=" + getNotModified()
+				+ ", notModifiedRatio=" + getNotModifiedRatio() + "]";
+	}
+}
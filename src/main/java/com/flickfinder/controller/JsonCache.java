@@ -0,0 +1,351 @@
+package com.flickfinder.controller;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+
+import io.javalin.http.ContentType;
+import io.javalin.http.Context;
+
+/**
+ * The JSON of single movies or people, serialized once and kept off the heap.
+ *
+ * The rows never change while the server runs, so the response for an id is
+ * always the same bytes. The first request for an id serializes it as usual and
+ * stores the UTF-8 JSON here; later requests send the stored bytes without
+ * going to the database or Jackson.
+ *
+ * The bytes live in direct buffer slabs that are filled one after the other.
+ * An open addressing table maps each id to the slab, offset and length of its
+ * JSON, packed into one long, so the index holds no objects either. When every
+ * slab is full the oldest one is emptied and reused, dropping the ids in it,
+ * so the cache never holds more than its byte budget.
+ */
+public class JsonCache {
+
+	/**
+	 * The largest size of a slab. Smaller budgets are split into
+	 * {@link #MIN_SLABS} slabs, so an eviction never drops the whole cache.
+	 */
+	static final int SLAB_BYTES = 1 << 20;
+
+	static final int MIN_SLABS = 16;
+
+	private final ByteBuffer[] slabs;
+	private final int slabBytes;
+
+	/**
+	 * The ids stored in each slab, so they can be dropped when it is reused.
+	 */
+	private final int[][] slabIds;
+	private final int[] slabCounts;
+
+	/**
+	 * The slab being filled, and where the next entry goes in it.
+	 */
+	private int current;
+	private int position;
+
+	private final IdTable index = new IdTable();
+	private final StampedLock lock = new StampedLock();
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * Constructs an empty JsonCache. Slabs are allocated as they are needed.
+	 *
+	 * @param budgetBytes the most bytes of JSON to keep, at least 1
+	 */
+	public JsonCache(long budgetBytes) {
+		this(budgetBytes, (int) Math.max(1, Math.min(SLAB_BYTES, budgetBytes / MIN_SLABS)));
+	}
+
+	JsonCache(long budgetBytes, int slabBytes) {
+		if (budgetBytes < slabBytes || slabBytes < 1) {
+			throw new IllegalArgumentException("The budget must be at least one slab");
+		}
+		this.slabBytes = slabBytes;
+		int count = (int) Math.min(budgetBytes / slabBytes, 1 << 15);
+		this.slabs = new ByteBuffer[count];
+		this.slabIds = new int[count][];
+		this.slabCounts = new int[count];
+	}
+
+	/**
+	 * Returns the JSON stored for an id.
+	 *
+	 * @param id the id of the movie or person
+	 * @return a copy of the JSON, or null if it is not in the cache
+	 */
+	public byte[] get(int id) {
+		long stamp = lock.readLock();
+		try {
+			long entry = index.get(id);
+			if (entry < 0) {
+				misses.increment();
+				return null;
+			}
+			byte[] json = new byte[length(entry)];
+			slabs[slab(entry)].get(offset(entry), json);
+			hits.increment();
+			return json;
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * Stores the JSON for an id, if it is not there already. JSON larger than a
+	 * slab is not stored.
+	 *
+	 * @param id   the id of the movie or person
+	 * @param json the UTF-8 JSON
+	 */
+	public void put(int id, byte[] json) {
+		if (json.length > slabBytes) {
+			return;
+		}
+		long stamp = lock.writeLock();
+		try {
+			if (index.get(id) >= 0) {
+				return;
+			}
+			if (slabs[current] == null) {
+				allocate(current);
+			}
+			if (position + json.length > slabBytes) {
+				current = (current + 1) % slabs.length;
+				position = 0;
+				if (slabs[current] == null) {
+					allocate(current);
+				}
+				// every slab is in use, so the one we came back to is the oldest
+				for (int i = 0; i < slabCounts[current]; i++) {
+					index.remove(slabIds[current][i]);
+				}
+				evictions.add(slabCounts[current]);
+				slabCounts[current] = 0;
+			}
+
+			slabs[current].put(position, json);
+			index.put(id, pack(current, position, json.length));
+			if (slabCounts[current] == slabIds[current].length) {
+				slabIds[current] = Arrays.copyOf(slabIds[current], slabCounts[current] * 2);
+			}
+			slabIds[current][slabCounts[current]++] = id;
+			position += json.length;
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	private void allocate(int slab) {
+		slabs[slab] = ByteBuffer.allocateDirect(slabBytes);
+		slabIds[slab] = new int[64];
+	}
+
+	/**
+	 * Sends the cached JSON for an id, if there is any.
+	 *
+	 * @param ctx the Javalin context
+	 * @param id  the id of the movie or person
+	 * @return true if the response was sent from the cache
+	 */
+	public boolean respond(Context ctx, int id) {
+		byte[] json = get(id);
+		if (json == null) {
+			return false;
+		}
+		ctx.contentType(ContentType.APPLICATION_JSON).result(json);
+		return true;
+	}
+
+	/**
+	 * Serializes a movie or person, stores it for its id and sends it.
+	 *
+	 * @param <T>   the type of the value
+	 * @param ctx   the Javalin context
+	 * @param id    the id of the movie or person
+	 * @param value the movie or person
+	 * @param type  the class of the value
+	 */
+	public <T> void respond(Context ctx, int id, T value, Class<T> type) {
+		byte[] json = ctx.jsonMapper().toJsonString(value, type).getBytes(StandardCharsets.UTF_8);
+		put(id, json);
+		ctx.contentType(ContentType.APPLICATION_JSON).result(json);
+	}
+
+	private static long pack(int slab, int offset, int length) {
+		return (long) slab << 42 | (long) offset << 21 | length;
+	}
+
+	private static int slab(long entry) {
+		return (int) (entry >>> 42);
+	}
+
+	private static int offset(long entry) {
+		return (int) (entry >>> 21) & 0x1fffff;
+	}
+
+	private static int length(long entry) {
+		return (int) entry & 0x1fffff;
+	}
+
+	/**
+	 * Returns the number of ids in the cache.
+	 *
+	 * @return the number of entries
+	 */
+	public int getEntries() {
+		long stamp = lock.readLock();
+		try {
+			return index.size;
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * Returns the number of bytes of direct memory the slabs take.
+	 *
+	 * @return the allocated size in bytes
+	 */
+	public long getAllocatedBytes() {
+		long stamp = lock.readLock();
+		try {
+			long allocated = 0;
+			for (ByteBuffer slab : slabs) {
+				allocated += slab == null ? 0 : slab.capacity();
+			}
+			return allocated;
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * Returns the number of lookups that found the JSON.
+	 *
+	 * @return the number of hits
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * Returns the number of lookups that did not find the JSON.
+	 *
+	 * @return the number of misses
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * Returns the number of ids dropped to make room for others.
+	 *
+	 * @return the number of evictions
+	 */
+	public long getEvictions() {
+		return evictions.sum();
+	}
+
+	/**
+	 * Returns the cache counters.
+	 * This is primarily used for debugging purposes.
+	 *
+	 * @return a string representation of the cache
+	 */
+	@Override
+	public String toString() {
+		return "JsonCache [entries=" + getEntries() + ", allocatedBytes=" + getAllocatedBytes() + ", hits="
+				+ getHits() + ", misses=" + getMisses() + ", evictions=" + getEvictions() + "]";
+	}
+
+	/**
+	 * An int to long hash table with linear probing. Values are never negative,
+	 * so -1 means missing.
+	 */
+	static final class IdTable {
+
+		private int[] keys = new int[16];
+		private long[] values = new long[16];
+		private boolean[] used = new boolean[16];
+		int size;
+
+		long get(int key) {
+			int mask = keys.length - 1;
+			for (int i = hash(key) & mask; used[i]; i = (i + 1) & mask) {
+				if (keys[i] == key) {
+					return values[i];
+				}
+			}
+			return -1;
+		}
+
+		void put(int key, long value) {
+			if (2 * (size + 1) > keys.length) {
+				resize(keys.length * 2);
+			}
+			int mask = keys.length - 1;
+			int i = hash(key) & mask;
+			while (used[i] && keys[i] != key) {
+				i = (i + 1) & mask;
+			}
+			if (!used[i]) {
+				used[i] = true;
+				keys[i] = key;
+				size++;
+			}
+			values[i] = value;
+		}
+
+		void remove(int key) {
+			int mask = keys.length - 1;
+			int i = hash(key) & mask;
+			while (used[i] && keys[i] != key) {
+				i = (i + 1) & mask;
+			}
+			if (!used[i]) {
+				return;
+			}
+			used[i] = false;
+			size--;
+			// move later entries of the run back, so no lookup stops at the gap
+			for (int j = (i + 1) & mask; used[j]; j = (j + 1) & mask) {
+				int home = hash(keys[j]) & mask;
+				if (((j - home) & mask) >= ((j - i) & mask)) {
+					keys[i] = keys[j];
+					values[i] = values[j];
+					used[i] = true;
+					used[j] = false;
+					i = j;
+				}
+			}
+		}
+
+		private void resize(int capacity) {
+			int[] oldKeys = keys;
+			long[] oldValues = values;
+			boolean[] oldUsed = used;
+			keys = new int[capacity];
+			values = new long[capacity];
+			used = new boolean[capacity];
+			size = 0;
+			for (int i = 0; i < oldKeys.length; i++) {
+				if (oldUsed[i]) {
+					put(oldKeys[i], oldValues[i]);
+				}
+			}
+		}
+
+		private static int hash(int key) {
+			int h = key * 0x9e3779b9;
+			return h ^ (h >>> 16);
+		}
+	}
+}
@@ -0,0 +1,109 @@
+package com.flickfinder.controller;
+
+import java.io.IOException;
+import java.sql.SQLException;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.flickfinder.util.RowHandler;
+
+import io.javalin.http.Context;
+import io.javalin.json.JavalinJackson;
+
+/**
+ * Streams list responses straight to the client as the database cursor
+ * advances.
+ *
+ * ctx.json(...) needs the whole list in memory, and then the whole serialized
+ * body as well. Here every row is written with a Jackson JsonGenerator as soon
+ * as it is read, and the body is sent with chunked transfer encoding, so the
+ * memory used by a request does not depend on how many rows it returns.
+ *
+ * Clients ask for a stream with {@code ?stream=true} (a JSON array) or with
+ * {@code Accept: application/x-ndjson} (one JSON object per line).
+ * Once the first rows are sent the status can no longer change, so a database
+ * error part way through cuts the response short.
+ */
+final class JsonStreaming {
+
+	/**
+	 * The content type for newline delimited JSON.
+	 */
+	static final String NDJSON = "application/x-ndjson";
+
+	/**
+	 * The mapper that Javalin uses, so streamed rows look like ctx.json(...) ones.
+	 */
+	private static final ObjectMapper MAPPER = JavalinJackson.defaultMapper();
+
+	private JsonStreaming() {
+	}
+
+	/**
+	 * The rows to write, usually a streaming DAO method.
+	 *
+	 * @param <T> the type of the rows
+	 */
+	@FunctionalInterface
+	interface Rows<T> {
+
+		/**
+		 * Passes every row to the handler.
+		 *
+		 * @param handler the handler that writes a row
+		 * @return the number of rows
+		 * @throws SQLException if a database error occurs
+		 * @throws IOException  if a row cannot be written
+		 */
+		int write(RowHandler<T> handler) throws SQLException, IOException;
+	}
+
+	/**
+	 * Returns whether the client asked for a streamed response.
+	 *
+	 * @param ctx the Javalin context
+	 * @return true if the response should be streamed
+	 */
+	static boolean requested(Context ctx) {
+		return isNdjson(ctx) || "true".equals(ctx.queryParam("stream"));
+	}
+
+	/**
+	 * Returns whether the client asked for newline delimited JSON.
+	 *
+	 * @param ctx the Javalin context
+	 * @return true if the client accepts application/x-ndjson
+	 */
+	static boolean isNdjson(Context ctx) {
+		String accept = ctx.header("Accept");
+		return accept != null && accept.contains(NDJSON);
+	}
+
+	/**
+	 * Writes the rows to the response as they arrive.
+	 *
+	 * @param <T>  the type of the rows
+	 * @param ctx  the Javalin context
+	 * @param rows the rows to write
+	 * @throws SQLException if a database error occurs
+	 * @throws IOException  if the response cannot be written
+	 */
+	static <T> void write(Context ctx, Rows<T> rows) throws SQLException, IOException {
+		boolean ndjson = isNdjson(ctx);
+		ctx.contentType(ndjson ? NDJSON : "application/json");
+
+		try (JsonGenerator gen = MAPPER.getFactory().createGenerator(ctx.outputStream())) {
+			if (ndjson) {
+				gen.setRootValueSeparator(null);
+				rows.write(row -> {
+					gen.writeObject(row);
+					gen.writeRaw('\n');
+				});
+			} else {
+				gen.writeStartArray();
+				rows.write(gen::writeObject);
+				gen.writeEndArray();
+			}
+		}
+	}
+}
@@ -1,9 +1,13 @@
 package com.flickfinder.controller;
 
+import java.io.IOException;
 import java.sql.SQLException;
+import java.util.List;
 
 import com.flickfinder.dao.MovieDAO;
+import com.flickfinder.model.Batch;
 import com.flickfinder.model.Movie;
+import com.flickfinder.model.Person;
 
 import io.javalin.http.Context;
 
@@ -32,75 +36,193 @@ public class MovieController {
 
 	private final MovieDAO movieDAO;
 
+	/**
+	 * The serialized JSON of single movies, or null to serialize every time.
+	 */
+	private final JsonCache jsonCache;
+
 	/**
 	 * Constructs a MovieController object and initializes the movieDAO.
 	 */
 	public MovieController(MovieDAO movieDAO) {
+		this(movieDAO, null);
+	}
+
+	/**
+	 * Constructs a MovieController object that sends single movies from a cache
+	 * of their JSON.
+	 *
+	 * @param movieDAO  the movie data access object
+	 * @param jsonCache the JSON cache, or null for none
+	 */
+	public MovieController(MovieDAO movieDAO, JsonCache jsonCache) {
 		this.movieDAO = movieDAO;
+		this.jsonCache = jsonCache;
 	}
 
 	/**
 	 * Returns a list of all movies in the database. (limited to 50)
 	 * The limit parameter is used to limit the number of movies returned.
-	 * If a database error occurs, a 500 status code is returned.
+	 * The cursor parameter continues from a previous page, the cursor for the
+	 * next page is sent in the X-Next-Cursor and Link headers.
+	 * With ?stream=true or Accept: application/x-ndjson the page is streamed
+	 * as the rows are read, without the next page headers.
+	 * With ?ids=1,2,3 the movies with those ids are returned instead, see
+	 * {@link #getMoviesByIds(Context)}.
+	 * If the cursor is invalid, a 400 status code is returned.
+	 * If a database error occurs, a 500 status code is returned, or a 429 if the
+	 * database is too busy to take the query.
 	 * 
 	 * @param ctx the Javalin context
 	 */
 	public void getAllMovies(Context ctx) {
+		if (ctx.queryParam("ids") != null) {
+			getMoviesByIds(ctx);
+			return;
+		}
+
 		try {
 			int limit = 50;
 			if (ctx.queryParam("limit") != null && !(Integer.parseInt(ctx.queryParam("limit")) <= 0)) {
 				limit = Integer.parseInt(ctx.queryParam("limit"));
 			}
-			ctx.json(movieDAO.getAllMovies(limit));
+
+			int afterId;
+			try {
+				afterId = Pagination.afterId(ctx, "movies");
+			} catch (IllegalArgumentException e) {
+				ctx.status(400);
+				ctx.result("Invalid cursor");
+				return;
+			}
+
+			if (JsonStreaming.requested(ctx)) {
+				// without a cursor, start before the lowest possible id
+				int after = afterId < 0 ? Integer.MIN_VALUE : afterId;
+				int pageSize = limit;
+				JsonStreaming.<Movie>write(ctx, handler -> movieDAO.streamMoviesAfter(after, pageSize, handler));
+				return;
+			}
+
+			int pageSize = limit;
+			DatabaseResponses.respond(ctx,
+					afterId < 0 ? movieDAO.getAllMoviesAsync(limit) : movieDAO.getMoviesAfterAsync(afterId, limit),
+					movies -> {
+						if (!movies.isEmpty()) {
+							Pagination.next(ctx, "movies", movies.size(), movies.get(movies.size() - 1).getId(), pageSize);
+						}
+						ctx.json(movies);
+					});
 		} catch (SQLException e) {
-			ctx.status(500);
-			ctx.result("Database error");
+			DatabaseResponses.fail(ctx, e);
+		} catch (IOException e) {
+			// the client went away part way through a stream
 			e.printStackTrace();
 		}
 	}
 
 	/**
 	 * Returns the movie with the specified id.
+	 * A movie that was sent before is sent from the JSON cache, without a query.
 	 * If the movie is not found, a 404 status code is returned.
-	 * If a database error occurs, a 500 status code is returned.
+	 * If a database error occurs, a 500 status code is returned, or a 429 if the
+	 * database is too busy to take the query.
 	 * 
 	 * @param ctx the Javalin context
 	 */
 	public void getMovieById(Context ctx) {
-		try {
-			int id = Integer.parseInt(ctx.pathParam("id"));
+		int id = Integer.parseInt(ctx.pathParam("id"));
+		if (jsonCache != null && jsonCache.respond(ctx, id)) {
+			return;
+		}
 
-			Movie movie = movieDAO.getMovieById(id);
+		DatabaseResponses.respond(ctx, movieDAO.getMovieByIdAsync(id), movie -> {
 			if (movie == null) {
 				ctx.status(404);
 				ctx.result("Movie not found");
 				return;
 			}
-			ctx.json(movieDAO.getMovieById(id));
-		} catch (SQLException e) {
-			ctx.status(500);
-			ctx.result("Database error");
-			e.printStackTrace();
+			if (jsonCache != null) {
+				jsonCache.respond(ctx, id, movie, Movie.class);
+				return;
+			}
+			ctx.json(movie);
+		});
+	}
+
+	/**
+	 * Returns the movies with the ids in the ids parameter, keyed by id, along
+	 * with the ids that did not match a movie.
+	 * If the ids are invalid, or there are more than 1000, a 400 status code is
+	 * returned.
+	 * If a database error occurs, a 500 status code is returned, or a 429 if the
+	 * database is too busy to take the query.
+	 *
+	 * @param ctx the Javalin context
+	 */
+	public void getMoviesByIds(Context ctx) {
+		List<Integer> ids;
+		try {
+			ids = BatchIds.parse(ctx.queryParam("ids"));
+		} catch (IllegalArgumentException e) {
+			ctx.status(400);
+			ctx.result("Invalid ids");
+			return;
 		}
+
+		DatabaseResponses.respond(ctx, movieDAO.getMoviesByIdsAsync(ids), movies -> ctx.json(new Batch<>(ids, movies)));
 	}
 
 	/**
 	 * Returns a list of people by a specified movie id.
-	 * If a database error occurs, a 500 status code is returned.
+	 * If a database error occurs, a 500 status code is returned, or a 429 if the
+	 * database is too busy to take the query.
 	 *
 	 * @param ctx the Javalin context
 	 */
 	public void getPeopleByMovieId(Context ctx) {
-		try {
-			int id = Integer.parseInt(ctx.pathParam("id"));
+		int id = Integer.parseInt(ctx.pathParam("id"));
 
-			ctx.json(movieDAO.getStarsByMovie(id));
-		} catch (SQLException e) {
-			ctx.status(500);
-			ctx.result("Database error");
-			e.printStackTrace();
+		DatabaseResponses.respond(ctx, movieDAO.getStarsByMovieAsync(id), ctx::json);
+	}
+
+	/**
+	 * Returns a list of the directors of a specified movie id.
+	 * If a database error occurs, a 500 status code is returned, or a 429 if the
+	 * database is too busy to take the query.
+	 *
+	 * @param ctx the Javalin context
+	 */
+	public void getDirectorsByMovieId(Context ctx) {
+		int id = Integer.parseInt(ctx.pathParam("id"));
+
+		DatabaseResponses.respond(ctx, movieDAO.getDirectorsByMovieAsync(id), ctx::json);
+	}
+
+	/**
+	 * Returns the stars of each movie in the ids parameter, keyed by movie id,
+	 * along with the ids that did not match a movie.
+	 * If the ids are missing or invalid, or there are more than 1000, a 400 status
+	 * code is returned.
+	 * If a database error occurs, a 500 status code is returned, or a 429 if the
+	 * database is too busy to take the query.
+	 *
+	 * @param ctx the Javalin context
+	 */
+	public void getPeopleByMovieIds(Context ctx) {
+		List<Integer> ids;
+		try {
+			ids = BatchIds.parse(ctx.queryParam("ids"));
+		} catch (IllegalArgumentException e) {
+			ctx.status(400);
+			ctx.result("Invalid ids");
+			return;
 		}
+
+		DatabaseResponses.respond(ctx, movieDAO.getStarsByMoviesAsync(ids), stars -> {
+			Batch<List<Person>> batch = new Batch<>(ids, stars);
+			ctx.json(batch);
+		});
 	}
 
 	/**
@@ -108,27 +230,22 @@ public class MovieController {
 	 * specified year and have votes greater than the specified value.
 	 *
 	 * The limit parameter is used to limit the number of movies returned.
-	 * If a database error occurs, a 500 status code is returned.
+	 * If a database error occurs, a 500 status code is returned, or a 429 if the
+	 * database is too busy to take the query.
 	 *
 	 * @param ctx the Javalin context
 	 */
 	public void getRatingsByYear(Context ctx) {
-		try {
-			int year = Integer.parseInt(ctx.pathParam("year"));
+		int year = Integer.parseInt(ctx.pathParam("year"));
 
-			int limit = 50;
-			if (ctx.queryParam("limit") != null && !(Integer.parseInt(ctx.queryParam("limit")) <= 0)) {
-				limit = Integer.parseInt(ctx.queryParam("limit"));
-			}
-			int votes = 1000;
-			if (ctx.queryParam("votes") != null && !(Integer.parseInt(ctx.queryParam("votes")) <= 0)) {
-				votes = Integer.parseInt(ctx.queryParam("votes"));
-			}
-			ctx.json(movieDAO.getMoviesByRatingOrder(year,votes, limit));
-		} catch (SQLException e) {
-			ctx.status(500);
-			ctx.result("Database error");
-			e.printStackTrace();
+		int limit = 50;
+		if (ctx.queryParam("limit") != null && !(Integer.parseInt(ctx.queryParam("limit")) <= 0)) {
+			limit = Integer.parseInt(ctx.queryParam("limit"));
+		}
+		int votes = 1000;
+		if (ctx.queryParam("votes") != null && !(Integer.parseInt(ctx.queryParam("votes")) <= 0)) {
+			votes = Integer.parseInt(ctx.queryParam("votes"));
 		}
+		DatabaseResponses.respond(ctx, movieDAO.getMoviesByRatingOrderAsync(year, votes, limit), ctx::json);
 	}
 }
@@ -0,0 +1,59 @@
+package com.flickfinder.controller;
+
+import com.flickfinder.util.Cursor;
+
+import io.javalin.http.Context;
+
+/**
+ * Helpers for the keyset paginated list routes.
+ *
+ * The body of a list route is still a plain JSON array. When there may be
+ * another page, the cursor for it is sent in an {@code X-Next-Cursor} header and
+ * as a {@code Link} header with {@code rel="next"}.
+ */
+final class Pagination {
+
+	/**
+	 * The header that carries the cursor for the next page.
+	 */
+	static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+	private Pagination() {
+	}
+
+	/**
+	 * Reads the cursor query parameter.
+	 *
+	 * @param ctx  the Javalin context
+	 * @param list the name of the list being paged through
+	 * @return the last id the client has seen, or -1 if no cursor was sent
+	 * @throws IllegalArgumentException if the cursor is malformed
+	 */
+	static int afterId(Context ctx, String list) {
+		String cursor = ctx.queryParam("cursor");
+		if (cursor == null) {
+			return -1;
+		}
+		return Cursor.decode(list, cursor);
+	}
+
+	/**
+	 * Sets the next page headers if the page is full.
+	 * A page that is not full must be the last one.
+	 *
+	 * @param ctx    the Javalin context
+	 * @param list   the name of the list being paged through, which is also its
+	 *               path
+	 * @param size   the number of items on the page
+	 * @param lastId the id of the last item on the page
+	 * @param limit  the page size
+	 */
+	static void next(Context ctx, String list, int size, int lastId, int limit) {
+		if (size < limit) {
+			return;
+		}
+		String cursor = Cursor.encode(list, lastId);
+		ctx.header(NEXT_CURSOR_HEADER, cursor);
+		ctx.header("Link", "</" + list + "?limit=" + limit + "&cursor=" + cursor + ">; rel=\"next\"");
+	}
+}
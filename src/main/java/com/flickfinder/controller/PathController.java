@@ -0,0 +1,150 @@
+package com.flickfinder.controller;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import com.flickfinder.catalog.CoStarGraph;
+import com.flickfinder.catalog.CoStarGraph.PathTimeoutException;
+import com.flickfinder.dao.MovieDAO;
+import com.flickfinder.dao.PersonDAO;
+import com.flickfinder.model.Movie;
+import com.flickfinder.model.Person;
+import com.flickfinder.model.PersonPath;
+
+import io.javalin.http.Context;
+
+/**
+ * The controller for the degrees of separation endpoint.
+ *
+ * The co-star graph finds the ids on the shortest chain between two people, and
+ * the DAOs look the rows up in bulk.
+ */
+public class PathController {
+
+	/**
+	 * The hop limit when the request does not give one.
+	 */
+	static final int DEFAULT_HOPS = 6;
+
+	/**
+	 * The largest hop limit a request may ask for.
+	 */
+	static final int MAX_HOPS = 10;
+
+	/**
+	 * How long a search may take before we give up on it.
+	 */
+	static final long BUDGET_MILLIS = 500;
+
+	/**
+	 * The graph of who starred with whom.
+	 */
+	private final CoStarGraph graph;
+
+	/**
+	 * The movie data access object.
+	 */
+	private final MovieDAO movieDAO;
+
+	/**
+	 * The person data access object.
+	 */
+	private final PersonDAO personDAO;
+
+	/**
+	 * Constructs a PathController object.
+	 *
+	 * @param graph     the co-star graph
+	 * @param movieDAO  the movie data access object
+	 * @param personDAO the person data access object
+	 */
+	public PathController(CoStarGraph graph, MovieDAO movieDAO, PersonDAO personDAO) {
+		this.graph = graph;
+		this.movieDAO = movieDAO;
+		this.personDAO = personDAO;
+	}
+
+	/**
+	 * Returns the shortest chain of people from person a to person b, where each
+	 * person starred in a movie with the next, and the movies that join them.
+	 * The hops parameter is the most movies the chain may go through. (default 6,
+	 * limited to 10)
+	 * If either id or hops is not a number, or hops is less than 1, a 400 status
+	 * code is returned.
+	 * If either person does not exist, or there is no chain within the hop limit,
+	 * a 404 status code is returned.
+	 * If the search takes too long, a 503 status code is returned.
+	 * If a database error occurs, a 500 status code is returned, or a 429 if the
+	 * database is too busy to take the query.
+	 *
+	 * @param ctx the Javalin context
+	 */
+	public void getPath(Context ctx) {
+		int from;
+		int to;
+		int hops = DEFAULT_HOPS;
+		try {
+			from = Integer.parseInt(ctx.pathParam("a"));
+			to = Integer.parseInt(ctx.pathParam("b"));
+			if (ctx.queryParam("hops") != null) {
+				hops = Math.min(Integer.parseInt(ctx.queryParam("hops")), MAX_HOPS);
+			}
+		} catch (NumberFormatException e) {
+			ctx.status(400);
+			ctx.result("Invalid id or hops");
+			return;
+		}
+		if (hops < 1) {
+			ctx.status(400);
+			ctx.result("Invalid id or hops");
+			return;
+		}
+
+		if (!graph.hasPerson(from) || !graph.hasPerson(to)) {
+			ctx.status(404);
+			ctx.result("Person not found");
+			return;
+		}
+
+		int[][] path;
+		try {
+			path = graph.findPath(from, to, hops, BUDGET_MILLIS);
+		} catch (PathTimeoutException e) {
+			ctx.status(503);
+			ctx.result("Path search timed out");
+			return;
+		}
+		if (path == CoStarGraph.NO_PATH) {
+			ctx.status(404);
+			ctx.result("No path within " + hops + " hops");
+			return;
+		}
+
+		// both lookups are queued at once
+		CompletableFuture<Map<Integer, Person>> people = personDAO.getPeopleByIdsAsync(ids(path[0]));
+		CompletableFuture<Map<Integer, Movie>> movies = path[1].length == 0
+				? CompletableFuture.completedFuture(Map.of())
+				: movieDAO.getMoviesByIdsAsync(ids(path[1]));
+		DatabaseResponses.respond(ctx, people.thenCombine(movies, (personMap, movieMap) -> {
+			List<Person> chain = new ArrayList<>();
+			for (int id : path[0]) {
+				chain.add(personMap.get(id));
+			}
+			List<Movie> links = new ArrayList<>();
+			for (int id : path[1]) {
+				links.add(movieMap.get(id));
+			}
+			return new PersonPath(chain, links);
+		}), ctx::json);
+	}
+
+	private static List<Integer> ids(int[] values) {
+		List<Integer> ids = new ArrayList<>(values.length);
+		for (int value : values) {
+			ids.add(value);
+		}
+		return ids;
+	}
+}
@@ -1,83 +1,193 @@
 package com.flickfinder.controller;
 
 import com.flickfinder.dao.PersonDAO;
+import com.flickfinder.model.Batch;
 import com.flickfinder.model.Person;
 import io.javalin.http.Context;
 
+import java.io.IOException;
 import java.sql.SQLException;
+import java.util.List;
 
 public class PersonController {
     private final PersonDAO personDAO;
 
+    /**
+     * The serialized JSON of single people, or null to serialize every time.
+     */
+    private final JsonCache jsonCache;
+
     /**
      * Constructs a PersonController object and initializes the personDAO.
      */
     public PersonController(PersonDAO personDAO) {
+        this(personDAO, null);
+    }
+
+    /**
+     * Constructs a PersonController object that sends single people from a
+     * cache of their JSON.
+     *
+     * @param personDAO the person data access object
+     * @param jsonCache the JSON cache, or null for none
+     */
+    public PersonController(PersonDAO personDAO, JsonCache jsonCache) {
         this.personDAO = personDAO;
+        this.jsonCache = jsonCache;
     }
 
     /**
      * Returns a list of all people in the database. (limited to 50)
      * The limit parameter is used to limit the number of people returned.
-     * If a database error occurs, a 500 status code is returned.
+     * The cursor parameter continues from a previous page, the cursor for the
+     * next page is sent in the X-Next-Cursor and Link headers.
+     * With ?stream=true or Accept: application/x-ndjson the page is streamed
+     * as the rows are read, without the next page headers.
+     * With ?ids=1,2,3 the people with those ids are returned instead, see
+     * {@link #getPeopleByIds(Context)}.
+     * If the cursor is invalid, a 400 status code is returned.
+     * If a database error occurs, a 500 status code is returned, or a 429 if the
+     * database is too busy to take the query.
      *
      * @param ctx the Javalin context
      */
     public void getAllPeople(Context ctx) {
+        if (ctx.queryParam("ids") != null) {
+            getPeopleByIds(ctx);
+            return;
+        }
+
         try {
             int limit = 50;
             if (ctx.queryParam("limit") != null && !(Integer.parseInt(ctx.queryParam("limit")) <= 0)) {
                 limit = Integer.parseInt(ctx.queryParam("limit"));
             }
-            ctx.json(personDAO.getAllPeople(limit));
+
+            int afterId;
+            try {
+                afterId = Pagination.afterId(ctx, "people");
+            } catch (IllegalArgumentException e) {
+                ctx.status(400);
+                ctx.result("Invalid cursor");
+                return;
+            }
+
+            if (JsonStreaming.requested(ctx)) {
+                // without a cursor, start before the lowest possible id
+                int after = afterId < 0 ? Integer.MIN_VALUE : afterId;
+                int pageSize = limit;
+                JsonStreaming.<Person>write(ctx, handler -> personDAO.streamPeopleAfter(after, pageSize, handler));
+                return;
+            }
+
+            int pageSize = limit;
+            DatabaseResponses.respond(ctx,
+                    afterId < 0 ? personDAO.getAllPeopleAsync(limit) : personDAO.getPeopleAfterAsync(afterId, limit),
+                    people -> {
+                        if (!people.isEmpty()) {
+                            Pagination.next(ctx, "people", people.size(), people.get(people.size() - 1).getId(), pageSize);
+                        }
+                        ctx.json(people);
+                    });
         } catch (SQLException e) {
-            ctx.status(500);
-            ctx.result("Database error");
+            DatabaseResponses.fail(ctx, e);
+        } catch (IOException e) {
+            // the client went away part way through a stream
             e.printStackTrace();
         }
     }
 
+    /**
+     * Returns the people with the ids in the ids parameter, keyed by id, along
+     * with the ids that did not match a person.
+     * If the ids are invalid, or there are more than 1000, a 400 status code is
+     * returned.
+     * If a database error occurs, a 500 status code is returned, or a 429 if the
+     * database is too busy to take the query.
+     *
+     * @param ctx the Javalin context
+     */
+    public void getPeopleByIds(Context ctx) {
+        List<Integer> ids;
+        try {
+            ids = BatchIds.parse(ctx.queryParam("ids"));
+        } catch (IllegalArgumentException e) {
+            ctx.status(400);
+            ctx.result("Invalid ids");
+            return;
+        }
+
+        DatabaseResponses.respond(ctx, personDAO.getPeopleByIdsAsync(ids), people -> ctx.json(new Batch<>(ids, people)));
+    }
+
     /**
      * Returns the person with the specified id.
+     * A person that was sent before is sent from the JSON cache, without a
+     * query.
      * If the person is not found, a 404 status code is returned.
-     * If a database error occurs, a 500 status code is returned.
+     * If a database error occurs, a 500 status code is returned, or a 429 if the
+     * database is too busy to take the query.
      *
      * @param ctx the Javalin context
      */
     public void getPersonById(Context ctx) {
-        try {
-            int id = Integer.parseInt(ctx.pathParam("id"));
+        int id = Integer.parseInt(ctx.pathParam("id"));
+        if (jsonCache != null && jsonCache.respond(ctx, id)) {
+            return;
+        }
 
-            Person person = personDAO.getPersonById(id);
+        DatabaseResponses.respond(ctx, personDAO.getPersonByIdAsync(id), person -> {
             if (person == null) {
                 ctx.status(404);
                 ctx.result("Person not found");
                 return;
             }
-            ctx.json(personDAO.getPersonById(id));
-        } catch (SQLException e) {
-            ctx.status(500);
-            ctx.result("Database error");
-            e.printStackTrace();
-        }
+            if (jsonCache != null) {
+                jsonCache.respond(ctx, id, person, Person.class);
+                return;
+            }
+            ctx.json(person);
+        });
     }
 
     /**
      * Returns a list of movies by a specified person id.
-     * If a database error occurs, a 500 status code is returned.
+     * If a database error occurs, a 500 status code is returned, or a 429 if the
+     * database is too busy to take the query.
      *
      * @param ctx the Javalin context
      */
 
     public void getMoviesStarringPerson(Context ctx) {
-        try {
-            int id = Integer.parseInt(ctx.pathParam("id"));
+        int id = Integer.parseInt(ctx.pathParam("id"));
 
-            ctx.json(personDAO.getMoviesByStar(id));
-        } catch (SQLException e) {
-            ctx.status(500);
-            ctx.result("Database error");
-            e.printStackTrace();
-        }
+        DatabaseResponses.respond(ctx, personDAO.getMoviesByStarAsync(id), ctx::json);
+    }
+
+    /**
+     * Returns a list of movies directed by a specified person id.
+     * If a database error occurs, a 500 status code is returned, or a 429 if the
+     * database is too busy to take the query.
+     *
+     * @param ctx the Javalin context
+     */
+    public void getMoviesDirectedByPerson(Context ctx) {
+        int id = Integer.parseInt(ctx.pathParam("id"));
+
+        DatabaseResponses.respond(ctx, personDAO.getMoviesByDirectorAsync(id), ctx::json);
+    }
+
+    /**
+     * Returns the movies a specified person id starred in and the movies they
+     * directed, from one query.
+     * If a database error occurs, a 500 status code is returned, or a 429 if the
+     * database is too busy to take the query.
+     *
+     * @param ctx the Javalin context
+     */
+    public void getCredits(Context ctx) {
+        int id = Integer.parseInt(ctx.pathParam("id"));
+
+        DatabaseResponses.respond(ctx, personDAO.getCreditsAsync(id), ctx::json);
     }
 }
\ No newline at end of file
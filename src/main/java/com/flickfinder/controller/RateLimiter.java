@@ -0,0 +1,215 @@
+package com.flickfinder.controller;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.ToIntFunction;
+
+import io.javalin.http.Context;
+
+/**
+ * Per-client admission control, so one client cannot take the whole server.
+ *
+ * Each client has a token bucket that holds up to {@code burst} tokens and
+ * refills at {@code rate} tokens a second. A request takes as many tokens as
+ * its route costs, and when the bucket does not hold that many the request is
+ * answered with 429 before its route runs. A client is the API key it sends in
+ * the {@value #API_KEY_HEADER} header if that is one of the known keys, and its
+ * IP address otherwise, so an unknown key does not buy a fresh bucket.
+ *
+ * A bucket is kept as a single long, the time at which it will be full again
+ * (the generic cell rate algorithm), so taking tokens is one compare-and-set
+ * and needs no lock. The buckets live in a {@link ConcurrentHashMap}, whose
+ * reads do not lock and whose writes lock one bin, so clients do not contend
+ * with each other. Once a second the buckets that have refilled completely are
+ * dropped, since a new bucket would be the same, which keeps the map as small
+ * as the number of recently active clients.
+ *
+ * Every limited response carries the RateLimit-Limit, RateLimit-Remaining and
+ * RateLimit-Reset headers, and a 429 also carries Retry-After.
+ */
+public class RateLimiter {
+
+	/**
+	 * The header that carries a client's API key.
+	 */
+	public static final String API_KEY_HEADER = "X-API-Key";
+
+	/**
+	 * How often the buckets that have refilled are dropped.
+	 */
+	static final long SWEEP_NANOS = 1_000_000_000L;
+
+	/**
+	 * The nanoseconds it takes to refill one token.
+	 */
+	private final long tokenNanos;
+
+	/**
+	 * The most tokens a bucket holds.
+	 */
+	private final int burst;
+
+	private final ToIntFunction<Context> cost;
+	private final Set<String> apiKeys;
+	private final LongSupplier clock;
+
+	/**
+	 * The time each client's bucket will be full again, in the clock's
+	 * nanoseconds.
+	 */
+	private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+	private final AtomicLong nextSweep;
+
+	private final LongAdder allowed = new LongAdder();
+	private final LongAdder rejected = new LongAdder();
+
+	/**
+	 * Constructs a RateLimiter object.
+	 *
+	 * @param rate    the tokens a second each client's bucket refills at
+	 * @param burst   the most tokens a bucket holds
+	 * @param cost    the tokens a request takes, 0 to let it through without
+	 *                counting; a cost above the burst is taken as the burst
+	 * @param apiKeys the API keys that identify a client on their own
+	 */
+	public RateLimiter(int rate, int burst, ToIntFunction<Context> cost, Set<String> apiKeys) {
+		this(rate, burst, cost, apiKeys, System::nanoTime);
+	}
+
+	RateLimiter(int rate, int burst, ToIntFunction<Context> cost, Set<String> apiKeys, LongSupplier clock) {
+		if (rate <= 0 || burst <= 0) {
+			throw new IllegalArgumentException("rate and burst must be positive");
+		}
+		this.tokenNanos = 1_000_000_000L / rate;
+		this.burst = burst;
+		this.cost = cost;
+		this.apiKeys = apiKeys;
+		this.clock = clock;
+		this.nextSweep = new AtomicLong(clock.getAsLong() + SWEEP_NANOS);
+	}
+
+	/**
+	 * Takes a request's tokens from its client's bucket, or answers it with 429
+	 * and skips its route when there are not enough. This is registered as a
+	 * before handler.
+	 *
+	 * @param ctx the Javalin context
+	 */
+	public void admit(Context ctx) {
+		int tokens = Math.min(cost.applyAsInt(ctx), burst);
+		if (tokens <= 0) {
+			return;
+		}
+		long now = clock.getAsLong();
+		sweep(now);
+
+		String client = client(ctx);
+		AtomicLong bucket = buckets.get(client);
+		if (bucket == null) {
+			bucket = buckets.computeIfAbsent(client, key -> new AtomicLong(now));
+		}
+
+		long capacity = burst * tokenNanos;
+		long full;
+		long next;
+		do {
+			full = bucket.get();
+			next = Math.max(full, now) + tokens * tokenNanos;
+			if (next - now > capacity) {
+				rejected.increment();
+				headers(ctx, full - now, 0);
+				long wait = next - now - capacity;
+				ctx.header("Retry-After", String.valueOf(Math.max(1, seconds(wait))));
+				ctx.status(429);
+				ctx.result("Too many requests");
+				ctx.skipRemainingHandlers();
+				return;
+			}
+		} while (!bucket.compareAndSet(full, next));
+
+		allowed.increment();
+		headers(ctx, next - now, (int) ((capacity - (next - now)) / tokenNanos));
+	}
+
+	/**
+	 * Returns who a request is from: a known API key, or the IP address.
+	 *
+	 * @param ctx the Javalin context
+	 * @return the key of the client's bucket
+	 */
+	String client(Context ctx) {
+		String key = ctx.header(API_KEY_HEADER);
+		if (key != null && apiKeys.contains(key)) {
+			return "key:" + key;
+		}
+		return "ip:" + ctx.ip();
+	}
+
+	private void headers(Context ctx, long untilFull, int remaining) {
+		ctx.header("RateLimit-Limit", String.valueOf(burst));
+		ctx.header("RateLimit-Remaining", String.valueOf(remaining));
+		ctx.header("RateLimit-Reset", String.valueOf(seconds(Math.max(0, untilFull))));
+	}
+
+	/**
+	 * Returns a number of nanoseconds in whole seconds, rounded up.
+	 */
+	private static long seconds(long nanos) {
+		return (nanos + 999_999_999L) / 1_000_000_000L;
+	}
+
+	/**
+	 * Drops the buckets that have refilled, at most once a second. A request
+	 * that took tokens from a bucket just as it was dropped has them back, which
+	 * is at most one request per client per sweep.
+	 */
+	private void sweep(long now) {
+		long due = nextSweep.get();
+		if (now - due < 0 || !nextSweep.compareAndSet(due, now + SWEEP_NANOS)) {
+			return;
+		}
+		buckets.values().removeIf(bucket -> bucket.get() - now <= 0);
+	}
+
+	/**
+	 * Returns the number of clients with a bucket that has not refilled.
+	 *
+	 * @return the number of clients
+	 */
+	public int getClients() {
+		return buckets.size();
+	}
+
+	/**
+	 * Returns the number of requests let through.
+	 *
+	 * @return the number of allowed requests
+	 */
+	public long getAllowed() {
+		return allowed.sum();
+	}
+
+	/**
+	 * Returns the number of requests answered with 429.
+	 *
+	 * @return the number of rejected requests
+	 */
+	public long getRejected() {
+		return rejected.sum();
+	}
+
+	/**
+	 * Returns the limiter's counters.
+	 * This is primarily used for debugging purposes.
+	 *
+	 * @return a string representation of the limiter
+	 */
+	@Override
+	public String toString() {
+		return "RateLimiter [burst=" + burst + ", tokenNanos=" + tokenNanos + ", clients=" + getClients()
+				+ ", allowed=" + getAllowed() + ", rejected=" + getRejected() + "]";
+	}
+}
@@ -0,0 +1,101 @@
+package com.flickfinder.controller;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.flickfinder.dao.MovieDAO;
+import com.flickfinder.dao.PersonDAO;
+import com.flickfinder.search.SearchEngine;
+
+import io.javalin.http.Context;
+
+/**
+ * The controller for the search endpoint.
+ *
+ * The search engine finds the ids of the best matches, and the DAOs look the
+ * rows up in bulk, so the results are the same movies and people that the other
+ * routes return.
+ */
+public class SearchController {
+
+	/**
+	 * The search engine.
+	 */
+	private final SearchEngine searchEngine;
+
+	/**
+	 * The movie data access object.
+	 */
+	private final MovieDAO movieDAO;
+
+	/**
+	 * The person data access object.
+	 */
+	private final PersonDAO personDAO;
+
+	/**
+	 * Constructs a SearchController object.
+	 *
+	 * @param searchEngine the search engine
+	 * @param movieDAO     the movie data access object
+	 * @param personDAO    the person data access object
+	 */
+	public SearchController(SearchEngine searchEngine, MovieDAO movieDAO, PersonDAO personDAO) {
+		this.searchEngine = searchEngine;
+		this.movieDAO = movieDAO;
+		this.personDAO = personDAO;
+	}
+
+	/**
+	 * Returns the movies whose titles, or the people whose names, best match the
+	 * q parameter, best match first.
+	 * The type parameter is movie (the default) or person, and the limit
+	 * parameter is used to limit the number of results returned. (limited to 50)
+	 * If q is missing or the type is unknown, a 400 status code is returned.
+	 * If a database error occurs, a 500 status code is returned, or a 429 if the
+	 * database is too busy to take the query.
+	 *
+	 * @param ctx the Javalin context
+	 */
+	public void search(Context ctx) {
+		try {
+			String query = ctx.queryParam("q");
+			if (query == null || query.isBlank()) {
+				ctx.status(400);
+				ctx.result("Missing query");
+				return;
+			}
+
+			int limit = 50;
+			if (ctx.queryParam("limit") != null && !(Integer.parseInt(ctx.queryParam("limit")) <= 0)) {
+				limit = Integer.parseInt(ctx.queryParam("limit"));
+			}
+
+			String type = ctx.queryParam("type") == null ? "movie" : ctx.queryParam("type");
+			switch (type) {
+			case "movie":
+				List<Integer> movieIds = searchEngine.searchMovies(query, limit);
+				if (movieIds.isEmpty()) {
+					ctx.json(new ArrayList<>());
+				} else {
+					DatabaseResponses.respond(ctx, movieDAO.getMoviesByIdsAsync(movieIds), movies -> ctx.json(movies.values()));
+				}
+				break;
+			case "person":
+				List<Integer> personIds = searchEngine.searchPeople(query, limit);
+				if (personIds.isEmpty()) {
+					ctx.json(new ArrayList<>());
+				} else {
+					DatabaseResponses.respond(ctx, personDAO.getPeopleByIdsAsync(personIds), people -> ctx.json(people.values()));
+				}
+				break;
+			default:
+				ctx.status(400);
+				ctx.result("Unknown type");
+			}
+		} catch (SQLException e) {
+			DatabaseResponses.fail(ctx, e);
+		}
+	}
+}
@@ -0,0 +1,106 @@
+package com.flickfinder.controller;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import com.flickfinder.catalog.SimilarityIndex;
+import com.flickfinder.catalog.SimilarityIndex.Matches;
+import com.flickfinder.dao.MovieDAO;
+import com.flickfinder.model.Movie;
+import com.flickfinder.model.SimilarMovie;
+
+import io.javalin.http.Context;
+
+/**
+ * The controller for the similar movies endpoint.
+ *
+ * The similarity index finds and ranks the movies that share cast and
+ * directors with a movie, and the DAO looks the movies up in bulk.
+ */
+public class SimilarController {
+
+	/**
+	 * The number of movies when the request does not give a limit.
+	 */
+	static final int DEFAULT_LIMIT = 10;
+
+	/**
+	 * The MinHash buckets of movie credits.
+	 */
+	private final SimilarityIndex index;
+
+	/**
+	 * The movie data access object.
+	 */
+	private final MovieDAO movieDAO;
+
+	/**
+	 * Constructs a SimilarController object.
+	 *
+	 * @param index    the similarity index
+	 * @param movieDAO the movie data access object
+	 */
+	public SimilarController(SimilarityIndex index, MovieDAO movieDAO) {
+		this.index = index;
+		this.movieDAO = movieDAO;
+	}
+
+	/**
+	 * Returns the movies whose cast and directors overlap most with a movie's,
+	 * with how many people they share and their similarity, most similar first.
+	 * The limit parameter is the number of movies to return. (default 10,
+	 * limited to 100)
+	 * With weighted=true the similarity is multiplied by each movie's rating out
+	 * of 10.
+	 * If the id or limit is not a number, or the limit is not positive, a 400
+	 * status code is returned.
+	 * If the movie does not exist, a 404 status code is returned.
+	 * If a database error occurs, a 500 status code is returned, or a 429 if the
+	 * database is too busy to take the query.
+	 *
+	 * @param ctx the Javalin context
+	 */
+	public void getSimilar(Context ctx) {
+		int id;
+		int limit = DEFAULT_LIMIT;
+		try {
+			id = Integer.parseInt(ctx.pathParam("id"));
+			if (ctx.queryParam("limit") != null) {
+				limit = Integer.parseInt(ctx.queryParam("limit"));
+			}
+		} catch (NumberFormatException e) {
+			ctx.status(400);
+			ctx.result("Invalid id or limit");
+			return;
+		}
+		if (limit <= 0) {
+			ctx.status(400);
+			ctx.result("Invalid id or limit");
+			return;
+		}
+		boolean weighted = Boolean.parseBoolean(ctx.queryParam("weighted"));
+
+		Matches matches = index.similar(id, limit, weighted);
+		if (matches == null) {
+			ctx.status(404);
+			ctx.result("Movie not found");
+			return;
+		}
+
+		List<Integer> ids = new ArrayList<>(matches.size());
+		for (int i = 0; i < matches.size(); i++) {
+			ids.add(matches.movieId(i));
+		}
+		CompletableFuture<Map<Integer, Movie>> lookup = ids.isEmpty() ? CompletableFuture.completedFuture(Map.of())
+				: movieDAO.getMoviesByIdsAsync(ids);
+		DatabaseResponses.respond(ctx, lookup.thenApply(movies -> {
+			List<SimilarMovie> similar = new ArrayList<>(ids.size());
+			for (int i = 0; i < matches.size(); i++) {
+				similar.add(new SimilarMovie(movies.get(matches.movieId(i)), matches.shared(i), matches.score(i)));
+			}
+			return similar;
+		}), ctx::json);
+	}
+}
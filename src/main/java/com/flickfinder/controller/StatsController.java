@@ -0,0 +1,89 @@
+package com.flickfinder.controller;
+
+import java.util.concurrent.ForkJoinPool;
+
+import com.flickfinder.catalog.RatingAggregator;
+import com.flickfinder.catalog.RatingIndex;
+
+import io.javalin.http.Context;
+
+/**
+ * The controller for the rating statistics endpoint.
+ *
+ * The statistics are summed from the rating index in memory, on a fork-join
+ * pool, so a dashboard gets every year at once without fetching the movies.
+ */
+public class StatsController {
+
+	/**
+	 * The rated movies of every year.
+	 */
+	private final RatingIndex index;
+
+	/**
+	 * The pool the statistics are summed on.
+	 */
+	private final ForkJoinPool pool;
+
+	/**
+	 * Constructs a StatsController object that sums on the common pool.
+	 *
+	 * @param index the rating index
+	 */
+	public StatsController(RatingIndex index) {
+		this(index, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Constructs a StatsController object.
+	 *
+	 * @param index the rating index
+	 * @param pool  the pool to sum on
+	 */
+	public StatsController(RatingIndex index, ForkJoinPool pool) {
+		this.index = index;
+		this.pool = pool;
+	}
+
+	/**
+	 * Returns the number of rated movies, their average, lowest and highest
+	 * rating, their votes and a histogram of each, per year or per decade.
+	 * The from and to parameters are the first and last year. (default all
+	 * years)
+	 * The groupBy parameter is year or decade. (default year)
+	 * If from or to is not a number, from is after to, or groupBy is neither year
+	 * nor decade, a 400 status code is returned.
+	 *
+	 * @param ctx the Javalin context
+	 */
+	public void getRatingStats(Context ctx) {
+		int from = Integer.MIN_VALUE;
+		int to = Integer.MAX_VALUE;
+		try {
+			if (ctx.queryParam("from") != null) {
+				from = Integer.parseInt(ctx.queryParam("from"));
+			}
+			if (ctx.queryParam("to") != null) {
+				to = Integer.parseInt(ctx.queryParam("to"));
+			}
+		} catch (NumberFormatException e) {
+			ctx.status(400);
+			ctx.result("Invalid from or to");
+			return;
+		}
+		if (from > to) {
+			ctx.status(400);
+			ctx.result("Invalid range, from is after to");
+			return;
+		}
+
+		String groupBy = ctx.queryParam("groupBy");
+		if (groupBy != null && !groupBy.equals("year") && !groupBy.equals("decade")) {
+			ctx.status(400);
+			ctx.result("Invalid groupBy, use year or decade");
+			return;
+		}
+
+		ctx.json(RatingAggregator.aggregate(index, from, to, "decade".equals(groupBy), pool));
+	}
+}
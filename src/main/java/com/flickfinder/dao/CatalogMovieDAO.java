@@ -0,0 +1,183 @@
+package com.flickfinder.dao;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import com.flickfinder.catalog.Adjacency;
+import com.flickfinder.catalog.ColumnarCatalog;
+import com.flickfinder.catalog.RatingIndex;
+import com.flickfinder.model.Movie;
+import com.flickfinder.model.Person;
+import com.flickfinder.util.RowHandler;
+
+/**
+ * A MovieDAO that answers queries from the in-memory {@link ColumnarCatalog}
+ * instead of SQLite.
+ *
+ * The results are the same as the SQL queries in {@link MovieDAO}, in the same
+ * order, so the two can be swapped freely. *
+ * The async methods answer straight away on the calling thread instead of
+ * queueing on the database executor, which is sized for SQLite and would turn
+ * lookups away when it is busy although they never touch the database.
+ */
+public class CatalogMovieDAO extends MovieDAO {
+
+	/**
+	 * The catalog to read from.
+	 */
+	private final ColumnarCatalog catalog;
+
+	/**
+	 * Constructs a CatalogMovieDAO object that reads from the given catalog.
+	 *
+	 * @param catalog     the catalog
+	 * @param ratingIndex the rating index that answers the ratings leaderboard,
+	 *                    the one {@link com.flickfinder.util.Database#getRatingIndex()}
+	 *                    shares with the other routes
+	 */
+	public CatalogMovieDAO(ColumnarCatalog catalog, RatingIndex ratingIndex) {
+		super(ratingIndex);
+		this.catalog = catalog;
+	}
+
+	@Override
+	public List<Movie> getAllMovies(int limit) {
+		// like SQL, a negative limit means no limit
+		int count = limit < 0 ? catalog.movieCount() : Math.min(limit, catalog.movieCount());
+		List<Movie> movies = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			movies.add(catalog.movie(i));
+		}
+		return movies;
+	}
+
+	@Override
+	public CompletableFuture<List<Movie>> getAllMoviesAsync(int limit) {
+		return CompletableFuture.completedFuture(getAllMovies(limit));
+	}
+
+	@Override
+	public List<Movie> getMoviesAfter(int afterId, int limit) {
+		List<Movie> movies = new ArrayList<>();
+		for (int i = catalog.movieIndexAfter(afterId); i < catalog.movieCount()
+				&& (limit < 0 || movies.size() < limit); i++) {
+			movies.add(catalog.movie(i));
+		}
+		return movies;
+	}
+
+	@Override
+	public CompletableFuture<List<Movie>> getMoviesAfterAsync(int afterId, int limit) {
+		return CompletableFuture.completedFuture(getMoviesAfter(afterId, limit));
+	}
+
+	@Override
+	public int streamMoviesAfter(int afterId, int limit, RowHandler<Movie> handler) throws IOException {
+		int rows = 0;
+		for (int i = catalog.movieIndexAfter(afterId); i < catalog.movieCount() && (limit < 0 || rows < limit); i++) {
+			handler.handle(catalog.movie(i));
+			rows++;
+		}
+		return rows;
+	}
+
+	@Override
+	int streamMoviesAfter(int afterId, int limit, int chunk, RowHandler<Movie> handler) throws IOException {
+		// nothing is borrowed, so there is nothing to chunk
+		return streamMoviesAfter(afterId, limit, handler);
+	}
+
+	@Override
+	public Movie getMovieById(int id) {
+		int movie = catalog.movieIndex(id);
+
+		// return null if the id does not return a movie.
+		return movie < 0 ? null : catalog.movie(movie);
+	}
+
+	@Override
+	public CompletableFuture<Movie> getMovieByIdAsync(int id) {
+		return CompletableFuture.completedFuture(getMovieById(id));
+	}
+
+	@Override
+	public Map<Integer, Movie> getMoviesByIds(List<Integer> ids) {
+		Map<Integer, Movie> movies = new LinkedHashMap<>();
+		for (int id : ids) {
+			int movie = catalog.movieIndex(id);
+			if (movie >= 0) {
+				movies.put(id, catalog.movie(movie));
+			}
+		}
+		return movies;
+	}
+
+	@Override
+	public CompletableFuture<Map<Integer, Movie>> getMoviesByIdsAsync(List<Integer> ids) {
+		return CompletableFuture.completedFuture(getMoviesByIds(ids));
+	}
+
+	@Override
+	public List<Person> getStarsByMovie(int id) {
+		int movie = catalog.movieIndex(id);
+		if (movie < 0) {
+			return new ArrayList<>();
+		}
+		return stars(movie);
+	}
+
+	@Override
+	public CompletableFuture<List<Person>> getStarsByMovieAsync(int id) {
+		return CompletableFuture.completedFuture(getStarsByMovie(id));
+	}
+
+	@Override
+	public Map<Integer, List<Person>> getStarsByMovies(List<Integer> ids) {
+		Map<Integer, List<Person>> stars = new LinkedHashMap<>();
+		for (int id : ids) {
+			int movie = catalog.movieIndex(id);
+			if (movie >= 0) {
+				stars.put(id, stars(movie));
+			}
+		}
+		return stars;
+	}
+
+	@Override
+	public CompletableFuture<Map<Integer, List<Person>>> getStarsByMoviesAsync(List<Integer> ids) {
+		return CompletableFuture.completedFuture(getStarsByMovies(ids));
+	}
+
+	@Override
+	public List<Person> getDirectorsByMovie(int id) {
+		int movie = catalog.movieIndex(id);
+		if (movie < 0) {
+			return new ArrayList<>();
+		}
+
+		Adjacency directors = catalog.directorsByMovie();
+		List<Person> people = new ArrayList<>(directors.degree(movie));
+		for (int k = directors.start(movie); k < directors.end(movie); k++) {
+			people.add(catalog.person(directors.target(k)));
+		}
+		return people;
+	}
+
+	@Override
+	public CompletableFuture<List<Person>> getDirectorsByMovieAsync(int id) {
+		return CompletableFuture.completedFuture(getDirectorsByMovie(id));
+	}
+
+	private List<Person> stars(int movie) {
+		Adjacency stars = catalog.starsByMovie();
+		List<Person> people = new ArrayList<>(stars.degree(movie));
+		for (int k = stars.start(movie); k < stars.end(movie); k++) {
+			people.add(catalog.person(stars.target(k)));
+		}
+		return people;
+	}
+}
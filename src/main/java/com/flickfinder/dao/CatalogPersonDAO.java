@@ -0,0 +1,178 @@
+package com.flickfinder.dao;
+
+import com.flickfinder.catalog.Adjacency;
+import com.flickfinder.catalog.ColumnarCatalog;
+import com.flickfinder.model.Credits;
+import com.flickfinder.model.Movie;
+import com.flickfinder.model.Person;
+import com.flickfinder.util.RowHandler;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A PersonDAO that answers queries from the in-memory {@link ColumnarCatalog}
+ * instead of SQLite.
+ *
+ * The results are the same as the SQL queries in {@link PersonDAO}, in the same
+ * order, so the two can be swapped freely. *
+ * The async methods answer straight away on the calling thread instead of
+ * queueing on the database executor, which is sized for SQLite and would turn
+ * lookups away when it is busy although they never touch the database.
+ */
+public class CatalogPersonDAO extends PersonDAO {
+
+    /**
+     * The catalog to read from.
+     */
+    private final ColumnarCatalog catalog;
+
+    /**
+     * Constructs a CatalogPersonDAO object that reads from the given catalog.
+     *
+     * @param catalog the catalog
+     */
+    public CatalogPersonDAO(ColumnarCatalog catalog) {
+        this.catalog = catalog;
+    }
+
+    @Override
+    public List<Person> getAllPeople(int limit) {
+        // like SQL, a negative limit means no limit
+        int count = limit < 0 ? catalog.personCount() : Math.min(limit, catalog.personCount());
+        List<Person> people = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            people.add(catalog.person(i));
+        }
+        return people;
+    }
+
+    @Override
+    public CompletableFuture<List<Person>> getAllPeopleAsync(int limit) {
+        return CompletableFuture.completedFuture(getAllPeople(limit));
+    }
+
+    @Override
+    public List<Person> getPeopleAfter(int afterId, int limit) {
+        List<Person> people = new ArrayList<>();
+        for (int i = catalog.personIndexAfter(afterId); i < catalog.personCount()
+                && (limit < 0 || people.size() < limit); i++) {
+            people.add(catalog.person(i));
+        }
+        return people;
+    }
+
+    @Override
+    public CompletableFuture<List<Person>> getPeopleAfterAsync(int afterId, int limit) {
+        return CompletableFuture.completedFuture(getPeopleAfter(afterId, limit));
+    }
+
+    @Override
+    public int streamPeopleAfter(int afterId, int limit, RowHandler<Person> handler) throws IOException {
+        int rows = 0;
+        for (int i = catalog.personIndexAfter(afterId); i < catalog.personCount() && (limit < 0 || rows < limit); i++) {
+            handler.handle(catalog.person(i));
+            rows++;
+        }
+        return rows;
+    }
+
+    @Override
+    int streamPeopleAfter(int afterId, int limit, int chunk, RowHandler<Person> handler) throws IOException {
+        // nothing is borrowed, so there is nothing to chunk
+        return streamPeopleAfter(afterId, limit, handler);
+    }
+
+    @Override
+    public Person getPersonById(int id) {
+        int person = catalog.personIndex(id);
+
+        // return null if the id does not return a person.
+        return person < 0 ? null : catalog.person(person);
+    }
+
+    @Override
+    public CompletableFuture<Person> getPersonByIdAsync(int id) {
+        return CompletableFuture.completedFuture(getPersonById(id));
+    }
+
+    @Override
+    public Map<Integer, Person> getPeopleByIds(List<Integer> ids) {
+        Map<Integer, Person> people = new LinkedHashMap<>();
+        for (int id : ids) {
+            int person = catalog.personIndex(id);
+            if (person >= 0) {
+                people.put(id, catalog.person(person));
+            }
+        }
+        return people;
+    }
+
+    @Override
+    public CompletableFuture<Map<Integer, Person>> getPeopleByIdsAsync(List<Integer> ids) {
+        return CompletableFuture.completedFuture(getPeopleByIds(ids));
+    }
+
+    @Override
+    public List<Movie> getMoviesByStar(int id) {
+        int person = catalog.personIndex(id);
+        if (person < 0) {
+            return new ArrayList<>();
+        }
+
+        return movies(catalog.moviesByStar(), person);
+    }
+
+    @Override
+    public CompletableFuture<List<Movie>> getMoviesByStarAsync(int id) {
+        return CompletableFuture.completedFuture(getMoviesByStar(id));
+    }
+
+    @Override
+    public List<Movie> getMoviesByDirector(int id) {
+        int person = catalog.personIndex(id);
+        if (person < 0) {
+            return new ArrayList<>();
+        }
+        return movies(catalog.moviesByDirector(), person);
+    }
+
+    @Override
+    public CompletableFuture<List<Movie>> getMoviesByDirectorAsync(int id) {
+        return CompletableFuture.completedFuture(getMoviesByDirector(id));
+    }
+
+    @Override
+    public Credits getCredits(int id) {
+        int person = catalog.personIndex(id);
+        if (person < 0) {
+            return new Credits(new ArrayList<>(), new ArrayList<>());
+        }
+        return new Credits(movies(catalog.moviesByStar(), person), movies(catalog.moviesByDirector(), person));
+    }
+
+    @Override
+    public CompletableFuture<Credits> getCreditsAsync(int id) {
+        return CompletableFuture.completedFuture(getCredits(id));
+    }
+
+    private List<Movie> movies(Adjacency movies, int person) {
+        // the list is in the order of the credit rows, and movie indexes are in
+        // id order, so sorting them gives the id order the SQL query returns
+        int[] indexes = new int[movies.degree(person)];
+        for (int k = movies.start(person); k < movies.end(person); k++) {
+            indexes[k - movies.start(person)] = movies.target(k);
+        }
+        Arrays.sort(indexes);
+        List<Movie> result = new ArrayList<>(indexes.length);
+        for (int movie : indexes) {
+            result.add(catalog.movie(movie));
+        }
+        return result;
+    }
+}
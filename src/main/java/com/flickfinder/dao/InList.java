@@ -0,0 +1,46 @@
+package com.flickfinder.dao;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Helpers for queries that look up many ids with an {@code IN (?, ?, ...)}
+ * list.
+ *
+ * The ids are sent in chunks of {@link #CHUNK_SIZE}. Every chunk has the same
+ * number of placeholders, a short last chunk is padded by repeating its last id,
+ * so each query is only ever prepared once and stays in the statement cache.
+ */
+final class InList {
+
+	/**
+	 * The number of ids bound per query, well below SQLite's limit on
+	 * parameters.
+	 */
+	static final int CHUNK_SIZE = 100;
+
+	/**
+	 * The placeholder list for one chunk, e.g. {@code (?,?,?)}.
+	 */
+	static final String PLACEHOLDERS = "(" + "?,".repeat(CHUNK_SIZE - 1) + "?)";
+
+	private InList() {
+	}
+
+	/**
+	 * Binds one chunk of ids to a statement, starting at the first parameter.
+	 *
+	 * @param ps    the statement
+	 * @param ids   all of the ids
+	 * @param start the index of the first id in the chunk
+	 * @throws SQLException if a parameter cannot be set
+	 */
+	static void bind(PreparedStatement ps, List<Integer> ids, int start) throws SQLException {
+		int end = Math.min(start + CHUNK_SIZE, ids.size());
+		for (int i = 0; i < CHUNK_SIZE; i++) {
+			// pad with the last id, IN ignores the duplicates
+			ps.setInt(i + 1, ids.get(Math.min(start + i, end - 1)));
+		}
+	}
+}
@@ -1,17 +1,24 @@
 package com.flickfinder.dao;
 
-import java.sql.Connection;
+import java.io.IOException;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.Set;
 
+import com.flickfinder.catalog.RatingIndex;
 import com.flickfinder.model.Movie;
 import com.flickfinder.model.MovieRating;
 import com.flickfinder.model.Person;
 import com.flickfinder.util.Database;
+import com.flickfinder.util.RowHandler;
 
 /**
  * The Data Access Object for the Movie table.
@@ -23,17 +30,39 @@ import com.flickfinder.util.Database;
 public class MovieDAO {
 
 	/**
-	 * The connection to the database.
+	 * The database that connections are borrowed from.
 	 */
-	private final Connection connection;
+	private final Database database;
+
+	/**
+	 * The precomputed ratings leaderboard, or null to run the SQL query.
+	 */
+	private final RatingIndex ratingIndex;
+
+	/**
+	 * The most movies {@link #streamMoviesAfter(int, int, RowHandler)} reads
+	 * with one connection.
+	 */
+	static final int STREAM_CHUNK = 500;
 
 	/**
 	 * Constructs a SQLiteMovieDAO object and gets the database connection.
 	 * 
 	 */
 	public MovieDAO() {
-		Database database = Database.getInstance();
-		connection = database.getConnection();
+		this(null);
+	}
+
+	/**
+	 * Constructs a SQLiteMovieDAO object that answers
+	 * {@link #getMoviesByRatingOrder(int, int, int)} from a rating index instead
+	 * of SQLite.
+	 *
+	 * @param ratingIndex the rating index, or null to use SQLite
+	 */
+	public MovieDAO(RatingIndex ratingIndex) {
+		database = Database.getInstance();
+		this.ratingIndex = ratingIndex;
 	}
 
 	/**
@@ -46,18 +75,106 @@ public class MovieDAO {
 	 */
 
 	public List<Movie> getAllMovies(int limit) throws SQLException {
-		List<Movie> movies = new ArrayList<>();
-
-		String statement = "select * from movies limit ?";
-		PreparedStatement ps = connection.prepareStatement(statement);
-		ps.setInt(1, limit);
-		ResultSet rs = ps.executeQuery();
-		
-		while (rs.next()) {
-			movies.add(new Movie(rs.getInt("id"), rs.getString("title"), rs.getInt("year")));
-		}
+		return database.withConnection("MovieDAO.getAllMovies", limit, connection -> {
+			List<Movie> movies = new ArrayList<>();
+
+			String statement = "select * from movies limit ?";
+			PreparedStatement ps = database.prepareStatement(connection, statement);
+			ps.setInt(1, limit);
+			try (ResultSet rs = ps.executeQuery()) {
+				while (rs.next()) {
+					movies.add(new Movie(rs.getInt("id"), rs.getString("title"), rs.getInt("year")));
+				}
+			}
 
-		return movies;
+			return movies;
+		});
+	}
+
+	/**
+	 * Does the same as {@link #getAllMovies(int)}, on the database executor.
+	 *
+	 * @param limit the number of movies to return
+	 * @return a list of all movies in the database, when the query is done
+	 */
+	public CompletableFuture<List<Movie>> getAllMoviesAsync(int limit) {
+		return database.async(() -> getAllMovies(limit));
+	}
+
+	/**
+	 * Returns a page of movies with an id greater than the given one, in id
+	 * order. This seeks through the primary key, so every page costs the same.
+	 *
+	 * @param afterId the last id of the previous page, or 0 for the first page
+	 * @param limit   the number of movies to return
+	 * @return a page of movies
+	 * @throws SQLException if a database error occurs
+	 */
+	public List<Movie> getMoviesAfter(int afterId, int limit) throws SQLException {
+		return database.withConnection("MovieDAO.getMoviesAfter", List.of(afterId, limit), connection -> {
+			List<Movie> movies = new ArrayList<>();
+
+			String statement = "select * from movies where id > ? order by id limit ?";
+			PreparedStatement ps = database.prepareStatement(connection, statement);
+			ps.setInt(1, afterId);
+			ps.setInt(2, limit);
+			try (ResultSet rs = ps.executeQuery()) {
+				while (rs.next()) {
+					movies.add(new Movie(rs.getInt("id"), rs.getString("title"), rs.getInt("year")));
+				}
+			}
+
+			return movies;
+		});
+	}
+
+	/**
+	 * Does the same as {@link #getMoviesAfter(int, int)}, on the database executor.
+	 *
+	 * @param afterId the last id of the previous page, or 0 for the first page
+	 * @param limit   the number of movies to return
+	 * @return a page of movies, when the query is done
+	 */
+	public CompletableFuture<List<Movie>> getMoviesAfterAsync(int afterId, int limit) {
+		return database.async(() -> getMoviesAfter(afterId, limit));
+	}
+
+	/**
+	 * Passes a page of movies with an id greater than the given one to a handler,
+	 * so the movies are never all in memory at once.
+	 * The page is read in chunks of {@value #STREAM_CHUNK} movies through
+	 * {@link #getMoviesAfter(int, int)}, each on the database executor, so the
+	 * connection is given back between chunks instead of being held while the
+	 * rows are written to a slow client.
+	 *
+	 * @param afterId the last id of the previous page
+	 * @param limit   the number of movies to pass on, or a negative number for all
+	 * @param handler the handler for each movie
+	 * @return the number of movies passed on
+	 * @throws SQLException if a database error occurs
+	 * @throws IOException  if the handler fails
+	 */
+	public int streamMoviesAfter(int afterId, int limit, RowHandler<Movie> handler) throws SQLException, IOException {
+		return streamMoviesAfter(afterId, limit, STREAM_CHUNK, handler);
+	}
+
+	int streamMoviesAfter(int afterId, int limit, int chunk, RowHandler<Movie> handler)
+			throws SQLException, IOException {
+		int rows = 0;
+		int after = afterId;
+		while (limit < 0 || rows < limit) {
+			int size = limit < 0 ? chunk : Math.min(chunk, limit - rows);
+			List<Movie> movies = getMoviesAfter(after, size);
+			for (Movie movie : movies) {
+				handler.handle(movie);
+			}
+			rows += movies.size();
+			if (movies.size() < size) {
+				break;
+			}
+			after = movies.get(movies.size() - 1).getId();
+		}
+		return rows;
 	}
 
 	/**
@@ -68,21 +185,78 @@ public class MovieDAO {
 	 * @throws SQLException if a database error occurs
 	 */
 	public Movie getMovieById(int id) throws SQLException {
+		return database.withConnection("MovieDAO.getMovieById", id, connection -> {
+			String statement = "select * from movies where id = ?";
+			PreparedStatement ps = database.prepareStatement(connection, statement);
+			ps.setInt(1, id);
+			try (ResultSet rs = ps.executeQuery()) {
+				if (rs.next()) {
 
-		String statement = "select * from movies where id = ?";
-		PreparedStatement ps = connection.prepareStatement(statement);
-		ps.setInt(1, id);
-		ResultSet rs = ps.executeQuery();
+					return new Movie(rs.getInt("id"), rs.getString("title"), rs.getInt("year"));
+				}
+			}
 
-		if (rs.next()) {
+			// return null if the id does not return a movie.
 
-			return new Movie(rs.getInt("id"), rs.getString("title"), rs.getInt("year"));
-		}
-		
-		// return null if the id does not return a movie.
+			return null;
+		});
+	}
+
+	/**
+	 * Does the same as {@link #getMovieById(int)}, on the database executor.
+	 * Concurrent calls with the same arguments share one query.
+	 *
+	 * @param id the id of the movie
+	 * @return the movie with the specified id, when the query is done
+	 */
+	public CompletableFuture<Movie> getMovieByIdAsync(int id) {
+		return database.async("MovieDAO.getMovieById:" + id, () -> getMovieById(id));
+	}
+
+	/**
+	 * Returns the movies with the specified ids, fetched in as few queries as
+	 * possible.
+	 * Ids that do not match a movie are left out of the map.
+	 *
+	 * @param ids the ids of the movies
+	 * @return the movies keyed by id, in the order of the ids
+	 * @throws SQLException if a database error occurs
+	 */
+	public Map<Integer, Movie> getMoviesByIds(List<Integer> ids) throws SQLException {
+		return database.withConnection("MovieDAO.getMoviesByIds", ids, connection -> {
+			Map<Integer, Movie> found = new LinkedHashMap<>();
 
-		return null;
+			String statement = "select * from movies where id in " + InList.PLACEHOLDERS;
+			PreparedStatement ps = database.prepareStatement(connection, statement);
+			for (int start = 0; start < ids.size(); start += InList.CHUNK_SIZE) {
+				InList.bind(ps, ids, start);
+				try (ResultSet rs = ps.executeQuery()) {
+					while (rs.next()) {
+						found.put(rs.getInt("id"), new Movie(rs.getInt("id"), rs.getString("title"), rs.getInt("year")));
+					}
+				}
+			}
 
+			// the query returns rows in index order, put them back in the order asked for
+			Map<Integer, Movie> movies = new LinkedHashMap<>();
+			for (int id : ids) {
+				Movie movie = found.get(id);
+				if (movie != null) {
+					movies.put(id, movie);
+				}
+			}
+			return movies;
+		});
+	}
+
+	/**
+	 * Does the same as {@link #getMoviesByIds(List)}, on the database executor.
+	 *
+	 * @param ids the ids of the movies
+	 * @return the movies keyed by id, in the order of the ids, when the query is done
+	 */
+	public CompletableFuture<Map<Integer, Movie>> getMoviesByIdsAsync(List<Integer> ids) {
+		return database.async(() -> getMoviesByIds(ids));
 	}
 
 	/**
@@ -94,23 +268,136 @@ public class MovieDAO {
 	 */
 
 	public List<Person> getStarsByMovie(int id) throws SQLException {
-		List<Person> people = new ArrayList<>();
+		return database.withConnection("MovieDAO.getStarsByMovie", id, connection -> {
+			List<Person> people = new ArrayList<>();
 
-		String statement = "select * from people, stars where stars.movie_id = ? and stars.person_id = people.id";
-		PreparedStatement ps = connection.prepareStatement(statement);
-		ps.setInt(1, id);
-		ResultSet rs = ps.executeQuery();
+			String statement = "select * from people, stars where stars.movie_id = ? and stars.person_id = people.id";
+			PreparedStatement ps = database.prepareStatement(connection, statement);
+			ps.setInt(1, id);
+			try (ResultSet rs = ps.executeQuery()) {
+				while (rs.next()) {
+					people.add(new Person(rs.getInt("id"), rs.getString("name"), rs.getInt("birth")));
+				}
+			}
 
+			return people;
+		});
+	}
 
-		while (rs.next()) {
-			people.add(new Person(rs.getInt("id"), rs.getString("name"), rs.getInt("birth")));
-		}
+	/**
+	 * Does the same as {@link #getStarsByMovie(int)}, on the database executor.
+	 * Concurrent calls with the same arguments share one query.
+	 *
+	 * @param id the id of the movie
+	 * @return a list of people by a specified movie id, when the query is done
+	 */
+	public CompletableFuture<List<Person>> getStarsByMovieAsync(int id) {
+		return database.async("MovieDAO.getStarsByMovie:" + id, () -> getStarsByMovie(id));
+	}
 
-		return people;
+	/**
+	 * Returns a list of the directors of a specified movie id.
+	 *
+	 * @param id the id of the movie
+	 * @return a list of the people who directed the movie
+	 * @throws SQLException if a database error occurs
+	 */
+	public List<Person> getDirectorsByMovie(int id) throws SQLException {
+		return database.withConnection("MovieDAO.getDirectorsByMovie", id, connection -> {
+			List<Person> people = new ArrayList<>();
+
+			String statement = "select * from people, directors where directors.movie_id = ? and directors.person_id = people.id";
+			PreparedStatement ps = database.prepareStatement(connection, statement);
+			ps.setInt(1, id);
+			try (ResultSet rs = ps.executeQuery()) {
+				while (rs.next()) {
+					people.add(new Person(rs.getInt("id"), rs.getString("name"), rs.getInt("birth")));
+				}
+			}
+
+			return people;
+		});
+	}
+
+	/**
+	 * Does the same as {@link #getDirectorsByMovie(int)}, on the database executor.
+	 * Concurrent calls with the same arguments share one query.
+	 *
+	 * @param id the id of the movie
+	 * @return a list of the people who directed the movie, when the query is done
+	 */
+	public CompletableFuture<List<Person>> getDirectorsByMovieAsync(int id) {
+		return database.async("MovieDAO.getDirectorsByMovie:" + id, () -> getDirectorsByMovie(id));
+	}
+
+	/**
+	 * Returns the stars of each of the specified movies, fetched in as few
+	 * queries as possible.
+	 * Every movie that exists is in the map, with an empty list if it has no
+	 * stars. Ids that do not match a movie are left out.
+	 *
+	 * @param ids the ids of the movies
+	 * @return the stars keyed by movie id, in the order of the ids
+	 * @throws SQLException if a database error occurs
+	 */
+	public Map<Integer, List<Person>> getStarsByMovies(List<Integer> ids) throws SQLException {
+		return database.withConnection("MovieDAO.getStarsByMovies", ids, connection -> {
+			// first an empty list for every movie that exists, in the order asked for
+			Map<Integer, List<Person>> stars = new LinkedHashMap<>();
+			String movies = "select id from movies where id in " + InList.PLACEHOLDERS;
+			PreparedStatement ps = database.prepareStatement(connection, movies);
+			Set<Integer> found = new HashSet<>();
+			for (int start = 0; start < ids.size(); start += InList.CHUNK_SIZE) {
+				InList.bind(ps, ids, start);
+				try (ResultSet rs = ps.executeQuery()) {
+					while (rs.next()) {
+						found.add(rs.getInt("id"));
+					}
+				}
+			}
+			for (int id : ids) {
+				if (found.contains(id)) {
+					stars.put(id, new ArrayList<>());
+				}
+			}
+
+			// then the stars, one query per chunk instead of one per movie: on the
+			// original database stars has no index on movie_id, so that is one scan
+			// of stars per chunk, and on an optimized copy it is a probe of
+			// stars_movie per id
+			String statement = "select stars.movie_id, people.* from stars, people"
+					+ " where stars.movie_id in " + InList.PLACEHOLDERS + " and stars.person_id = people.id";
+			ps = database.prepareStatement(connection, statement);
+			for (int start = 0; start < ids.size(); start += InList.CHUNK_SIZE) {
+				InList.bind(ps, ids, start);
+				try (ResultSet rs = ps.executeQuery()) {
+					while (rs.next()) {
+						List<Person> people = stars.get(rs.getInt("movie_id"));
+						if (people != null) {
+							people.add(new Person(rs.getInt("id"), rs.getString("name"), rs.getInt("birth")));
+						}
+					}
+				}
+			}
+			return stars;
+		});
+	}
+
+	/**
+	 * Does the same as {@link #getStarsByMovies(List)}, on the database executor.
+	 *
+	 * @param ids the ids of the movies
+	 * @return the stars keyed by movie id, in the order of the ids, when the query is done
+	 */
+	public CompletableFuture<Map<Integer, List<Person>>> getStarsByMoviesAsync(List<Integer> ids) {
+		return database.async(() -> getStarsByMovies(ids));
 	}
 
 	/**
 	 * Returns a list of movies ordered by their ratings in descending order for a given year.
+	 * Movies with the same rating are in the order of the ratings table, whichever
+	 * index SQLite reads them through.
+	 * With a rating index this does not touch the database.
 	 *
 	 * @param year the year of the movie(s)
 	 * @param votes the minimum number of votes
@@ -120,22 +407,47 @@ public class MovieDAO {
 	 */
 
 	public List<MovieRating> getMoviesByRatingOrder(int year, int votes, int limit) throws SQLException {
-		List<MovieRating> movieRatings = new ArrayList<>();
-
-		String statement = "select * from movies, ratings where ratings.movie_id = movies.id" +
-				" and movies.year = ? and ratings.votes > ? order by ratings.rating desc limit ?";
-		PreparedStatement ps = connection.prepareStatement(statement);
-		ps.setInt(1, year);
-		ps.setInt(2, votes);
-		ps.setInt(3, limit);
-		ResultSet rs = ps.executeQuery();
-
-		while (rs.next()) {
-			movieRatings.add(new MovieRating(rs.getInt("id"), rs.getString("title"),
-					rs.getInt("year"), rs.getDouble("rating"), rs.getInt("votes")));
+		if (ratingIndex != null) {
+			return ratingIndex.top(year, votes, limit);
 		}
 
-		return movieRatings;
+		return database.withConnection("MovieDAO.getMoviesByRatingOrder", List.of(year, votes, limit), connection -> {
+			List<MovieRating> movieRatings = new ArrayList<>();
+
+			String statement = "select * from movies, ratings where ratings.movie_id = movies.id" +
+					" and movies.year = ? and ratings.votes > ? order by ratings.rating desc, ratings.rowid limit ?";
+			PreparedStatement ps = database.prepareStatement(connection, statement);
+			ps.setInt(1, year);
+			ps.setInt(2, votes);
+			ps.setInt(3, limit);
+			try (ResultSet rs = ps.executeQuery()) {
+				while (rs.next()) {
+					movieRatings.add(new MovieRating(rs.getInt("id"), rs.getString("title"),
+							rs.getInt("year"), rs.getDouble("rating"), rs.getInt("votes")));
+				}
+			}
+
+			return movieRatings;
+		});
+	}
+
+	/**
+	 * Does the same as {@link #getMoviesByRatingOrder(int, int, int)}, on the database executor.
+	 * Concurrent calls with the same arguments share one query. With a rating
+	 * index the answer comes from it straight away, without the executor.
+	 *
+	 * @param year the year of the movie(s)
+	 * @param votes the minimum number of votes
+	 * @param limit the number of movies to return
+	 * @return a list of movies by rating order, when the query is done
+	 */
+	public CompletableFuture<List<MovieRating>> getMoviesByRatingOrderAsync(int year, int votes, int limit) {
+		if (ratingIndex != null) {
+			// the index is in memory, so there is nothing to wait for
+			return CompletableFuture.completedFuture(ratingIndex.top(year, votes, limit));
+		}
+		return database.async("MovieDAO.getMoviesByRatingOrder:" + year + ":" + votes + ":" + limit,
+				() -> getMoviesByRatingOrder(year, votes, limit));
 	}
 
 }
@@ -1,13 +1,19 @@
 package com.flickfinder.dao;
 
 
+import com.flickfinder.model.Credits;
 import com.flickfinder.model.Movie;
 import com.flickfinder.model.Person;
 import com.flickfinder.util.Database;
+import com.flickfinder.util.RowHandler;
 
+import java.io.IOException;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * The Data Access Object for the Person table.
@@ -17,15 +23,20 @@ import java.util.List;
  *
  */
 public class PersonDAO {
-    private final Connection connection;
+    private final Database database;
+
+    /**
+     * The most people {@link #streamPeopleAfter(int, int, RowHandler)} reads
+     * with one connection.
+     */
+    static final int STREAM_CHUNK = 500;
 
     /**
      * Constructs a SQLitePersonDAO object and gets the database connection.
      *
      */
     public PersonDAO() {
-        Database database = Database.getInstance();
-        connection = database.getConnection();
+        database = Database.getInstance();
     }
 
     /**
@@ -38,18 +49,106 @@ public class PersonDAO {
      */
 
     public List<Person> getAllPeople(int limit) throws SQLException {
-        List<Person> people = new ArrayList<>();
+        return database.withConnection("PersonDAO.getAllPeople", limit, connection -> {
+            List<Person> people = new ArrayList<>();
 
-        String statement = "select * from people limit ?";
-        PreparedStatement ps = connection.prepareStatement(statement);
-        ps.setInt(1, limit);
-        ResultSet rs = ps.executeQuery();
+            String statement = "select * from people limit ?";
+            PreparedStatement ps = database.prepareStatement(connection, statement);
+            ps.setInt(1, limit);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    people.add(new Person(rs.getInt("id"), rs.getString("name"), rs.getInt("birth")));
+                }
+            }
 
-        while (rs.next()) {
-            people.add(new Person(rs.getInt("id"), rs.getString("name"), rs.getInt("birth")));
-        }
+            return people;
+        });
+    }
+
+    /**
+     * Does the same as {@link #getAllPeople(int)}, on the database executor.
+     *
+     * @param limit the number of people to return.
+     * @return a list of all people in the database, when the query is done
+     */
+    public CompletableFuture<List<Person>> getAllPeopleAsync(int limit) {
+        return database.async(() -> getAllPeople(limit));
+    }
+
+    /**
+     * Returns a page of people with an id greater than the given one, in id
+     * order. This seeks through the primary key, so every page costs the same.
+     *
+     * @param afterId the last id of the previous page, or 0 for the first page
+     * @param limit   the number of people to return
+     * @return a page of people
+     * @throws SQLException if a database error occurs
+     */
+    public List<Person> getPeopleAfter(int afterId, int limit) throws SQLException {
+        return database.withConnection("PersonDAO.getPeopleAfter", List.of(afterId, limit), connection -> {
+            List<Person> people = new ArrayList<>();
+
+            String statement = "select * from people where id > ? order by id limit ?";
+            PreparedStatement ps = database.prepareStatement(connection, statement);
+            ps.setInt(1, afterId);
+            ps.setInt(2, limit);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    people.add(new Person(rs.getInt("id"), rs.getString("name"), rs.getInt("birth")));
+                }
+            }
+
+            return people;
+        });
+    }
+
+    /**
+     * Does the same as {@link #getPeopleAfter(int, int)}, on the database executor.
+     *
+     * @param afterId the last id of the previous page, or 0 for the first page
+     * @param limit   the number of people to return
+     * @return a page of people, when the query is done
+     */
+    public CompletableFuture<List<Person>> getPeopleAfterAsync(int afterId, int limit) {
+        return database.async(() -> getPeopleAfter(afterId, limit));
+    }
 
-        return people;
+    /**
+     * Passes a page of people with an id greater than the given one to a handler,
+     * so the people are never all in memory at once.
+     * The page is read in chunks of {@value #STREAM_CHUNK} people through
+     * {@link #getPeopleAfter(int, int)}, each on the database executor, so the
+     * connection is given back between chunks instead of being held while the
+     * rows are written to a slow client.
+     *
+     * @param afterId the last id of the previous page
+     * @param limit   the number of people to pass on, or a negative number for all
+     * @param handler the handler for each person
+     * @return the number of people passed on
+     * @throws SQLException if a database error occurs
+     * @throws IOException  if the handler fails
+     */
+    public int streamPeopleAfter(int afterId, int limit, RowHandler<Person> handler) throws SQLException, IOException {
+        return streamPeopleAfter(afterId, limit, STREAM_CHUNK, handler);
+    }
+
+    int streamPeopleAfter(int afterId, int limit, int chunk, RowHandler<Person> handler)
+            throws SQLException, IOException {
+        int rows = 0;
+        int after = afterId;
+        while (limit < 0 || rows < limit) {
+            int size = limit < 0 ? chunk : Math.min(chunk, limit - rows);
+            List<Person> people = getPeopleAfter(after, size);
+            for (Person person : people) {
+                handler.handle(person);
+            }
+            rows += people.size();
+            if (people.size() < size) {
+                break;
+            }
+            after = people.get(people.size() - 1).getId();
+        }
+        return rows;
     }
 
     /**
@@ -60,44 +159,194 @@ public class PersonDAO {
      * @throws SQLException if a database error occurs
      */
     public Person getPersonById(int id) throws SQLException {
+        return database.withConnection("PersonDAO.getPersonById", id, connection -> {
+            String statement = "select * from people where id = ?";
+            PreparedStatement ps = database.prepareStatement(connection, statement);
+            ps.setInt(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
 
-        String statement = "select * from people where id = ?";
-        PreparedStatement ps = connection.prepareStatement(statement);
-        ps.setInt(1, id);
-        ResultSet rs = ps.executeQuery();
+                    return new Person(rs.getInt("id"), rs.getString("name"), rs.getInt("birth"));
+                }
+            }
 
-        if (rs.next()) {
+            // return null if the id does not return a person.
 
-            return new Person(rs.getInt("id"), rs.getString("name"), rs.getInt("birth"));
-        }
+            return null;
+        });
+    }
 
-        // return null if the id does not return a person.
+    /**
+     * Does the same as {@link #getPersonById(int)}, on the database executor.
+     * Concurrent calls with the same arguments share one query.
+     *
+     * @param id the id of the person
+     * @return the person with the specified id, when the query is done
+     */
+    public CompletableFuture<Person> getPersonByIdAsync(int id) {
+        return database.async("PersonDAO.getPersonById:" + id, () -> getPersonById(id));
+    }
 
-        return null;
+    /**
+     * Returns the people with the specified ids, fetched in as few queries as
+     * possible.
+     * Ids that do not match a person are left out of the map.
+     *
+     * @param ids the ids of the people
+     * @return the people keyed by id, in the order of the ids
+     * @throws SQLException if a database error occurs
+     */
+    public Map<Integer, Person> getPeopleByIds(List<Integer> ids) throws SQLException {
+        return database.withConnection("PersonDAO.getPeopleByIds", ids, connection -> {
+            Map<Integer, Person> found = new LinkedHashMap<>();
 
+            String statement = "select * from people where id in " + InList.PLACEHOLDERS;
+            PreparedStatement ps = database.prepareStatement(connection, statement);
+            for (int start = 0; start < ids.size(); start += InList.CHUNK_SIZE) {
+                InList.bind(ps, ids, start);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        found.put(rs.getInt("id"), new Person(rs.getInt("id"), rs.getString("name"), rs.getInt("birth")));
+                    }
+                }
+            }
+
+            // the query returns rows in index order, put them back in the order asked for
+            Map<Integer, Person> people = new LinkedHashMap<>();
+            for (int id : ids) {
+                Person person = found.get(id);
+                if (person != null) {
+                    people.put(id, person);
+                }
+            }
+            return people;
+        });
+    }
+
+    /**
+     * Does the same as {@link #getPeopleByIds(List)}, on the database executor.
+     *
+     * @param ids the ids of the people
+     * @return the people keyed by id, in the order of the ids, when the query is done
+     */
+    public CompletableFuture<Map<Integer, Person>> getPeopleByIdsAsync(List<Integer> ids) {
+        return database.async(() -> getPeopleByIds(ids));
     }
 
     /**
-     * Returns a list of movies by a specified person id.
+     * Returns a list of movies by a specified person id, in id order.
      *
      * @param id the id of the person
      * @return a list of movies by a specified person id
      * @throws SQLException if a database error occurs
      */
     public List<Movie> getMoviesByStar(int id) throws SQLException {
-        List<Movie> movies = new ArrayList<>();
+        return database.withConnection("PersonDAO.getMoviesByStar", id, connection -> {
+            List<Movie> movies = new ArrayList<>();
 
-        String statement = "select * from movies, stars where stars.person_id = ? and stars.movie_id = movies.id";
-        PreparedStatement ps = connection.prepareStatement(statement);
-        ps.setInt(1, id);
-        ResultSet rs = ps.executeQuery();
+            String statement = "select * from movies, stars where stars.person_id = ? and stars.movie_id = movies.id"
+                    + " order by movies.id";
+            PreparedStatement ps = database.prepareStatement(connection, statement);
+            ps.setInt(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    movies.add(new Movie(rs.getInt("id"), rs.getString("title"), rs.getInt("year")));
+                }
+            }
 
+            return movies;
+        });
+    }
 
-        while (rs.next()) {
-            movies.add(new Movie(rs.getInt("id"), rs.getString("title"), rs.getInt("year")));
-        }
+    /**
+     * Does the same as {@link #getMoviesByStar(int)}, on the database executor.
+     * Concurrent calls with the same arguments share one query.
+     *
+     * @param id the id of the person
+     * @return a list of movies by a specified person id, when the query is done
+     */
+    public CompletableFuture<List<Movie>> getMoviesByStarAsync(int id) {
+        return database.async("PersonDAO.getMoviesByStar:" + id, () -> getMoviesByStar(id));
+    }
+
+    /**
+     * Returns a list of movies directed by a specified person id, in id order.
+     *
+     * @param id the id of the person
+     * @return a list of movies directed by a specified person id
+     * @throws SQLException if a database error occurs
+     */
+    public List<Movie> getMoviesByDirector(int id) throws SQLException {
+        return database.withConnection("PersonDAO.getMoviesByDirector", id, connection -> {
+            List<Movie> movies = new ArrayList<>();
 
-        return movies;
+            String statement = "select * from movies, directors where directors.person_id = ? and directors.movie_id = movies.id"
+                    + " order by movies.id";
+            PreparedStatement ps = database.prepareStatement(connection, statement);
+            ps.setInt(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    movies.add(new Movie(rs.getInt("id"), rs.getString("title"), rs.getInt("year")));
+                }
+            }
+
+            return movies;
+        });
+    }
+
+    /**
+     * Does the same as {@link #getMoviesByDirector(int)}, on the database executor.
+     * Concurrent calls with the same arguments share one query.
+     *
+     * @param id the id of the person
+     * @return a list of movies directed by a specified person id, when the query is done
+     */
+    public CompletableFuture<List<Movie>> getMoviesByDirectorAsync(int id) {
+        return database.async("PersonDAO.getMoviesByDirector:" + id, () -> getMoviesByDirector(id));
+    }
+
+    /**
+     * Returns the movies a person starred in and the movies they directed, in
+     * one query. Each half is in id order, as {@link #getMoviesByStar(int)} and
+     * {@link #getMoviesByDirector(int)} are.
+     *
+     * @param id the id of the person
+     * @return the credits of the person
+     * @throws SQLException if a database error occurs
+     */
+    public Credits getCredits(int id) throws SQLException {
+        return database.withConnection("PersonDAO.getCredits", id, connection -> {
+            List<Movie> starred = new ArrayList<>();
+            List<Movie> directed = new ArrayList<>();
+
+            String statement = "select movies.*, 0 as directed from movies, stars"
+                    + " where stars.person_id = ? and stars.movie_id = movies.id"
+                    + " union all select movies.*, 1 as directed from movies, directors"
+                    + " where directors.person_id = ? and directors.movie_id = movies.id"
+                    + " order by directed, id";
+            PreparedStatement ps = database.prepareStatement(connection, statement);
+            ps.setInt(1, id);
+            ps.setInt(2, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Movie movie = new Movie(rs.getInt("id"), rs.getString("title"), rs.getInt("year"));
+                    (rs.getInt("directed") == 1 ? directed : starred).add(movie);
+                }
+            }
+
+            return new Credits(starred, directed);
+        });
+    }
+
+    /**
+     * Does the same as {@link #getCredits(int)}, on the database executor.
+     * Concurrent calls with the same arguments share one query.
+     *
+     * @param id the id of the person
+     * @return the credits of the person, when the query is done
+     */
+    public CompletableFuture<Credits> getCreditsAsync(int id) {
+        return database.async("PersonDAO.getCredits:" + id, () -> getCredits(id));
     }
 
 
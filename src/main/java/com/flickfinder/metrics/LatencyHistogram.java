@@ -0,0 +1,149 @@
+package com.flickfinder.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of latencies in microseconds, in the style of HdrHistogram.
+ *
+ * Values below 128 &micro;s get a bucket each. Above that, every power of two is
+ * split into 64 equal buckets, so a value is never off by more than 1/64
+ * (about 1.6%), up to 2^36 &micro;s (19 hours). The whole histogram is one
+ * {@link AtomicLongArray}, so recording is a single atomic increment: it takes
+ * no locks and allocates nothing, and can be left on at full load.
+ *
+ * Reads are not a snapshot, a count that is recorded while the buckets are
+ * being summed may or may not be included.
+ */
+public final class LatencyHistogram {
+
+	/**
+	 * The number of buckets per power of two, as a power of two.
+	 */
+	static final int SUB_BUCKET_BITS = 6;
+
+	static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	/**
+	 * The largest value that can be told apart, anything above is counted here.
+	 */
+	static final long MAX_MICROS = (1L << 36) - 1;
+
+	private final AtomicLongArray counts = new AtomicLongArray(index(MAX_MICROS) + 1);
+	private final LongAdder totalNanos = new LongAdder();
+
+	/**
+	 * Records a latency.
+	 *
+	 * @param nanos the latency in nanoseconds
+	 */
+	public void record(long nanos) {
+		long micros = Math.min(Math.max(nanos, 0) / 1000, MAX_MICROS);
+		counts.incrementAndGet(index(micros));
+		totalNanos.add(nanos);
+	}
+
+	/**
+	 * Returns the bucket of a value.
+	 */
+	static int index(long micros) {
+		if (micros < 2 * SUB_BUCKETS) {
+			return (int) micros;
+		}
+		int shift = 63 - Long.numberOfLeadingZeros(micros) - SUB_BUCKET_BITS;
+		return (shift + 1) * SUB_BUCKETS + (int) ((micros >> shift) - SUB_BUCKETS);
+	}
+
+	/**
+	 * Returns the largest value that falls in a bucket.
+	 */
+	static long highestValue(int index) {
+		if (index < 2 * SUB_BUCKETS) {
+			return index;
+		}
+		int shift = index / SUB_BUCKETS - 1;
+		long lowest = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+		return lowest + (1L << shift) - 1;
+	}
+
+	/**
+	 * Returns the number of latencies recorded.
+	 *
+	 * @return the count
+	 */
+	public long getCount() {
+		long count = 0;
+		for (int i = 0; i < counts.length(); i++) {
+			count += counts.get(i);
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the sum of the latencies recorded, in seconds.
+	 *
+	 * @return the total latency
+	 */
+	public double getSumSeconds() {
+		return totalNanos.sum() / 1e9;
+	}
+
+	/**
+	 * Returns the number of latencies of at most a bound, for each bound.
+	 * The last count is that of every latency.
+	 *
+	 * @param boundsMicros the bounds in microseconds, in ascending order
+	 * @return the cumulative counts, one more than there are bounds
+	 */
+	public long[] getCumulativeCounts(long[] boundsMicros) {
+		long[] cumulative = new long[boundsMicros.length + 1];
+		long count = 0;
+		int bound = 0;
+		for (int i = 0; i < counts.length(); i++) {
+			while (bound < boundsMicros.length && highestValue(i) > boundsMicros[bound]) {
+				cumulative[bound++] = count;
+			}
+			count += counts.get(i);
+		}
+		while (bound < boundsMicros.length) {
+			cumulative[bound++] = count;
+		}
+		cumulative[boundsMicros.length] = count;
+		return cumulative;
+	}
+
+	/**
+	 * Returns the latency that a percentage of the recorded latencies are at or
+	 * below.
+	 *
+	 * @param percentile the percentile, between 0 and 100
+	 * @return the latency in microseconds, or 0 if nothing was recorded
+	 */
+	public long getValueAtPercentile(double percentile) {
+		long count = getCount();
+		if (count == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+		long seen = 0;
+		for (int i = 0; i < counts.length(); i++) {
+			seen += counts.get(i);
+			if (seen >= rank) {
+				return highestValue(i);
+			}
+		}
+		return MAX_MICROS;
+	}
+
+	/**
+	 * Returns a summary of the histogram.
+	 * This is primarily used for debugging purposes.
+	 *
+	 * @return a string representation of the histogram
+	 */
+	@Override
+	public String toString() {
+		return "LatencyHistogram [count=" + getCount() + ", p50=" + getValueAtPercentile(50) + "us, p99="
+				+ getValueAtPercentile(99) + "us, p999=" + getValueAtPercentile(99.9) + "us]";
+	}
+}
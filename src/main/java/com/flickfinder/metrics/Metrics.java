@@ -0,0 +1,447 @@
+package com.flickfinder.metrics;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+import io.javalin.http.Context;
+import io.javalin.http.Handler;
+
+/**
+ * The application's metrics, in Prometheus text format at /metrics.
+ *
+ * Every route has a {@link LatencyHistogram}, a count of responses by status
+ * class and counts of the DAO calls its requests made, and every database query
+ * a histogram and counts of the rows it returned and the errors it threw.
+ * Comparing a route with its queries shows how much of a request is spent in
+ * SQLite and how much in the controller and Jackson, and a route with duplicate
+ * calls is asking the database for something it already has, see
+ * {@link QueryLog}.
+ *
+ * Routes and queries are registered the first time they are recorded; after
+ * that recording only looks them up and increments counters, so it takes no
+ * locks and allocates nothing. Other parts of the application can add gauges
+ * and counters of their own, such as the connection pool, which are read when
+ * /metrics is scraped.
+ */
+public final class Metrics {
+
+	/**
+	 * The content type of the Prometheus text format.
+	 */
+	public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+	/**
+	 * The upper bounds of the buckets we export, in microseconds.
+	 */
+	static final long[] BUCKETS_MICROS = { 100, 250, 500, 1_000, 2_500, 5_000, 10_000, 25_000, 50_000, 100_000,
+			250_000, 500_000, 1_000_000, 2_500_000, 5_000_000, 10_000_000 };
+
+	/**
+	 * The context attribute with the time a timed route started.
+	 */
+	private static final String START_ATTRIBUTE = "flickfinder.metrics.start";
+
+	/**
+	 * The context attribute with the {@link QueryLog} of a timed route.
+	 */
+	private static final String QUERIES_ATTRIBUTE = "flickfinder.metrics.queries";
+
+	/**
+	 * The response header with the {@link QueryLog} of a request, see
+	 * {@link #setQueryHeader(boolean)}.
+	 */
+	public static final String QUERIES_HEADER = "X-Queries";
+
+	private static final Metrics instance = new Metrics();
+
+	private final Map<String, Route> routes = new ConcurrentHashMap<>();
+	private final Map<String, Query> queries = new ConcurrentHashMap<>();
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private volatile boolean queryHeader;
+
+	/**
+	 * The gauges and counters read when /metrics is scraped, by name.
+	 */
+	private final Map<String, Sampled> sampled = new ConcurrentHashMap<>();
+
+	/**
+	 * Metrics are shared by the whole application, see {@link #getInstance()}.
+	 */
+	Metrics() {
+	}
+
+	/**
+	 * Returns the application's metrics.
+	 *
+	 * @return the metrics
+	 */
+	public static Metrics getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Wraps a route handler so that its latency and status are recorded, under
+	 * the path it was registered with, by {@link #finish(Context)}.
+	 *
+	 * @param handler the route handler
+	 * @return the wrapped handler
+	 */
+	public Handler timed(Handler handler) {
+		return ctx -> {
+			inFlight.incrementAndGet();
+			ctx.attribute(START_ATTRIBUTE, System.nanoTime());
+			QueryLog log = new QueryLog();
+			ctx.attribute(QUERIES_ATTRIBUTE, log);
+			QueryLog previous = QueryLog.attach(log);
+			try {
+				handler.handle(ctx);
+			} finally {
+				QueryLog.attach(previous);
+			}
+		};
+	}
+
+	/**
+	 * Records the latency and status of a timed route. This is registered as an
+	 * after handler, which Javalin runs once the response is ready, even if the
+	 * route answered with a future or threw.
+	 *
+	 * @param ctx the Javalin context
+	 */
+	public void finish(Context ctx) {
+		Long start = ctx.attribute(START_ATTRIBUTE);
+		if (start == null) {
+			return;
+		}
+		inFlight.decrementAndGet();
+		Route route = route(ctx);
+		route.record(System.nanoTime() - start, ctx.statusCode());
+
+		QueryLog log = ctx.attribute(QUERIES_ATTRIBUTE);
+		if (log != null) {
+			route.recordQueries(log);
+			if (queryHeader) {
+				ctx.header(QUERIES_HEADER, log.toString());
+				List<String> duplicates = log.getDuplicates();
+				if (!duplicates.isEmpty()) {
+					System.out.println("Duplicate queries in " + ctx.method() + " " + ctx.path() + ": " + duplicates);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Sends the {@link QueryLog} of each timed request in the X-Queries header,
+	 * and prints the duplicate queries of any request that made some.
+	 * This is meant for debugging and tests, it is off by default.
+	 *
+	 * @param queryHeader true to send the header
+	 */
+	public void setQueryHeader(boolean queryHeader) {
+		this.queryHeader = queryHeader;
+	}
+
+	private Route route(Context ctx) {
+		String path = ctx.endpointHandlerPath();
+		return route(path == null ? "unmatched" : path);
+	}
+
+	/**
+	 * Returns the metrics of a route, registering it the first time.
+	 *
+	 * @param path the path the route was registered with
+	 * @return the route's metrics
+	 */
+	public Route route(String path) {
+		Route route = routes.get(path);
+		return route != null ? route : routes.computeIfAbsent(path, key -> new Route());
+	}
+
+	/**
+	 * Returns the metrics of a database query, registering it the first time.
+	 *
+	 * @param name the name of the query, usually the DAO method
+	 * @return the query's metrics
+	 */
+	public Query query(String name) {
+		Query query = queries.get(name);
+		return query != null ? query : queries.computeIfAbsent(name, key -> new Query());
+	}
+
+	/**
+	 * Adds a gauge, a value that can go up and down, or replaces the one with the
+	 * same name.
+	 *
+	 * @param name  the metric name
+	 * @param help  what the metric measures
+	 * @param value reads the current value
+	 */
+	public void gauge(String name, String help, DoubleSupplier value) {
+		sampled.put(name, new Sampled("gauge", help, value));
+	}
+
+	/**
+	 * Adds a counter, a total that only goes up, or replaces the one with the
+	 * same name.
+	 *
+	 * @param name  the metric name, ending in _total
+	 * @param help  what the metric counts
+	 * @param value reads the current total
+	 */
+	public void counter(String name, String help, DoubleSupplier value) {
+		sampled.put(name, new Sampled("counter", help, value));
+	}
+
+	/**
+	 * Returns the number of requests being handled right now.
+	 *
+	 * @return the number of requests in flight
+	 */
+	public int getInFlight() {
+		return inFlight.get();
+	}
+
+	/**
+	 * Returns every metric in Prometheus text format.
+	 *
+	 * @return the metrics
+	 */
+	public String scrape() {
+		StringBuilder out = new StringBuilder();
+		Map<String, Route> routes = new TreeMap<>(this.routes);
+		Map<String, Query> queries = new TreeMap<>(this.queries);
+
+		header(out, "flickfinder_http_request_duration_seconds", "histogram", "Time spent handling requests, by route.");
+		for (Map.Entry<String, Route> route : routes.entrySet()) {
+			histogram(out, "flickfinder_http_request_duration_seconds", "route", route.getKey(),
+					route.getValue().latency);
+		}
+		header(out, "flickfinder_http_responses_total", "counter", "Responses sent, by route and status class.");
+		for (Map.Entry<String, Route> route : routes.entrySet()) {
+			for (int i = 1; i < 6; i++) {
+				long count = route.getValue().statuses[i].sum();
+				if (count > 0) {
+					out.append("flickfinder_http_responses_total{route=\"").append(escape(route.getKey()))
+							.append("\",status=\"").append(i).append("xx\"} ").append(count).append('\n');
+				}
+			}
+		}
+		header(out, "flickfinder_http_db_calls_total", "counter", "DAO calls made while handling requests, by route.");
+		for (Map.Entry<String, Route> route : routes.entrySet()) {
+			out.append("flickfinder_http_db_calls_total{route=\"").append(escape(route.getKey())).append("\"} ")
+					.append(route.getValue().dbCalls.sum()).append('\n');
+		}
+		header(out, "flickfinder_http_db_duplicate_calls_total", "counter",
+				"DAO calls that repeated an earlier one in the same request, by route.");
+		for (Map.Entry<String, Route> route : routes.entrySet()) {
+			out.append("flickfinder_http_db_duplicate_calls_total{route=\"").append(escape(route.getKey())).append("\"} ")
+					.append(route.getValue().duplicateCalls.sum()).append('\n');
+		}
+		header(out, "flickfinder_http_requests_in_flight", "gauge", "Requests being handled right now.");
+		out.append("flickfinder_http_requests_in_flight ").append(inFlight.get()).append('\n');
+
+		header(out, "flickfinder_db_query_duration_seconds", "histogram",
+				"Time spent in database queries, including waiting for a connection.");
+		for (Map.Entry<String, Query> query : queries.entrySet()) {
+			histogram(out, "flickfinder_db_query_duration_seconds", "query", query.getKey(), query.getValue().latency);
+		}
+		header(out, "flickfinder_db_query_rows_total", "counter", "Rows returned by database queries.");
+		for (Map.Entry<String, Query> query : queries.entrySet()) {
+			out.append("flickfinder_db_query_rows_total{query=\"").append(escape(query.getKey())).append("\"} ")
+					.append(query.getValue().rows.sum()).append('\n');
+		}
+		header(out, "flickfinder_db_query_errors_total", "counter", "Database queries that failed.");
+		for (Map.Entry<String, Query> query : queries.entrySet()) {
+			out.append("flickfinder_db_query_errors_total{query=\"").append(escape(query.getKey())).append("\"} ")
+					.append(query.getValue().errors.sum()).append('\n');
+		}
+
+		for (Map.Entry<String, Sampled> metric : new TreeMap<>(sampled).entrySet()) {
+			Sampled value = metric.getValue();
+			header(out, metric.getKey(), value.type, value.help);
+			out.append(metric.getKey()).append(' ').append(number(value.value.getAsDouble())).append('\n');
+		}
+		return out.toString();
+	}
+
+	private static void header(StringBuilder out, String name, String type, String help) {
+		out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+		out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+	}
+
+	private static void histogram(StringBuilder out, String name, String label, String value,
+			LatencyHistogram histogram) {
+		String labels = label + "=\"" + escape(value) + "\"";
+		long[] cumulative = histogram.getCumulativeCounts(BUCKETS_MICROS);
+		for (int i = 0; i < BUCKETS_MICROS.length; i++) {
+			out.append(name).append("_bucket{").append(labels).append(",le=\"").append(number(BUCKETS_MICROS[i] / 1e6))
+					.append("\"} ").append(cumulative[i]).append('\n');
+		}
+		long count = cumulative[BUCKETS_MICROS.length];
+		out.append(name).append("_bucket{").append(labels).append(",le=\"+Inf\"} ").append(count).append('\n');
+		out.append(name).append("_sum{").append(labels).append("} ").append(number(histogram.getSumSeconds()))
+				.append('\n');
+		out.append(name).append("_count{").append(labels).append("} ").append(count).append('\n');
+	}
+
+	private static String number(double value) {
+		if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+			return Long.toString((long) value);
+		}
+		return BigDecimal.valueOf(value).stripTrailingZeros().toPlainString();
+	}
+
+	private static String escape(String label) {
+		return label.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+
+	/**
+	 * The metrics of a route.
+	 */
+	public static final class Route {
+
+		private final LatencyHistogram latency = new LatencyHistogram();
+
+		/**
+		 * Responses by the first digit of their status.
+		 */
+		private final LongAdder[] statuses = new LongAdder[6];
+		private final LongAdder dbCalls = new LongAdder();
+		private final LongAdder duplicateCalls = new LongAdder();
+
+		Route() {
+			for (int i = 0; i < statuses.length; i++) {
+				statuses[i] = new LongAdder();
+			}
+		}
+
+		/**
+		 * Records a response.
+		 *
+		 * @param nanos  how long the request took
+		 * @param status the status of the response
+		 */
+		public void record(long nanos, int status) {
+			latency.record(nanos);
+			statuses[Math.min(Math.max(status / 100, 0), 5)].increment();
+		}
+
+		/**
+		 * Records the DAO calls of a request.
+		 *
+		 * @param log the request's queries
+		 */
+		public void recordQueries(QueryLog log) {
+			dbCalls.add(log.getCalls());
+			duplicateCalls.add(log.getDuplicates().size());
+		}
+
+		/**
+		 * Returns the latency histogram of the route.
+		 *
+		 * @return the histogram
+		 */
+		public LatencyHistogram getLatency() {
+			return latency;
+		}
+
+		/**
+		 * Returns the number of DAO calls the route has made.
+		 *
+		 * @return the number of calls
+		 */
+		public long getDbCalls() {
+			return dbCalls.sum();
+		}
+
+		/**
+		 * Returns the number of DAO calls that repeated an earlier one in the same
+		 * request.
+		 *
+		 * @return the number of duplicate calls
+		 */
+		public long getDuplicateCalls() {
+			return duplicateCalls.sum();
+		}
+	}
+
+	/**
+	 * The metrics of a database query.
+	 */
+	public static final class Query {
+
+		private final LatencyHistogram latency = new LatencyHistogram();
+		private final LongAdder rows = new LongAdder();
+		private final LongAdder errors = new LongAdder();
+
+		/**
+		 * Records a query that succeeded.
+		 *
+		 * @param nanos how long the query took
+		 * @param rows  the number of rows it returned
+		 */
+		public void record(long nanos, long rows) {
+			latency.record(nanos);
+			this.rows.add(rows);
+		}
+
+		/**
+		 * Records a query that failed.
+		 *
+		 * @param nanos how long the query took
+		 */
+		public void recordError(long nanos) {
+			latency.record(nanos);
+			errors.increment();
+		}
+
+		/**
+		 * Returns the latency histogram of the query.
+		 *
+		 * @return the histogram
+		 */
+		public LatencyHistogram getLatency() {
+			return latency;
+		}
+
+		/**
+		 * Returns the number of rows the query returned.
+		 *
+		 * @return the number of rows
+		 */
+		public long getRows() {
+			return rows.sum();
+		}
+
+		/**
+		 * Returns the number of times the query failed.
+		 *
+		 * @return the number of errors
+		 */
+		public long getErrors() {
+			return errors.sum();
+		}
+	}
+
+	/**
+	 * A value that is read when the metrics are scraped.
+	 */
+	private static final class Sampled {
+
+		final String type;
+		final String help;
+		final DoubleSupplier value;
+
+		Sampled(String type, String help, DoubleSupplier value) {
+			this.type = type;
+			this.help = help;
+			this.value = value;
+		}
+	}
+}
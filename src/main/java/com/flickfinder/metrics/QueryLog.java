@@ -0,0 +1,161 @@
+package com.flickfinder.metrics;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The database work of one request: how many DAO calls it made, how many SQL
+ * statements they prepared, the rows they returned and the time they took.
+ *
+ * A DAO call that is made twice in a request with the same arguments is
+ * recorded as a duplicate. It always returns the same rows, since the database
+ * does not change while the server runs, so the second call is wasted work.
+ *
+ * {@link Metrics#timed} starts a log for each request and makes it the current
+ * log of the request thread while the handler runs. The database executor
+ * carries the current log over to the thread that runs a query, so queries
+ * made through the async DAO methods count towards the request that made them.
+ * Outside a request there is no current log and nothing is recorded.
+ */
+public final class QueryLog {
+
+	private static final ThreadLocal<QueryLog> current = new ThreadLocal<>();
+
+	private int calls;
+	private int statements;
+	private long rows;
+	private long nanos;
+
+	/**
+	 * The DAO calls seen so far, as the query name and its arguments.
+	 */
+	private final Set<String> seen = new HashSet<>();
+	private final List<String> duplicates = new ArrayList<>();
+
+	/**
+	 * Returns the log of the request the current thread is working for.
+	 *
+	 * @return the log, or null outside a request
+	 */
+	public static QueryLog current() {
+		return current.get();
+	}
+
+	/**
+	 * Makes a log the current one of this thread.
+	 *
+	 * @param log the log, or null for none
+	 * @return the log that was current before, to put back afterwards
+	 */
+	public static QueryLog attach(QueryLog log) {
+		QueryLog previous = current.get();
+		if (log == null) {
+			current.remove();
+		} else {
+			current.set(log);
+		}
+		return previous;
+	}
+
+	/**
+	 * Records a DAO call in the current log, if there is one.
+	 *
+	 * @param query the name of the query, usually the DAO method
+	 * @param args  the arguments of the call, or null to skip the duplicate
+	 *              check
+	 * @param nanos how long the call took
+	 * @param rows  the number of rows it returned
+	 */
+	public static void recordCall(String query, Object args, long nanos, long rows) {
+		QueryLog log = current.get();
+		if (log != null) {
+			log.call(query, args, nanos, rows);
+		}
+	}
+
+	/**
+	 * Records a SQL statement in the current log, if there is one.
+	 */
+	public static void recordStatement() {
+		QueryLog log = current.get();
+		if (log != null) {
+			log.statement();
+		}
+	}
+
+	synchronized void call(String query, Object args, long nanos, long rows) {
+		calls++;
+		this.nanos += nanos;
+		this.rows += rows;
+		if (args != null) {
+			String key = query + "(" + args + ")";
+			if (!seen.add(key)) {
+				duplicates.add(key);
+			}
+		}
+	}
+
+	synchronized void statement() {
+		statements++;
+	}
+
+	/**
+	 * Returns the number of DAO calls.
+	 *
+	 * @return the number of calls
+	 */
+	public synchronized int getCalls() {
+		return calls;
+	}
+
+	/**
+	 * Returns the number of SQL statements the DAO calls prepared. A statement
+	 * that is run once per chunk of a long list of ids counts once.
+	 *
+	 * @return the number of statements
+	 */
+	public synchronized int getStatements() {
+		return statements;
+	}
+
+	/**
+	 * Returns the number of rows the DAO calls returned.
+	 *
+	 * @return the number of rows
+	 */
+	public synchronized long getRows() {
+		return rows;
+	}
+
+	/**
+	 * Returns the time spent in DAO calls, including waiting for a connection.
+	 *
+	 * @return the time in nanoseconds
+	 */
+	public synchronized long getNanos() {
+		return nanos;
+	}
+
+	/**
+	 * Returns the DAO calls that repeated an earlier one, as the query name and
+	 * its arguments.
+	 *
+	 * @return the duplicate calls, in the order they were made
+	 */
+	public synchronized List<String> getDuplicates() {
+		return new ArrayList<>(duplicates);
+	}
+
+	/**
+	 * Returns the counts, in the form sent in the X-Queries header.
+	 *
+	 * @return a string representation of the log
+	 */
+	@Override
+	public synchronized String toString() {
+		return "calls=" + calls + ", statements=" + statements + ", rows=" + rows + ", millis="
+				+ Math.round(nanos / 1e3) / 1e3 + ", duplicates=" + duplicates.size();
+	}
+}
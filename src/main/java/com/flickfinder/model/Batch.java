@@ -0,0 +1,64 @@
+package com.flickfinder.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The answer to a bulk lookup: the items that were found, keyed by id, and the
+ * ids that were not found.
+ *
+ * @param <T> the type of the items
+ */
+public class Batch<T> {
+
+	private Map<Integer, T> results;
+	private List<Integer> missing;
+
+	/**
+	 * Constructs a Batch object from the ids that were asked for and the items
+	 * that were found.
+	 *
+	 * @param ids     the ids that were asked for
+	 * @param results the items that were found, keyed by id
+	 */
+	public Batch(List<Integer> ids, Map<Integer, T> results) {
+		this.results = results;
+		this.missing = new ArrayList<>();
+		for (int id : ids) {
+			if (!results.containsKey(id)) {
+				missing.add(id);
+			}
+		}
+	}
+
+	/**
+	 * Returns the items that were found, keyed by id.
+	 *
+	 * @return the items that were found
+	 */
+	public Map<Integer, T> getResults() {
+		return results;
+	}
+
+	/**
+	 * Returns the ids that were not found.
+	 *
+	 * @return the missing ids
+	 */
+	public List<Integer> getMissing() {
+		return missing;
+	}
+
+	/**
+	 * Returns a string representation of the Batch object.
+	 * This is primarily used for debugging purposes.
+	 *
+	 * @return a string representation of the Batch object
+	 */
+	@Override
+	public String toString() {
+		return "Batch [results=" + results + ", missing=" + missing + "]";
+	}
+
+}
@@ -0,0 +1,50 @@
+package com.flickfinder.model;
+
+/**
+ * A person who worked on movies with another person, and how many of them.
+ */
+public class Collaborator {
+
+	private Person person;
+	private int movies;
+
+	/**
+	 * Constructs a Collaborator object.
+	 *
+	 * @param person the collaborator
+	 * @param movies the number of movies the two starred in or directed together
+	 */
+	public Collaborator(Person person, int movies) {
+		this.person = person;
+		this.movies = movies;
+	}
+
+	/**
+	 * Returns the collaborator.
+	 *
+	 * @return the person
+	 */
+	public Person getPerson() {
+		return person;
+	}
+
+	/**
+	 * Returns the number of movies the two starred in or directed together.
+	 *
+	 * @return the number of shared movies
+	 */
+	public int getMovies() {
+		return movies;
+	}
+
+	/**
+	 * Returns a string representation of the Collaborator object.
+	 * This is primarily used for debugging purposes.
+	 *
+	 * @return a string representation of the Collaborator object
+	 */
+	@Override
+	public String toString() {
+		return "Collaborator [person=" + person + ", movies=" + movies + "]";
+	}
+}
@@ -0,0 +1,52 @@
+package com.flickfinder.model;
+
+import java.util.List;
+
+/**
+ * The movies a person starred in and the movies they directed.
+ */
+public class Credits {
+
+	private List<Movie> starred;
+	private List<Movie> directed;
+
+	/**
+	 * Constructs a Credits object.
+	 *
+	 * @param starred  the movies the person starred in
+	 * @param directed the movies the person directed
+	 */
+	public Credits(List<Movie> starred, List<Movie> directed) {
+		this.starred = starred;
+		this.directed = directed;
+	}
+
+	/**
+	 * Returns the movies the person starred in.
+	 *
+	 * @return the starred movies
+	 */
+	public List<Movie> getStarred() {
+		return starred;
+	}
+
+	/**
+	 * Returns the movies the person directed.
+	 *
+	 * @return the directed movies
+	 */
+	public List<Movie> getDirected() {
+		return directed;
+	}
+
+	/**
+	 * Returns a string representation of the Credits object.
+	 * This is primarily used for debugging purposes.
+	 *
+	 * @return a string representation of the Credits object
+	 */
+	@Override
+	public String toString() {
+		return "Credits [starred=" + starred + ", directed=" + directed + "]";
+	}
+}
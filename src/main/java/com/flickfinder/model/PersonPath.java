@@ -0,0 +1,66 @@
+package com.flickfinder.model;
+
+import java.util.List;
+
+/**
+ * A chain of people from one person to another, where each person starred in a
+ * movie with the next.
+ *
+ * The movie at position i is the one that the people at positions i and i + 1
+ * starred in together, so there is one movie fewer than people.
+ */
+public class PersonPath {
+
+	private List<Person> people;
+	private List<Movie> movies;
+
+	/**
+	 * Constructs a PersonPath object.
+	 *
+	 * @param people the people on the chain, from first to last
+	 * @param movies the movies that join them
+	 */
+	public PersonPath(List<Person> people, List<Movie> movies) {
+		this.people = people;
+		this.movies = movies;
+	}
+
+	/**
+	 * Returns the degrees of separation, the number of movies on the chain.
+	 *
+	 * @return the degrees of separation
+	 */
+	public int getDegrees() {
+		return movies.size();
+	}
+
+	/**
+	 * Returns the people on the chain, from first to last.
+	 *
+	 * @return the people
+	 */
+	public List<Person> getPeople() {
+		return people;
+	}
+
+	/**
+	 * Returns the movies that join the people on the chain.
+	 *
+	 * @return the movies
+	 */
+	public List<Movie> getMovies() {
+		return movies;
+	}
+
+	/**
+	 * Returns a string representation of the PersonPath object.
+	 * This is primarily used for debugging purposes.
+	 *
+	 * @return a string representation of the PersonPath object
+	 */
+	@Override
+	public String toString() {
+		return "PersonPath [degrees=" + getDegrees() + ", people=" + people + ", movies=" + movies + "]";
+	}
+
+}
@@ -0,0 +1,165 @@
+package com.flickfinder.model;
+
+import java.util.Arrays;
+
+/**
+ * Rating statistics of the rated movies of a year or a decade.
+ *
+ * The rating histogram has one bucket per whole point: bucket i counts ratings
+ * from i up to i + 1, and the last bucket also counts ratings of 10. The vote
+ * histogram has one bucket per power of ten: bucket 0 counts movies with fewer
+ * than 10 votes, bucket i movies with 10^i up to 10^(i + 1) votes, and the last
+ * bucket every movie with a million votes or more.
+ */
+public class RatingStats {
+
+	/**
+	 * The number of buckets of the rating histogram.
+	 */
+	public static final int RATING_BUCKETS = 10;
+
+	/**
+	 * The number of buckets of the vote histogram.
+	 */
+	public static final int VOTE_BUCKETS = 7;
+
+	private int from;
+	private int to;
+	private long movies;
+	private double averageRating;
+	private double minRating;
+	private double maxRating;
+	private long totalVotes;
+	private long[] ratingHistogram;
+	private long[] voteHistogram;
+
+	/**
+	 * Constructs a RatingStats object.
+	 *
+	 * @param from            the first year of the group
+	 * @param to              the last year of the group
+	 * @param movies          the number of rated movies
+	 * @param averageRating   the mean rating
+	 * @param minRating       the lowest rating
+	 * @param maxRating       the highest rating
+	 * @param totalVotes      the votes of all the movies together
+	 * @param ratingHistogram the number of movies in each rating bucket
+	 * @param voteHistogram   the number of movies in each vote bucket
+	 */
+	public RatingStats(int from, int to, long movies, double averageRating, double minRating, double maxRating,
+			long totalVotes, long[] ratingHistogram, long[] voteHistogram) {
+		this.from = from;
+		this.to = to;
+		this.movies = movies;
+		this.averageRating = averageRating;
+		this.minRating = minRating;
+		this.maxRating = maxRating;
+		this.totalVotes = totalVotes;
+		this.ratingHistogram = ratingHistogram;
+		this.voteHistogram = voteHistogram;
+	}
+
+	/**
+	 * Returns the first year of the group.
+	 *
+	 * @return the first year
+	 */
+	public int getFrom() {
+		return from;
+	}
+
+	/**
+	 * Returns the last year of the group.
+	 *
+	 * @return the last year
+	 */
+	public int getTo() {
+		return to;
+	}
+
+	/**
+	 * Returns the number of rated movies.
+	 *
+	 * @return the number of movies
+	 */
+	public long getMovies() {
+		return movies;
+	}
+
+	/**
+	 * Returns the mean rating.
+	 *
+	 * @return the average rating
+	 */
+	public double getAverageRating() {
+		return averageRating;
+	}
+
+	/**
+	 * Returns the lowest rating.
+	 *
+	 * @return the minimum rating
+	 */
+	public double getMinRating() {
+		return minRating;
+	}
+
+	/**
+	 * Returns the highest rating.
+	 *
+	 * @return the maximum rating
+	 */
+	public double getMaxRating() {
+		return maxRating;
+	}
+
+	/**
+	 * Returns the votes of all the movies together.
+	 *
+	 * @return the total votes
+	 */
+	public long getTotalVotes() {
+		return totalVotes;
+	}
+
+	/**
+	 * Returns the mean number of votes per movie.
+	 *
+	 * @return the average votes
+	 */
+	public double getAverageVotes() {
+		return movies == 0 ? 0 : (double) totalVotes / movies;
+	}
+
+	/**
+	 * Returns the number of movies in each rating bucket.
+	 *
+	 * @return the rating histogram
+	 */
+	public long[] getRatingHistogram() {
+		return ratingHistogram;
+	}
+
+	/**
+	 * Returns the number of movies in each vote bucket.
+	 *
+	 * @return the vote histogram
+	 */
+	public long[] getVoteHistogram() {
+		return voteHistogram;
+	}
+
+	/**
+	 * Returns a string representation of the RatingStats object.
+	 * This is primarily used for debugging purposes.
+	 *
+	 * @return a string representation of the RatingStats object
+	 */
+	@Override
+	public String toString() {
+		return "RatingStats [from=" + from + ", to=" + to + ", movies=" + movies + ", averageRating=" + averageRating
+				+ ", minRating=" + minRating + ", maxRating=" + maxRating + ", totalVotes=" + totalVotes
+				+ ", ratingHistogram=" + Arrays.toString(ratingHistogram) + ", voteHistogram="
+				+ Arrays.toString(voteHistogram) + "]";
+	}
+}
@@ -0,0 +1,63 @@
+package com.flickfinder.model;
+
+/**
+ * A movie that shares cast or directors with another movie, and how much.
+ */
+public class SimilarMovie {
+
+	private Movie movie;
+	private int shared;
+	private double score;
+
+	/**
+	 * Constructs a SimilarMovie object.
+	 *
+	 * @param movie  the similar movie
+	 * @param shared the number of people who starred in or directed both movies
+	 * @param score  the Jaccard index of the two movies' credits, weighted by
+	 *               rating if asked for
+	 */
+	public SimilarMovie(Movie movie, int shared, double score) {
+		this.movie = movie;
+		this.shared = shared;
+		this.score = score;
+	}
+
+	/**
+	 * Returns the similar movie.
+	 *
+	 * @return the movie
+	 */
+	public Movie getMovie() {
+		return movie;
+	}
+
+	/**
+	 * Returns the number of people who starred in or directed both movies.
+	 *
+	 * @return the number of shared people
+	 */
+	public int getShared() {
+		return shared;
+	}
+
+	/**
+	 * Returns the score the movie was ranked by.
+	 *
+	 * @return the similarity, from 0 to 1
+	 */
+	public double getScore() {
+		return score;
+	}
+
+	/**
+	 * Returns a string representation of the SimilarMovie object.
+	 * This is primarily used for debugging purposes.
+	 *
+	 * @return a string representation of the SimilarMovie object
+	 */
+	@Override
+	public String toString() {
+		return "SimilarMovie [movie=" + movie + ", shared=" + shared + ", score=" + score + "]";
+	}
+}
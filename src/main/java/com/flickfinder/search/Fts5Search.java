@@ -0,0 +1,144 @@
+package com.flickfinder.search;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Searches a SQLite FTS5 index kept in a sidecar database next to movies.db.
+ *
+ * movies.db is opened read only, so the full text tables live in a database of
+ * their own. The sidecar is filled from movies.db the first time it is opened
+ * and reused after that. It is a second engine to benchmark the in-process
+ * {@link IndexSearch} against, and ranks with FTS5's own bm25() function.
+ *
+ * The sidecar has a single connection, so queries take turns.
+ */
+public final class Fts5Search implements SearchEngine, AutoCloseable {
+
+	private final Connection connection;
+
+	private Fts5Search(Connection connection) {
+		this.connection = connection;
+	}
+
+	/**
+	 * Opens the sidecar database, creating and filling it if it is empty.
+	 *
+	 * @param source     a connection to the database to index
+	 * @param sidecarUrl the JDBC url of the sidecar database
+	 * @return the search engine
+	 * @throws SQLException if a database error occurs
+	 */
+	public static Fts5Search open(Connection source, String sidecarUrl) throws SQLException {
+		Connection connection = DriverManager.getConnection(sidecarUrl);
+		try {
+			if (!exists(connection)) {
+				fill(source, connection);
+			}
+			return new Fts5Search(connection);
+		} catch (SQLException e) {
+			connection.close();
+			throw e;
+		}
+	}
+
+	private static boolean exists(Connection connection) throws SQLException {
+		try (Statement stmt = connection.createStatement();
+				ResultSet rs = stmt.executeQuery("select 1 from sqlite_master where name = 'person_search'")) {
+			return rs.next();
+		}
+	}
+
+	private static void fill(Connection source, Connection sidecar) throws SQLException {
+		sidecar.setAutoCommit(false);
+		try (Statement stmt = sidecar.createStatement()) {
+			// contentless tables only keep the index, the rowid is the movie or person id
+			stmt.execute("create virtual table movie_search using fts5(title, content='',"
+					+ " tokenize='unicode61 remove_diacritics 2')");
+			stmt.execute("create virtual table person_search using fts5(name, content='',"
+					+ " tokenize='unicode61 remove_diacritics 2')");
+		}
+		copy(source, "select id, title from movies", sidecar, "insert into movie_search (rowid, title) values (?, ?)");
+		copy(source, "select id, name from people", sidecar, "insert into person_search (rowid, name) values (?, ?)");
+		sidecar.commit();
+		sidecar.setAutoCommit(true);
+	}
+
+	private static void copy(Connection source, String select, Connection sidecar, String insert) throws SQLException {
+		try (Statement stmt = source.createStatement();
+				ResultSet rs = stmt.executeQuery(select);
+				PreparedStatement ps = sidecar.prepareStatement(insert)) {
+			int batch = 0;
+			while (rs.next()) {
+				ps.setInt(1, rs.getInt(1));
+				ps.setString(2, rs.getString(2));
+				ps.addBatch();
+				if (++batch % 10_000 == 0) {
+					ps.executeBatch();
+				}
+			}
+			ps.executeBatch();
+		}
+	}
+
+	@Override
+	public List<Integer> searchMovies(String query, int limit) throws SQLException {
+		return search("movie_search", query, limit);
+	}
+
+	@Override
+	public List<Integer> searchPeople(String query, int limit) throws SQLException {
+		return search("person_search", query, limit);
+	}
+
+	private synchronized List<Integer> search(String table, String query, int limit) throws SQLException {
+		List<Integer> ids = new ArrayList<>();
+		String match = match(query);
+		if (match.isEmpty() || limit <= 0) {
+			return ids;
+		}
+		String sql = "select rowid from " + table + " where " + table + " match ? order by bm25(" + table
+				+ "), rowid limit ?";
+		try (PreparedStatement ps = connection.prepareStatement(sql)) {
+			ps.setString(1, match);
+			ps.setInt(2, limit);
+			try (ResultSet rs = ps.executeQuery()) {
+				while (rs.next()) {
+					ids.add(rs.getInt(1));
+				}
+			}
+		}
+		return ids;
+	}
+
+	/**
+	 * Turns a query into an FTS5 expression that matches any of its terms.
+	 * Every term is quoted, so nothing the user types is read as FTS5 syntax.
+	 */
+	static String match(String query) {
+		List<String> terms = new ArrayList<>();
+		for (String term : new LinkedHashSet<>(Tokenizer.tokenize(query))) {
+			terms.add('"' + term + '"');
+		}
+		return String.join(" OR ", terms);
+	}
+
+	/**
+	 * Closes the connection to the sidecar database.
+	 */
+	@Override
+	public void close() {
+		try {
+			connection.close();
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+	}
+}
@@ -0,0 +1,90 @@
+package com.flickfinder.search;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import com.flickfinder.catalog.ColumnarCatalog;
+
+/**
+ * Searches in-process {@link InvertedIndex}es of movie titles and person
+ * names, built once at startup.
+ */
+public final class IndexSearch implements SearchEngine {
+
+	private final InvertedIndex movies;
+	private final InvertedIndex people;
+	private final long buildMillis;
+
+	private IndexSearch(InvertedIndex movies, InvertedIndex people, long buildMillis) {
+		this.movies = movies;
+		this.people = people;
+		this.buildMillis = buildMillis;
+	}
+
+	/**
+	 * Builds the indexes from the movies and people tables.
+	 *
+	 * @param connection a connection to the database
+	 * @return the search engine
+	 * @throws SQLException if a database error occurs
+	 */
+	public static IndexSearch load(Connection connection) throws SQLException {
+		long start = System.nanoTime();
+		InvertedIndex movies = index(connection, "select id, title from movies order by id");
+		InvertedIndex people = index(connection, "select id, name from people order by id");
+		return new IndexSearch(movies, people, (System.nanoTime() - start) / 1_000_000);
+	}
+
+	/**
+	 * Builds the indexes from a catalog that is already in memory.
+	 *
+	 * @param catalog the catalog
+	 * @return the search engine
+	 */
+	public static IndexSearch build(ColumnarCatalog catalog) {
+		long start = System.nanoTime();
+		InvertedIndex.Builder movies = new InvertedIndex.Builder();
+		for (int i = 0; i < catalog.movieCount(); i++) {
+			movies.add(catalog.movieId(i), catalog.movieTitle(i));
+		}
+		InvertedIndex.Builder people = new InvertedIndex.Builder();
+		for (int i = 0; i < catalog.personCount(); i++) {
+			people.add(catalog.personId(i), catalog.personName(i));
+		}
+		return new IndexSearch(movies.build(), people.build(), (System.nanoTime() - start) / 1_000_000);
+	}
+
+	private static InvertedIndex index(Connection connection, String sql) throws SQLException {
+		InvertedIndex.Builder builder = new InvertedIndex.Builder();
+		try (Statement stmt = connection.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+			while (rs.next()) {
+				builder.add(rs.getInt(1), rs.getString(2));
+			}
+		}
+		return builder.build();
+	}
+
+	@Override
+	public List<Integer> searchMovies(String query, int limit) {
+		return movies.search(query, limit);
+	}
+
+	@Override
+	public List<Integer> searchPeople(String query, int limit) {
+		return people.search(query, limit);
+	}
+
+	/**
+	 * Returns a summary of the indexes.
+	 * This is primarily used for debugging purposes.
+	 *
+	 * @return a string representation of the search engine
+	 */
+	@Override
+	public String toString() {
+		return "IndexSearch [movies=" + movies + ", people=" + people + ", buildMillis=" + buildMillis + "]";
+	}
+}
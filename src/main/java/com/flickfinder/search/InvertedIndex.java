@@ -0,0 +1,513 @@
+package com.flickfinder.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import com.flickfinder.catalog.StringArena;
+
+/**
+ * An inverted index over one text field, ranked with BM25.
+ *
+ * Every document is a row, numbered in the order it was added. For every term
+ * the index keeps a posting list: the documents that contain the term and how
+ * often. The posting lists are compressed into one byte array. Each entry is
+ * the gap from the previous document and the term frequency, both as varints,
+ * so most entries take two bytes.
+ *
+ * The terms are kept sorted in a {@link StringArena} and found by binary
+ * search, which is far smaller than a HashMap of millions of Strings.
+ *
+ * A query matches documents that contain any of its terms. The posting lists
+ * of the terms are walked together one document at a time, and the best
+ * documents are kept in a small heap, so a query allocates next to nothing
+ * however many documents match.
+ *
+ * Every term also stores the highest score it gives any document. Once the
+ * heap is full, terms whose maximum scores add up to no more than the worst
+ * document in the heap cannot put a new document in it on their own, so they
+ * only need to be looked at for documents that the other terms match
+ * (MaxScore). A query like "the godfather" then costs about as much as
+ * "godfather".
+ */
+public final class InvertedIndex {
+
+	/**
+	 * BM25 term frequency saturation.
+	 */
+	static final double K1 = 1.2;
+
+	/**
+	 * BM25 document length normalization.
+	 */
+	static final double B = 0.75;
+
+	/**
+	 * The ids of the documents, by document number.
+	 */
+	private final int[] docIds;
+
+	/**
+	 * The number of terms in each document, by document number.
+	 */
+	private final int[] docLengths;
+
+	/**
+	 * The average number of terms in a document.
+	 */
+	private final double averageLength;
+
+	/**
+	 * The distinct terms, in sorted order.
+	 */
+	private final StringArena terms;
+
+	/**
+	 * The number of documents that contain each term.
+	 */
+	private final int[] docFrequencies;
+
+	/**
+	 * The highest score each term gives any document.
+	 */
+	private final double[] maxScores;
+
+	/**
+	 * Where each term's postings start in {@link #postings}, with one extra entry
+	 * at the end.
+	 */
+	private final int[] postingStarts;
+
+	/**
+	 * Every posting list, back to back.
+	 */
+	private final byte[] postings;
+
+	private InvertedIndex(int[] docIds, int[] docLengths, StringArena terms, int[] docFrequencies,
+			int[] postingStarts, byte[] postings) {
+		this.docIds = docIds;
+		this.docLengths = docLengths;
+		long total = 0;
+		for (int length : docLengths) {
+			total += length;
+		}
+		this.averageLength = docLengths.length == 0 ? 0 : (double) total / docLengths.length;
+		this.terms = terms;
+		this.docFrequencies = docFrequencies;
+		this.postingStarts = postingStarts;
+		this.postings = postings;
+
+		this.maxScores = new double[docFrequencies.length];
+		for (int t = 0; t < maxScores.length; t++) {
+			Cursor cursor = new Cursor(t);
+			while (cursor.doc != Integer.MAX_VALUE) {
+				maxScores[t] = Math.max(maxScores[t], cursor.score());
+				cursor.next();
+			}
+		}
+	}
+
+	/**
+	 * Returns the ids of the documents that best match a query.
+	 * Documents with the same score are in the order they were added.
+	 *
+	 * @param query the words to search for
+	 * @param limit the number of ids to return
+	 * @return the document ids, best match first
+	 */
+	public List<Integer> search(String query, int limit) {
+		List<Integer> ids = new ArrayList<>();
+		if (limit <= 0) {
+			return ids;
+		}
+
+		// a repeated query term counts once
+		List<Cursor> cursors = new ArrayList<>();
+		for (String term : new LinkedHashSet<>(Tokenizer.tokenize(query))) {
+			int t = find(term);
+			if (t >= 0) {
+				cursors.add(new Cursor(t));
+			}
+		}
+		if (cursors.isEmpty()) {
+			return ids;
+		}
+
+		// cheapest terms first, prefix[i] is the most that terms 0 to i - 1 can add
+		cursors.sort((a, b) -> Double.compare(a.maxScore, b.maxScore));
+		double[] prefix = new double[cursors.size() + 1];
+		for (int i = 0; i < cursors.size(); i++) {
+			prefix[i + 1] = prefix[i] + cursors.get(i).maxScore;
+		}
+
+		TopDocs top = new TopDocs(limit);
+		// terms before this one cannot put a document in the heap by themselves
+		int essential = 0;
+		while (true) {
+			while (essential < cursors.size() && top.isFull() && cannotEnter(prefix, essential + 1, top.threshold())) {
+				essential++;
+			}
+
+			int doc = Integer.MAX_VALUE;
+			for (int i = essential; i < cursors.size(); i++) {
+				doc = Math.min(doc, cursors.get(i).doc);
+			}
+			if (doc == Integer.MAX_VALUE) {
+				break;
+			}
+
+			double score = 0;
+			for (int i = cursors.size() - 1; i >= 0; i--) {
+				Cursor cursor = cursors.get(i);
+				if (i < essential) {
+					cursor.advance(doc);
+				}
+				if (cursor.doc == doc) {
+					score += cursor.score();
+					cursor.next();
+				}
+			}
+			top.offer(doc, score);
+		}
+
+		for (int doc : top.sorted()) {
+			ids.add(docIds[doc]);
+		}
+		return ids;
+	}
+
+	/**
+	 * Returns the number of documents in the index.
+	 *
+	 * @return the number of documents
+	 */
+	public int size() {
+		return docIds.length;
+	}
+
+	/**
+	 * Returns the number of distinct terms in the index.
+	 *
+	 * @return the number of terms
+	 */
+	public int termCount() {
+		return terms.size();
+	}
+
+	/**
+	 * Returns the number of bytes the index's arrays use on the heap.
+	 *
+	 * @return the size of the index in bytes
+	 */
+	public long getMemoryBytes() {
+		return 4L * (docIds.length + docLengths.length + docFrequencies.length + postingStarts.length)
+				+ 8L * maxScores.length + postings.length + terms.getMemoryBytes();
+	}
+
+	/**
+	 * Returns a summary of the index.
+	 * This is primarily used for debugging purposes.
+	 *
+	 * @return a string representation of the index
+	 */
+	@Override
+	public String toString() {
+		return "InvertedIndex [documents=" + size() + ", terms=" + termCount() + ", postingBytes="
+				+ postings.length + ", memoryBytes=" + getMemoryBytes() + "]";
+	}
+
+	/**
+	 * Whether a document that only matches the given number of cheapest terms can
+	 * never enter a full heap.
+	 * Documents arrive in order, so a new document that ties with the worst one
+	 * in the heap loses. A single term's score is the same sum as its maximum, so
+	 * that compares exactly. A sum of several terms may round differently, so
+	 * there we leave a little room.
+	 */
+	private static boolean cannotEnter(double[] prefix, int terms, double threshold) {
+		return terms == 1 ? prefix[1] <= threshold : prefix[terms] * (1 + 1e-9) < threshold;
+	}
+
+	/**
+	 * Returns the number of a term, or -1 if no document contains it.
+	 */
+	private int find(String term) {
+		int low = 0;
+		int high = terms.size() - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int cmp = terms.get(mid).compareTo(term);
+			if (cmp < 0) {
+				low = mid + 1;
+			} else if (cmp > 0) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Walks the posting list of one term.
+	 */
+	private final class Cursor {
+
+		private final double idf;
+		private final double maxScore;
+		private final int end;
+		private int position;
+		private int doc;
+		private int frequency;
+
+		Cursor(int term) {
+			int df = docFrequencies[term];
+			this.idf = Math.log(1 + (docIds.length - df + 0.5) / (df + 0.5));
+			// zero while the index is still computing the max scores
+			this.maxScore = maxScores[term];
+			this.position = postingStarts[term];
+			this.end = postingStarts[term + 1];
+			this.doc = 0;
+			next();
+		}
+
+		/**
+		 * Returns the BM25 score of the term for the current document.
+		 */
+		double score() {
+			double norm = K1 * (1 - B + B * docLengths[doc] / averageLength);
+			return idf * frequency * (K1 + 1) / (frequency + norm);
+		}
+
+		/**
+		 * Moves to the first posting at or after a document.
+		 */
+		void advance(int target) {
+			while (doc < target) {
+				next();
+			}
+		}
+
+		/**
+		 * Moves to the next posting, or sets doc to Integer.MAX_VALUE at the end.
+		 */
+		void next() {
+			if (position == end) {
+				doc = Integer.MAX_VALUE;
+				return;
+			}
+			doc += readVarint();
+			frequency = readVarint();
+		}
+
+		private int readVarint() {
+			int value = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = postings[position++];
+				value |= (b & 0x7f) << shift;
+				shift += 7;
+			} while (b < 0);
+			return value;
+		}
+	}
+
+	/**
+	 * Keeps the best documents seen so far in a min heap, worst at the top.
+	 */
+	private static final class TopDocs {
+
+		private final int[] docs;
+		private final double[] scores;
+		private int size;
+
+		TopDocs(int limit) {
+			docs = new int[limit];
+			scores = new double[limit];
+		}
+
+		boolean isFull() {
+			return size == docs.length;
+		}
+
+		/**
+		 * Returns the score of the worst document in the heap.
+		 */
+		double threshold() {
+			return scores[0];
+		}
+
+		void offer(int doc, double score) {
+			if (size < docs.length) {
+				docs[size] = doc;
+				scores[size] = score;
+				up(size++);
+			} else if (worse(0, doc, score)) {
+				docs[0] = doc;
+				scores[0] = score;
+				down(0);
+			}
+		}
+
+		/**
+		 * Returns the documents best first.
+		 */
+		int[] sorted() {
+			Integer[] order = new Integer[size];
+			for (int i = 0; i < size; i++) {
+				order[i] = i;
+			}
+			Arrays.sort(order, (a, b) -> scores[a] != scores[b] ? Double.compare(scores[b], scores[a])
+					: Integer.compare(docs[a], docs[b]));
+			int[] sorted = new int[size];
+			for (int i = 0; i < size; i++) {
+				sorted[i] = docs[order[i]];
+			}
+			return sorted;
+		}
+
+		/**
+		 * Whether the entry at i ranks below the given document. Documents arrive
+		 * in order, so on a tie the earlier document wins.
+		 */
+		private boolean worse(int i, int doc, double score) {
+			return scores[i] < score || (scores[i] == score && docs[i] > doc);
+		}
+
+		private void up(int i) {
+			while (i > 0) {
+				int parent = (i - 1) / 2;
+				if (!worse(i, docs[parent], scores[parent])) {
+					break;
+				}
+				swap(i, parent);
+				i = parent;
+			}
+		}
+
+		private void down(int i) {
+			while (true) {
+				int worst = i;
+				for (int child = 2 * i + 1; child <= 2 * i + 2 && child < size; child++) {
+					if (worse(child, docs[worst], scores[worst])) {
+						worst = child;
+					}
+				}
+				if (worst == i) {
+					return;
+				}
+				swap(i, worst);
+				i = worst;
+			}
+		}
+
+		private void swap(int a, int b) {
+			int doc = docs[a];
+			docs[a] = docs[b];
+			docs[b] = doc;
+			double score = scores[a];
+			scores[a] = scores[b];
+			scores[b] = score;
+		}
+	}
+
+	/**
+	 * Builds an index by adding documents one at a time.
+	 */
+	public static final class Builder {
+
+		private final Map<String, PostingWriter> writers = new HashMap<>();
+		private int[] docIds = new int[64];
+		private int[] docLengths = new int[64];
+		private int size;
+
+		/**
+		 * Adds a document.
+		 *
+		 * @param id   the id to return when the document matches
+		 * @param text the text to index, may be null
+		 */
+		public void add(int id, String text) {
+			if (size == docIds.length) {
+				docIds = Arrays.copyOf(docIds, size * 2);
+				docLengths = Arrays.copyOf(docLengths, size * 2);
+			}
+			List<String> tokens = Tokenizer.tokenize(text);
+			Map<String, Integer> frequencies = new HashMap<>();
+			for (String token : tokens) {
+				frequencies.merge(token, 1, Integer::sum);
+			}
+			for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+				writers.computeIfAbsent(entry.getKey(), term -> new PostingWriter()).add(size, entry.getValue());
+			}
+			docIds[size] = id;
+			docLengths[size] = tokens.size();
+			size++;
+		}
+
+		/**
+		 * Returns the index of the documents that were added.
+		 *
+		 * @return the index
+		 */
+		public InvertedIndex build() {
+			String[] sorted = writers.keySet().toArray(new String[0]);
+			Arrays.sort(sorted);
+
+			StringArena.Builder terms = new StringArena.Builder();
+			int[] docFrequencies = new int[sorted.length];
+			int[] postingStarts = new int[sorted.length + 1];
+			long total = 0;
+			for (int t = 0; t < sorted.length; t++) {
+				total += writers.get(sorted[t]).length;
+			}
+			byte[] postings = new byte[Math.toIntExact(total)];
+			int position = 0;
+			for (int t = 0; t < sorted.length; t++) {
+				PostingWriter writer = writers.get(sorted[t]);
+				terms.add(sorted[t]);
+				docFrequencies[t] = writer.docs;
+				postingStarts[t] = position;
+				System.arraycopy(writer.bytes, 0, postings, position, writer.length);
+				position += writer.length;
+			}
+			postingStarts[sorted.length] = position;
+
+			return new InvertedIndex(Arrays.copyOf(docIds, size), Arrays.copyOf(docLengths, size), terms.build(),
+					docFrequencies, postingStarts, postings);
+		}
+	}
+
+	/**
+	 * Encodes the posting list of one term while the index is built.
+	 */
+	private static final class PostingWriter {
+
+		private byte[] bytes = new byte[4];
+		private int length;
+		private int docs;
+		private int lastDoc;
+
+		void add(int doc, int frequency) {
+			writeVarint(doc - lastDoc);
+			writeVarint(frequency);
+			lastDoc = doc;
+			docs++;
+		}
+
+		private void writeVarint(int value) {
+			if (length + 5 > bytes.length) {
+				bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + 5));
+			}
+			while ((value & ~0x7f) != 0) {
+				bytes[length++] = (byte) ((value & 0x7f) | 0x80);
+				value >>>= 7;
+			}
+			bytes[length++] = (byte) value;
+		}
+	}
+}
@@ -0,0 +1,33 @@
+package com.flickfinder.search;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Finds movies by title and people by name.
+ *
+ * An engine only returns ids, best match first. The controller looks the rows
+ * up with the bulk DAO methods, so search works with either DAO backend.
+ */
+public interface SearchEngine {
+
+	/**
+	 * Returns the ids of the movies whose titles best match a query.
+	 *
+	 * @param query the words to search for
+	 * @param limit the number of ids to return
+	 * @return the movie ids, best match first
+	 * @throws SQLException if a database error occurs
+	 */
+	List<Integer> searchMovies(String query, int limit) throws SQLException;
+
+	/**
+	 * Returns the ids of the people whose names best match a query.
+	 *
+	 * @param query the words to search for
+	 * @param limit the number of ids to return
+	 * @return the person ids, best match first
+	 * @throws SQLException if a database error occurs
+	 */
+	List<Integer> searchPeople(String query, int limit) throws SQLException;
+}
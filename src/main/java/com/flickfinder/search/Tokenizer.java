@@ -0,0 +1,45 @@
+package com.flickfinder.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Splits titles, names and queries into search terms.
+ *
+ * Text is split on anything that is not a letter or a digit, lower cased, and
+ * accents are removed, so "Am&eacute;lie" and "amelie" are the same term. This is
+ * close to what SQLite's unicode61 tokenizer does with remove_diacritics, so
+ * both search engines agree on what a term is.
+ */
+public final class Tokenizer {
+
+	private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+	private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+
+	private Tokenizer() {
+	}
+
+	/**
+	 * Returns the terms of a piece of text, in order and with repeats.
+	 *
+	 * @param text the text, may be null
+	 * @return the terms
+	 */
+	public static List<String> tokenize(String text) {
+		List<String> terms = new ArrayList<>();
+		if (text == null) {
+			return terms;
+		}
+		String folded = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("")
+				.toLowerCase(Locale.ROOT);
+		for (String term : SEPARATORS.split(folded)) {
+			if (!term.isEmpty()) {
+				terms.add(term);
+			}
+		}
+		return terms;
+	}
+}
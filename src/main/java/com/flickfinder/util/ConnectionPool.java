@@ -0,0 +1,331 @@
+package com.flickfinder.util;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.sqlite.SQLiteConfig;
+import org.sqlite.SQLiteOpenMode;
+
+/**
+ * A fixed size pool of SQLite connections.
+ *
+ * Connections are checked out with {@link #borrow()} and must be handed back
+ * with {@link #release(Connection)}. Every connection is only ever used by one
+ * thread at a time, so requests no longer queue up behind a single shared
+ * connection inside the driver.
+ *
+ * Each connection has its own {@link StatementCache}, so a query is only
+ * prepared once per connection.
+ *
+ * The pool also keeps a few counters (checkouts, time spent waiting and how
+ * many connections are in use) so we can tell whether it is sized correctly.
+ */
+public class ConnectionPool {
+
+	/**
+	 * How long a caller waits for a free connection before giving up.
+	 */
+	static final long DEFAULT_TIMEOUT_MILLIS = 30_000;
+
+	/**
+	 * Every connection that belongs to the pool.
+	 */
+	private final List<Connection> connections;
+
+	/**
+	 * The connections that are not checked out.
+	 */
+	private final BlockingQueue<Connection> idle;
+
+	/**
+	 * The statement cache of each connection. This is filled in by the
+	 * constructor and never changes afterwards.
+	 */
+	private final Map<Connection, StatementCache> caches;
+
+	/**
+	 * Whether the pool opened the connections itself, and so has to close them.
+	 */
+	private final boolean owned;
+
+	/**
+	 * How long to wait for a connection, in milliseconds.
+	 */
+	private final long timeoutMillis;
+
+	private final LongAdder checkouts = new LongAdder();
+	private final LongAdder waits = new LongAdder();
+	private final LongAdder waitNanos = new LongAdder();
+	private final LongAdder timeouts = new LongAdder();
+	private final AtomicInteger inUse = new AtomicInteger();
+	private final AtomicInteger peakInUse = new AtomicInteger();
+
+	private ConnectionPool(List<Connection> connections, int statementCacheSize, boolean owned,
+			long timeoutMillis) {
+		this.connections = Collections.unmodifiableList(connections);
+		this.idle = new ArrayBlockingQueue<>(connections.size(), false, connections);
+		this.caches = new IdentityHashMap<>();
+		for (Connection connection : connections) {
+			caches.put(connection, new StatementCache(connection, statementCacheSize));
+		}
+		this.owned = owned;
+		this.timeoutMillis = timeoutMillis;
+	}
+
+	/**
+	 * Opens a pool of read only connections to a database file.
+	 *
+	 * @param url     the JDBC url of the database
+	 * @param size    the number of connections to open
+	 * @param profile the PRAGMAs to apply to each connection
+	 * @return the pool
+	 * @throws SQLException if a connection cannot be opened
+	 */
+	public static ConnectionPool open(String url, int size, PragmaProfile profile) throws SQLException {
+		return open(url, size, profile, StatementCache.DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Opens a pool of read only connections to a database file.
+	 *
+	 * @param url                the JDBC url of the database
+	 * @param size               the number of connections to open
+	 * @param profile            the PRAGMAs to apply to each connection
+	 * @param statementCacheSize the number of prepared statements to cache per
+	 *                           connection
+	 * @return the pool
+	 * @throws SQLException if a connection cannot be opened
+	 */
+	public static ConnectionPool open(String url, int size, PragmaProfile profile, int statementCacheSize)
+			throws SQLException {
+		if (size <= 0) {
+			throw new IllegalArgumentException("Pool size must be positive: " + size);
+		}
+
+		SQLiteConfig config = new SQLiteConfig();
+		config.setReadOnly(true);
+		// each connection is only used by one thread at a time
+		config.setOpenMode(SQLiteOpenMode.NOMUTEX);
+
+		List<Connection> connections = new ArrayList<>(size);
+		try {
+			for (int i = 0; i < size; i++) {
+				Connection connection = DriverManager.getConnection(url, config.toProperties());
+				connections.add(connection);
+				profile.apply(connection);
+			}
+		} catch (SQLException e) {
+			for (Connection connection : connections) {
+				connection.close();
+			}
+			throw e;
+		}
+		return new ConnectionPool(connections, statementCacheSize, true, DEFAULT_TIMEOUT_MILLIS);
+	}
+
+	/**
+	 * Wraps a single existing connection in a pool of one.
+	 * Callers take turns with the connection, and the pool never closes it.
+	 * We use this for the in-memory test database.
+	 *
+	 * @param connection the connection to share
+	 * @return the pool
+	 */
+	public static ConnectionPool wrap(Connection connection) {
+		List<Connection> connections = new ArrayList<>(1);
+		connections.add(connection);
+		return new ConnectionPool(connections, StatementCache.DEFAULT_CAPACITY, false, DEFAULT_TIMEOUT_MILLIS);
+	}
+
+	/**
+	 * Checks out a connection, waiting for one to become free if necessary.
+	 *
+	 * @return a connection that only the caller may use until it is released
+	 * @throws SQLException if no connection becomes free in time
+	 */
+	public Connection borrow() throws SQLException {
+		Connection connection = idle.poll();
+		if (connection == null) {
+			long start = System.nanoTime();
+			try {
+				connection = idle.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new SQLException("Interrupted while waiting for a database connection", e);
+			}
+			waits.increment();
+			waitNanos.add(System.nanoTime() - start);
+			if (connection == null) {
+				timeouts.increment();
+				throw new SQLException("Timed out waiting for a database connection");
+			}
+		}
+
+		checkouts.increment();
+		int current = inUse.incrementAndGet();
+		peakInUse.accumulateAndGet(current, Math::max);
+		return connection;
+	}
+
+	/**
+	 * Returns a connection to the pool.
+	 *
+	 * @param connection a connection obtained from {@link #borrow()}
+	 */
+	public void release(Connection connection) {
+		inUse.decrementAndGet();
+		idle.offer(connection);
+	}
+
+	/**
+	 * Returns the statement cache of a pooled connection.
+	 *
+	 * @param connection a connection obtained from {@link #borrow()}
+	 * @return the statement cache of the connection
+	 */
+	public StatementCache getStatementCache(Connection connection) {
+		StatementCache cache = caches.get(connection);
+		if (cache == null) {
+			throw new IllegalArgumentException("Connection does not belong to this pool");
+		}
+		return cache;
+	}
+
+	/**
+	 * Returns the number of cached statements that are open across the pool.
+	 * Each of them holds a native SQLite statement handle.
+	 *
+	 * @return the number of open statements
+	 */
+	public int getOpenStatements() {
+		int open = 0;
+		for (StatementCache cache : caches.values()) {
+			open += cache.size();
+		}
+		return open;
+	}
+
+	/**
+	 * Closes every cached statement, and every connection if the pool opened them.
+	 */
+	public void close() {
+		for (StatementCache cache : caches.values()) {
+			cache.close();
+		}
+		if (!owned) {
+			return;
+		}
+		for (Connection connection : connections) {
+			try {
+				connection.close();
+			} catch (SQLException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Returns every connection in the pool, whether it is checked out or not.
+	 *
+	 * @return the connections
+	 */
+	List<Connection> getConnections() {
+		return connections;
+	}
+
+	/**
+	 * Returns the number of connections in the pool.
+	 *
+	 * @return the size of the pool
+	 */
+	public int getSize() {
+		return connections.size();
+	}
+
+	/**
+	 * Returns the number of connections that are checked out right now.
+	 *
+	 * @return the number of connections in use
+	 */
+	public int getInUse() {
+		return inUse.get();
+	}
+
+	/**
+	 * Returns the highest number of connections that were checked out at once.
+	 *
+	 * @return the peak number of connections in use
+	 */
+	public int getPeakInUse() {
+		return peakInUse.get();
+	}
+
+	/**
+	 * Returns the fraction of the pool that is checked out right now.
+	 *
+	 * @return the utilization, between 0 and 1
+	 */
+	public double getUtilization() {
+		return (double) inUse.get() / connections.size();
+	}
+
+	/**
+	 * Returns the total number of checkouts.
+	 *
+	 * @return the number of checkouts
+	 */
+	public long getCheckouts() {
+		return checkouts.sum();
+	}
+
+	/**
+	 * Returns how many checkouts had to wait for a connection.
+	 *
+	 * @return the number of checkouts that waited
+	 */
+	public long getWaits() {
+		return waits.sum();
+	}
+
+	/**
+	 * Returns the total time spent waiting for a connection, in nanoseconds.
+	 *
+	 * @return the total wait time
+	 */
+	public long getWaitNanos() {
+		return waitNanos.sum();
+	}
+
+	/**
+	 * Returns how many checkouts gave up waiting for a connection.
+	 *
+	 * @return the number of timeouts
+	 */
+	public long getTimeouts() {
+		return timeouts.sum();
+	}
+
+	/**
+	 * Returns a summary of the pool counters.
+	 * This is primarily used for debugging purposes.
+	 *
+	 * @return a string representation of the pool
+	 */
+	@Override
+	public String toString() {
+		return "ConnectionPool [size=" + getSize() + ", inUse=" + getInUse() + ", peakInUse=" + getPeakInUse()
+				+ ", openStatements=" + getOpenStatements() + ", checkouts=" + getCheckouts() + ", waits=" + getWaits() + ", waitMillis="
+				+ TimeUnit.NANOSECONDS.toMillis(getWaitNanos()) + ", timeouts=" + getTimeouts() + "]";
+	}
+}
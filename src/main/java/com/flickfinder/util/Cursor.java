@@ -0,0 +1,61 @@
+package com.flickfinder.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Encodes and decodes the opaque cursors used for keyset pagination.
+ *
+ * A cursor remembers the last primary key a client has seen, so the next page
+ * starts with {@code where id > ?} and SQLite seeks straight to it through the
+ * primary key. Unlike OFFSET, every page costs the same no matter how deep it
+ * is.
+ *
+ * The key is Base64 encoded together with the name of the list it belongs to,
+ * so clients treat it as an opaque token and a movies cursor cannot be used to
+ * page through people.
+ */
+public final class Cursor {
+
+	private Cursor() {
+	}
+
+	/**
+	 * Creates a cursor that continues after the given id.
+	 *
+	 * @param list the name of the list, e.g. "movies"
+	 * @param id   the last id on the current page
+	 * @return the cursor
+	 */
+	public static String encode(String list, int id) {
+		String value = list + ":" + id;
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Reads the id out of a cursor.
+	 *
+	 * @param list   the name of the list the cursor must belong to
+	 * @param cursor the cursor sent by the client
+	 * @return the last id the client has seen
+	 * @throws IllegalArgumentException if the cursor is malformed or belongs to
+	 *                                  another list
+	 */
+	public static int decode(String list, String cursor) {
+		String value;
+		try {
+			value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Invalid cursor", e);
+		}
+		String prefix = list + ":";
+		if (!value.startsWith(prefix)) {
+			throw new IllegalArgumentException("Invalid cursor");
+		}
+		try {
+			return Integer.parseInt(value.substring(prefix.length()));
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid cursor", e);
+		}
+	}
+}
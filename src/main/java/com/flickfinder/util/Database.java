@@ -1,8 +1,28 @@
 package com.flickfinder.util;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import com.flickfinder.catalog.CatalogSnapshot;
+import com.flickfinder.catalog.CoStarGraph;
+import com.flickfinder.catalog.CollaboratorIndex;
+import com.flickfinder.catalog.ColumnarCatalog;
+import com.flickfinder.catalog.CreditAdjacency;
+import com.flickfinder.catalog.RatingIndex;
+import com.flickfinder.catalog.SimilarityIndex;
+import com.flickfinder.metrics.Metrics;
+import com.flickfinder.metrics.QueryLog;
+import com.flickfinder.search.IndexSearch;
 
 /**
  * A class to handle the database connection.
@@ -18,9 +38,74 @@ public class Database {
 
 	/**
 	 * The connection to the database.
+	 * This is only set when the database shares a single connection, in pooled
+	 * mode every caller borrows a connection from {@link #pool} instead.
 	 */
 	Connection connection;
 
+	/**
+	 * The pool that the DAOs borrow connections from.
+	 */
+	private final ConnectionPool pool;
+
+	/**
+	 * The in-memory copy of the database, loaded the first time it is asked for.
+	 */
+	private ColumnarCatalog catalog;
+
+	/**
+	 * The snapshot file that the catalog is mapped from, or null to always load
+	 * it from the database.
+	 */
+	private Path snapshot;
+
+	/**
+	 * The ratings leaderboard, built the first time it is asked for.
+	 */
+	private RatingIndex ratingIndex;
+
+	/**
+	 * The full text index of titles and names, built the first time it is asked
+	 * for.
+	 */
+	private IndexSearch searchIndex;
+
+	/**
+	 * The graph of who starred with whom, built the first time it is asked for.
+	 */
+	private CoStarGraph coStarGraph;
+
+	/**
+	 * The stars and directors adjacency lists that the co-star graph, the
+	 * collaborator index and the similarity index share, loaded the first time
+	 * they are asked for.
+	 */
+	private CreditAdjacency credits;
+	private CollaboratorIndex collaboratorIndex;
+
+	/**
+	 * The MinHash buckets of movie credits, built the first time they are asked
+	 * for.
+	 */
+	private SimilarityIndex similarityIndex;
+
+	/**
+	 * Identifies the contents of the database, worked out the first time it is
+	 * asked for.
+	 */
+	private String version;
+
+	/**
+	 * The executor that database work is sent to, or null to run it on the
+	 * calling thread.
+	 */
+	private volatile DatabaseExecutor executor;
+
+	/**
+	 * The keyed lookups in flight, shared by concurrent identical callers.
+	 */
+	private final SingleFlight singleFlight = new SingleFlight();
+
 	/**
 	 * The constructor for the database.
 	 * This is private as we are using a singleton pattern.
@@ -34,6 +119,16 @@ public class Database {
 		} catch (SQLException e) {
 			e.printStackTrace();
 		}
+		this.pool = ConnectionPool.wrap(this.connection);
+	}
+
+	/**
+	 * The constructor for a pooled database.
+	 *
+	 * @param pool the pool of connections to the database
+	 */
+	private Database(ConnectionPool pool) {
+		this.pool = pool;
 	}
 
 	/**
@@ -45,6 +140,7 @@ public class Database {
 
 	private Database(Connection connection) {
 		this.connection = connection;
+		this.pool = ConnectionPool.wrap(connection);
 	}
 
 	/**
@@ -62,6 +158,33 @@ public class Database {
 		return instance;
 	}
 
+	/**
+	 * Returns the instance of the database, backed by a pool of read only
+	 * connections to the database file. Each connection has the PRAGMAs of the
+	 * given profile applied to it.
+	 * If a pool size of zero or less is given, this behaves like
+	 * {@link #getInstance(String)} and a single connection is shared.
+	 *
+	 * @param path     the path to the database file
+	 * @param poolSize the number of connections to open
+	 * @param profile  the PRAGMAs to apply to each connection
+	 * @return the instance of the database
+	 */
+	public static Database getInstance(String path, int poolSize, PragmaProfile profile) {
+		if (poolSize <= 0) {
+			return getInstance(path);
+		}
+		if (instance == null) {
+			try {
+				instance = new Database(ConnectionPool.open(path, poolSize, profile));
+			} catch (SQLException e) {
+				e.printStackTrace();
+				instance = new Database(path);
+			}
+		}
+		return instance;
+	}
+
 	/**
 	 * Returns the instance of the database. However, this methods allows us 
 	 * to pass in the connection to an instance of an in-memory database.
@@ -104,12 +227,415 @@ public class Database {
 
 	/**
 	 * Returns the connection to the database.
+	 * This only works when a single connection is shared, in pooled mode use
+	 * {@link #withConnection(SqlFunction)} instead.
 	 * 
 	 * @return the connection to the database
 	 */
 
 	public Connection getConnection() {
+		if (this.connection == null) {
+			throw new IllegalStateException("Database is pooled, borrow a connection instead");
+		}
 		return this.connection;
 	}
 
+	/**
+	 * Returns the pool that connections are borrowed from.
+	 * When a single connection is shared this is a pool of one.
+	 *
+	 * @return the connection pool
+	 */
+	public ConnectionPool getPool() {
+		return this.pool;
+	}
+
+	/**
+	 * Checks a connection out of the pool. It must be handed back with
+	 * {@link #releaseConnection(Connection)}.
+	 *
+	 * @return a connection to the database
+	 * @throws SQLException if no connection becomes free in time
+	 */
+	public Connection borrowConnection() throws SQLException {
+		return this.pool.borrow();
+	}
+
+	/**
+	 * Hands a connection back to the pool.
+	 *
+	 * @param connection the connection to release
+	 */
+	public void releaseConnection(Connection connection) {
+		this.pool.release(connection);
+	}
+
+	/**
+	 * Returns a prepared statement for the SQL from the statement cache of a
+	 * borrowed connection.
+	 * The statement must not be closed, but any ResultSet from it must be.
+	 * Each call counts as a statement of the current {@link QueryLog}.
+	 *
+	 * @param connection a borrowed connection
+	 * @param sql        the SQL of the statement
+	 * @return the prepared statement
+	 * @throws SQLException if the statement cannot be prepared
+	 */
+	public PreparedStatement prepareStatement(Connection connection, String sql) throws SQLException {
+		QueryLog.recordStatement();
+		return this.pool.getStatementCache(connection).prepare(sql);
+	}
+
+	/**
+	 * Returns an in-memory columnar copy of the database.
+	 * The database is read only, so the copy is loaded the first time this is
+	 * called and shared from then on.
+	 *
+	 * If a snapshot file is set, the catalog is mapped from it instead. A missing
+	 * or invalid snapshot, or one written from another version of the database
+	 * file, is written again from the database, so the next start can map it.
+	 *
+	 * @return the catalog
+	 * @throws SQLException if the catalog cannot be loaded
+	 */
+	public synchronized ColumnarCatalog getCatalog() throws SQLException {
+		if (this.catalog != null) {
+			return this.catalog;
+		}
+		Path source = this.snapshot != null ? getFile() : null;
+		if (this.snapshot != null) {
+			try {
+				this.catalog = CatalogSnapshot.map(this.snapshot, source);
+			} catch (IOException e) {
+				System.out.println("Could not map " + this.snapshot + ", loading the catalog instead: " + e);
+			}
+		}
+		if (this.catalog == null) {
+			this.catalog = withConnection(ColumnarCatalog::load);
+			if (this.snapshot != null) {
+				try {
+					CatalogSnapshot.write(this.catalog, this.snapshot, source);
+				} catch (IOException e) {
+					// carry on with the loaded catalog
+					e.printStackTrace();
+				}
+			}
+		}
+		System.out.println("Loaded " + this.catalog);
+		return this.catalog;
+	}
+
+	/**
+	 * Maps the catalog from a snapshot file rather than loading it from the
+	 * database. This has to be set before the catalog is first asked for.
+	 *
+	 * @param snapshot the snapshot file, or null to load from the database
+	 */
+	public void setSnapshot(Path snapshot) {
+		this.snapshot = snapshot;
+	}
+
+	/**
+	 * Returns the index of rated movies by year and rating.
+	 * It is built the first time this is called, from the catalog if that is
+	 * already loaded and with a single query otherwise.
+	 *
+	 * @return the rating index
+	 * @throws SQLException if the index cannot be built
+	 */
+	public synchronized RatingIndex getRatingIndex() throws SQLException {
+		if (this.ratingIndex == null) {
+			this.ratingIndex = this.catalog != null ? RatingIndex.build(this.catalog) : withConnection(RatingIndex::load);
+			System.out.println("Built " + this.ratingIndex);
+		}
+		return this.ratingIndex;
+	}
+
+	/**
+	 * Returns the in-process full text index of movie titles and person names.
+	 * It is built the first time this is called, from the catalog if that is
+	 * already loaded and from the tables otherwise.
+	 *
+	 * @return the search index
+	 * @throws SQLException if the index cannot be built
+	 */
+	public synchronized IndexSearch getSearchIndex() throws SQLException {
+		if (this.searchIndex == null) {
+			this.searchIndex = this.catalog != null ? IndexSearch.build(this.catalog) : withConnection(IndexSearch::load);
+			System.out.println("Built " + this.searchIndex);
+		}
+		return this.searchIndex;
+	}
+
+	/**
+	 * Returns the stars and directors tables as adjacency lists.
+	 * They are loaded the first time this is called, shared with the catalog if
+	 * that is already loaded and from the credit tables otherwise, so the tables
+	 * are only read once for every index that walks them.
+	 *
+	 * @return the credit adjacency lists
+	 * @throws SQLException if the tables cannot be read
+	 */
+	public synchronized CreditAdjacency getCredits() throws SQLException {
+		if (this.credits == null) {
+			this.credits = this.catalog != null ? CreditAdjacency.of(this.catalog)
+					: withConnection(CreditAdjacency::load);
+			System.out.println("Loaded " + this.credits);
+		}
+		return this.credits;
+	}
+
+	/**
+	 * Returns the graph of people who starred in the same movie.
+	 * It is built the first time this is called, sharing the credit adjacency
+	 * lists.
+	 *
+	 * @return the co-star graph
+	 * @throws SQLException if the graph cannot be built
+	 */
+	public synchronized CoStarGraph getCoStarGraph() throws SQLException {
+		if (this.coStarGraph == null) {
+			this.coStarGraph = CoStarGraph.of(getCredits());
+			System.out.println("Built " + this.coStarGraph);
+		}
+		return this.coStarGraph;
+	}
+
+	/**
+	 * Returns the index of who starred in or directed the same movies.
+	 * It is built the first time this is called, sharing the credit adjacency
+	 * lists.
+	 *
+	 * @return the collaborator index
+	 * @throws SQLException if the index cannot be built
+	 */
+	public synchronized CollaboratorIndex getCollaboratorIndex() throws SQLException {
+		if (this.collaboratorIndex == null) {
+			this.collaboratorIndex = CollaboratorIndex.of(getCredits());
+			System.out.println("Built " + this.collaboratorIndex);
+		}
+		return this.collaboratorIndex;
+	}
+
+	/**
+	 * Returns the index of movies with similar cast and directors.
+	 * It is built the first time this is called, sharing the credit adjacency
+	 * lists, with the ratings of the catalog if that is loaded and from the
+	 * ratings table otherwise.
+	 *
+	 * @return the similarity index
+	 * @throws SQLException if the index cannot be built
+	 */
+	public synchronized SimilarityIndex getSimilarityIndex() throws SQLException {
+		if (this.similarityIndex == null) {
+			CreditAdjacency shared = getCredits();
+			this.similarityIndex = this.catalog != null ? SimilarityIndex.of(shared, this.catalog)
+					: withConnection(connection -> SimilarityIndex.of(shared, connection));
+			System.out.println("Built " + this.similarityIndex);
+		}
+		return this.similarityIndex;
+	}
+
+	/**
+	 * Returns a string that changes whenever the contents of the database may
+	 * have changed, for use in HTTP ETags.
+	 * For a database file this is its path, size, modification time and schema
+	 * version. An in-memory database gets a new version every time it is opened.
+	 *
+	 * @return the version of the database
+	 * @throws SQLException if a database error occurs
+	 */
+	public synchronized String getVersion() throws SQLException {
+		if (this.version == null) {
+			Path file = getFile();
+			int schemaVersion = withConnection(connection -> {
+				try (Statement stmt = connection.createStatement();
+						ResultSet rs = stmt.executeQuery("pragma schema_version")) {
+					return rs.next() ? rs.getInt(1) : 0;
+				}
+			});
+
+			if (file == null) {
+				this.version = "memory:" + schemaVersion + ":" + System.nanoTime();
+			} else {
+				File db = file.toFile();
+				this.version = file + ":" + db.length() + ":" + db.lastModified() + ":" + schemaVersion;
+			}
+		}
+		return this.version;
+	}
+
+	/**
+	 * Returns the file the database is read from.
+	 *
+	 * @return the database file, or null for an in-memory database
+	 * @throws SQLException if a database error occurs
+	 */
+	public Path getFile() throws SQLException {
+		return withConnection(connection -> {
+			try (Statement stmt = connection.createStatement();
+					ResultSet rs = stmt.executeQuery("pragma database_list")) {
+				while (rs.next()) {
+					String file = rs.getString("file");
+					if ("main".equals(rs.getString("name")) && file != null && !file.isEmpty()
+							&& new File(file).isFile()) {
+						return Path.of(file);
+					}
+				}
+			}
+			return null;
+		});
+	}
+
+	/**
+	 * Borrows a connection, runs the given work with it and then hands it back,
+	 * even if the work throws.
+	 * The DAOs wrap each of their queries in this method.
+	 * If a {@link DatabaseExecutor} is set, the work runs on one of its threads
+	 * and the caller waits for it.
+	 *
+	 * @param <T>  the type of the result
+	 * @param work the work to do with the connection
+	 * @return the result of the work
+	 * @throws SQLException if a database error occurs
+	 */
+	public <T> T withConnection(SqlFunction<Connection, T> work) throws SQLException {
+		DatabaseExecutor executor = this.executor;
+		if (executor != null) {
+			return executor.call(() -> borrowAndApply(work));
+		}
+		return borrowAndApply(work);
+	}
+
+	/**
+	 * Does the same as {@link #withConnection(SqlFunction)}, and records how long
+	 * the work took and how many rows it returned under the name of the query.
+	 * A list or map counts as its size, null as no rows and anything else as one.
+	 *
+	 * @param <T>   the type of the result
+	 * @param query the name of the query, usually the DAO method
+	 * @param work  the work to do with the connection
+	 * @return the result of the work
+	 * @throws SQLException if a database error occurs
+	 */
+	public <T> T withConnection(String query, SqlFunction<Connection, T> work) throws SQLException {
+		return withConnection(query, null, work);
+	}
+
+	/**
+	 * Does the same as {@link #withConnection(String, SqlFunction)}, and also
+	 * records the call in the current {@link QueryLog} with its arguments, so a
+	 * repeat of it in the same request is flagged as a duplicate.
+	 *
+	 * @param <T>   the type of the result
+	 * @param query the name of the query, usually the DAO method
+	 * @param args  the arguments of the DAO method, e.g. the id or a list of
+	 *              them, or null to skip the duplicate check
+	 * @param work  the work to do with the connection
+	 * @return the result of the work
+	 * @throws SQLException if a database error occurs
+	 */
+	public <T> T withConnection(String query, Object args, SqlFunction<Connection, T> work) throws SQLException {
+		Metrics.Query metrics = Metrics.getInstance().query(query);
+		long start = System.nanoTime();
+		T result;
+		try {
+			result = withConnection(work);
+		} catch (SQLException | RuntimeException e) {
+			long nanos = System.nanoTime() - start;
+			metrics.recordError(nanos);
+			QueryLog.recordCall(query, args, nanos, 0);
+			throw e;
+		}
+		long nanos = System.nanoTime() - start;
+		long rows = rows(result);
+		metrics.record(nanos, rows);
+		QueryLog.recordCall(query, args, nanos, rows);
+		return result;
+	}
+
+	private static long rows(Object result) {
+		if (result instanceof Collection) {
+			return ((Collection<?>) result).size();
+		}
+		if (result instanceof Map) {
+			return ((Map<?, ?>) result).size();
+		}
+		return result == null ? 0 : 1;
+	}
+
+	private <T> T borrowAndApply(SqlFunction<Connection, T> work) throws SQLException {
+		Connection connection = borrowConnection();
+		try {
+			return work.apply(connection);
+		} finally {
+			releaseConnection(connection);
+		}
+	}
+
+	/**
+	 * Runs work on the {@link DatabaseExecutor} without waiting for it.
+	 * The DAOs' async methods wrap their synchronous ones in this. Without an
+	 * executor the work runs straight away on the calling thread.
+	 *
+	 * @param <T>  the type of the result
+	 * @param work the work to run, usually a DAO method
+	 * @return the result of the work, when it is done; it fails with a
+	 *         {@link DatabaseBusyException} if the executor's queue is full
+	 */
+	public <T> CompletableFuture<T> async(DatabaseExecutor.SqlCallable<T> work) {
+		DatabaseExecutor executor = this.executor;
+		if (executor != null) {
+			return executor.submit(work);
+		}
+		try {
+			return CompletableFuture.completedFuture(work.call());
+		} catch (SQLException | RuntimeException e) {
+			return CompletableFuture.failedFuture(e);
+		}
+	}
+
+	/**
+	 * Does the same as {@link #async(DatabaseExecutor.SqlCallable)}, but callers
+	 * that ask for the same key while the work is running share its result
+	 * instead of running it again.
+	 *
+	 * @param <T>  the type of the result
+	 * @param key  identifies the work, e.g. the DAO method and its arguments
+	 * @param work the work to run
+	 * @return the result of the work, when it is done
+	 */
+	public <T> CompletableFuture<T> async(String key, DatabaseExecutor.SqlCallable<T> work) {
+		return singleFlight.run(key, () -> async(work));
+	}
+
+	/**
+	 * Returns the coalescing counters of {@link #async(String, DatabaseExecutor.SqlCallable)}.
+	 *
+	 * @return the single flight
+	 */
+	public SingleFlight getSingleFlight() {
+		return singleFlight;
+	}
+
+	/**
+	 * Sends the work of {@link #withConnection(SqlFunction)} and
+	 * {@link #async(DatabaseExecutor.SqlCallable)} through an executor, or back to
+	 * the calling thread if null is given.
+	 *
+	 * @param executor the executor to run database work on
+	 */
+	public void setExecutor(DatabaseExecutor executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * Returns the executor that database work runs on.
+	 *
+	 * @return the executor, or null if work runs on the calling thread
+	 */
+	public DatabaseExecutor getExecutor() {
+		return this.executor;
+	}
+
 }
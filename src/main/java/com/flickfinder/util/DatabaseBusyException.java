@@ -0,0 +1,37 @@
+package com.flickfinder.util;
+
+import java.sql.SQLTransientException;
+
+/**
+ * Thrown when the {@link DatabaseExecutor} queue is full, so the query was not
+ * run at all. The caller may try again later.
+ */
+public class DatabaseBusyException extends SQLTransientException {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * How long the queue is expected to take to drain, in seconds.
+	 */
+	private final int retryAfterSeconds;
+
+	/**
+	 * Constructs a DatabaseBusyException object.
+	 *
+	 * @param retryAfterSeconds how long the caller should wait before trying
+	 *                          again, in seconds
+	 */
+	public DatabaseBusyException(int retryAfterSeconds) {
+		super("Database executor is full");
+		this.retryAfterSeconds = retryAfterSeconds;
+	}
+
+	/**
+	 * Returns how long the caller should wait before trying again.
+	 *
+	 * @return the delay in seconds, at least 1
+	 */
+	public int getRetryAfterSeconds() {
+		return retryAfterSeconds;
+	}
+}
@@ -0,0 +1,269 @@
+package com.flickfinder.util;
+
+import java.sql.SQLException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.flickfinder.metrics.QueryLog;
+
+/**
+ * A fixed number of platform threads that run all JDBC work.
+ *
+ * When requests run on virtual threads there can be far more of them than the
+ * database can serve at once, and a virtual thread that blocks inside the
+ * SQLite driver pins its carrier thread. So instead of calling the driver
+ * themselves, request threads hand their work to this executor, which has one
+ * thread per pooled connection, and wait for the result with
+ * {@link #call(SqlCallable)}. Waiting is cheap for a virtual thread. The async
+ * DAO methods use {@link #submit(SqlCallable)} instead, which does not block the
+ * request thread at all.
+ *
+ * The queue is bounded, so an overloaded server fails fast with a
+ * {@link DatabaseBusyException} instead of piling up work it will never get to.
+ *
+ * The executor counts submissions, rejections and how long work waited in the
+ * queue, so we can tell whether it is sized correctly.
+ */
+public class DatabaseExecutor {
+
+	/**
+	 * How many tasks may wait for a thread when none is given.
+	 */
+	public static final int DEFAULT_QUEUE_CAPACITY = 10_000;
+
+	private final ThreadPoolExecutor executor;
+
+	private final LongAdder submitted = new LongAdder();
+	private final LongAdder rejected = new LongAdder();
+	private final LongAdder queueNanos = new LongAdder();
+	private final LongAdder runNanos = new LongAdder();
+	private final AtomicInteger peakQueued = new AtomicInteger();
+
+	/**
+	 * Constructs a DatabaseExecutor object.
+	 *
+	 * @param threads       the number of threads, usually the size of the
+	 *                      connection pool
+	 * @param queueCapacity how many tasks may wait for a thread
+	 */
+	public DatabaseExecutor(int threads, int queueCapacity) {
+		if (threads <= 0) {
+			throw new IllegalArgumentException("Thread count must be positive: " + threads);
+		}
+		AtomicInteger count = new AtomicInteger();
+		this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+					Thread thread = new Worker(runnable, "db-" + count.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+	}
+
+	/**
+	 * Runs work on one of the executor's threads and waits for its result.
+	 * Work submitted from one of the executor's own threads runs straight away,
+	 * so nested calls cannot deadlock.
+	 *
+	 * @param <T>  the type of the result
+	 * @param work the work to run
+	 * @return the result of the work
+	 * @throws DatabaseBusyException if the queue is full
+	 * @throws SQLException          if the work fails or the caller is
+	 *                               interrupted
+	 */
+	public <T> T call(SqlCallable<T> work) throws SQLException {
+		if (Thread.currentThread() instanceof Worker) {
+			return work.call();
+		}
+
+		CompletableFuture<T> future = submit(work);
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			future.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while waiting for the database", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof SQLException) {
+				throw (SQLException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new SQLException(cause);
+		}
+	}
+
+	/**
+	 * Queues work to run on one of the executor's threads.
+	 * The work counts towards the caller's {@link QueryLog}.
+	 * If the queue is full the work is not run, and the future fails with a
+	 * {@link DatabaseBusyException} straight away.
+	 *
+	 * @param <T>  the type of the result
+	 * @param work the work to run
+	 * @return the result of the work, when it is done
+	 */
+	public <T> CompletableFuture<T> submit(SqlCallable<T> work) {
+		CompletableFuture<T> future = new CompletableFuture<>();
+		long queuedAt = System.nanoTime();
+		QueryLog log = QueryLog.current();
+		Runnable task = () -> {
+			long startedAt = System.nanoTime();
+			queueNanos.add(startedAt - queuedAt);
+			QueryLog previous = QueryLog.attach(log);
+			try {
+				future.complete(work.call());
+			} catch (Throwable e) {
+				future.completeExceptionally(e);
+			} finally {
+				QueryLog.attach(previous);
+				runNanos.add(System.nanoTime() - startedAt);
+			}
+		};
+		try {
+			executor.execute(task);
+		} catch (RejectedExecutionException e) {
+			rejected.increment();
+			return CompletableFuture.failedFuture(new DatabaseBusyException(getRetryAfterSeconds()));
+		}
+		submitted.increment();
+		peakQueued.accumulateAndGet(executor.getQueue().size(), Math::max);
+		return future;
+	}
+
+	/**
+	 * Returns how long a full queue is expected to take to drain, from the
+	 * average time a task has taken so far.
+	 *
+	 * @return the time in seconds, at least 1
+	 */
+	public int getRetryAfterSeconds() {
+		long completed = executor.getCompletedTaskCount();
+		double taskSeconds = completed == 0 ? 0 : runNanos.sum() / 1e9 / completed;
+		double drainSeconds = executor.getQueue().size() * taskSeconds / getThreads();
+		return (int) Math.max(1, Math.ceil(drainSeconds));
+	}
+
+	/**
+	 * Stops the threads once the work already submitted is done.
+	 */
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	/**
+	 * Returns the number of threads.
+	 *
+	 * @return the number of threads
+	 */
+	public int getThreads() {
+		return executor.getMaximumPoolSize();
+	}
+
+	/**
+	 * Returns the number of threads that are running work right now.
+	 *
+	 * @return the number of busy threads
+	 */
+	public int getActive() {
+		return executor.getActiveCount();
+	}
+
+	/**
+	 * Returns the number of tasks waiting for a thread right now.
+	 *
+	 * @return the queue length
+	 */
+	public int getQueued() {
+		return executor.getQueue().size();
+	}
+
+	/**
+	 * Returns the most tasks that have been waiting for a thread at once.
+	 *
+	 * @return the peak queue length
+	 */
+	public int getPeakQueued() {
+		return peakQueued.get();
+	}
+
+	/**
+	 * Returns the number of tasks that were accepted.
+	 *
+	 * @return the number of tasks submitted
+	 */
+	public long getSubmitted() {
+		return submitted.sum();
+	}
+
+	/**
+	 * Returns the number of tasks that were turned away because the queue was
+	 * full.
+	 *
+	 * @return the number of tasks rejected
+	 */
+	public long getRejected() {
+		return rejected.sum();
+	}
+
+	/**
+	 * Returns the average time a task waited for a thread, in milliseconds.
+	 *
+	 * @return the mean queueing time
+	 */
+	public double getMeanQueueMillis() {
+		long completed = executor.getCompletedTaskCount();
+		return completed == 0 ? 0 : queueNanos.sum() / 1e6 / completed;
+	}
+
+	/**
+	 * Returns the executor's counters.
+	 * This is primarily used for debugging purposes.
+	 *
+	 * @return a string representation of the executor
+	 */
+	@Override
+	public String toString() {
+		return "DatabaseExecutor [threads=" + getThreads() + ", active=" + getActive() + ", queued=" + getQueued()
+				+ ", peakQueued=" + getPeakQueued() + ", submitted=" + getSubmitted() + ", rejected="
+				+ getRejected() + ", meanQueueMillis=" + getMeanQueueMillis() + "]";
+	}
+
+	/**
+	 * Work that is allowed to throw a {@link SQLException}.
+	 *
+	 * @param <T> the type of the result
+	 */
+	@FunctionalInterface
+	public interface SqlCallable<T> {
+
+		/**
+		 * Runs the work.
+		 *
+		 * @return the result
+		 * @throws SQLException if a database error occurs
+		 */
+		T call() throws SQLException;
+	}
+
+	/**
+	 * The executor's threads, so that work submitted from them can be spotted.
+	 */
+	private static final class Worker extends Thread {
+
+		Worker(Runnable runnable, String name) {
+			super(runnable, name);
+		}
+	}
+}
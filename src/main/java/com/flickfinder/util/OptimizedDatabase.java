@@ -0,0 +1,180 @@
+package com.flickfinder.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.sqlite.SQLiteConfig;
+
+/**
+ * An indexed copy of movies.db that the server reads from instead.
+ *
+ * movies.db only has the primary keys of movies and people, so looking up the
+ * stars of a movie, the movies of a star or the rated movies of a year scans a
+ * whole table. We are not allowed to change the file, so at startup we copy it
+ * and add covering indexes to the copy: every column a lookup reads is in the
+ * index, and SQLite never has to visit the table rows. ANALYZE then gives the
+ * query planner the statistics it needs to pick them.
+ *
+ * The copy stores the SHA-256 checksum of the file it was made from, and is
+ * reused as long as that still matches movies.db. It can also be made ahead of
+ * time with {@link #main(String[])}.
+ */
+public final class OptimizedDatabase {
+
+	/**
+	 * The indexes added to the copy.
+	 */
+	static final String[] INDEXES = {
+			"create index if not exists stars_movie on stars (movie_id, person_id)",
+			"create index if not exists stars_person on stars (person_id, movie_id)",
+			"create index if not exists directors_movie on directors (movie_id, person_id)",
+			"create index if not exists directors_person on directors (person_id, movie_id)",
+			"create index if not exists ratings_movie on ratings (movie_id, votes, rating)",
+			"create index if not exists movies_year on movies (year, title)" };
+
+	private OptimizedDatabase() {
+	}
+
+	/**
+	 * Returns an indexed copy of a database, making it if there is no copy yet or
+	 * the existing one was made from a different version of the file.
+	 *
+	 * @param source the database to copy, which is not changed
+	 * @param copy   where to keep the copy
+	 * @return the path of the copy
+	 * @throws IOException  if a file cannot be read or written
+	 * @throws SQLException if a database error occurs
+	 */
+	public static Path prepare(Path source, Path copy) throws IOException, SQLException {
+		String checksum = checksum(source);
+		if (Files.exists(copy) && checksum.equals(sourceChecksum(copy))) {
+			return copy;
+		}
+
+		// build next to the copy and move it into place, so a copy that is half
+		// made is never used
+		Path partial = copy.resolveSibling(copy.getFileName() + ".partial");
+		Files.copy(source, partial, StandardCopyOption.REPLACE_EXISTING);
+		try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + partial)) {
+			optimize(connection);
+			try (Statement stmt = connection.createStatement()) {
+				stmt.execute("create table optimized_from (checksum text not null)");
+			}
+			try (PreparedStatement ps = connection.prepareStatement("insert into optimized_from values (?)")) {
+				ps.setString(1, checksum);
+				ps.executeUpdate();
+			}
+		} catch (SQLException e) {
+			Files.deleteIfExists(partial);
+			throw e;
+		}
+		Files.move(partial, copy, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		return copy;
+	}
+
+	/**
+	 * Adds the covering indexes to a database and analyzes it.
+	 *
+	 * @param connection a writable connection to the database
+	 * @throws SQLException if a database error occurs
+	 */
+	public static void optimize(Connection connection) throws SQLException {
+		try (Statement stmt = connection.createStatement()) {
+			for (String index : INDEXES) {
+				stmt.execute(index);
+			}
+			stmt.execute("analyze");
+		}
+	}
+
+	/**
+	 * Returns the checksum of the file a copy was made from.
+	 *
+	 * @return the checksum, or null if it is not one of our copies
+	 */
+	private static String sourceChecksum(Path copy) {
+		SQLiteConfig config = new SQLiteConfig();
+		config.setReadOnly(true);
+		try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + copy, config.toProperties());
+				Statement stmt = connection.createStatement();
+				ResultSet rs = stmt.executeQuery("select checksum from optimized_from")) {
+			return rs.next() ? rs.getString(1) : null;
+		} catch (SQLException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the SHA-256 checksum of a file.
+	 *
+	 * @param file the file
+	 * @return the checksum in hex
+	 * @throws IOException if the file cannot be read
+	 */
+	public static String checksum(Path file) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			// every JVM has SHA-256
+			throw new IllegalStateException(e);
+		}
+		byte[] buffer = new byte[1 << 16];
+		try (InputStream in = Files.newInputStream(file)) {
+			for (int read; (read = in.read(buffer)) > 0;) {
+				digest.update(buffer, 0, read);
+			}
+		}
+		StringBuilder hex = new StringBuilder();
+		for (byte b : digest.digest()) {
+			hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+		}
+		return hex.toString();
+	}
+
+	/**
+	 * Returns how SQLite would run a query, one line per step.
+	 *
+	 * @param connection a connection to the database
+	 * @param sql        the query, its parameters are left unbound
+	 * @return the steps of the query plan
+	 * @throws SQLException if a database error occurs
+	 */
+	public static List<String> explain(Connection connection, String sql) throws SQLException {
+		List<String> plan = new ArrayList<>();
+		try (PreparedStatement ps = connection.prepareStatement("explain query plan " + sql);
+				ResultSet rs = ps.executeQuery()) {
+			while (rs.next()) {
+				plan.add(rs.getString("detail"));
+			}
+		}
+		return plan;
+	}
+
+	/**
+	 * Makes the indexed copy ahead of time.
+	 *
+	 * @param args the path of movies.db and the path of the copy
+	 * @throws Exception if the copy cannot be made
+	 */
+	public static void main(String[] args) throws Exception {
+		Path source = Path.of(args.length > 0 ? args[0] : "src/main/resources/movies.db");
+		Path copy = Path.of(args.length > 1 ? args[1] : "movies-optimized.db");
+		long start = System.nanoTime();
+		prepare(source, copy);
+		System.out.printf("%s is ready (%.1f s)%n", copy, (System.nanoTime() - start) / 1e9);
+	}
+}
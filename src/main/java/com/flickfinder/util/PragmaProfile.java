@@ -0,0 +1,89 @@
+package com.flickfinder.util;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * A named set of SQLite PRAGMA statements that are applied to every connection
+ * when it is opened by the {@link ConnectionPool}.
+ *
+ * movies.db is read only, so the profiles are tuned for concurrent readers:
+ * {@code query_only} stops a connection from ever writing, {@code mmap_size}
+ * lets SQLite read pages straight out of the page cache and {@code cache_size}
+ * gives each connection its own page cache (a negative value is in KiB).
+ */
+public enum PragmaProfile {
+
+	/**
+	 * No PRAGMAs, the driver defaults are used.
+	 */
+	NONE(List.of()),
+
+	/**
+	 * A profile for read only connections.
+	 */
+	READ_ONLY(List.of(
+			"PRAGMA query_only = ON",
+			"PRAGMA temp_store = MEMORY",
+			"PRAGMA mmap_size = 268435456",
+			"PRAGMA cache_size = -65536")),
+
+	/**
+	 * The read only profile on top of WAL journaling.
+	 * Changing the journal mode needs write access to the file, so SQLite keeps the
+	 * current mode (and carries on) if the database was opened read only.
+	 */
+	READ_ONLY_WAL(List.of(
+			"PRAGMA journal_mode = WAL",
+			"PRAGMA query_only = ON",
+			"PRAGMA temp_store = MEMORY",
+			"PRAGMA mmap_size = 268435456",
+			"PRAGMA cache_size = -65536"));
+
+	/**
+	 * The PRAGMA statements of this profile, in the order they are applied.
+	 */
+	private final List<String> pragmas;
+
+	PragmaProfile(List<String> pragmas) {
+		this.pragmas = pragmas;
+	}
+
+	/**
+	 * Returns the PRAGMA statements of this profile.
+	 *
+	 * @return the PRAGMA statements
+	 */
+	public List<String> getPragmas() {
+		return pragmas;
+	}
+
+	/**
+	 * Applies the profile to a connection.
+	 *
+	 * @param connection the connection to configure
+	 * @throws SQLException if a PRAGMA cannot be applied
+	 */
+	public void apply(Connection connection) throws SQLException {
+		try (Statement stmt = connection.createStatement()) {
+			for (String pragma : pragmas) {
+				stmt.execute(pragma);
+			}
+		}
+	}
+
+	/**
+	 * Looks up a profile by name, ignoring case.
+	 *
+	 * @param name the name of the profile
+	 * @return the profile, or {@link #READ_ONLY} if the name is null
+	 */
+	public static PragmaProfile fromName(String name) {
+		if (name == null) {
+			return READ_ONLY;
+		}
+		return valueOf(name.trim().toUpperCase());
+	}
+}
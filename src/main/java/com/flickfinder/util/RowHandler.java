@@ -0,0 +1,22 @@
+package com.flickfinder.util;
+
+import java.io.IOException;
+
+/**
+ * Receives rows one at a time while a query's cursor advances.
+ * The streaming DAO methods use this to hand each row straight to the
+ * response instead of collecting them all in a list first.
+ *
+ * @param <T> the type of the rows
+ */
+@FunctionalInterface
+public interface RowHandler<T> {
+
+	/**
+	 * Handles one row.
+	 *
+	 * @param row the row
+	 * @throws IOException if the row cannot be written
+	 */
+	void handle(T row) throws IOException;
+}
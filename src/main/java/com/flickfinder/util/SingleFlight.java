@@ -0,0 +1,144 @@
+package com.flickfinder.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Lets concurrent identical lookups share one query.
+ *
+ * When a movie trends, many requests ask for the same row at once. The first
+ * caller for a key starts the query and the others, while it is still running,
+ * get its result instead of running the same query again. The key is
+ * forgotten as soon as the query finishes, so nothing is cached and a later
+ * caller always sees a fresh result.
+ *
+ * The keys in flight are kept in a fixed number of stripes, each a plain map
+ * with its own lock, so callers for different keys rarely wait for each other.
+ * The lock is only held to look up or add a key, never while a query runs.
+ */
+public class SingleFlight {
+
+	/**
+	 * The number of stripes, a power of two.
+	 */
+	static final int STRIPES = 64;
+
+	private final Stripe[] stripes = new Stripe[STRIPES];
+
+	private final LongAdder calls = new LongAdder();
+	private final LongAdder coalesced = new LongAdder();
+
+	/**
+	 * Constructs a SingleFlight object with no keys in flight.
+	 */
+	public SingleFlight() {
+		for (int i = 0; i < stripes.length; i++) {
+			stripes[i] = new Stripe();
+		}
+	}
+
+	/**
+	 * Returns the result of the query in flight for a key, or starts one.
+	 *
+	 * @param <T>  the type of the result
+	 * @param key  identifies the query, e.g. the method name and its arguments
+	 * @param work starts the query
+	 * @return the result of the query, shared with every other caller for the
+	 *         key while it is running
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> CompletableFuture<T> run(String key, Supplier<CompletableFuture<T>> work) {
+		calls.increment();
+		Stripe stripe = stripes[spread(key.hashCode()) & (STRIPES - 1)];
+		CompletableFuture<Object> flight;
+		CompletableFuture<Object> started = null;
+		synchronized (stripe) {
+			flight = stripe.flights.get(key);
+			if (flight == null) {
+				started = new CompletableFuture<>();
+				stripe.flights.put(key, started);
+			}
+		}
+		if (started == null) {
+			coalesced.increment();
+			// a copy, so one caller cannot complete or cancel it for the others
+			return (CompletableFuture<T>) flight.copy();
+		}
+
+		CompletableFuture<Object> result = started;
+		CompletableFuture<T> query;
+		try {
+			query = work.get();
+		} catch (RuntimeException e) {
+			query = CompletableFuture.failedFuture(e);
+		}
+		query.whenComplete((value, error) -> {
+			// forget the key first, so a caller arriving now starts a new query
+			synchronized (stripe) {
+				stripe.flights.remove(key, result);
+			}
+			if (error != null) {
+				result.completeExceptionally(error);
+			} else {
+				result.complete(value);
+			}
+		});
+		return (CompletableFuture<T>) result.copy();
+	}
+
+	private static int spread(int hash) {
+		return hash ^ (hash >>> 16);
+	}
+
+	/**
+	 * Returns the number of lookups.
+	 *
+	 * @return the number of calls to {@link #run(String, Supplier)}
+	 */
+	public long getCalls() {
+		return calls.sum();
+	}
+
+	/**
+	 * Returns the number of lookups that shared a query already in flight.
+	 *
+	 * @return the number of coalesced calls
+	 */
+	public long getCoalesced() {
+		return coalesced.sum();
+	}
+
+	/**
+	 * Returns the number of queries in flight right now.
+	 *
+	 * @return the number of keys in flight
+	 */
+	public int getInFlight() {
+		int inFlight = 0;
+		for (Stripe stripe : stripes) {
+			synchronized (stripe) {
+				inFlight += stripe.flights.size();
+			}
+		}
+		return inFlight;
+	}
+
+	/**
+	 * Returns the counters.
+	 * This is primarily used for debugging purposes.
+	 *
+	 * @return a string representation of the counters
+	 */
+	@Override
+	public String toString() {
+		return "SingleFlight [calls=" + getCalls() + ", coalesced=" + getCoalesced() + ", inFlight=" + getInFlight()
+				+ "]";
+	}
+
+	private static final class Stripe {
+		final Map<String, CompletableFuture<Object>> flights = new HashMap<>();
+	}
+}
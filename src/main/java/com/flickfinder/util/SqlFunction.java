@@ -0,0 +1,23 @@
+package com.flickfinder.util;
+
+import java.sql.SQLException;
+
+/**
+ * A function that is allowed to throw a {@link SQLException}.
+ * This lets the DAOs pass their JDBC code to {@link Database#withConnection}.
+ *
+ * @param <T> the type of the input
+ * @param <R> the type of the result
+ */
+@FunctionalInterface
+public interface SqlFunction<T, R> {
+
+	/**
+	 * Applies the function.
+	 *
+	 * @param value the input
+	 * @return the result
+	 * @throws SQLException if a database error occurs
+	 */
+	R apply(T value) throws SQLException;
+}
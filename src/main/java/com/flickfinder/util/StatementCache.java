@@ -0,0 +1,153 @@
+package com.flickfinder.util;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache of prepared statements for one connection, keyed by the SQL
+ * text.
+ *
+ * Preparing a statement makes SQLite parse and plan the SQL and allocates a
+ * native statement handle, so the DAOs reuse one statement per query instead of
+ * preparing a new one on every request. When the cache is full the least
+ * recently used statement is closed, which frees its native handle.
+ *
+ * A connection is only used by one thread at a time (see
+ * {@link ConnectionPool}), so the cache itself does not need to be thread safe.
+ * Only the counters are read from other threads.
+ */
+public class StatementCache {
+
+	/**
+	 * The number of statements cached per connection if no size is given.
+	 */
+	public static final int DEFAULT_CAPACITY = 64;
+
+	/**
+	 * The connection that the statements belong to.
+	 */
+	private final Connection connection;
+
+	/**
+	 * The statements, in least recently used order.
+	 */
+	private final LinkedHashMap<String, PreparedStatement> statements;
+
+	/**
+	 * The number of open statements, readable from any thread.
+	 */
+	private volatile int open;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * Constructs a StatementCache for a connection.
+	 *
+	 * @param connection the connection to prepare statements on
+	 * @param capacity   the maximum number of statements to keep open
+	 */
+	public StatementCache(Connection connection, int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+		}
+		this.connection = connection;
+		this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+				if (size() <= capacity) {
+					return false;
+				}
+				evictions.increment();
+				closeQuietly(eldest.getValue());
+				return true;
+			}
+		};
+	}
+
+	/**
+	 * Returns a prepared statement for the SQL, preparing it if it is not cached.
+	 * The parameters of a cached statement are cleared.
+	 *
+	 * Callers must not close the statement, but they must close any ResultSet they
+	 * get from it.
+	 *
+	 * @param sql the SQL of the statement
+	 * @return the prepared statement
+	 * @throws SQLException if the statement cannot be prepared
+	 */
+	public PreparedStatement prepare(String sql) throws SQLException {
+		PreparedStatement ps = statements.get(sql);
+		if (ps != null && !ps.isClosed()) {
+			hits.increment();
+			ps.clearParameters();
+			return ps;
+		}
+
+		misses.increment();
+		ps = connection.prepareStatement(sql);
+		statements.put(sql, ps);
+		open = statements.size();
+		return ps;
+	}
+
+	/**
+	 * Closes every cached statement.
+	 */
+	public void close() {
+		for (PreparedStatement ps : statements.values()) {
+			closeQuietly(ps);
+		}
+		statements.clear();
+		open = 0;
+	}
+
+	/**
+	 * Returns the number of statements that are open.
+	 *
+	 * @return the number of open statements
+	 */
+	public int size() {
+		return open;
+	}
+
+	/**
+	 * Returns how many times a cached statement was reused.
+	 *
+	 * @return the number of hits
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * Returns how many times a statement had to be prepared.
+	 *
+	 * @return the number of misses
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * Returns how many statements were closed to make room for others.
+	 *
+	 * @return the number of evictions
+	 */
+	public long getEvictions() {
+		return evictions.sum();
+	}
+
+	private static void closeQuietly(PreparedStatement ps) {
+		try {
+			ps.close();
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+	}
+}
@@ -1,13 +1,23 @@
 package com.flickfinder;
 
 import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasItems;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.startsWith;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import com.flickfinder.metrics.Metrics;
 import com.flickfinder.util.Database;
 import com.flickfinder.util.Seeder;
 
@@ -66,6 +76,275 @@ class IntegrationTests {
 				.body("year", hasItems(1994, 1972, 1974, 2008, 1957));
 	}
 
+	/**
+	 * Test that the application pages through the movies with cursors.
+	 */
+	@Test
+	void pages_through_movies_with_a_cursor() {
+		String cursor = given().when().get(baseURL + "/movies?limit=2").then().assertThat().statusCode(200)
+				.body("id", contains(1, 2))
+				.extract().header("X-Next-Cursor");
+
+		cursor = given().when().get(baseURL + "/movies?limit=2&cursor=" + cursor).then().assertThat().statusCode(200)
+				.body("id", contains(3, 4))
+				.extract().header("X-Next-Cursor");
+
+		given().when().get(baseURL + "/movies?limit=2&cursor=" + cursor).then().assertThat().statusCode(200)
+				.body("id", contains(5))
+				.header("X-Next-Cursor", nullValue());
+	}
+
+	/**
+	 * Test that the application looks up several movies at once and reports the
+	 * ids it could not find.
+	 */
+	@Test
+	void retrieves_movies_and_their_stars_by_ids() {
+		given().when().get(baseURL + "/movies?ids=2,99,1").then().assertThat().statusCode(200)
+				.body("results.2.title", equalTo("The Godfather"))
+				.body("results.1.title", equalTo("The Shawshank Redemption"))
+				.body("missing", contains(99));
+
+		given().when().get(baseURL + "/movies/stars?ids=1,4,99").then().assertThat().statusCode(200)
+				.body("results.1.name", contains("Tim Robbins", "Morgan Freeman"))
+				.body("results.4.size()", equalTo(0))
+				.body("missing", contains(99));
+	}
+
+	/**
+	 * Test that the application searches titles and names.
+	 */
+	@Test
+	void searches_movies_and_people() {
+		given().when().get(baseURL + "/search?q=Godfather").then().assertThat().statusCode(200)
+				.body("id", contains(2, 3));
+
+		given().when().get(baseURL + "/search?q=henry%20fonda&type=person").then().assertThat().statusCode(200)
+				.body("name", contains("Henry Fonda"));
+	}
+
+	/**
+	 * Test that the application exports route and query metrics in Prometheus
+	 * format.
+	 */
+	@Test
+	void exports_prometheus_metrics() {
+		given().when().get(baseURL + "/movies/1").then().assertThat().statusCode(200);
+
+		given().when().get(baseURL + "/metrics").then().assertThat().statusCode(200)
+				.contentType(startsWith("text/plain"))
+				.body(containsString("flickfinder_http_request_duration_seconds_count{route=\"/movies/{id}\"}"))
+				.body(containsString("flickfinder_db_query_rows_total{query=\"MovieDAO.getMovieById\"}"))
+				.body(containsString("flickfinder_db_pool_size 1"));
+	}
+
+	/**
+	 * Test that in debug mode every route reports its database work, and stays
+	 * within its budget of DAO calls without repeating any.
+	 */
+	@Test
+	void stays_within_the_query_budget_of_each_route() {
+		app.stop();
+		System.setProperty(AppConfig.DEBUG_PROPERTY, "true");
+		try {
+			app = AppConfig.startServer(port);
+		} finally {
+			System.clearProperty(AppConfig.DEBUG_PROPERTY);
+		}
+
+		assertMaxQueries("/movies", 1);
+		assertMaxQueries("/movies?ids=1,2,3", 1);
+		assertMaxQueries("/movies/1", 1);
+		assertMaxQueries("/movies/1/stars", 1);
+		assertMaxQueries("/movies/1/directors", 1);
+		assertMaxQueries("/movies/2/similar", 1);
+		assertMaxQueries("/movies/stars?ids=1,2", 1);
+		assertMaxQueries("/movies/ratings/1994", 1);
+		assertMaxQueries("/people", 1);
+		assertMaxQueries("/people/1", 1);
+		assertMaxQueries("/people/1/movies", 1);
+		assertMaxQueries("/people/3/directed", 1);
+		assertMaxQueries("/people/3/credits", 1);
+		assertMaxQueries("/people/1/path/2", 2);
+		assertMaxQueries("/people/3/collaborators", 1);
+		assertMaxQueries("/search?q=godfather", 1);
+	}
+
+	private void assertMaxQueries(String path, int maxCalls) {
+		String queries = given().when().get(baseURL + path).then().assertThat().statusCode(200).extract()
+				.header(Metrics.QUERIES_HEADER);
+		assertTrue(queries != null && queries.endsWith("duplicates=0"), path + ": " + queries);
+		int calls = Integer.parseInt(queries.substring("calls=".length(), queries.indexOf(',')));
+		assertTrue(calls <= maxCalls, path + " made " + calls + " DAO calls: " + queries);
+	}
+
+	/**
+	 * Test that the application finds the chain of co-stars between two people.
+	 */
+	@Test
+	void retrieves_the_path_between_two_people() {
+		given().when().get(baseURL + "/people/1/path/2").then().assertThat().statusCode(200)
+				.body("degrees", equalTo(1))
+				.body("people.name", contains("Tim Robbins", "Morgan Freeman"))
+				.body("movies.id", contains(1));
+
+		given().when().get(baseURL + "/people/1/path/4").then().assertThat().statusCode(404);
+		given().when().get(baseURL + "/people/1/path/1000").then().assertThat().statusCode(404);
+	}
+
+	/**
+	 * Test that the application looks up directing credits in both directions,
+	 * and sends starring and directing credits together.
+	 */
+	@Test
+	void retrieves_directors_and_credits() {
+		given().when().get(baseURL + "/movies/2/directors").then().assertThat().statusCode(200)
+				.body("name", contains("Christopher Nolan"));
+
+		given().when().get(baseURL + "/people/3/directed").then().assertThat().statusCode(200)
+				.body("id", contains(1, 2, 3, 4, 5));
+
+		given().when().get(baseURL + "/people/4/credits").then().assertThat().statusCode(200)
+				.body("starred.title", contains("The Godfather", "The Godfather: Part II"))
+				.body("directed", hasSize(0));
+	}
+
+	/**
+	 * Test that the application finds the people who worked on the most movies
+	 * with a person.
+	 */
+	@Test
+	void retrieves_the_top_collaborators_of_a_person() {
+		given().when().get(baseURL + "/people/3/collaborators?limit=2").then().assertThat().statusCode(200)
+				.body("person.name", contains("Al Pacino", "Tim Robbins"))
+				.body("movies", contains(2, 1));
+
+		given().when().get(baseURL + "/people/1000/collaborators").then().assertThat().statusCode(404);
+	}
+
+	/**
+	 * Test that a client that sends too many requests is turned away with the
+	 * rate limit headers, and that list routes use up its tokens faster.
+	 */
+	@Test
+	void limits_the_request_rate_of_each_client() {
+		app.stop();
+		System.setProperty(AppConfig.RATE_LIMIT_PROPERTY, "1");
+		System.setProperty(AppConfig.RATE_LIMIT_BURST_PROPERTY, "12");
+		try {
+			app = AppConfig.startServer(port);
+		} finally {
+			System.clearProperty(AppConfig.RATE_LIMIT_PROPERTY);
+			System.clearProperty(AppConfig.RATE_LIMIT_BURST_PROPERTY);
+		}
+
+		given().when().get(baseURL + "/movies/1").then().assertThat().statusCode(200)
+				.header("RateLimit-Limit", "12")
+				.header("RateLimit-Remaining", "11");
+		given().when().get(baseURL + "/movies").then().assertThat().statusCode(200);
+		given().when().get(baseURL + "/movies").then().assertThat().statusCode(429)
+				.header("Retry-After", notNullValue())
+				.header("RateLimit-Remaining", "0");
+		given().when().get(baseURL + "/metrics").then().assertThat().statusCode(200);
+	}
+
+	/**
+	 * Test that the application finds the movies that share the most cast and
+	 * directors with a movie.
+	 */
+	@Test
+	void retrieves_similar_movies() {
+		given().when().get(baseURL + "/movies/2/similar?limit=1").then().assertThat().statusCode(200)
+				.body("movie.title", contains("The Godfather: Part II"))
+				.body("shared", contains(2))
+				.body("score", contains(1.0f));
+
+		given().when().get(baseURL + "/movies/2/similar?limit=1&weighted=true").then().assertThat().statusCode(200)
+				.body("score", contains(0.9f));
+
+		given().when().get(baseURL + "/movies/1000/similar").then().assertThat().statusCode(404);
+	}
+
+	/**
+	 * Test that the application sums the rating statistics per year and per
+	 * decade.
+	 */
+	@Test
+	void retrieves_rating_statistics() {
+		given().when().get(baseURL + "/stats/ratings").then().assertThat().statusCode(200)
+				.body("from", contains(1957, 1972, 1974, 1994, 2008))
+				.body("movies", contains(1, 1, 1, 1, 1));
+
+		given().when().get(baseURL + "/stats/ratings?from=1960&to=1999&groupBy=decade").then().assertThat()
+				.statusCode(200)
+				.body("from", contains(1970, 1990))
+				.body("to", contains(1979, 1999))
+				.body("movies", contains(2, 1))
+				.body("averageRating", contains(9.1f, 9.3f))
+				.body("totalVotes", contains(2500000, 2200000))
+				.body("ratingHistogram[0][9]", equalTo(2))
+				.body("voteHistogram[0][6]", equalTo(2));
+
+		given().when().get(baseURL + "/stats/ratings?from=2000&to=1990").then().assertThat().statusCode(400);
+		given().when().get(baseURL + "/stats/ratings?groupBy=month").then().assertThat().statusCode(400);
+	}
+
+	/**
+	 * Test that the application answers a request for a response the client
+	 * already has with 304 Not Modified.
+	 */
+	@Test
+	void answers_304_when_the_etag_matches() {
+		String etag = given().when().get(baseURL + "/movies/1").then().assertThat().statusCode(200)
+				.header("Cache-Control", "public, max-age=3600")
+				.extract().header("ETag");
+
+		given().header("If-None-Match", etag).when().get(baseURL + "/movies/1").then().assertThat().statusCode(304);
+		given().header("If-None-Match", etag).when().get(baseURL + "/movies/2").then().assertThat().statusCode(200);
+		given().when().get(baseURL + "/movies/1000").then().assertThat().statusCode(404)
+				.header("ETag", nullValue());
+		given().header("If-None-Match", "*").when().get(baseURL + "/movies/1").then().assertThat().statusCode(304);
+		given().header("If-None-Match", "*").when().get(baseURL + "/movies/1000").then().assertThat()
+				.statusCode(404);
+
+		given().when().get(baseURL + "/metrics/http-cache").then().assertThat().statusCode(200)
+				.body("requests", equalTo(6))
+				.body("notModified", equalTo(2));
+	}
+
+	/**
+	 * Test that a single movie or person is sent from the JSON cache the second
+	 * time, with the same body and no query.
+	 */
+	@Test
+	void serves_single_entities_from_the_json_cache() {
+		String movie = given().when().get(baseURL + "/movies/1").then().assertThat().statusCode(200).extract()
+				.asString();
+		given().when().get(baseURL + "/movies/1").then().assertThat().statusCode(200)
+				.contentType("application/json")
+				.body(equalTo(movie));
+		String person = given().when().get(baseURL + "/people/1").then().assertThat().statusCode(200).extract()
+				.asString();
+		given().when().get(baseURL + "/people/1").then().assertThat().statusCode(200)
+				.body(equalTo(person));
+
+		given().when().get(baseURL + "/metrics").then().assertThat().statusCode(200)
+				.body(containsString("flickfinder_json_cache_movie_hits_total 1"))
+				.body(containsString("flickfinder_json_cache_person_hits_total 1"));
+	}
+
+	/**
+	 * Test that the application streams people as newline delimited JSON.
+	 */
+	@Test
+	void streams_people_as_ndjson() {
+		String body = given().header("Accept", "application/x-ndjson").when().get(baseURL + "/people").then()
+				.assertThat().statusCode(200)
+				.contentType("application/x-ndjson")
+				.extract().asString();
+		assertEquals(5, body.split("\n").length);
+	}
+
 	/**
 	 * Test that the application retrieves a single movie by id.
 	 */
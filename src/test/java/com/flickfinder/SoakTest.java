@@ -0,0 +1,161 @@
+package com.flickfinder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.flickfinder.metrics.Metrics;
+import com.flickfinder.util.ConnectionPool;
+import com.flickfinder.util.Database;
+import com.flickfinder.util.Seeder;
+
+import io.javalin.Javalin;
+
+/**
+ * A soak test that sends a large number of requests through every route and
+ * checks that nothing leaks: the number of open statements (each one holds a
+ * native SQLite handle) and the heap must stay flat.
+ *
+ * It sends 5,000 requests by default, run it with -Dsoak.requests=1000000 for
+ * the full soak.
+ */
+class SoakTest {
+
+	/**
+	 * The routes to request, in turn.
+	 */
+	static final String[] ROUTES = { "/movies", "/movies/1", "/movies/1/stars", "/movies/ratings/1994",
+			"/people", "/people/1", "/people/4/movies", "/movies/1000" };
+
+	/**
+	 * The heap may grow by this much over the soak, to allow for JIT and GC noise.
+	 */
+	static final long HEAP_TOLERANCE = 16 * 1024 * 1024;
+
+	/**
+	 * The Javalin app.
+	 */
+	Javalin app;
+
+	/**
+	 * The seeder object.
+	 */
+	Seeder seeder;
+
+	/**
+	 * The port number.
+	 */
+	int port = 6001;
+
+	/**
+	 * Bootstraps the application before the test.
+	 */
+	@BeforeEach
+	void setUp() {
+		seeder = new Seeder("jdbc:sqlite::memory:");
+		Database.getInstance(seeder.getConnection());
+		// every request comes from one address, so the rate limit would turn most away
+		System.setProperty(AppConfig.RATE_LIMIT_PROPERTY, "0");
+		// the statements are what could leak, so answer from SQLite and not from the
+		// rating index or the JSON cache
+		System.setProperty(AppConfig.RATING_INDEX_PROPERTY, "false");
+		System.setProperty(AppConfig.JSON_CACHE_PROPERTY, "0");
+		try {
+			app = AppConfig.startServer(port);
+		} finally {
+			System.clearProperty(AppConfig.RATE_LIMIT_PROPERTY);
+			System.clearProperty(AppConfig.RATING_INDEX_PROPERTY);
+			System.clearProperty(AppConfig.JSON_CACHE_PROPERTY);
+		}
+	}
+
+	/**
+	 * Sends the requests and checks that statements and heap stay flat.
+	 */
+	@Test
+	void resources_stay_flat_under_sustained_load() throws Exception {
+		int requests = Integer.getInteger("soak.requests", 5_000);
+		HttpClient client = HttpClient.newHttpClient();
+		ConnectionPool pool = Database.getInstance().getPool();
+		MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+		// warm up, so every statement is prepared and the JIT has settled
+		send(client, ROUTES.length * 50);
+		int statements = pool.getOpenStatements();
+		long heap = usedHeapAfterGc(memory);
+
+		Metrics metrics = Metrics.getInstance();
+		long byId = metrics.query("MovieDAO.getMovieById").getLatency().getCount();
+		long byRating = metrics.query("MovieDAO.getMoviesByRatingOrder").getLatency().getCount();
+
+		send(client, requests);
+
+		// the routes went through their prepared statements, not a cache in front of
+		// them; identical lookups in flight at once may share one query
+		assertTrue(metrics.query("MovieDAO.getMovieById").getLatency().getCount() > byId);
+		assertTrue(metrics.query("MovieDAO.getMoviesByRatingOrder").getLatency().getCount() > byRating);
+		assertEquals(statements, pool.getOpenStatements());
+		assertTrue(statements <= ROUTES.length, statements + " statements");
+		long growth = usedHeapAfterGc(memory) - heap;
+		assertTrue(growth < HEAP_TOLERANCE, "Heap grew by " + growth + " bytes");
+	}
+
+	/**
+	 * Sends requests on four threads and checks every response.
+	 */
+	private void send(HttpClient client, int requests) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		AtomicInteger next = new AtomicInteger();
+		List<Future<?>> workers = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			workers.add(executor.submit(() -> {
+				int n;
+				while ((n = next.getAndIncrement()) < requests) {
+					String route = ROUTES[n % ROUTES.length];
+					HttpRequest request = HttpRequest
+							.newBuilder(URI.create("http://localhost:" + port + route)).build();
+					HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+					assertEquals(route.equals("/movies/1000") ? 404 : 200, response.statusCode(), route);
+				}
+				return null;
+			}));
+		}
+		for (Future<?> worker : workers) {
+			worker.get();
+		}
+		executor.shutdown();
+	}
+
+	private static long usedHeapAfterGc(MemoryMXBean memory) throws InterruptedException {
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+			Thread.sleep(50);
+		}
+		return memory.getHeapMemoryUsage().getUsed();
+	}
+
+	/**
+	 * Tears down the application after the test.
+	 */
+	@AfterEach
+	void tearDown() {
+		seeder.closeConnection();
+		app.stop();
+	}
+}
@@ -0,0 +1,182 @@
+package com.flickfinder.catalog;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.flickfinder.util.Database;
+import com.flickfinder.util.Seeder;
+
+/**
+ * Tests for writing a catalog to a snapshot and mapping it back.
+ */
+class CatalogSnapshotTest {
+
+	/**
+	 * Seeder
+	 */
+	Seeder seeder;
+
+	/**
+	 * The catalog loaded from the seeded database.
+	 */
+	ColumnarCatalog catalog;
+
+	@TempDir
+	Path dir;
+
+	/**
+	 * Seeds an in-memory database and loads it into a catalog.
+	 */
+	@BeforeEach
+	void setUp() throws SQLException {
+		seeder = new Seeder("jdbc:sqlite::memory:");
+		catalog = ColumnarCatalog.load(seeder.getConnection());
+	}
+
+	/**
+	 * A mapped snapshot holds the same rows as the catalog it was written from.
+	 */
+	@Test
+	void testRoundTrip() throws IOException {
+		Path file = dir.resolve("movies.snapshot");
+		CatalogSnapshot.write(catalog, file);
+		assertFalse(Files.exists(dir.resolve("movies.snapshot.partial")));
+		ColumnarCatalog mapped = CatalogSnapshot.map(file);
+
+		assertTrue(mapped.isMapped());
+		assertFalse(catalog.isMapped());
+		assertEquals(catalog.getMemoryBytes(), mapped.getMemoryBytes());
+		assertEquals(catalog.movieCount(), mapped.movieCount());
+		for (int i = 0; i < catalog.movieCount(); i++) {
+			assertEquals(catalog.movie(i).toString(), mapped.movie(i).toString());
+		}
+		assertEquals(catalog.personCount(), mapped.personCount());
+		for (int i = 0; i < catalog.personCount(); i++) {
+			assertEquals(catalog.person(i).toString(), mapped.person(i).toString());
+		}
+		assertEquals(catalog.ratingCount(), mapped.ratingCount());
+		for (int i = 0; i < catalog.ratingCount(); i++) {
+			assertEquals(catalog.movieRating(i).toString(), mapped.movieRating(i).toString());
+		}
+		assertEquals(edges(catalog.starsByMovie()), edges(mapped.starsByMovie()));
+		assertEquals(edges(catalog.moviesByStar()), edges(mapped.moviesByStar()));
+		assertEquals(edges(catalog.directorsByMovie()), edges(mapped.directorsByMovie()));
+		assertEquals(edges(catalog.moviesByDirector()), edges(mapped.moviesByDirector()));
+
+		assertEquals(mapped.movieIndex(2), catalog.movieIndex(2));
+		assertEquals(-1, mapped.personIndex(1000));
+		assertEquals(catalog.movieIndexAfter(3), mapped.movieIndexAfter(3));
+	}
+
+	/**
+	 * A snapshot of another version or with a damaged body is refused.
+	 */
+	@Test
+	void testRejectsBadFiles() throws IOException {
+		Path file = dir.resolve("movies.snapshot");
+		CatalogSnapshot.write(catalog, file);
+		byte[] bytes = Files.readAllBytes(file);
+
+		byte[] damaged = bytes.clone();
+		damaged[damaged.length - 1] ^= 1;
+		Files.write(file, damaged);
+		IOException corrupt = assertThrows(IOException.class, () -> CatalogSnapshot.map(file));
+		assertTrue(corrupt.getMessage().contains("checksum"));
+
+		byte[] newer = bytes.clone();
+		ByteBuffer.wrap(newer).order(ByteOrder.LITTLE_ENDIAN).putInt(4, CatalogSnapshot.VERSION + 1);
+		Files.write(file, newer);
+		IOException version = assertThrows(IOException.class, () -> CatalogSnapshot.map(file));
+		assertTrue(version.getMessage().contains("version"));
+
+		Files.write(file, new byte[] { 1, 2, 3 });
+		assertThrows(IOException.class, () -> CatalogSnapshot.map(file));
+	}
+
+	/**
+	 * A snapshot is only mapped for the database file it was written from, as
+	 * that file was when it was written.
+	 */
+	@Test
+	void testRejectsOtherSource() throws IOException {
+		Path source = Files.write(dir.resolve("movies.db"), new byte[] { 1, 2, 3 });
+		Path file = dir.resolve("movies.snapshot");
+		CatalogSnapshot.write(catalog, file, source);
+		assertEquals(catalog.movieCount(), CatalogSnapshot.map(file, source).movieCount());
+
+		Files.write(source, new byte[] { 1, 2, 3, 4 });
+		IOException replaced = assertThrows(IOException.class, () -> CatalogSnapshot.map(file, source));
+		assertTrue(replaced.getMessage().contains("another version"));
+		assertThrows(IOException.class, () -> CatalogSnapshot.map(file, null));
+		assertEquals(catalog.movieCount(), CatalogSnapshot.map(file).movieCount());
+	}
+
+	/**
+	 * When the database file changes after its snapshot was written, the server
+	 * loads the catalog from the database and writes the snapshot again.
+	 */
+	@Test
+	void testRebuildsWhenSourceChanges() throws Exception {
+		Path source = dir.resolve("movies.db");
+		Path file = dir.resolve("movies.snapshot");
+		Seeder seeded = new Seeder("jdbc:sqlite:" + source);
+		try {
+			Database database = Database.getInstance(seeded.getConnection());
+			database.setSnapshot(file);
+			assertEquals(5, database.getCatalog().movieCount());
+
+			database = Database.getInstance(seeded.getConnection());
+			database.setSnapshot(file);
+			assertTrue(database.getCatalog().isMapped());
+
+			try (Statement stmt = seeded.getConnection().createStatement()) {
+				stmt.execute("INSERT INTO movies (id, title, year) VALUES(6, 'Pulp Fiction', 1994)");
+			}
+			FileTime modified = Files.getLastModifiedTime(source);
+			Files.setLastModifiedTime(source, FileTime.fromMillis(modified.toMillis() + 1000));
+
+			database = Database.getInstance(seeded.getConnection());
+			database.setSnapshot(file);
+			ColumnarCatalog rebuilt = database.getCatalog();
+			assertFalse(rebuilt.isMapped());
+			assertEquals(6, rebuilt.movieCount());
+			assertEquals(6, CatalogSnapshot.map(file, source).movieCount());
+		} finally {
+			seeded.closeConnection();
+		}
+	}
+
+	private static String edges(Adjacency adjacency) {
+		StringBuilder edges = new StringBuilder();
+		for (int source = 0; source < adjacency.sources(); source++) {
+			for (int k = adjacency.start(source); k < adjacency.end(source); k++) {
+				edges.append(source).append('>').append(adjacency.target(k)).append(' ');
+			}
+		}
+		return edges.toString();
+	}
+
+	/**
+	 * Close connection after each test method.
+	 */
+	@AfterEach
+	void tearDown() {
+		seeder.closeConnection();
+	}
+}
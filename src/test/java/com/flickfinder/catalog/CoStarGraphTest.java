@@ -0,0 +1,197 @@
+package com.flickfinder.catalog;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.flickfinder.catalog.CoStarGraph.PathTimeoutException;
+import com.flickfinder.util.Seeder;
+
+/**
+ * Tests for the co-star graph.
+ */
+class CoStarGraphTest {
+
+	/**
+	 * Seeder
+	 */
+	Seeder seeder;
+
+	/**
+	 * Seeds an in-memory database.
+	 */
+	@BeforeEach
+	void setUp() {
+		seeder = new Seeder("jdbc:sqlite::memory:");
+	}
+
+	/**
+	 * Tim Robbins and Morgan Freeman starred in The Shawshank Redemption, in
+	 * either direction.
+	 */
+	@Test
+	void testFindPath() throws SQLException {
+		CoStarGraph graph = CoStarGraph.load(seeder.getConnection());
+		assertEquals(5, graph.personCount());
+
+		int[][] path = graph.findPath(1, 2, 6, 1000);
+		assertArrayEquals(new int[] { 1, 2 }, path[0]);
+		assertArrayEquals(new int[] { 1 }, path[1]);
+
+		path = graph.findPath(2, 1, 6, 1000);
+		assertArrayEquals(new int[] { 2, 1 }, path[0]);
+		assertArrayEquals(new int[] { 1 }, path[1]);
+
+		path = graph.findPath(4, 4, 6, 1000);
+		assertArrayEquals(new int[] { 4 }, path[0]);
+		assertEquals(0, path[1].length);
+	}
+
+	/**
+	 * There is no path between people who never shared a cast, or to someone who
+	 * does not exist.
+	 */
+	@Test
+	void testNoPath() throws SQLException {
+		CoStarGraph graph = CoStarGraph.load(seeder.getConnection());
+		assertSame(CoStarGraph.NO_PATH, graph.findPath(1, 4, 6, 1000));
+		assertSame(CoStarGraph.NO_PATH, graph.findPath(1, 3, 6, 1000));
+		assertSame(CoStarGraph.NO_PATH, graph.findPath(1, 1000, 6, 1000));
+		assertSame(CoStarGraph.NO_PATH, graph.findPath(1, 2, 0, 1000));
+		assertTrue(graph.hasPerson(3));
+		assertFalse(graph.hasPerson(1000));
+	}
+
+	/**
+	 * A search that is out of time gives up.
+	 */
+	@Test
+	void testTimeout() throws SQLException {
+		CoStarGraph graph = CoStarGraph.load(seeder.getConnection());
+		assertThrows(PathTimeoutException.class, () -> graph.findPath(1, 2, 6, -1));
+	}
+
+	/**
+	 * On a few thousand random casts, both ways of building the graph find chains
+	 * as short as a plain breadth first search, and every link in them is real.
+	 */
+	@Test
+	void testMatchesBreadthFirstSearch() throws SQLException {
+		Random random = new Random(1028);
+		int people = 3000;
+		int movies = 1500;
+		Map<Integer, Set<Integer>> casts = new HashMap<>();
+		seeder.getConnection().setAutoCommit(false);
+		try (Statement stmt = seeder.getConnection().createStatement();
+				PreparedStatement person = seeder.getConnection()
+						.prepareStatement("INSERT INTO people (id, name, birth) VALUES(?, ?, 1970)");
+				PreparedStatement movie = seeder.getConnection()
+						.prepareStatement("INSERT INTO movies (id, title, year) VALUES(?, ?, 2000)");
+				PreparedStatement star = seeder.getConnection()
+						.prepareStatement("INSERT INTO stars (movie_id, person_id) VALUES(?, ?)")) {
+			stmt.execute("DELETE FROM stars");
+			for (int id = 6; id < people; id++) {
+				person.setInt(1, id);
+				person.setString(2, "Person " + id);
+				person.addBatch();
+			}
+			for (int id = 6; id < movies; id++) {
+				movie.setInt(1, id);
+				movie.setString(2, "Movie " + id);
+				movie.addBatch();
+				// small casts, so chains are long and some people are out of reach
+				for (int i = 0; i < 2 + random.nextInt(2); i++) {
+					int cast = 1 + random.nextInt(people - 1);
+					star.setInt(1, id);
+					star.setInt(2, cast);
+					star.addBatch();
+					casts.computeIfAbsent(id, k -> new HashSet<>()).add(cast);
+				}
+			}
+			person.executeBatch();
+			movie.executeBatch();
+			star.executeBatch();
+		}
+		seeder.getConnection().commit();
+
+		Map<Integer, List<Integer>> costars = new HashMap<>();
+		for (Set<Integer> cast : casts.values()) {
+			for (int a : cast) {
+				for (int b : cast) {
+					if (a != b) {
+						costars.computeIfAbsent(a, k -> new ArrayList<>()).add(b);
+					}
+				}
+			}
+		}
+
+		CoStarGraph loaded = CoStarGraph.load(seeder.getConnection());
+		CoStarGraph built = CoStarGraph.of(ColumnarCatalog.load(seeder.getConnection()));
+		int found = 0;
+		for (int i = 0; i < 200; i++) {
+			int from = 1 + random.nextInt(people - 1);
+			int to = 1 + random.nextInt(people - 1);
+			Integer distance = distances(costars, from).get(to);
+			for (CoStarGraph graph : new CoStarGraph[] { loaded, built }) {
+				int[][] path = graph.findPath(from, to, 20, 10_000);
+				if (distance == null || distance > 20) {
+					assertSame(CoStarGraph.NO_PATH, path);
+					continue;
+				}
+				found++;
+				assertEquals(distance, path[1].length);
+				assertEquals(path[1].length + 1, path[0].length);
+				assertEquals(from, path[0][0]);
+				assertEquals(to, path[0][path[0].length - 1]);
+				for (int k = 0; k < path[1].length; k++) {
+					Set<Integer> cast = casts.get(path[1][k]);
+					assertTrue(cast.contains(path[0][k]) && cast.contains(path[0][k + 1]));
+				}
+			}
+		}
+		assertTrue(found > 100);
+	}
+
+	private static Map<Integer, Integer> distances(Map<Integer, List<Integer>> costars, int from) {
+		Map<Integer, Integer> distances = new HashMap<>();
+		distances.put(from, 0);
+		ArrayDeque<Integer> queue = new ArrayDeque<>(List.of(from));
+		while (!queue.isEmpty()) {
+			int person = queue.poll();
+			for (int costar : costars.getOrDefault(person, List.of())) {
+				if (!distances.containsKey(costar)) {
+					distances.put(costar, distances.get(person) + 1);
+					queue.add(costar);
+				}
+			}
+		}
+		return distances;
+	}
+
+	/**
+	 * Closes the database.
+	 */
+	@AfterEach
+	void tearDown() {
+		seeder.closeConnection();
+	}
+}
@@ -0,0 +1,147 @@
+package com.flickfinder.catalog;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Random;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.flickfinder.util.Seeder;
+
+/**
+ * Tests for the top collaborators of a person.
+ */
+class CollaboratorIndexTest {
+
+	/**
+	 * The same answer as a GROUP BY over both credit tables, most shared movies
+	 * first and by id on ties.
+	 */
+	static final String SQL = "with credits as (select movie_id, person_id from stars"
+			+ " union select movie_id, person_id from directors)"
+			+ " select b.person_id, count(*) as shared from credits a, credits b"
+			+ " where a.person_id = ? and b.movie_id = a.movie_id and b.person_id != a.person_id"
+			+ " group by b.person_id order by shared desc, b.person_id limit ?";
+
+	/**
+	 * Seeder
+	 */
+	Seeder seeder;
+
+	/**
+	 * Seeds an in-memory database.
+	 */
+	@BeforeEach
+	void setUp() {
+		seeder = new Seeder("jdbc:sqlite::memory:");
+	}
+
+	/**
+	 * Co-stars and directors both count, and ties are broken by id.
+	 */
+	@Test
+	void testTop() throws SQLException {
+		CollaboratorIndex index = CollaboratorIndex.load(seeder.getConnection());
+
+		// Christopher Nolan directed both of Al Pacino's movies
+		int[][] nolan = index.top(3, 10);
+		assertArrayEquals(new int[] { 4, 1, 2, 5 }, nolan[0]);
+		assertArrayEquals(new int[] { 2, 1, 1, 1 }, nolan[1]);
+
+		assertArrayEquals(new int[] { 2, 3 }, index.top(1, 10)[0]);
+		assertArrayEquals(new int[] { 4 }, index.top(3, 1)[0]);
+		assertNull(index.top(1000, 10));
+
+		// a negative count precomputes no one rather than failing
+		index.precompute(-1);
+		assertEquals(0, index.getPrecomputed());
+	}
+
+	/**
+	 * Loaded, shared with a catalog or precomputed, the index gives the same
+	 * answers as SQL on a few thousand random credits, with people who both star
+	 * in and direct a movie.
+	 */
+	@Test
+	void testMatchesSql() throws SQLException {
+		Random random = new Random(1028);
+		seeder.getConnection().setAutoCommit(false);
+		try (PreparedStatement movie = seeder.getConnection()
+				.prepareStatement("INSERT INTO movies (id, title, year) VALUES(?, ?, 2000)");
+				PreparedStatement person = seeder.getConnection()
+						.prepareStatement("INSERT INTO people (id, name, birth) VALUES(?, ?, 1970)");
+				PreparedStatement star = seeder.getConnection()
+						.prepareStatement("INSERT INTO stars (movie_id, person_id) VALUES (?, ?)");
+				PreparedStatement director = seeder.getConnection()
+						.prepareStatement("INSERT INTO directors (movie_id, person_id) VALUES (?, ?)")) {
+			for (int id = 6; id < 300; id++) {
+				person.setInt(1, id);
+				person.setString(2, "Person " + id);
+				person.addBatch();
+			}
+			for (int id = 6; id < 2000; id++) {
+				movie.setInt(1, id);
+				movie.setString(2, "Movie " + id);
+				movie.addBatch();
+				for (int i = 0; i < 4; i++) {
+					star.setInt(1, id);
+					star.setInt(2, 1 + (int) (299 * Math.pow(random.nextDouble(), 2)));
+					star.addBatch();
+				}
+				director.setInt(1, id);
+				director.setInt(2, 1 + random.nextInt(299));
+				director.addBatch();
+			}
+			person.executeBatch();
+			movie.executeBatch();
+			star.executeBatch();
+			director.executeBatch();
+		}
+		seeder.getConnection().commit();
+		seeder.getConnection().setAutoCommit(true);
+
+		CollaboratorIndex loaded = CollaboratorIndex.load(seeder.getConnection());
+		CollaboratorIndex shared = CollaboratorIndex.of(ColumnarCatalog.load(seeder.getConnection()));
+		shared.precompute(50);
+		assertEquals(50, shared.getPrecomputed());
+		try (PreparedStatement ps = seeder.getConnection().prepareStatement(SQL)) {
+			for (int id = 1; id < 300; id += 7) {
+				for (int limit : new int[] { 1, 10, CollaboratorIndex.MAX_LIMIT }) {
+					ps.setInt(1, id);
+					ps.setInt(2, limit);
+					int[][] expected = { new int[limit], new int[limit] };
+					int size = 0;
+					try (ResultSet rs = ps.executeQuery()) {
+						while (rs.next()) {
+							expected[0][size] = rs.getInt(1);
+							expected[1][size++] = rs.getInt(2);
+						}
+					}
+					for (CollaboratorIndex index : new CollaboratorIndex[] { loaded, shared }) {
+						int[][] actual = index.top(id, limit);
+						assertEquals(size, actual[0].length, "person " + id + " limit " + limit);
+						for (int i = 0; i < size; i++) {
+							assertEquals(expected[0][i], actual[0][i], "person " + id + " limit " + limit);
+							assertEquals(expected[1][i], actual[1][i], "person " + id + " limit " + limit);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Close connection after each test method.
+	 */
+	@AfterEach
+	void tearDown() {
+		seeder.closeConnection();
+	}
+}
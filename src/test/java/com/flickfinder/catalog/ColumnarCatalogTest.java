@@ -0,0 +1,90 @@
+package com.flickfinder.catalog;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.SQLException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.flickfinder.util.Seeder;
+
+/**
+ * Tests for loading the seeded database into a columnar catalog.
+ */
+class ColumnarCatalogTest {
+
+	/**
+	 * Seeder
+	 */
+	Seeder seeder;
+
+	/**
+	 * The catalog under test.
+	 */
+	ColumnarCatalog catalog;
+
+	/**
+	 * Seeds an in-memory database and loads it into a catalog.
+	 */
+	@BeforeEach
+	void setUp() throws SQLException {
+		seeder = new Seeder("jdbc:sqlite::memory:");
+		catalog = ColumnarCatalog.load(seeder.getConnection());
+	}
+
+	/**
+	 * Every table is loaded.
+	 */
+	@Test
+	void testLoadsEveryTable() {
+		assertEquals(5, catalog.movieCount());
+		assertEquals(5, catalog.personCount());
+		assertEquals(5, catalog.ratingCount());
+		assertEquals(5, catalog.starsByMovie().edges());
+		assertEquals(5, catalog.directorsByMovie().edges());
+		assertTrue(catalog.getMemoryBytes() > 0);
+	}
+
+	/**
+	 * Ids are turned into indexes, and unknown ids are -1.
+	 */
+	@Test
+	void testLooksUpIds() {
+		int movie = catalog.movieIndex(2);
+		assertEquals("The Godfather", catalog.movieTitle(movie));
+		assertEquals(1972, catalog.movieYear(movie));
+		assertEquals(-1, catalog.movieIndex(1000));
+
+		int person = catalog.personIndex(1);
+		assertEquals("Tim Robbins", catalog.personName(person));
+		assertEquals(1958, catalog.personBirth(person));
+		assertEquals(-1, catalog.personIndex(1000));
+	}
+
+	/**
+	 * The adjacency lists go both ways.
+	 */
+	@Test
+	void testAdjacency() {
+		Adjacency stars = catalog.starsByMovie();
+		int movie = catalog.movieIndex(1);
+		assertEquals(2, stars.degree(movie));
+		assertEquals(1, catalog.personId(stars.target(stars.start(movie))));
+		assertEquals(2, catalog.personId(stars.target(stars.start(movie) + 1)));
+
+		Adjacency directed = catalog.moviesByDirector();
+		assertEquals(5, directed.degree(catalog.personIndex(3)));
+		assertEquals(0, catalog.moviesByStar().degree(catalog.personIndex(3)));
+	}
+
+	/**
+	 * Close connection after each test method.
+	 */
+	@AfterEach
+	void tearDown() {
+		seeder.closeConnection();
+	}
+}
@@ -0,0 +1,75 @@
+package com.flickfinder.catalog;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.sql.SQLException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.flickfinder.util.Database;
+import com.flickfinder.util.Seeder;
+
+/**
+ * Tests for the shared stars and directors adjacency lists.
+ */
+class CreditAdjacencyTest {
+
+	/**
+	 * Seeder
+	 */
+	Seeder seeder;
+
+	/**
+	 * Seeds an in-memory database.
+	 */
+	@BeforeEach
+	void setUp() {
+		seeder = new Seeder("jdbc:sqlite::memory:");
+		Database.getInstance(seeder.getConnection());
+	}
+
+	/**
+	 * Loaded from the tables or taken from a catalog, the lists are the same,
+	 * and the catalog's are shared rather than copied.
+	 */
+	@Test
+	void testLoadMatchesCatalog() throws SQLException {
+		CreditAdjacency loaded = CreditAdjacency.load(seeder.getConnection());
+		ColumnarCatalog catalog = ColumnarCatalog.load(seeder.getConnection());
+		CreditAdjacency shared = CreditAdjacency.of(catalog);
+
+		assertArrayEquals(loaded.personIds, shared.personIds);
+		assertArrayEquals(loaded.movieIds, shared.movieIds);
+		assertSame(catalog.starsByMovie(), shared.starsByMovie);
+		assertSame(catalog.moviesByDirector(), shared.moviesByDirector);
+		assertEquals(5, loaded.starsByMovie.edges());
+		assertEquals(5, loaded.directorsByMovie.edges());
+		// Christopher Nolan directed all five movies
+		assertEquals(5, loaded.moviesByDirector.degree(2));
+		assertEquals(shared.getMemoryBytes(), loaded.getMemoryBytes());
+	}
+
+	/**
+	 * The database loads the lists once for every index that walks them.
+	 */
+	@Test
+	void testDatabaseLoadsOnce() throws SQLException {
+		CreditAdjacency credits = Database.getInstance().getCredits();
+		Database.getInstance().getCoStarGraph();
+		Database.getInstance().getCollaboratorIndex();
+		Database.getInstance().getSimilarityIndex();
+		assertSame(credits, Database.getInstance().getCredits());
+	}
+
+	/**
+	 * Close connection after each test method.
+	 */
+	@AfterEach
+	void tearDown() {
+		seeder.closeConnection();
+	}
+}
@@ -0,0 +1,154 @@
+package com.flickfinder.catalog;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.flickfinder.model.RatingStats;
+import com.flickfinder.util.Seeder;
+
+/**
+ * Tests for the rating statistics per year and per decade.
+ */
+class RatingAggregatorTest {
+
+	/**
+	 * Seeder
+	 */
+	Seeder seeder;
+
+	/**
+	 * Seeds an in-memory database.
+	 */
+	@BeforeEach
+	void setUp() {
+		seeder = new Seeder("jdbc:sqlite::memory:");
+	}
+
+	/**
+	 * The seeded movies are summed per decade, within the requested years.
+	 */
+	@Test
+	void testDecades() throws SQLException {
+		RatingIndex index = RatingIndex.load(seeder.getConnection());
+		List<RatingStats> stats = RatingAggregator.aggregate(index, 1960, 2024, true);
+		assertEquals(3, stats.size());
+
+		RatingStats seventies = stats.get(0);
+		assertEquals(1970, seventies.getFrom());
+		assertEquals(1979, seventies.getTo());
+		assertEquals(2, seventies.getMovies());
+		assertEquals(9.1, seventies.getAverageRating(), 1e-9);
+		assertEquals(9.0, seventies.getMinRating());
+		assertEquals(9.2, seventies.getMaxRating());
+		assertEquals(2500000, seventies.getTotalVotes());
+		assertArrayEquals(new long[] { 0, 0, 0, 0, 0, 0, 0, 0, 0, 2 }, seventies.getRatingHistogram());
+		assertArrayEquals(new long[] { 0, 0, 0, 0, 0, 0, 2 }, seventies.getVoteHistogram());
+
+		assertEquals(2000, stats.get(2).getFrom());
+		assertEquals(1, stats.get(2).getMovies());
+		assertEquals(2009, stats.get(2).getTo());
+		assertEquals(8, RatingAggregator.ratingBucket(stats.get(2).getMaxRating()));
+
+		assertEquals(5, RatingAggregator.aggregate(index, Integer.MIN_VALUE, Integer.MAX_VALUE, false).size());
+		assertTrue(RatingAggregator.aggregate(index, 1995, 2005, false).isEmpty());
+	}
+
+	/**
+	 * Summed in many small tasks on several threads, the statistics of a few
+	 * thousand random ratings are the same as summed in one task, and the same
+	 * as SQLite's.
+	 */
+	@Test
+	void testMatchesSql() throws SQLException {
+		Random random = new Random(1028);
+		seeder.getConnection().setAutoCommit(false);
+		try (PreparedStatement movie = seeder.getConnection()
+				.prepareStatement("INSERT INTO movies (id, title, year) VALUES(?, ?, ?)");
+				PreparedStatement rating = seeder.getConnection()
+						.prepareStatement("INSERT INTO ratings (movie_id, rating, votes) VALUES (?, ?, ?)")) {
+			for (int id = 6; id < 5000; id++) {
+				movie.setInt(1, id);
+				movie.setString(2, "Movie " + id);
+				movie.setInt(3, 1900 + random.nextInt(120));
+				movie.addBatch();
+				rating.setInt(1, id);
+				rating.setDouble(2, 1 + random.nextInt(90) / 10.0);
+				rating.setInt(3, random.nextInt(3_000_000));
+				rating.addBatch();
+			}
+			movie.executeBatch();
+			rating.executeBatch();
+		}
+		seeder.getConnection().commit();
+		seeder.getConnection().setAutoCommit(true);
+
+		RatingIndex index = RatingIndex.load(seeder.getConnection());
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			for (boolean byDecade : new boolean[] { false, true }) {
+				List<RatingStats> parallel = RatingAggregator.aggregate(index, 1925, 2010, byDecade, pool, 1);
+				List<RatingStats> sequential = RatingAggregator.aggregate(index, 1925, 2010, byDecade, pool,
+						Integer.MAX_VALUE);
+				String sql = "select " + (byDecade ? "movies.year / 10 * 10" : "movies.year")
+						+ " as g, count(*), avg(rating), min(rating), max(rating), sum(votes)"
+						+ " from ratings, movies where ratings.movie_id = movies.id"
+						+ " and movies.year between 1925 and 2010 group by g order by g";
+				try (Statement stmt = seeder.getConnection().createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+					int i = 0;
+					while (rs.next()) {
+						RatingStats expected = sequential.get(i);
+						RatingStats actual = parallel.get(i);
+						assertEquals(Math.max(rs.getInt(1), 1925), actual.getFrom());
+						assertEquals(rs.getLong(2), actual.getMovies());
+						assertEquals(rs.getDouble(3), actual.getAverageRating(), 1e-9);
+						assertEquals(rs.getDouble(4), actual.getMinRating());
+						assertEquals(rs.getDouble(5), actual.getMaxRating());
+						assertEquals(rs.getLong(6), actual.getTotalVotes());
+						assertEquals(expected.getAverageRating(), actual.getAverageRating(), 1e-9);
+						assertArrayEquals(expected.getRatingHistogram(), actual.getRatingHistogram());
+						assertArrayEquals(expected.getVoteHistogram(), actual.getVoteHistogram());
+						i++;
+					}
+					assertEquals(i, parallel.size());
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Ratings and votes fall into the right buckets at the edges.
+	 */
+	@Test
+	void testBuckets() {
+		assertEquals(0, RatingAggregator.ratingBucket(0.5));
+		assertEquals(6, RatingAggregator.ratingBucket(6.0));
+		assertEquals(9, RatingAggregator.ratingBucket(10.0));
+		assertEquals(0, RatingAggregator.voteBucket(9));
+		assertEquals(1, RatingAggregator.voteBucket(10));
+		assertEquals(5, RatingAggregator.voteBucket(999_999));
+		assertEquals(6, RatingAggregator.voteBucket(Integer.MAX_VALUE));
+	}
+
+	/**
+	 * Close connection after each test method.
+	 */
+	@AfterEach
+	void tearDown() {
+		seeder.closeConnection();
+	}
+}
@@ -0,0 +1,153 @@
+package com.flickfinder.catalog;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.flickfinder.dao.MovieDAO;
+import com.flickfinder.model.MovieRating;
+import com.flickfinder.util.Database;
+import com.flickfinder.util.OptimizedDatabase;
+import com.flickfinder.util.Seeder;
+
+/**
+ * Tests for the per-year rating index.
+ */
+class RatingIndexTest {
+
+	/**
+	 * Seeder
+	 */
+	Seeder seeder;
+
+	/**
+	 * Seeds an in-memory database.
+	 */
+	@BeforeEach
+	void setUp() {
+		seeder = new Seeder("jdbc:sqlite::memory:");
+		Database.getInstance(seeder.getConnection());
+	}
+
+	/**
+	 * The seeded movies come back by rating, and the vote threshold and limit are
+	 * applied.
+	 */
+	@Test
+	void testTop() throws SQLException {
+		RatingIndex index = RatingIndex.load(seeder.getConnection());
+		assertEquals(5, index.size());
+		List<MovieRating> top = index.top(1994, 1000, 50);
+		assertEquals(1, top.size());
+		assertEquals("The Shawshank Redemption", top.get(0).getTitle());
+		assertEquals(9.3, top.get(0).getRating());
+		assertEquals(0, index.top(1994, 2200000, 50).size());
+		assertEquals(0, index.top(2024, 0, 50).size());
+	}
+
+	/**
+	 * Both ways of building the index give the same results as the SQL query, in
+	 * the same order, on a few thousand random ratings with plenty of ties.
+	 */
+	@Test
+	void testMatchesSql() throws SQLException {
+		seedRandomRatings(seeder.getConnection());
+
+		MovieDAO sql = new MovieDAO();
+		RatingIndex loaded = RatingIndex.load(seeder.getConnection());
+		RatingIndex built = RatingIndex.build(ColumnarCatalog.load(seeder.getConnection()));
+		for (int year = 1989; year <= 2000; year++) {
+			for (int votes : new int[] { 0, 1000, 4900 }) {
+				for (int limit : new int[] { 1, 50, 1000 }) {
+					String expected = sql.getMoviesByRatingOrder(year, votes, limit).toString();
+					assertEquals(expected, loaded.top(year, votes, limit).toString());
+					assertEquals(expected, built.top(year, votes, limit).toString());
+				}
+			}
+		}
+
+		// the undated movie is not in year 0 either
+		assertEquals(0, loaded.top(0, 0, 1000).size());
+		assertEquals(0, built.top(0, 0, 1000).size());
+		assertEquals(0, sql.getMoviesByRatingOrder(0, 0, 1000).size());
+	}
+
+	/**
+	 * On the indexed copy the query reads movies through movies_year, and ties
+	 * still come back in the order of the ratings table, as the index has them.
+	 */
+	@Test
+	void testMatchesSqlOnOptimizedCopy(@TempDir Path dir) throws Exception {
+		Path source = dir.resolve("movies.db");
+		Seeder file = new Seeder("jdbc:sqlite:" + source);
+		seedRandomRatings(file.getConnection());
+		file.closeConnection();
+
+		Path copy = OptimizedDatabase.prepare(source, dir.resolve("movies-optimized.db"));
+		try (Connection optimized = DriverManager.getConnection("jdbc:sqlite:" + copy)) {
+			Database.getInstance(optimized);
+			MovieDAO sql = new MovieDAO();
+			RatingIndex loaded = RatingIndex.load(optimized);
+			RatingIndex built = RatingIndex.build(ColumnarCatalog.load(optimized));
+			for (int year = 1990; year < 2000; year++) {
+				String expected = sql.getMoviesByRatingOrder(year, 0, 1000).toString();
+				assertEquals(expected, loaded.top(year, 0, 1000).toString(), "year " + year);
+				assertEquals(expected, built.top(year, 0, 1000).toString(), "year " + year);
+			}
+		}
+	}
+
+	/**
+	 * Adds a few thousand movies over ten years with random ratings, plenty of
+	 * them tied, and an undated movie.
+	 */
+	private static void seedRandomRatings(Connection connection) throws SQLException {
+		Random random = new Random(1028);
+		connection.setAutoCommit(false);
+		try (PreparedStatement movie = connection
+				.prepareStatement("INSERT INTO movies (id, title, year) VALUES(?, ?, ?)");
+				PreparedStatement rating = connection
+						.prepareStatement("INSERT INTO ratings (movie_id, rating, votes) VALUES (?, ?, ?)")) {
+			for (int id = 6; id < 5000; id++) {
+				movie.setInt(1, id);
+				movie.setString(2, "Movie " + id);
+				movie.setInt(3, 1990 + random.nextInt(10));
+				movie.addBatch();
+				// ratings are inserted out of id order, so the table order matters for ties
+				rating.setInt(1, 5006 - id);
+				rating.setDouble(2, 5 + random.nextInt(20) / 10.0);
+				rating.setInt(3, random.nextInt(5000));
+				rating.addBatch();
+			}
+			movie.executeBatch();
+			rating.executeBatch();
+		}
+		try (Statement stmt = connection.createStatement()) {
+			// a movie without a year never matches
+			stmt.execute("INSERT INTO movies (id, title) VALUES(9000, 'Undated')");
+			stmt.execute("INSERT INTO ratings (movie_id, rating, votes) VALUES (9000, 9.9, 4000)");
+		}
+		connection.commit();
+		connection.setAutoCommit(true);
+	}
+
+	/**
+	 * Close connection after each test method.
+	 */
+	@AfterEach
+	void tearDown() {
+		seeder.closeConnection();
+	}
+}
@@ -0,0 +1,170 @@
+package com.flickfinder.catalog;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.flickfinder.catalog.SimilarityIndex.Matches;
+import com.flickfinder.util.Seeder;
+
+/**
+ * Tests for finding movies with similar cast and directors.
+ */
+class SimilarityIndexTest {
+
+	/**
+	 * Seeder
+	 */
+	Seeder seeder;
+
+	/**
+	 * Seeds an in-memory database.
+	 */
+	@BeforeEach
+	void setUp() {
+		seeder = new Seeder("jdbc:sqlite::memory:");
+	}
+
+	/**
+	 * The two Godfather movies share Al Pacino and Christopher Nolan, and every
+	 * other movie shares only Nolan.
+	 */
+	@Test
+	void testSimilar() throws SQLException {
+		SimilarityIndex index = SimilarityIndex.load(seeder.getConnection());
+
+		Matches similar = index.similar(2, 10, false);
+		assertEquals(3, similar.movieId(0));
+		assertEquals(2, similar.shared(0));
+		assertEquals(1.0, similar.score(0));
+		assertEquals(0.9, index.similar(2, 1, true).score(0), 1e-6);
+
+		Matches exact = index.exact(2, 10, false);
+		assertArrayEquals(new int[] { 3, 4, 5, 1 }, ids(exact));
+		assertEquals(1.0 / 3, exact.score(2), 1e-9);
+		assertEquals(1, index.similar(2, 1, false).size());
+		assertNull(index.similar(1000, 10, false));
+		assertNull(index.exact(1000, 10, false));
+	}
+
+	/**
+	 * On a few thousand movies cast from overlapping groups of people, the
+	 * buckets find almost every movie that shares at least half its credits,
+	 * score them as the exact scan does, and give the same answers loaded or
+	 * shared with a catalog.
+	 */
+	@Test
+	void testMatchesExactScan() throws SQLException {
+		Random random = new Random(1028);
+		seeder.getConnection().setAutoCommit(false);
+		try (PreparedStatement movie = seeder.getConnection()
+				.prepareStatement("INSERT INTO movies (id, title, year) VALUES(?, ?, 2000)");
+				PreparedStatement person = seeder.getConnection()
+						.prepareStatement("INSERT INTO people (id, name, birth) VALUES(?, ?, 1970)");
+				PreparedStatement star = seeder.getConnection()
+						.prepareStatement("INSERT INTO stars (movie_id, person_id) VALUES (?, ?)");
+				PreparedStatement director = seeder.getConnection()
+						.prepareStatement("INSERT INTO directors (movie_id, person_id) VALUES (?, ?)")) {
+			for (int id = 6; id < 1000; id++) {
+				person.setInt(1, id);
+				person.setString(2, "Person " + id);
+				person.addBatch();
+			}
+			for (int id = 6; id < 3000; id++) {
+				movie.setInt(1, id);
+				movie.setString(2, "Movie " + id);
+				movie.addBatch();
+				// four of a group of six people, and someone from anywhere
+				int group = 6 + 6 * random.nextInt(150);
+				for (int k = 0, picked = 0; k < 6 && picked < 4; k++) {
+					if (random.nextInt(6 - k) < 4 - picked) {
+						star.setInt(1, id);
+						star.setInt(2, group + k);
+						star.addBatch();
+						picked++;
+					}
+				}
+				star.setInt(1, id);
+				star.setInt(2, 1 + random.nextInt(999));
+				star.addBatch();
+				director.setInt(1, id);
+				director.setInt(2, random.nextBoolean() ? group : 1 + random.nextInt(999));
+				director.addBatch();
+			}
+			person.executeBatch();
+			movie.executeBatch();
+			star.executeBatch();
+			director.executeBatch();
+		}
+		seeder.getConnection().commit();
+		seeder.getConnection().setAutoCommit(true);
+
+		SimilarityIndex loaded = SimilarityIndex.load(seeder.getConnection());
+		SimilarityIndex shared = SimilarityIndex.of(ColumnarCatalog.load(seeder.getConnection()));
+		int relevant = 0;
+		int found = 0;
+		for (int id = 6; id < 3000; id += 13) {
+			for (boolean weighted : new boolean[] { false, true }) {
+				Matches exact = loaded.exact(id, SimilarityIndex.MAX_LIMIT, weighted);
+				Map<Integer, Integer> rank = new HashMap<>();
+				for (int i = 0; i < exact.size(); i++) {
+					rank.put(exact.movieId(i), i);
+				}
+
+				Matches similar = loaded.similar(id, 10, weighted);
+				assertArrayEquals(ids(similar), ids(shared.similar(id, 10, weighted)), "movie " + id);
+				for (int i = 0; i < similar.size(); i++) {
+					Integer r = rank.get(similar.movieId(i));
+					if (r != null) {
+						assertEquals(exact.shared(r), similar.shared(i), "movie " + id);
+						assertEquals(exact.score(r), similar.score(i), "movie " + id);
+					}
+					if (i > 0) {
+						assertTrue(similar.score(i) <= similar.score(i - 1), "movie " + id);
+					}
+				}
+
+				if (!weighted) {
+					Matches top = loaded.exact(id, 10, false);
+					for (int i = 0; i < top.size() && top.score(i) >= 0.5; i++) {
+						relevant++;
+						for (int j = 0; j < similar.size(); j++) {
+							if (similar.movieId(j) == top.movieId(i)) {
+								found++;
+							}
+						}
+					}
+				}
+			}
+		}
+		assertTrue(relevant > 50, "only " + relevant + " similar pairs");
+		assertTrue(found >= 0.95 * relevant, found + " of " + relevant + " similar pairs found");
+	}
+
+	private static int[] ids(Matches matches) {
+		int[] ids = new int[matches.size()];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = matches.movieId(i);
+		}
+		return ids;
+	}
+
+	/**
+	 * Close connection after each test method.
+	 */
+	@AfterEach
+	void tearDown() {
+		seeder.closeConnection();
+	}
+}
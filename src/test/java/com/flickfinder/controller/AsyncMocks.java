@@ -0,0 +1,60 @@
+package com.flickfinder.controller;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.RETURNS_DEFAULTS;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import io.javalin.http.Context;
+
+/**
+ * Mocks for testing controllers that answer with the async DAO methods.
+ */
+final class AsyncMocks {
+
+	private AsyncMocks() {
+	}
+
+	/**
+	 * Returns a mock DAO whose async methods call the synchronous ones, so tests
+	 * can stub and verify the synchronous methods as before.
+	 *
+	 * @param <T>  the type of the DAO
+	 * @param type the class of the DAO
+	 * @return the mock
+	 */
+	static <T> T dao(Class<T> type) {
+		return mock(type, invocation -> {
+			Method method = invocation.getMethod();
+			if (!method.getName().endsWith("Async")) {
+				return RETURNS_DEFAULTS.answer(invocation);
+			}
+			String name = method.getName().substring(0, method.getName().length() - "Async".length());
+			Method sync = type.getMethod(name, method.getParameterTypes());
+			try {
+				return CompletableFuture.completedFuture(sync.invoke(invocation.getMock(), invocation.getArguments()));
+			} catch (InvocationTargetException e) {
+				return CompletableFuture.failedFuture(e.getCause());
+			}
+		});
+	}
+
+	/**
+	 * Makes a mock context wait for the futures it is given, as Javalin would
+	 * before sending the response.
+	 *
+	 * @param ctx the mock context
+	 */
+	@SuppressWarnings("unchecked")
+	static void runFutures(Context ctx) {
+		doAnswer(invocation -> {
+			((Supplier<CompletableFuture<?>>) invocation.getArgument(0)).get().join();
+			return null;
+		}).when(ctx).future(any());
+	}
+}
@@ -0,0 +1,113 @@
+package com.flickfinder.controller;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.SQLException;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.flickfinder.catalog.CollaboratorIndex;
+import com.flickfinder.dao.PersonDAO;
+import com.flickfinder.util.Seeder;
+
+import io.javalin.http.Context;
+
+/**
+ * Test for the Collaborator Controller.
+ */
+class CollaboratorControllerTest {
+
+	/**
+	 * Seeder, for the index.
+	 */
+	private Seeder seeder;
+
+	/**
+	 * The context object, later we will mock it.
+	 */
+	private Context ctx;
+
+	/**
+	 * The person data access object, mocked.
+	 */
+	private PersonDAO personDAO;
+
+	/**
+	 * The controller under test.
+	 */
+	private CollaboratorController collaboratorController;
+
+	@BeforeEach
+	void setUp() throws SQLException {
+		seeder = new Seeder("jdbc:sqlite::memory:");
+		personDAO = AsyncMocks.dao(PersonDAO.class);
+		ctx = mock(Context.class);
+		AsyncMocks.runFutures(ctx);
+		collaboratorController = new CollaboratorController(CollaboratorIndex.load(seeder.getConnection()),
+				personDAO);
+	}
+
+	/**
+	 * The collaborators are looked up in bulk, most shared movies first.
+	 */
+	@Test
+	void testGetCollaborators() throws SQLException {
+		when(ctx.pathParam("id")).thenReturn("3");
+		when(ctx.queryParam("limit")).thenReturn("2");
+		collaboratorController.getCollaborators(ctx);
+		verify(personDAO).getPeopleByIds(List.of(4, 1));
+	}
+
+	/**
+	 * Test that the controller returns a 404 status code for an unknown person.
+	 */
+	@Test
+	void testThrows404ExceptionWhenPersonNotFound() throws SQLException {
+		when(ctx.pathParam("id")).thenReturn("1000");
+		collaboratorController.getCollaborators(ctx);
+		verify(ctx).status(404);
+		verify(personDAO, never()).getPeopleByIds(anyList());
+	}
+
+	/**
+	 * Test that the controller returns a 400 status code for a bad id or limit.
+	 */
+	@Test
+	void testThrows400ExceptionWhenInvalidParams() {
+		when(ctx.pathParam("id")).thenReturn("three");
+		collaboratorController.getCollaborators(ctx);
+		verify(ctx).status(400);
+
+		Context limit = mock(Context.class);
+		when(limit.pathParam("id")).thenReturn("3");
+		when(limit.queryParam("limit")).thenReturn("0");
+		collaboratorController.getCollaborators(limit);
+		verify(limit).status(400);
+		verify(limit, never()).json(any());
+	}
+
+	/**
+	 * Test that the controller returns a 500 status code when a database error
+	 * occurs.
+	 */
+	@Test
+	void testThrows500ExceptionWhenDatabaseError() throws SQLException {
+		when(ctx.pathParam("id")).thenReturn("3");
+		when(personDAO.getPeopleByIds(anyList())).thenThrow(new SQLException());
+		collaboratorController.getCollaborators(ctx);
+		verify(ctx).status(500);
+	}
+
+	@AfterEach
+	void tearDown() {
+		seeder.closeConnection();
+	}
+}
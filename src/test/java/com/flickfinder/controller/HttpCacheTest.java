@@ -0,0 +1,153 @@
+package com.flickfinder.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.javalin.http.Context;
+import io.javalin.http.Handler;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Tests for the ETag and Cache-Control handling.
+ */
+class HttpCacheTest {
+
+	/**
+	 * The context object, we mock it.
+	 */
+	private Context ctx;
+
+	/**
+	 * The cache under test.
+	 */
+	private HttpCache httpCache;
+
+	@BeforeEach
+	void setUp() {
+		ctx = mock(Context.class);
+		when(ctx.path()).thenReturn("/movies");
+		httpCache = new HttpCache("v1");
+	}
+
+	/**
+	 * The ETag depends on the version, the path and the parameters, but not on
+	 * the order of the parameters.
+	 */
+	@Test
+	void testEtag() {
+		Map<String, List<String>> params = new LinkedHashMap<>();
+		params.put("limit", List.of("2"));
+		params.put("cursor", List.of("abc"));
+		when(ctx.queryParamMap()).thenReturn(params);
+		String etag = httpCache.etag(ctx);
+		assertTrue(etag.startsWith("\"") && etag.endsWith("\""));
+
+		Map<String, List<String>> reordered = new LinkedHashMap<>();
+		reordered.put("cursor", List.of("abc"));
+		reordered.put("limit", List.of("2"));
+		when(ctx.queryParamMap()).thenReturn(reordered);
+		assertEquals(etag, httpCache.etag(ctx));
+
+		assertNotEquals(etag, new HttpCache("v2").etag(ctx));
+		when(ctx.header("Accept")).thenReturn(JsonStreaming.NDJSON);
+		assertNotEquals(etag, httpCache.etag(ctx));
+	}
+
+	/**
+	 * If-None-Match matches the ETag, a weak version of it or a list holding it.
+	 * A wildcard is only matched once the route has answered.
+	 */
+	@Test
+	void testMatches() {
+		assertTrue(HttpCache.matches("\"a\"", "\"a\""));
+		assertTrue(HttpCache.matches("W/\"a\"", "\"a\""));
+		assertTrue(HttpCache.matches("\"b\", \"a\"", "\"a\""));
+		assertFalse(HttpCache.matches("*", "\"a\""));
+		assertTrue(HttpCache.isWildcard(" * "));
+		assertFalse(HttpCache.isWildcard("\"*\""));
+		assertFalse(HttpCache.matches("\"b\"", "\"a\""));
+		assertFalse(HttpCache.matches(null, "\"a\""));
+	}
+
+	/**
+	 * A matching If-None-Match is answered with 304 without running the route.
+	 */
+	@Test
+	void testNotModifiedSkipsTheRoute() throws Exception {
+		Handler route = mock(Handler.class);
+		String etag = httpCache.etag(ctx);
+		when(ctx.header("If-None-Match")).thenReturn(etag);
+
+		httpCache.cached("public, max-age=60", route).handle(ctx);
+
+		verify(ctx).status(304);
+		verify(route, never()).handle(ctx);
+		assertEquals(1.0, httpCache.getNotModifiedRatio());
+	}
+
+	/**
+	 * The route runs without If-None-Match, and a failed response is not cached
+	 * once it finishes.
+	 */
+	@Test
+	void testErrorsAreNotCached() throws Exception {
+		Handler route = mock(Handler.class);
+		HttpServletResponse res = mock(HttpServletResponse.class);
+		when(ctx.res()).thenReturn(res);
+		String etag = httpCache.etag(ctx);
+		when(res.getHeader("ETag")).thenReturn(etag);
+		when(ctx.statusCode()).thenReturn(429);
+
+		httpCache.cached("public, max-age=60", route).handle(ctx);
+		verify(route).handle(ctx);
+		verify(ctx, never()).removeHeader("ETag");
+
+		httpCache.finish(ctx);
+		verify(ctx).removeHeader("ETag");
+		verify(ctx).header("Cache-Control", "no-store");
+		assertEquals(0.0, httpCache.getNotModifiedRatio());
+	}
+
+	/**
+	 * A wildcard runs the route, and only a response that exists becomes a 304.
+	 */
+	@Test
+	void testWildcard() throws Exception {
+		Handler route = mock(Handler.class);
+		HttpServletResponse res = mock(HttpServletResponse.class);
+		when(ctx.res()).thenReturn(res);
+		String etag = httpCache.etag(ctx);
+		when(res.getHeader("ETag")).thenReturn(etag);
+		when(ctx.header("If-None-Match")).thenReturn("*");
+
+		httpCache.cached("public, max-age=60", route).handle(ctx);
+		verify(route).handle(ctx);
+		verify(ctx, never()).status(304);
+
+		when(ctx.statusCode()).thenReturn(404);
+		httpCache.finish(ctx);
+		verify(ctx, never()).status(304);
+		verify(ctx).removeHeader("ETag");
+
+		Context found = mock(Context.class);
+		when(found.res()).thenReturn(res);
+		when(found.header("If-None-Match")).thenReturn("*");
+		when(found.statusCode()).thenReturn(200);
+		httpCache.finish(found);
+		verify(found).status(304);
+		assertEquals(1, httpCache.getNotModified());
+	}
+}
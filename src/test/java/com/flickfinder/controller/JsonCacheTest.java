@@ -0,0 +1,91 @@
+package com.flickfinder.controller;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the off-heap cache of serialized movies and people.
+ */
+class JsonCacheTest {
+
+	/**
+	 * Stored JSON comes back as it was put, and an id is only stored once.
+	 */
+	@Test
+	void testGetAndPut() {
+		JsonCache cache = new JsonCache(1 << 20);
+		assertNull(cache.get(1));
+		cache.put(1, json(1));
+		cache.put(1, "{\"id\":2}".getBytes(StandardCharsets.UTF_8));
+		assertArrayEquals(json(1), cache.get(1));
+		assertEquals(1, cache.getEntries());
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+	}
+
+	/**
+	 * Once every slab is full the oldest is reused, and the cache never holds
+	 * more than its budget.
+	 */
+	@Test
+	void testEvictsTheOldestSlab() {
+		JsonCache cache = new JsonCache(2 * 100, 100);
+		byte[] forty = new byte[40];
+		// slab 0 takes ids 1 and 2, slab 1 takes 3 and 4
+		for (int id = 1; id <= 4; id++) {
+			cache.put(id, forty);
+		}
+		assertEquals(4, cache.getEntries());
+		cache.put(5, forty);
+		assertNull(cache.get(1));
+		assertNull(cache.get(2));
+		assertArrayEquals(forty, cache.get(3));
+		assertArrayEquals(forty, cache.get(5));
+		assertEquals(2, cache.getEvictions());
+		assertEquals(200, cache.getAllocatedBytes());
+
+		cache.put(6, new byte[101]);
+		assertNull(cache.get(6));
+	}
+
+	/**
+	 * Many ids put and evicted in turn are always found where they were put.
+	 */
+	@Test
+	void testManyIds() {
+		JsonCache cache = new JsonCache(64 << 10);
+		Map<Integer, byte[]> expected = new HashMap<>();
+		Random random = new Random(19);
+		for (int i = 0; i < 20_000; i++) {
+			int id = random.nextInt(5_000) - 1_000;
+			if (cache.get(id) == null) {
+				cache.put(id, json(id));
+			}
+			expected.put(id, json(id));
+		}
+		int found = 0;
+		for (Map.Entry<Integer, byte[]> entry : expected.entrySet()) {
+			byte[] json = cache.get(entry.getKey());
+			if (json != null) {
+				assertArrayEquals(entry.getValue(), json);
+				found++;
+			}
+		}
+		assertEquals(cache.getEntries(), found);
+		assertTrue(cache.getEvictions() > 0);
+		assertTrue(cache.getAllocatedBytes() <= 64 << 10);
+	}
+
+	private static byte[] json(int id) {
+		return ("{\"id\":" + id + ",\"title\":\"Movie " + id + "\",\"year\":1994}").getBytes(StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,182 @@
+package com.flickfinder.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.flickfinder.dao.MovieDAO;
+import com.flickfinder.util.Database;
+import com.flickfinder.util.Seeder;
+
+import io.javalin.http.Context;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+
+/**
+ * Tests for streaming list responses.
+ */
+class JsonStreamingTest {
+
+	/**
+	 * Seeder
+	 */
+	Seeder seeder;
+
+	/**
+	 * The context object, we mock it so the body goes to our own stream.
+	 */
+	Context ctx;
+
+	/**
+	 * The movie controller, backed by the real DAO.
+	 */
+	MovieController movieController;
+
+	/**
+	 * Seeds the database and creates the controller.
+	 */
+	@BeforeEach
+	void setUp() {
+		seeder = new Seeder("jdbc:sqlite::memory:");
+		Database.getInstance(seeder.getConnection());
+		movieController = new MovieController(new MovieDAO());
+		ctx = mock(Context.class);
+		AsyncMocks.runFutures(ctx);
+	}
+
+	/**
+	 * ?stream=true writes a JSON array.
+	 */
+	@Test
+	void testStreamsJsonArray() {
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		when(ctx.queryParam("stream")).thenReturn("true");
+		when(ctx.queryParam("limit")).thenReturn("2");
+		when(ctx.outputStream()).thenReturn(servletStream(body));
+
+		movieController.getAllMovies(ctx);
+
+		assertEquals("[{\"id\":1,\"title\":\"The Shawshank Redemption\",\"year\":1994},"
+				+ "{\"id\":2,\"title\":\"The Godfather\",\"year\":1972}]", body.toString(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Accept: application/x-ndjson writes one object per line.
+	 */
+	@Test
+	void testStreamsNdjson() {
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		when(ctx.header("Accept")).thenReturn(JsonStreaming.NDJSON);
+		when(ctx.outputStream()).thenReturn(servletStream(body));
+
+		movieController.getAllMovies(ctx);
+
+		String[] lines = body.toString(StandardCharsets.UTF_8).split("\n");
+		assertEquals(5, lines.length);
+		assertEquals("{\"id\":5,\"title\":\"12 Angry Men\",\"year\":1957}", lines[4]);
+	}
+
+	/**
+	 * The heap used while streaming does not grow with the number of rows.
+	 * We stream 50,000 and then 250,000 movies and sample the live heap every
+	 * megabyte of output. Collecting 250,000 movies in a list would need well over
+	 * the allowed difference.
+	 */
+	@Test
+	void testPeakHeapDoesNotDependOnResultSize() throws SQLException {
+		insertMovies(250_000);
+		long small = peakHeapWhileStreaming(50_000);
+		long large = peakHeapWhileStreaming(250_000);
+		assertTrue(large - small < 8 * 1024 * 1024, "Peak heap grew by " + (large - small) + " bytes");
+	}
+
+	private long peakHeapWhileStreaming(int rows) {
+		MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		long[] peak = new long[1];
+		OutputStream sampler = new OutputStream() {
+			long written;
+
+			@Override
+			public void write(int b) {
+				write(new byte[] { (byte) b }, 0, 1);
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) {
+				long before = written;
+				written += len;
+				if (before / (1024 * 1024) != written / (1024 * 1024)) {
+					System.gc();
+					peak[0] = Math.max(peak[0], memory.getHeapMemoryUsage().getUsed());
+				}
+			}
+		};
+
+		Context context = mock(Context.class);
+		when(context.queryParam("stream")).thenReturn("true");
+		when(context.queryParam("limit")).thenReturn(String.valueOf(rows));
+		when(context.outputStream()).thenReturn(servletStream(sampler));
+		movieController.getAllMovies(context);
+		return peak[0];
+	}
+
+	private void insertMovies(int count) throws SQLException {
+		seeder.getConnection().setAutoCommit(false);
+		try (PreparedStatement ps = seeder.getConnection()
+				.prepareStatement("INSERT INTO movies (id, title, year) VALUES(?, ?, ?)")) {
+			for (int id = 6; id <= count; id++) {
+				ps.setInt(1, id);
+				ps.setString(2, "Generated movie number " + id);
+				ps.setInt(3, 1950 + id % 70);
+				ps.addBatch();
+			}
+			ps.executeBatch();
+		}
+		seeder.getConnection().commit();
+		seeder.getConnection().setAutoCommit(true);
+	}
+
+	private static ServletOutputStream servletStream(OutputStream target) {
+		return new ServletOutputStream() {
+			@Override
+			public void write(int b) throws java.io.IOException {
+				target.write(b);
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) throws java.io.IOException {
+				target.write(b, off, len);
+			}
+
+			@Override
+			public boolean isReady() {
+				return true;
+			}
+
+			@Override
+			public void setWriteListener(WriteListener writeListener) {
+			}
+		};
+	}
+
+	/**
+	 * Close connection after each test method.
+	 */
+	@AfterEach
+	void tearDown() {
+		seeder.closeConnection();
+	}
+}
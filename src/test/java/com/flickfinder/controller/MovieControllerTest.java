@@ -5,11 +5,14 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.sql.SQLException;
+import java.util.List;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import com.flickfinder.dao.MovieDAO;
+import com.flickfinder.util.Cursor;
+import com.flickfinder.util.DatabaseBusyException;
 
 import io.javalin.http.Context;
 
@@ -43,9 +46,10 @@ class MovieControllerTest {
 	@BeforeEach
 	void setUp() {
 		// We create a mock of the MovieDAO class.
-		movieDAO = mock(MovieDAO.class);
+		movieDAO = AsyncMocks.dao(MovieDAO.class);
 		// We create a mock of the Context class.
 		ctx = mock(Context.class);
+		AsyncMocks.runFutures(ctx);
 
 		// We create an instance of the MovieController class and pass the mock object
 		movieController = new MovieController(movieDAO);
@@ -79,6 +83,68 @@ class MovieControllerTest {
 		verify(ctx).status(500);
 	}
 
+	/**
+	 * Tests the getAllMovies method with a cursor.
+	 * We expect the page after the cursor to be requested.
+	 */
+	@Test
+	void testGetAllMoviesWithCursor() throws SQLException {
+		when(ctx.queryParam("cursor")).thenReturn(Cursor.encode("movies", 50));
+		movieController.getAllMovies(ctx);
+		verify(movieDAO).getMoviesAfter(50, 50);
+	}
+
+	/**
+	 * Test that the controller returns a 400 status code for a malformed cursor.
+	 */
+	@Test
+	void testThrows400ExceptionWhenCursorInvalid() {
+		when(ctx.queryParam("cursor")).thenReturn(Cursor.encode("people", 50));
+		movieController.getAllMovies(ctx);
+		verify(ctx).status(400);
+	}
+
+	/**
+	 * Tests the getAllMovies method with ids.
+	 * We expect the movies to be looked up in bulk, without duplicates.
+	 */
+	@Test
+	void testGetMoviesByIds() throws SQLException {
+		when(ctx.queryParam("ids")).thenReturn("3,1,3");
+		movieController.getAllMovies(ctx);
+		verify(movieDAO).getMoviesByIds(List.of(3, 1));
+	}
+
+	/**
+	 * Test that the controller returns a 400 status code for malformed ids.
+	 */
+	@Test
+	void testThrows400ExceptionWhenIdsInvalid() {
+		when(ctx.queryParam("ids")).thenReturn("1,two");
+		movieController.getAllMovies(ctx);
+		verify(ctx).status(400);
+	}
+
+	/**
+	 * Tests the getPeopleByMovieIds method.
+	 * We expect the stars to be looked up in bulk.
+	 */
+	@Test
+	void testPeopleByMovieIds() throws SQLException {
+		when(ctx.queryParam("ids")).thenReturn("1,2");
+		movieController.getPeopleByMovieIds(ctx);
+		verify(movieDAO).getStarsByMovies(List.of(1, 2));
+	}
+
+	/**
+	 * Test that the controller returns a 400 status code when no ids are sent.
+	 */
+	@Test
+	void testThrows400ExceptionWhenPeopleByMovieIdsMissing() {
+		movieController.getPeopleByMovieIds(ctx);
+		verify(ctx).status(400);
+	}
+
 	/**
 	 * Tests the getMovieById method.
 	 * We expect to get the movie with the specified id.
@@ -125,6 +191,21 @@ class MovieControllerTest {
 		verify(ctx).status(404);
 	}
 
+	/**
+	 * Test that the controller returns a 429 status code with a Retry-After header
+	 * when the database is too busy to take the query.
+	 *
+	 * @throws SQLException if a database error occurs
+	 */
+	@Test
+	void testThrows429ExceptionWhenDatabaseBusy() throws SQLException {
+		when(ctx.pathParam("id")).thenReturn("1");
+		when(movieDAO.getMovieById(1)).thenThrow(new DatabaseBusyException(3));
+		movieController.getMovieById(ctx);
+		verify(ctx).status(429);
+		verify(ctx).header("Retry-After", "3");
+	}
+
 	/**
 	 * Tests the getPeopleByMovieId method.
 	 * We expect to get a list of all stars in the specified movie.
@@ -171,6 +252,32 @@ class MovieControllerTest {
 		verify(ctx).status(500);
 	}
 
+	/**
+	 * Tests the getDirectorsByMovieId method.
+	 * We expect the directors of the specified movie to be looked up.
+	 */
+
+	@Test
+	void testDirectorsByMovieId() throws SQLException {
+		when(ctx.pathParam("id")).thenReturn("1");
+		movieController.getDirectorsByMovieId(ctx);
+		verify(movieDAO).getDirectorsByMovie(1);
+	}
+
+	/**
+	 * Test a 500 status code is returned when a database error occurs.
+	 *
+	 * @throws SQLException if a database error occurs
+	 */
+
+	@Test
+	void testThrows500ExceptionWhenDirectorsByMovieIdDatabaseError() throws SQLException {
+		when(ctx.pathParam("id")).thenReturn("1");
+		when(movieDAO.getDirectorsByMovie(1)).thenThrow(new SQLException());
+		movieController.getDirectorsByMovieId(ctx);
+		verify(ctx).status(500);
+	}
+
 	/**
 	 * Tests the getRatingsByYear method.
 	 * We expect to get a list of movies by a specified year.
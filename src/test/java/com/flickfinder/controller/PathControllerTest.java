@@ -0,0 +1,144 @@
+package com.flickfinder.controller;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.SQLException;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.flickfinder.catalog.CoStarGraph;
+import com.flickfinder.dao.MovieDAO;
+import com.flickfinder.dao.PersonDAO;
+import com.flickfinder.util.Seeder;
+
+import io.javalin.http.Context;
+
+/**
+ * Test for the Path Controller.
+ */
+class PathControllerTest {
+
+	/**
+	 * Seeder, for the graph.
+	 */
+	private Seeder seeder;
+
+	/**
+	 * The context object, later we will mock it.
+	 */
+	private Context ctx;
+
+	/**
+	 * The movie data access object, mocked.
+	 */
+	private MovieDAO movieDAO;
+
+	/**
+	 * The person data access object, mocked.
+	 */
+	private PersonDAO personDAO;
+
+	/**
+	 * The controller under test.
+	 */
+	private PathController pathController;
+
+	@BeforeEach
+	void setUp() throws SQLException {
+		seeder = new Seeder("jdbc:sqlite::memory:");
+		movieDAO = AsyncMocks.dao(MovieDAO.class);
+		personDAO = AsyncMocks.dao(PersonDAO.class);
+		ctx = mock(Context.class);
+		AsyncMocks.runFutures(ctx);
+		pathController = new PathController(CoStarGraph.load(seeder.getConnection()), movieDAO, personDAO);
+	}
+
+	/**
+	 * The people and movies on the chain are looked up in bulk.
+	 */
+	@Test
+	void testGetPath() throws SQLException {
+		when(ctx.pathParam("a")).thenReturn("1");
+		when(ctx.pathParam("b")).thenReturn("2");
+		pathController.getPath(ctx);
+		verify(personDAO).getPeopleByIds(List.of(1, 2));
+		verify(movieDAO).getMoviesByIds(List.of(1));
+	}
+
+	/**
+	 * Test that the controller returns a 404 status code when there is no chain.
+	 */
+	@Test
+	void testThrows404ExceptionWhenNoPath() throws SQLException {
+		when(ctx.pathParam("a")).thenReturn("1");
+		when(ctx.pathParam("b")).thenReturn("4");
+		pathController.getPath(ctx);
+		verify(ctx).status(404);
+		verify(personDAO, never()).getPeopleByIds(List.of(1, 4));
+	}
+
+	/**
+	 * Test that the controller returns a 404 status code for an unknown person.
+	 */
+	@Test
+	void testThrows404ExceptionWhenPersonNotFound() {
+		when(ctx.pathParam("a")).thenReturn("1");
+		when(ctx.pathParam("b")).thenReturn("1000");
+		pathController.getPath(ctx);
+		verify(ctx).status(404);
+	}
+
+	/**
+	 * Test that the controller returns a 400 status code for a bad id or hop
+	 * limit.
+	 */
+	@Test
+	void testThrows400ExceptionWhenInvalidParams() {
+		when(ctx.pathParam("a")).thenReturn("one");
+		when(ctx.pathParam("b")).thenReturn("2");
+		pathController.getPath(ctx);
+		verify(ctx).status(400);
+
+		Context hops = mock(Context.class);
+		when(hops.pathParam("a")).thenReturn("1");
+		when(hops.pathParam("b")).thenReturn("2");
+		when(hops.queryParam("hops")).thenReturn("six");
+		pathController.getPath(hops);
+		verify(hops).status(400);
+
+		// people who are connected, so a 404 would mean the search was skipped
+		for (String value : new String[] { "0", "-3" }) {
+			Context none = mock(Context.class);
+			when(none.pathParam("a")).thenReturn("1");
+			when(none.pathParam("b")).thenReturn("2");
+			when(none.queryParam("hops")).thenReturn(value);
+			pathController.getPath(none);
+			verify(none).status(400);
+			verify(none, never()).status(404);
+		}
+	}
+
+	/**
+	 * Test that the controller returns a 500 status code when a database error
+	 * occurs.
+	 */
+	@Test
+	void testThrows500ExceptionWhenDatabaseError() throws SQLException {
+		when(ctx.pathParam("a")).thenReturn("1");
+		when(ctx.pathParam("b")).thenReturn("2");
+		when(personDAO.getPeopleByIds(List.of(1, 2))).thenThrow(new SQLException());
+		pathController.getPath(ctx);
+		verify(ctx).status(500);
+	}
+
+	@AfterEach
+	void tearDown() {
+		seeder.closeConnection();
+	}
+}
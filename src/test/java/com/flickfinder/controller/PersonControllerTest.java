@@ -1,11 +1,13 @@
 package com.flickfinder.controller;
 
 import com.flickfinder.dao.PersonDAO;
+import com.flickfinder.util.Cursor;
 import io.javalin.http.Context;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.sql.SQLException;
+import java.util.List;
 
 import static org.mockito.Mockito.*;
 
@@ -37,9 +39,10 @@ class PersonControllerTest {
     @BeforeEach
     void setUp() {
         // We create a mock of the PersonDAO class.
-        personDAO = mock(PersonDAO.class);
+        personDAO = AsyncMocks.dao(PersonDAO.class);
         // We create a mock of the Context class.
         ctx = mock(Context.class);
+        AsyncMocks.runFutures(ctx);
 
         // We create an instance of the PersonController class and pass the mock object
         personController = new PersonController(personDAO);
@@ -73,6 +76,42 @@ class PersonControllerTest {
         verify(ctx).status(500);
     }
 
+    /**
+     * Tests the getAllPeople method with a cursor.
+     * We expect the page after the cursor to be requested.
+     */
+    @Test
+    void testGetAllPeopleWithCursor() throws SQLException {
+        when(ctx.queryParam("cursor")).thenReturn(Cursor.encode("people", 10));
+        personController.getAllPeople(ctx);
+        verify(personDAO).getPeopleAfter(10, 50);
+    }
+
+    /**
+     * Tests the getAllPeople method with ids.
+     * We expect the people to be looked up in bulk.
+     */
+    @Test
+    void testGetPeopleByIds() throws SQLException {
+        when(ctx.queryParam("ids")).thenReturn("4, 2");
+        personController.getAllPeople(ctx);
+        verify(personDAO).getPeopleByIds(List.of(4, 2));
+    }
+
+    /**
+     * Test that the controller returns a 400 status code for too many ids.
+     */
+    @Test
+    void testThrows400ExceptionWhenTooManyIds() {
+        StringBuilder ids = new StringBuilder("0");
+        for (int id = 1; id <= 1000; id++) {
+            ids.append(',').append(id);
+        }
+        when(ctx.queryParam("ids")).thenReturn(ids.toString());
+        personController.getAllPeople(ctx);
+        verify(ctx).status(400);
+    }
+
     /**
      * Tests the getPersonById method.
      * We expect to get the person with the specified id.
@@ -149,4 +188,43 @@ class PersonControllerTest {
         verify(ctx).status(500);
     }
 
+    /**
+     * Tests the getMoviesDirectedByPerson method.
+     * We expect the movies directed by the specified person to be looked up.
+     */
+    @Test
+    void testGetMoviesDirectedByPerson() throws SQLException {
+        when(ctx.pathParam("id")).thenReturn("3");
+        personController.getMoviesDirectedByPerson(ctx);
+        verify(personDAO).getMoviesByDirector(3);
+    }
+
+    /**
+     * Tests the getCredits method.
+     * We expect the starred and directed movies to come from one DAO call.
+     */
+    @Test
+    void testGetCredits() throws SQLException {
+        when(ctx.pathParam("id")).thenReturn("3");
+        personController.getCredits(ctx);
+        verify(personDAO).getCredits(3);
+        verify(personDAO, never()).getMoviesByStar(3);
+        verify(personDAO, never()).getMoviesByDirector(3);
+    }
+
+    /**
+     * Test that the controller returns a 500 status code when a database error
+     * occurs
+     *
+     * @throws SQLException if a database error occurs
+     */
+
+    @Test
+    void testThrows500ExceptionWhenGetCreditsDatabaseError() throws SQLException {
+        when(ctx.pathParam("id")).thenReturn("3");
+        when(personDAO.getCredits(3)).thenThrow(new SQLException());
+        personController.getCredits(ctx);
+        verify(ctx).status(500);
+    }
+
 }
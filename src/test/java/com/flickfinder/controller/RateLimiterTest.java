@@ -0,0 +1,155 @@
+package com.flickfinder.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.javalin.http.Context;
+
+/**
+ * Tests for the per-client token buckets.
+ */
+class RateLimiterTest {
+
+	/**
+	 * The limiter's clock, in nanoseconds.
+	 */
+	private AtomicLong clock;
+
+	/**
+	 * The limiter under test: 2 tokens a second, 4 at most, and 3 for /movies.
+	 */
+	private RateLimiter rateLimiter;
+
+	@BeforeEach
+	void setUp() {
+		clock = new AtomicLong(1_000_000_000_000L);
+		rateLimiter = new RateLimiter(2, 4, ctx -> ctx.path().equals("/movies") ? 3 : 1, Set.of("known"),
+				clock::get);
+	}
+
+	private static Context request(String ip, String path) {
+		Context ctx = mock(Context.class);
+		when(ctx.ip()).thenReturn(ip);
+		when(ctx.path()).thenReturn(path);
+		return ctx;
+	}
+
+	/**
+	 * A full bucket lets a burst through, then turns requests away until it
+	 * refills, saying when to come back.
+	 */
+	@Test
+	void testBurstThenRefill() {
+		for (int i = 0; i < 4; i++) {
+			Context ctx = request("10.0.0.1", "/movies/1");
+			rateLimiter.admit(ctx);
+			verify(ctx).header("RateLimit-Remaining", String.valueOf(3 - i));
+			verify(ctx, never()).status(429);
+		}
+
+		Context limited = request("10.0.0.1", "/movies/1");
+		rateLimiter.admit(limited);
+		verify(limited).status(429);
+		verify(limited).header("Retry-After", "1");
+		verify(limited).header("RateLimit-Limit", "4");
+		verify(limited).header("RateLimit-Remaining", "0");
+		verify(limited).header("RateLimit-Reset", "2");
+		verify(limited).skipRemainingHandlers();
+
+		// half a second refills one token
+		clock.addAndGet(500_000_000L);
+		Context refilled = request("10.0.0.1", "/movies/1");
+		rateLimiter.admit(refilled);
+		verify(refilled, never()).status(429);
+		assertEquals(5, rateLimiter.getAllowed());
+		assertEquals(1, rateLimiter.getRejected());
+	}
+
+	/**
+	 * Expensive routes take more tokens, and free routes take none.
+	 */
+	@Test
+	void testCost() {
+		Context list = request("10.0.0.1", "/movies");
+		rateLimiter.admit(list);
+		verify(list).header("RateLimit-Remaining", "1");
+
+		Context again = request("10.0.0.1", "/movies");
+		rateLimiter.admit(again);
+		verify(again).status(429);
+		// it needs 2 more tokens, which takes a second
+		verify(again).header("Retry-After", "1");
+
+		RateLimiter free = new RateLimiter(2, 4, ctx -> 0, Set.of(), clock::get);
+		for (int i = 0; i < 10; i++) {
+			Context ctx = request("10.0.0.1", "/metrics");
+			free.admit(ctx);
+			verify(ctx, never()).status(429);
+		}
+		assertEquals(0, free.getClients());
+	}
+
+	/**
+	 * Each address and known key has a bucket of its own, and unknown keys
+	 * count against the address.
+	 */
+	@Test
+	void testClients() {
+		for (int i = 0; i < 4; i++) {
+			rateLimiter.admit(request("10.0.0.1", "/people/1"));
+		}
+
+		Context other = request("10.0.0.2", "/people/1");
+		rateLimiter.admit(other);
+		verify(other, never()).status(429);
+
+		Context known = request("10.0.0.1", "/people/1");
+		when(known.header(RateLimiter.API_KEY_HEADER)).thenReturn("known");
+		rateLimiter.admit(known);
+		verify(known, never()).status(429);
+
+		Context unknown = request("10.0.0.1", "/people/1");
+		when(unknown.header(RateLimiter.API_KEY_HEADER)).thenReturn("made-up");
+		rateLimiter.admit(unknown);
+		verify(unknown).status(429);
+		assertEquals(3, rateLimiter.getClients());
+	}
+
+	/**
+	 * Buckets that have refilled are dropped on the next sweep.
+	 */
+	@Test
+	void testIdleBucketsExpire() {
+		rateLimiter.admit(request("10.0.0.1", "/movies/1"));
+		rateLimiter.admit(request("10.0.0.2", "/movies"));
+		assertEquals(2, rateLimiter.getClients());
+
+		// the first has refilled, the second needs 1.5 seconds
+		clock.addAndGet(RateLimiter.SWEEP_NANOS);
+		rateLimiter.admit(request("10.0.0.3", "/movies/1"));
+		assertEquals(2, rateLimiter.getClients());
+
+		clock.addAndGet(RateLimiter.SWEEP_NANOS);
+		rateLimiter.admit(request("10.0.0.4", "/movies/1"));
+		assertEquals(1, rateLimiter.getClients());
+	}
+
+	/**
+	 * A limiter needs a positive rate and burst.
+	 */
+	@Test
+	void testInvalidLimits() {
+		assertThrows(IllegalArgumentException.class, () -> new RateLimiter(0, 4, ctx -> 1, Set.of()));
+		assertThrows(IllegalArgumentException.class, () -> new RateLimiter(2, 0, ctx -> 1, Set.of()));
+	}
+}
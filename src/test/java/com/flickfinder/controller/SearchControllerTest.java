@@ -0,0 +1,114 @@
+package com.flickfinder.controller;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.SQLException;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.flickfinder.dao.MovieDAO;
+import com.flickfinder.dao.PersonDAO;
+import com.flickfinder.search.SearchEngine;
+
+import io.javalin.http.Context;
+
+/**
+ * Test for the Search Controller.
+ */
+class SearchControllerTest {
+
+	/**
+	 * The context object, later we will mock it.
+	 */
+	private Context ctx;
+
+	/**
+	 * The search engine, mocked.
+	 */
+	private SearchEngine searchEngine;
+
+	/**
+	 * The movie data access object, mocked.
+	 */
+	private MovieDAO movieDAO;
+
+	/**
+	 * The person data access object, mocked.
+	 */
+	private PersonDAO personDAO;
+
+	/**
+	 * The controller under test.
+	 */
+	private SearchController searchController;
+
+	@BeforeEach
+	void setUp() {
+		searchEngine = mock(SearchEngine.class);
+		movieDAO = AsyncMocks.dao(MovieDAO.class);
+		personDAO = AsyncMocks.dao(PersonDAO.class);
+		ctx = mock(Context.class);
+		AsyncMocks.runFutures(ctx);
+		searchController = new SearchController(searchEngine, movieDAO, personDAO);
+	}
+
+	/**
+	 * The matching movies are looked up in bulk, in rank order.
+	 */
+	@Test
+	void testSearchMovies() throws SQLException {
+		when(ctx.queryParam("q")).thenReturn("godfather");
+		when(searchEngine.searchMovies("godfather", 50)).thenReturn(List.of(2, 3));
+		searchController.search(ctx);
+		verify(movieDAO).getMoviesByIds(List.of(2, 3));
+	}
+
+	/**
+	 * type=person searches people.
+	 */
+	@Test
+	void testSearchPeople() throws SQLException {
+		when(ctx.queryParam("q")).thenReturn("pacino");
+		when(ctx.queryParam("type")).thenReturn("person");
+		when(ctx.queryParam("limit")).thenReturn("5");
+		when(searchEngine.searchPeople("pacino", 5)).thenReturn(List.of(4));
+		searchController.search(ctx);
+		verify(personDAO).getPeopleByIds(List.of(4));
+	}
+
+	/**
+	 * Test that the controller returns a 400 status code without a query.
+	 */
+	@Test
+	void testThrows400ExceptionWhenQueryMissing() {
+		searchController.search(ctx);
+		verify(ctx).status(400);
+	}
+
+	/**
+	 * Test that the controller returns a 400 status code for an unknown type.
+	 */
+	@Test
+	void testThrows400ExceptionWhenTypeUnknown() {
+		when(ctx.queryParam("q")).thenReturn("godfather");
+		when(ctx.queryParam("type")).thenReturn("studio");
+		searchController.search(ctx);
+		verify(ctx).status(400);
+	}
+
+	/**
+	 * Test that the controller returns a 500 status code when a database error
+	 * occurs.
+	 */
+	@Test
+	void testThrows500ExceptionWhenDatabaseError() throws SQLException {
+		when(ctx.queryParam("q")).thenReturn("godfather");
+		when(searchEngine.searchMovies("godfather", 50)).thenThrow(new SQLException());
+		searchController.search(ctx);
+		verify(ctx).status(500);
+	}
+}
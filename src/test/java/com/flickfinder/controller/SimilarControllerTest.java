@@ -0,0 +1,161 @@
+package com.flickfinder.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import com.flickfinder.catalog.SimilarityIndex;
+import com.flickfinder.dao.MovieDAO;
+import com.flickfinder.model.Movie;
+import com.flickfinder.model.SimilarMovie;
+import com.flickfinder.util.Seeder;
+
+import io.javalin.http.Context;
+
+/**
+ * Test for the Similar Controller.
+ *
+ * The index is built from the seeded database, where the two Godfather movies
+ * share Al Pacino and Christopher Nolan and every other movie shares only
+ * Nolan, plus a movie with no credits at all.
+ */
+class SimilarControllerTest {
+
+	/**
+	 * Seeder, for the index.
+	 */
+	private Seeder seeder;
+
+	/**
+	 * The context object, later we will mock it.
+	 */
+	private Context ctx;
+
+	/**
+	 * The movie data access object, mocked to return a movie for every id.
+	 */
+	private MovieDAO movieDAO;
+
+	/**
+	 * The controller under test.
+	 */
+	private SimilarController similarController;
+
+	@BeforeEach
+	void setUp() throws SQLException {
+		seeder = new Seeder("jdbc:sqlite::memory:");
+		try (Statement stmt = seeder.getConnection().createStatement()) {
+			stmt.execute("insert into movies (id, title, year) values (6, 'Uncredited', 2000)");
+		}
+		movieDAO = AsyncMocks.dao(MovieDAO.class);
+		when(movieDAO.getMoviesByIds(anyList())).thenAnswer(invocation -> {
+			Map<Integer, Movie> movies = new HashMap<>();
+			for (int id : invocation.<List<Integer>>getArgument(0)) {
+				movies.put(id, new Movie(id, "Movie " + id, 2000));
+			}
+			return movies;
+		});
+		ctx = mock(Context.class);
+		AsyncMocks.runFutures(ctx);
+		similarController = new SimilarController(SimilarityIndex.load(seeder.getConnection()), movieDAO);
+	}
+
+	/**
+	 * The movies are ranked by how much of their credits they share, most
+	 * similar first, and each one comes with its own movie.
+	 */
+	@Test
+	void testRanksBySharedCredits() {
+		when(ctx.pathParam("id")).thenReturn("2");
+		similarController.getSimilar(ctx);
+
+		List<SimilarMovie> similar = similar(ctx);
+		assertFalse(similar.isEmpty());
+		assertEquals(3, similar.get(0).getMovie().getId());
+		assertEquals(2, similar.get(0).getShared());
+		assertEquals(1.0, similar.get(0).getScore());
+		for (int i = 1; i < similar.size(); i++) {
+			assertEquals(1, similar.get(i).getShared());
+			assertTrue(similar.get(i).getScore() < similar.get(0).getScore());
+			assertTrue(similar.get(i).getScore() <= similar.get(i - 1).getScore());
+		}
+	}
+
+	/**
+	 * Weighting by rating scales the score by the movie's rating out of 10, and
+	 * the limit cuts the ranking short.
+	 */
+	@Test
+	void testWeightedAndLimited() {
+		when(ctx.pathParam("id")).thenReturn("2");
+		when(ctx.queryParam("limit")).thenReturn("1");
+		when(ctx.queryParam("weighted")).thenReturn("true");
+		similarController.getSimilar(ctx);
+
+		List<SimilarMovie> similar = similar(ctx);
+		assertEquals(1, similar.size());
+		assertEquals(3, similar.get(0).getMovie().getId());
+		assertEquals(0.9, similar.get(0).getScore(), 1e-6);
+	}
+
+	/**
+	 * A movie shares every credit with itself, but is never similar to itself.
+	 */
+	@Test
+	void testExcludesMovieItself() throws SQLException {
+		when(ctx.pathParam("id")).thenReturn("3");
+		similarController.getSimilar(ctx);
+
+		@SuppressWarnings("unchecked")
+		ArgumentCaptor<List<Integer>> ids = ArgumentCaptor.forClass(List.class);
+		verify(movieDAO).getMoviesByIds(ids.capture());
+		assertEquals(2, ids.getValue().get(0));
+		assertFalse(ids.getValue().contains(3));
+		assertEquals(ids.getValue(), similar(ctx).stream().map(movie -> movie.getMovie().getId()).toList());
+	}
+
+	/**
+	 * A movie with no credits shares nothing with anything, so it has no
+	 * similar movies and nothing is looked up.
+	 */
+	@Test
+	void testEmptyForMovieWithoutCredits() throws SQLException {
+		when(ctx.pathParam("id")).thenReturn("6");
+		similarController.getSimilar(ctx);
+
+		verify(ctx, never()).status(404);
+		verify(movieDAO, never()).getMoviesByIds(anyList());
+		assertTrue(similar(ctx).isEmpty());
+	}
+
+	/**
+	 * Returns the similar movies the controller sent.
+	 */
+	@SuppressWarnings("unchecked")
+	private static List<SimilarMovie> similar(Context ctx) {
+		ArgumentCaptor<Object> json = ArgumentCaptor.forClass(Object.class);
+		verify(ctx).json(json.capture());
+		return (List<SimilarMovie>) json.getValue();
+	}
+
+	@AfterEach
+	void tearDown() {
+		seeder.closeConnection();
+	}
+}
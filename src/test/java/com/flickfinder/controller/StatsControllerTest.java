@@ -0,0 +1,88 @@
+package com.flickfinder.controller;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.SQLException;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.flickfinder.catalog.RatingIndex;
+import com.flickfinder.model.RatingStats;
+import com.flickfinder.util.Seeder;
+
+import io.javalin.http.Context;
+
+/**
+ * Test for the Stats Controller.
+ */
+class StatsControllerTest {
+
+	/**
+	 * Seeder, for the rating index.
+	 */
+	private Seeder seeder;
+
+	/**
+	 * The context object, later we will mock it.
+	 */
+	private Context ctx;
+
+	/**
+	 * The controller under test.
+	 */
+	private StatsController statsController;
+
+	@BeforeEach
+	void setUp() throws SQLException {
+		seeder = new Seeder("jdbc:sqlite::memory:");
+		ctx = mock(Context.class);
+		statsController = new StatsController(RatingIndex.load(seeder.getConnection()));
+	}
+
+	/**
+	 * Test that the controller sends one entry per decade of the seeded movies.
+	 */
+	@Test
+	void testGetRatingStatsByDecade() {
+		when(ctx.queryParam("groupBy")).thenReturn("decade");
+		statsController.getRatingStats(ctx);
+		verify(ctx).json(argThat(stats -> ((List<?>) stats).size() == 4
+				&& ((RatingStats) ((List<?>) stats).get(1)).getMovies() == 2));
+	}
+
+	/**
+	 * Test that the controller returns a 400 status code for a bad year, range or
+	 * grouping.
+	 */
+	@Test
+	void testThrows400ExceptionWhenInvalidParams() {
+		when(ctx.queryParam("from")).thenReturn("nineteen");
+		statsController.getRatingStats(ctx);
+		verify(ctx).status(400);
+
+		Context range = mock(Context.class);
+		when(range.queryParam("from")).thenReturn("2000");
+		when(range.queryParam("to")).thenReturn("1990");
+		statsController.getRatingStats(range);
+		verify(range).status(400);
+
+		Context groupBy = mock(Context.class);
+		when(groupBy.queryParam("groupBy")).thenReturn("month");
+		statsController.getRatingStats(groupBy);
+		verify(groupBy).status(400);
+		verify(groupBy, never()).json(any());
+	}
+
+	@AfterEach
+	void tearDown() {
+		seeder.closeConnection();
+	}
+}
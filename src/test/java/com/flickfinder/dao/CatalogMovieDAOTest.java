@@ -0,0 +1,123 @@
+package com.flickfinder.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.jupiter.api.Test;
+
+import com.flickfinder.util.Database;
+import com.flickfinder.util.DatabaseBusyException;
+import com.flickfinder.util.DatabaseExecutor;
+
+/**
+ * Runs the MovieDAO tests against the in-memory catalog, and checks that it
+ * returns exactly what the SQL queries return.
+ */
+class CatalogMovieDAOTest extends MovieDAOTest {
+
+	/**
+	 * Creates a DAO that reads from a catalog of the seeded database.
+	 */
+	@Override
+	MovieDAO createMovieDAO() {
+		try {
+			Database database = Database.getInstance();
+			return new CatalogMovieDAO(database.getCatalog(), database.getRatingIndex());
+		} catch (SQLException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Every query returns the same rows, in the same order, as SQLite.
+	 * We add movies with tied ratings, so the tie order is checked too.
+	 */
+	@Test
+	void testMatchesSql() throws SQLException {
+		try (Statement stmt = seeder.getConnection().createStatement()) {
+			stmt.execute("INSERT INTO movies (id, title, year) VALUES(6, 'Pulp Fiction', 1994)");
+			stmt.execute("INSERT INTO movies (id, title, year) VALUES(7, 'Forrest Gump', 1994)");
+			stmt.execute("INSERT INTO ratings (movie_id, rating, votes) VALUES (7, 8.8, 2100000)");
+			stmt.execute("INSERT INTO ratings (movie_id, rating, votes) VALUES (6, 8.8, 2100000)");
+			stmt.execute("INSERT INTO stars (movie_id, person_id) VALUES(1, 5)");
+		}
+		Database.getInstance(seeder.getConnection());
+		MovieDAO sql = new MovieDAO();
+		MovieDAO catalog = createMovieDAO();
+
+		assertSameRows(sql.getAllMovies(50), catalog.getAllMovies(50));
+		assertSameRows(sql.getAllMovies(3), catalog.getAllMovies(3));
+		for (int id = 0; id <= 8; id++) {
+			assertEquals(String.valueOf(sql.getMovieById(id)), String.valueOf(catalog.getMovieById(id)));
+			assertSameRows(sql.getStarsByMovie(id), catalog.getStarsByMovie(id));
+			assertSameRows(sql.getDirectorsByMovie(id), catalog.getDirectorsByMovie(id));
+		}
+		assertSameRows(sql.getMoviesByRatingOrder(1994, 1000, 50), catalog.getMoviesByRatingOrder(1994, 1000, 50));
+		assertSameRows(sql.getMoviesByRatingOrder(1994, 1000, 2), catalog.getMoviesByRatingOrder(1994, 1000, 2));
+		assertSameRows(sql.getMoviesByRatingOrder(1972, 2000000, 5),
+				catalog.getMoviesByRatingOrder(1972, 2000000, 5));
+	}
+
+	/**
+	 * The catalog answers its async lookups itself, so they succeed while the
+	 * database executor is turning work away.
+	 */
+	@Test
+	void testAsyncSkipsFullExecutor() throws Exception {
+		DatabaseExecutor executor = new DatabaseExecutor(1, 1);
+		CountDownLatch release = fill(executor);
+		long rejected = executor.getRejected();
+		try {
+			MovieDAO catalog = createMovieDAO();
+			assertEquals("The Shawshank Redemption", catalog.getMovieByIdAsync(1).get().getTitle());
+			assertEquals(2, catalog.getStarsByMovieAsync(1).get().size());
+			assertEquals(3, catalog.getMoviesByIdsAsync(List.of(1, 2, 3)).get().size());
+			assertEquals(1, catalog.getMoviesByRatingOrderAsync(1994, 0, 10).get().size());
+			assertEquals(rejected, executor.getRejected());
+		} finally {
+			release.countDown();
+			Database.getInstance().setExecutor(null);
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Installs an executor with one thread and room for one waiting task, and
+	 * keeps both busy until the returned latch is counted down.
+	 */
+	static CountDownLatch fill(DatabaseExecutor executor) throws Exception {
+		Database database = Database.getInstance();
+		database.setExecutor(executor);
+		CountDownLatch running = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		executor.submit(() -> {
+			running.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return null;
+		});
+		running.await();
+		executor.submit(() -> null);
+		ExecutionException busy = assertThrows(ExecutionException.class, () -> database.async(() -> null).get());
+		assertInstanceOf(DatabaseBusyException.class, busy.getCause());
+		return release;
+	}
+
+	/**
+	 * Compares two lists by the string form of their items, which includes every
+	 * field.
+	 */
+	private static void assertSameRows(List<?> expected, List<?> actual) {
+		assertEquals(expected.toString(), actual.toString());
+	}
+}
@@ -0,0 +1,71 @@
+package com.flickfinder.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.Test;
+
+import com.flickfinder.util.Database;
+import com.flickfinder.util.DatabaseExecutor;
+
+/**
+ * Runs the PersonDAO tests against the in-memory catalog, and checks that it
+ * returns exactly what the SQL queries return.
+ */
+class CatalogPersonDAOTest extends PersonDAOTest {
+
+    /**
+     * Creates a DAO that reads from a catalog of the seeded database.
+     */
+    @Override
+    PersonDAO createPersonDAO() {
+        try {
+            return new CatalogPersonDAO(Database.getInstance().getCatalog());
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Every query returns the same rows, in the same order, as SQLite.
+     */
+    @Test
+    void testMatchesSql() throws SQLException {
+        PersonDAO sql = new PersonDAO();
+        PersonDAO catalog = createPersonDAO();
+
+        assertEquals(sql.getAllPeople(50).toString(), catalog.getAllPeople(50).toString());
+        assertEquals(sql.getAllPeople(2).toString(), catalog.getAllPeople(2).toString());
+        for (int id = 0; id <= 6; id++) {
+            assertEquals(String.valueOf(sql.getPersonById(id)), String.valueOf(catalog.getPersonById(id)));
+            assertEquals(sql.getMoviesByStar(id).toString(), catalog.getMoviesByStar(id).toString());
+            assertEquals(sql.getMoviesByDirector(id).toString(), catalog.getMoviesByDirector(id).toString());
+            assertEquals(sql.getCredits(id).toString(), catalog.getCredits(id).toString());
+        }
+    }
+
+    /**
+     * The catalog answers its async lookups itself, so they succeed while the
+     * database executor is turning work away.
+     */
+    @Test
+    void testAsyncSkipsFullExecutor() throws Exception {
+        DatabaseExecutor executor = new DatabaseExecutor(1, 1);
+        CountDownLatch release = CatalogMovieDAOTest.fill(executor);
+        long rejected = executor.getRejected();
+        try {
+            PersonDAO catalog = createPersonDAO();
+            assertEquals("Tim Robbins", catalog.getPersonByIdAsync(1).get().getName());
+            assertEquals(2, catalog.getPeopleByIdsAsync(List.of(1, 2)).get().size());
+            assertEquals(5, catalog.getCreditsAsync(3).get().getDirected().size());
+            assertEquals(rejected, executor.getRejected());
+        } finally {
+            release.countDown();
+            Database.getInstance().setExecutor(null);
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.flickfinder.dao;
+
+import java.sql.SQLException;
+
+import com.flickfinder.util.Database;
+
+/**
+ * Runs the MovieDAO tests with the ratings leaderboard answered from a
+ * {@link com.flickfinder.catalog.RatingIndex}.
+ */
+class IndexedMovieDAOTest extends MovieDAOTest {
+
+	/**
+	 * Creates a DAO with a rating index of the seeded database.
+	 */
+	@Override
+	MovieDAO createMovieDAO() {
+		try {
+			return new MovieDAO(Database.getInstance().getRatingIndex());
+		} catch (SQLException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
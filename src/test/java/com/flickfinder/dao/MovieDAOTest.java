@@ -3,8 +3,11 @@ package com.flickfinder.dao;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.fail;
 
+import java.io.IOException;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import com.flickfinder.model.MovieRating;
 import com.flickfinder.model.Person;
@@ -47,10 +50,20 @@ class MovieDAOTest {
 		var url = "jdbc:sqlite::memory:";
 		seeder = new Seeder(url);
 		Database.getInstance(seeder.getConnection());
-		movieDAO = new MovieDAO();
+		movieDAO = createMovieDAO();
 
 	}
 
+	/**
+	 * Creates the DAO under test. Subclasses override this to run the same tests
+	 * against another implementation.
+	 *
+	 * @return the movie data access object
+	 */
+	MovieDAO createMovieDAO() {
+		return new MovieDAO();
+	}
+
 	/**
 	 * Tests the getAllMovies method.
 	 * We expect to get a list of all movies in the database.
@@ -68,6 +81,104 @@ class MovieDAOTest {
 		}
 	}
 
+	/**
+	 * Tests the getMoviesAfter method.
+	 * We expect to page through the movies in id order.
+	 */
+	@Test
+	void testGetMoviesAfter() {
+		try {
+			List<Movie> first = movieDAO.getMoviesAfter(0, 2);
+			assertEquals(2, first.size());
+			assertEquals(1, first.get(0).getId());
+			List<Movie> second = movieDAO.getMoviesAfter(first.get(1).getId(), 2);
+			assertEquals(3, second.get(0).getId());
+			assertEquals(0, movieDAO.getMoviesAfter(5, 2).size());
+		} catch (SQLException e) {
+			fail("SQLException thrown");
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Tests the streamMoviesAfter method.
+	 * We expect every row to be handed over in id order.
+	 */
+	@Test
+	void testStreamMoviesAfter() {
+		try {
+			List<Movie> movies = new ArrayList<>();
+			assertEquals(3, movieDAO.streamMoviesAfter(2, 50, movies::add));
+			assertEquals(3, movies.get(0).getId());
+			assertEquals(5, movies.get(2).getId());
+		} catch (SQLException | IOException e) {
+			fail("Exception thrown");
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Tests the streamMoviesAfter method with chunks smaller than the page.
+	 * We expect the chunks to join up without repeating or skipping a movie, and
+	 * to stop at the limit.
+	 */
+	@Test
+	void testStreamMoviesAfterInChunks() {
+		try {
+			List<Movie> movies = new ArrayList<>();
+			assertEquals(5, movieDAO.streamMoviesAfter(0, -1, 2, movies::add));
+			assertEquals(List.of(1, 2, 3, 4, 5), movies.stream().map(Movie::getId).toList());
+
+			movies.clear();
+			assertEquals(3, movieDAO.streamMoviesAfter(1, 3, 2, movies::add));
+			assertEquals(List.of(2, 3, 4), movies.stream().map(Movie::getId).toList());
+		} catch (SQLException | IOException e) {
+			fail("Exception thrown");
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Tests the getMoviesByIds method.
+	 * We expect the movies that exist, in the order they were asked for.
+	 */
+	@Test
+	void testGetMoviesByIds() {
+		try {
+			Map<Integer, Movie> movies = movieDAO.getMoviesByIds(List.of(5, 1, 99));
+			assertEquals(List.of(5, 1), new ArrayList<>(movies.keySet()));
+			assertEquals("12 Angry Men", movies.get(5).getTitle());
+
+			// more ids than fit in one query
+			List<Integer> ids = new ArrayList<>();
+			for (int id = 250; id >= 1; id--) {
+				ids.add(id);
+			}
+			assertEquals(List.of(5, 4, 3, 2, 1), new ArrayList<>(movieDAO.getMoviesByIds(ids).keySet()));
+		} catch (SQLException e) {
+			fail("SQLException thrown");
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Tests the getStarsByMovies method.
+	 * We expect a list for every movie that exists, even one without stars.
+	 */
+	@Test
+	void testGetStarsByMovies() {
+		try {
+			Map<Integer, List<Person>> stars = movieDAO.getStarsByMovies(List.of(4, 1, 99));
+			assertEquals(List.of(4, 1), new ArrayList<>(stars.keySet()));
+			assertEquals(0, stars.get(4).size());
+			assertEquals(2, stars.get(1).size());
+			assertEquals("Tim Robbins", stars.get(1).get(0).getName());
+		} catch (SQLException e) {
+			fail("SQLException thrown");
+			e.printStackTrace();
+		}
+	}
+
 	/**
 	 * Tests the getMovieById method.
 	 * We expect to get the movie with the specified id.
@@ -133,6 +244,24 @@ class MovieDAOTest {
 		}
 	}
 
+	/**
+	 * Tests the getDirectorsByMovie method.
+	 * Every seeded movie was directed by Christopher Nolan.
+	 */
+
+	@Test
+	void testGetDirectorsByMovie(){
+		try {
+			List<Person> people = movieDAO.getDirectorsByMovie(1);
+			assertEquals(1, people.size());
+			assertEquals("Christopher Nolan", people.get(0).getName());
+			assertEquals(0, movieDAO.getDirectorsByMovie(1000).size());
+		} catch (SQLException e) {
+			fail("SQLException thrown");
+			e.printStackTrace();
+		}
+	}
+
 	/**
 	 * Tests the getMoviesByRatingOrder method.
 	 * We expect to get a list of movies by a specified year and rating.
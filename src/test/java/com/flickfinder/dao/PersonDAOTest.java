@@ -1,5 +1,6 @@
 package com.flickfinder.dao;
 
+import com.flickfinder.model.Credits;
 import com.flickfinder.model.Movie;
 import com.flickfinder.model.Person;
 import com.flickfinder.util.Database;
@@ -8,8 +9,12 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.fail;
@@ -44,10 +49,20 @@ class PersonDAOTest {
         var url = "jdbc:sqlite::memory:";
         seeder = new Seeder(url);
         Database.getInstance(seeder.getConnection());
-        personDAO = new PersonDAO();
+        personDAO = createPersonDAO();
 
     }
 
+    /**
+     * Creates the DAO under test. Subclasses override this to run the same tests
+     * against another implementation.
+     *
+     * @return the person data access object
+     */
+    PersonDAO createPersonDAO() {
+        return new PersonDAO();
+    }
+
     /**
      * Tests the getAllPeople method.
      * We expect to get a list of all people in the database.
@@ -65,6 +80,76 @@ class PersonDAOTest {
         }
     }
 
+    /**
+     * Tests the getPeopleAfter method.
+     * We expect to page through the people in id order.
+     */
+    @Test
+    void testGetPeopleAfter() {
+        try {
+            List<Person> people = personDAO.getPeopleAfter(3, 50);
+            assertEquals(2, people.size());
+            assertEquals(4, people.get(0).getId());
+            assertEquals(0, personDAO.getPeopleAfter(5, 50).size());
+        } catch (SQLException e) {
+            fail("SQLException thrown");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Tests the streamPeopleAfter method.
+     * We expect every row to be handed over in id order.
+     */
+    @Test
+    void testStreamPeopleAfter() {
+        try {
+            List<Person> people = new ArrayList<>();
+            assertEquals(2, personDAO.streamPeopleAfter(3, 50, people::add));
+            assertEquals(4, people.get(0).getId());
+        } catch (SQLException | IOException e) {
+            fail("Exception thrown");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Tests the streamPeopleAfter method with chunks smaller than the page.
+     * We expect the chunks to join up without repeating or skipping a person, and
+     * to stop at the limit.
+     */
+    @Test
+    void testStreamPeopleAfterInChunks() {
+        try {
+            List<Person> people = new ArrayList<>();
+            assertEquals(5, personDAO.streamPeopleAfter(0, -1, 2, people::add));
+            assertEquals(List.of(1, 2, 3, 4, 5), people.stream().map(Person::getId).toList());
+
+            people.clear();
+            assertEquals(3, personDAO.streamPeopleAfter(1, 3, 2, people::add));
+            assertEquals(List.of(2, 3, 4), people.stream().map(Person::getId).toList());
+        } catch (SQLException | IOException e) {
+            fail("Exception thrown");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Tests the getPeopleByIds method.
+     * We expect the people that exist, in the order they were asked for.
+     */
+    @Test
+    void testGetPeopleByIds() {
+        try {
+            Map<Integer, Person> people = personDAO.getPeopleByIds(List.of(2, 42, 4));
+            assertEquals(List.of(2, 4), new ArrayList<>(people.keySet()));
+            assertEquals("Al Pacino", people.get(4).getName());
+        } catch (SQLException e) {
+            fail("SQLException thrown");
+            e.printStackTrace();
+        }
+    }
+
     /**
      * Tests the getPersonById method.
      * We expect to get the people with the specified id.
@@ -133,6 +218,78 @@ class PersonDAOTest {
         }
     }
 
+    /**
+     * Tests the getMoviesByDirector method.
+     * Christopher Nolan directed every seeded movie.
+     */
+
+    @Test
+    void testGetMoviesByDirector() {
+        try {
+            List<Movie> movies = personDAO.getMoviesByDirector(3);
+            assertEquals(5, movies.size());
+            assertEquals("The Shawshank Redemption", movies.get(0).getTitle());
+            assertEquals(0, personDAO.getMoviesByDirector(1000).size());
+        } catch (SQLException e) {
+            fail("SQLException thrown");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Tests the getCredits method.
+     * We expect the starred and directed movies to come back separately.
+     */
+
+    @Test
+    void testGetCredits() {
+        try {
+            Credits director = personDAO.getCredits(3);
+            assertEquals(0, director.getStarred().size());
+            assertEquals(5, director.getDirected().size());
+
+            Credits star = personDAO.getCredits(4);
+            assertEquals(List.of(2, 3), star.getStarred().stream().map(Movie::getId).toList());
+            assertEquals(0, star.getDirected().size());
+
+            Credits nobody = personDAO.getCredits(1000);
+            assertEquals(0, nobody.getStarred().size() + nobody.getDirected().size());
+        } catch (SQLException e) {
+            fail("SQLException thrown");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Tests that a person's movies come back in id order.
+     * We add credits after the seeded ones for movies with lower ids, so the
+     * order of the credit rows is not the order of the ids.
+     */
+    @Test
+    void testMoviesInIdOrder() {
+        try (Statement stmt = seeder.getConnection().createStatement()) {
+            stmt.execute("INSERT INTO stars (movie_id, person_id) VALUES(1, 4)");
+            stmt.execute("INSERT INTO directors (movie_id, person_id) VALUES(4, 5)");
+            stmt.execute("INSERT INTO directors (movie_id, person_id) VALUES(1, 5)");
+            Database.getInstance(seeder.getConnection());
+            personDAO = createPersonDAO();
+
+            assertEquals(List.of(1, 2, 3), ids(personDAO.getMoviesByStar(4)));
+            assertEquals(List.of(1, 4), ids(personDAO.getMoviesByDirector(5)));
+            Credits credits = personDAO.getCredits(5);
+            assertEquals(List.of(5), ids(credits.getStarred()));
+            assertEquals(List.of(1, 4), ids(credits.getDirected()));
+            assertEquals(List.of(1, 2, 3), ids(personDAO.getCredits(4).getStarred()));
+        } catch (SQLException e) {
+            fail("SQLException thrown");
+            e.printStackTrace();
+        }
+    }
+
+    private static List<Integer> ids(List<Movie> movies) {
+        return movies.stream().map(Movie::getId).toList();
+    }
+
     /**
      * Closes the connection to the database.
      */
@@ -0,0 +1,72 @@
+package com.flickfinder.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the latency histogram.
+ */
+class LatencyHistogramTest {
+
+	/**
+	 * Every value falls in a bucket whose highest value is at most 1/64 above it.
+	 */
+	@Test
+	void testBuckets() {
+		Random random = new Random(1028);
+		int previous = -1;
+		for (long micros = 0; micros < 100_000; micros++) {
+			int index = LatencyHistogram.index(micros);
+			assertTrue(index == previous || index == previous + 1);
+			previous = index;
+			long highest = LatencyHistogram.highestValue(index);
+			assertTrue(highest >= micros && highest - micros <= micros / 64, micros + " in " + highest);
+		}
+		for (int i = 0; i < 10_000; i++) {
+			long micros = (long) (random.nextDouble() * LatencyHistogram.MAX_MICROS);
+			long highest = LatencyHistogram.highestValue(LatencyHistogram.index(micros));
+			assertTrue(highest >= micros && highest - micros <= micros / 64, micros + " in " + highest);
+		}
+	}
+
+	/**
+	 * The percentiles are those of the recorded values, to within 1/64.
+	 */
+	@Test
+	void testPercentiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		Random random = new Random(1028);
+		long[] values = new long[10_000];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = (long) (Math.exp(random.nextDouble() * 14) * 1000);
+			histogram.record(values[i]);
+		}
+		Arrays.sort(values);
+		assertEquals(values.length, histogram.getCount());
+		for (double percentile : new double[] { 50, 90, 99, 99.9, 100 }) {
+			long exact = values[(int) Math.ceil(percentile / 100 * values.length) - 1] / 1000;
+			long estimate = histogram.getValueAtPercentile(percentile);
+			assertTrue(estimate >= exact && estimate - exact <= exact / 64 + 1, percentile + ": " + estimate);
+		}
+		assertEquals(Arrays.stream(values).sum() / 1e9, histogram.getSumSeconds(), 1e-6);
+	}
+
+	/**
+	 * Cumulative counts include every value up to each bound.
+	 */
+	@Test
+	void testCumulativeCounts() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (long micros : new long[] { 50, 100, 101, 900, 5_000, 20_000_000 }) {
+			histogram.record(micros * 1000);
+		}
+		assertArrayEquals(new long[] { 2, 4, 5, 6 }, histogram.getCumulativeCounts(new long[] { 100, 1_000, 10_000 }));
+		assertEquals(0, new LatencyHistogram().getValueAtPercentile(99));
+	}
+}
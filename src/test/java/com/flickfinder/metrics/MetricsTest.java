@@ -0,0 +1,110 @@
+package com.flickfinder.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.flickfinder.dao.MovieDAO;
+import com.flickfinder.util.Database;
+import com.flickfinder.util.Seeder;
+
+import io.javalin.http.Context;
+
+/**
+ * Tests for the metrics registry and its Prometheus output.
+ */
+class MetricsTest {
+
+	/**
+	 * A timed route records its latency and status under its path once it
+	 * finishes, including one that threw, and untimed routes are not recorded.
+	 */
+	@Test
+	void testTimed() throws Exception {
+		Metrics metrics = new Metrics();
+		Context ctx = mock(Context.class);
+		Map<String, Object> attributes = new HashMap<>();
+		doAnswer(invocation -> attributes.put(invocation.getArgument(0), invocation.getArgument(1))).when(ctx)
+				.attribute(anyString(), any());
+		when(ctx.attribute(anyString())).thenAnswer(invocation -> attributes.get(invocation.getArgument(0)));
+		when(ctx.endpointHandlerPath()).thenReturn("/movies/{id}");
+
+		metrics.finish(ctx);
+		assertEquals(0, metrics.route("/movies/{id}").getLatency().getCount());
+
+		when(ctx.statusCode()).thenReturn(404);
+		metrics.timed(c -> {
+		}).handle(ctx);
+		assertEquals(1, metrics.getInFlight());
+		metrics.finish(ctx);
+
+		assertThrows(IllegalStateException.class, () -> metrics.timed(c -> {
+			throw new IllegalStateException();
+		}).handle(ctx));
+		// Javalin's exception handler answers 500 before the after handlers run
+		when(ctx.statusCode()).thenReturn(500);
+		metrics.finish(ctx);
+
+		assertEquals(2, metrics.route("/movies/{id}").getLatency().getCount());
+		assertEquals(0, metrics.getInFlight());
+		String scrape = metrics.scrape();
+		assertTrue(scrape.contains("flickfinder_http_responses_total{route=\"/movies/{id}\",status=\"4xx\"} 1\n"));
+		assertTrue(scrape.contains("flickfinder_http_responses_total{route=\"/movies/{id}\",status=\"5xx\"} 1\n"));
+		assertTrue(scrape.contains("flickfinder_http_request_duration_seconds_count{route=\"/movies/{id}\"} 2\n"));
+		assertTrue(scrape.contains("flickfinder_http_request_duration_seconds_bucket{route=\"/movies/{id}\",le=\"+Inf\"} 2\n"));
+	}
+
+	/**
+	 * Buckets are cumulative, and gauges and counters are read when scraped.
+	 */
+	@Test
+	void testScrape() {
+		Metrics metrics = new Metrics();
+		metrics.query("MovieDAO.getMovieById").record(300_000, 1);
+		metrics.query("MovieDAO.getMovieById").record(3_000_000, 0);
+		metrics.query("MovieDAO.getMovieById").recordError(100_000);
+		metrics.gauge("flickfinder_test_gauge", "A gauge.", () -> 0.5);
+		metrics.counter("flickfinder_test_total", "A counter.", () -> 7);
+
+		String scrape = metrics.scrape();
+		String labels = "{query=\"MovieDAO.getMovieById\",le=";
+		assertTrue(scrape.contains("flickfinder_db_query_duration_seconds_bucket" + labels + "\"0.00025\"} 1\n"));
+		assertTrue(scrape.contains("flickfinder_db_query_duration_seconds_bucket" + labels + "\"0.0005\"} 2\n"));
+		assertTrue(scrape.contains("flickfinder_db_query_duration_seconds_bucket" + labels + "\"0.005\"} 3\n"));
+		assertTrue(scrape.contains("flickfinder_db_query_duration_seconds_sum{query=\"MovieDAO.getMovieById\"} 0.0034\n"));
+		assertTrue(scrape.contains("flickfinder_db_query_rows_total{query=\"MovieDAO.getMovieById\"} 1\n"));
+		assertTrue(scrape.contains("flickfinder_db_query_errors_total{query=\"MovieDAO.getMovieById\"} 1\n"));
+		assertTrue(scrape.contains("# TYPE flickfinder_test_gauge gauge\nflickfinder_test_gauge 0.5\n"));
+		assertTrue(scrape.contains("# TYPE flickfinder_test_total counter\nflickfinder_test_total 7\n"));
+	}
+
+	/**
+	 * The DAOs record their queries and the rows they return.
+	 */
+	@Test
+	void testDaoQueries() throws SQLException {
+		Seeder seeder = new Seeder("jdbc:sqlite::memory:");
+		Database.getInstance(seeder.getConnection());
+		try {
+			Metrics.Query query = Metrics.getInstance().query("MovieDAO.getAllMovies");
+			long count = query.getLatency().getCount();
+			long rows = query.getRows();
+			new MovieDAO().getAllMovies(3);
+			assertEquals(count + 1, query.getLatency().getCount());
+			assertEquals(rows + 3, query.getRows());
+		} finally {
+			seeder.closeConnection();
+		}
+	}
+}
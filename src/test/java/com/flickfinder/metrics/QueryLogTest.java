@@ -0,0 +1,81 @@
+package com.flickfinder.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.sql.SQLException;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.flickfinder.dao.MovieDAO;
+import com.flickfinder.util.Database;
+import com.flickfinder.util.DatabaseExecutor;
+import com.flickfinder.util.Seeder;
+
+/**
+ * Tests for the per-request query accounting.
+ */
+class QueryLogTest {
+
+	/**
+	 * Calls are only recorded while a log is attached, and a call repeated with
+	 * the same arguments is a duplicate.
+	 */
+	@Test
+	void testRecordsDuplicates() {
+		QueryLog.recordCall("MovieDAO.getMovieById", 1, 1_000, 1);
+		QueryLog log = new QueryLog();
+		assertNull(QueryLog.attach(log));
+		try {
+			QueryLog.recordCall("MovieDAO.getMovieById", 1, 1_000, 1);
+			QueryLog.recordStatement();
+			QueryLog.recordCall("MovieDAO.getMovieById", 2, 1_000, 1);
+			QueryLog.recordCall("MovieDAO.getMovieById", 1, 1_000, 1);
+			QueryLog.recordCall("MovieDAO.getMoviesByIds", List.of(1, 2), 1_000, 2);
+			QueryLog.recordCall("MovieDAO.getAllMovies", null, 1_000, 5);
+			QueryLog.recordCall("MovieDAO.getAllMovies", null, 1_000, 5);
+		} finally {
+			assertSame(log, QueryLog.attach(null));
+		}
+
+		assertEquals(6, log.getCalls());
+		assertEquals(1, log.getStatements());
+		assertEquals(15, log.getRows());
+		assertEquals(6_000, log.getNanos());
+		assertEquals(List.of("MovieDAO.getMovieById(1)"), log.getDuplicates());
+		assertEquals("calls=6, statements=1, rows=15, millis=0.006, duplicates=1", log.toString());
+	}
+
+	/**
+	 * Queries sent to the database executor count towards the log of the thread
+	 * that sent them.
+	 */
+	@Test
+	void testFollowsWorkToTheExecutor() throws Exception {
+		Seeder seeder = new Seeder("jdbc:sqlite::memory:");
+		Database database = Database.getInstance(seeder.getConnection());
+		DatabaseExecutor executor = new DatabaseExecutor(1, 10);
+		database.setExecutor(executor);
+		QueryLog log = new QueryLog();
+		QueryLog.attach(log);
+		try {
+			MovieDAO movieDAO = new MovieDAO();
+			movieDAO.getMovieByIdAsync(1).get();
+			movieDAO.getStarsByMovies(List.of(1, 2));
+			movieDAO.getMovieById(1);
+		} finally {
+			QueryLog.attach(null);
+			database.setExecutor(null);
+			executor.shutdown();
+			seeder.closeConnection();
+		}
+
+		assertEquals(3, log.getCalls());
+		// getStarsByMovies looks up the movies and then their stars
+		assertEquals(4, log.getStatements());
+		assertEquals(List.of("MovieDAO.getMovieById(1)"), log.getDuplicates());
+		assertNull(QueryLog.current());
+	}
+}
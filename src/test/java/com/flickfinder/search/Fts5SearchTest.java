@@ -0,0 +1,66 @@
+package com.flickfinder.search;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.sql.SQLException;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.flickfinder.util.Seeder;
+
+/**
+ * Tests for the FTS5 sidecar search engine.
+ */
+class Fts5SearchTest {
+
+	/**
+	 * Seeder
+	 */
+	Seeder seeder;
+
+	/**
+	 * The search engine under test, with an in-memory sidecar.
+	 */
+	Fts5Search search;
+
+	/**
+	 * Seeds an in-memory database and indexes it.
+	 */
+	@BeforeEach
+	void setUp() throws SQLException {
+		seeder = new Seeder("jdbc:sqlite::memory:");
+		search = Fts5Search.open(seeder.getConnection(), "jdbc:sqlite::memory:");
+	}
+
+	/**
+	 * Titles and names are found, best match first.
+	 */
+	@Test
+	void testSearch() throws SQLException {
+		assertEquals(List.of(2, 3), search.searchMovies("godfather", 50));
+		assertEquals(List.of(4), search.searchPeople("al pacino", 50));
+		assertEquals(List.of(), search.searchPeople("nobody", 50));
+	}
+
+	/**
+	 * Queries are never read as FTS5 syntax.
+	 */
+	@Test
+	void testQuotesQueries() throws SQLException {
+		assertEquals("\"dark\" OR \"knight\"", Fts5Search.match("dark AND knight*".replace(" AND", "")));
+		assertEquals(List.of(4), search.searchMovies("\"dark\" NEAR( knight", 50));
+		assertEquals(List.of(), search.searchMovies("*)(", 50));
+	}
+
+	/**
+	 * Close connections after each test method.
+	 */
+	@AfterEach
+	void tearDown() {
+		search.close();
+		seeder.closeConnection();
+	}
+}
@@ -0,0 +1,90 @@
+package com.flickfinder.search;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the inverted index and its tokenizer.
+ */
+class InvertedIndexTest {
+
+	/**
+	 * Text is split on punctuation, lower cased and has its accents removed.
+	 */
+	@Test
+	void testTokenize() {
+		assertEquals(List.of("the", "godfather", "part", "ii"), Tokenizer.tokenize("The Godfather: Part II"));
+		assertEquals(List.of("amelie", "2001"), Tokenizer.tokenize("  Am\u00e9lie (2001)"));
+		assertEquals(List.of(), Tokenizer.tokenize(null));
+	}
+
+	/**
+	 * Shorter documents and documents that match more terms rank higher, and an
+	 * unknown term matches nothing.
+	 */
+	@Test
+	void testRanksWithBm25() {
+		InvertedIndex.Builder builder = new InvertedIndex.Builder();
+		builder.add(10, "The Godfather: Part II");
+		builder.add(20, "The Godfather");
+		builder.add(30, "The Dark Knight");
+		builder.add(40, "Knight and Day");
+		InvertedIndex index = builder.build();
+
+		assertEquals(List.of(20, 10), index.search("godfather", 50));
+		assertEquals(List.of(20, 10), index.search("GODFATHER godfather", 50));
+		assertEquals(30, index.search("dark knight", 50).get(0));
+		assertEquals(List.of(20), index.search("godfather", 1));
+		assertEquals(List.of(), index.search("zzz", 50));
+		assertEquals(List.of(), index.search("", 50));
+	}
+
+	/**
+	 * Skipping terms that cannot change the top documents gives the same results
+	 * as scoring every document, on random titles with common and rare words.
+	 */
+	@Test
+	void testPruningMatchesExhaustiveSearch() {
+		String[] words = { "the", "the", "the", "of", "of", "dark", "knight", "love", "war", "man", "day", "night",
+				"godfather", "part", "ii", "story", "city", "lost", "star", "king" };
+		Random random = new Random(1028);
+		InvertedIndex.Builder builder = new InvertedIndex.Builder();
+		for (int id = 0; id < 5000; id++) {
+			StringBuilder title = new StringBuilder();
+			for (int w = random.nextInt(6); w >= 0; w--) {
+				title.append(words[random.nextInt(words.length)]).append(' ');
+			}
+			builder.add(id, title.toString());
+		}
+		InvertedIndex index = builder.build();
+
+		// with a limit of every document the heap never fills, so nothing is skipped
+		for (String query : new String[] { "the", "the king", "the of dark", "love war star night", "of the of" }) {
+			for (int limit : new int[] { 1, 10, 100, 5000 }) {
+				List<Integer> all = index.search(query, 5000);
+				assertEquals(all.subList(0, Math.min(limit, all.size())), index.search(query, limit), query);
+			}
+		}
+	}
+
+	/**
+	 * Documents with the same score keep the order they were added in, and large
+	 * gaps between documents survive the varint encoding.
+	 */
+	@Test
+	void testTiesAndLongPostingLists() {
+		InvertedIndex.Builder builder = new InvertedIndex.Builder();
+		for (int id = 0; id < 100_000; id++) {
+			builder.add(id, id % 1000 == 0 ? "Movie movie" : "Movie " + id);
+		}
+		InvertedIndex index = builder.build();
+
+		assertEquals(List.of(0, 1000, 2000), index.search("movie", 3));
+		assertEquals(List.of(99_999), index.search("99999", 5));
+		assertEquals(100, index.search("movie", 100).size());
+	}
+}
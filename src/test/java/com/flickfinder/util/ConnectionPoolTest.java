@@ -0,0 +1,118 @@
+package com.flickfinder.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the connection pool.
+ * A pool needs a database file, so we seed a temporary file rather than an
+ * in-memory database.
+ */
+class ConnectionPoolTest {
+
+	/**
+	 * The temporary database file.
+	 */
+	File file;
+
+	/**
+	 * The seeder for the temporary database.
+	 */
+	Seeder seeder;
+
+	/**
+	 * The pool under test.
+	 */
+	ConnectionPool pool;
+
+	/**
+	 * Seeds a temporary database file and opens a pool of two connections to it.
+	 */
+	@BeforeEach
+	void setUp() throws IOException, SQLException {
+		file = File.createTempFile("flickfinder", ".db");
+		seeder = new Seeder("jdbc:sqlite:" + file.getAbsolutePath());
+		seeder.closeConnection();
+		pool = ConnectionPool.open("jdbc:sqlite:" + file.getAbsolutePath(), 2, PragmaProfile.READ_ONLY);
+	}
+
+	/**
+	 * Each borrower gets its own connection, and the counters keep track of them.
+	 */
+	@Test
+	void testBorrowAndRelease() throws SQLException {
+		Connection first = pool.borrow();
+		Connection second = pool.borrow();
+		assertNotSame(first, second);
+		assertEquals(2, pool.getInUse());
+		assertEquals(1.0, pool.getUtilization());
+
+		pool.release(first);
+		pool.release(second);
+		assertEquals(0, pool.getInUse());
+		assertEquals(2, pool.getPeakInUse());
+		assertEquals(2, pool.getCheckouts());
+	}
+
+	/**
+	 * Pooled connections can read the database but not write to it.
+	 */
+	@Test
+	void testConnectionsAreReadOnly() throws SQLException {
+		Connection connection = pool.borrow();
+		try (Statement stmt = connection.createStatement()) {
+			try (ResultSet rs = stmt.executeQuery("select count(*) from movies")) {
+				assertTrue(rs.next());
+				assertEquals(5, rs.getInt(1));
+			}
+			try (ResultSet rs = stmt.executeQuery("PRAGMA query_only")) {
+				assertTrue(rs.next());
+				assertEquals(1, rs.getInt(1));
+			}
+			assertThrows(SQLException.class, () -> stmt.execute("delete from movies"));
+		} finally {
+			pool.release(connection);
+		}
+	}
+
+	/**
+	 * A wrapped connection is shared in turn and never closed by the pool.
+	 */
+	@Test
+	void testWrappedConnection() throws SQLException {
+		Seeder memory = new Seeder("jdbc:sqlite::memory:");
+		ConnectionPool wrapped = ConnectionPool.wrap(memory.getConnection());
+
+		Connection connection = wrapped.borrow();
+		assertSame(memory.getConnection(), connection);
+		wrapped.release(connection);
+
+		wrapped.close();
+		assertFalse(memory.getConnection().isClosed());
+		memory.closeConnection();
+	}
+
+	/**
+	 * Closes the pool and removes the temporary file.
+	 */
+	@AfterEach
+	void tearDown() {
+		pool.close();
+		file.delete();
+	}
+}
@@ -0,0 +1,31 @@
+package com.flickfinder.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the pagination cursors.
+ */
+class CursorTest {
+
+	/**
+	 * A cursor decodes to the id it was created with.
+	 */
+	@Test
+	void testRoundTrip() {
+		assertEquals(12345, Cursor.decode("movies", Cursor.encode("movies", 12345)));
+	}
+
+	/**
+	 * Cursors from another list, and garbage, are rejected.
+	 */
+	@Test
+	void testRejectsInvalidCursors() {
+		String people = Cursor.encode("people", 1);
+		assertThrows(IllegalArgumentException.class, () -> Cursor.decode("movies", people));
+		assertThrows(IllegalArgumentException.class, () -> Cursor.decode("movies", "not a cursor!"));
+		assertThrows(IllegalArgumentException.class, () -> Cursor.decode("movies", "bW92aWVzOng"));
+	}
+}
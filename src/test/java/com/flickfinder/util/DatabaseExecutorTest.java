@@ -0,0 +1,154 @@
+package com.flickfinder.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.flickfinder.dao.MovieDAO;
+
+/**
+ * Tests for the database executor.
+ */
+class DatabaseExecutorTest {
+
+	/**
+	 * The executor under test, with one thread and room for one waiting task.
+	 */
+	DatabaseExecutor executor;
+
+	@BeforeEach
+	void setUp() {
+		executor = new DatabaseExecutor(1, 1);
+	}
+
+	/**
+	 * Work runs on the executor's thread, and work submitted from there runs
+	 * straight away instead of waiting behind itself.
+	 */
+	@Test
+	void testCall() throws SQLException {
+		assertEquals("db-1", executor.call(() -> Thread.currentThread().getName()));
+		assertEquals("db-1", executor.call(() -> executor.call(() -> Thread.currentThread().getName())));
+		assertEquals(2, executor.getSubmitted());
+	}
+
+	/**
+	 * A SQLException from the work reaches the caller unchanged.
+	 */
+	@Test
+	void testCallThrows() {
+		SQLException error = new SQLException("no such table");
+		SQLException thrown = assertThrows(SQLException.class, () -> executor.call(() -> {
+			throw error;
+		}));
+		assertEquals(error, thrown);
+	}
+
+	/**
+	 * When the thread is busy and the queue is full, work is turned away with a
+	 * time to retry after.
+	 */
+	@Test
+	void testRejectsWhenFull() throws Exception {
+		CountDownLatch running = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		CompletableFuture<Object> busy = CompletableFuture.supplyAsync(() -> call(() -> {
+			running.countDown();
+			release.await();
+			return null;
+		}));
+		running.await();
+		CompletableFuture<Object> waiting = CompletableFuture.supplyAsync(() -> call(() -> null));
+		while (executor.getQueued() == 0) {
+			Thread.onSpinWait();
+		}
+
+		assertThrows(DatabaseBusyException.class, () -> executor.call(() -> null));
+		CompletableFuture<Object> rejected = executor.submit(() -> null);
+		ExecutionException error = assertThrows(ExecutionException.class, rejected::get);
+		assertTrue(((DatabaseBusyException) error.getCause()).getRetryAfterSeconds() >= 1);
+		assertEquals(2, executor.getRejected());
+		assertEquals(1, executor.getPeakQueued());
+
+		release.countDown();
+		busy.get();
+		waiting.get();
+		assertEquals(2, executor.getSubmitted());
+	}
+
+	/**
+	 * With an executor set, the DAOs' queries run on it, streamed ones included.
+	 */
+	@Test
+	void testDatabaseSendsWorkToExecutor() throws SQLException, IOException {
+		Seeder seeder = new Seeder("jdbc:sqlite::memory:");
+		Database.getInstance(seeder.getConnection()).setExecutor(executor);
+		try {
+			assertEquals(5, new MovieDAO().getAllMovies(50).size());
+			assertEquals(1, executor.getSubmitted());
+			assertEquals(3, new MovieDAO().streamMoviesAfter(2, 50, movie -> {
+			}));
+			assertEquals(2, executor.getSubmitted());
+			assertTrue(executor.toString().startsWith("DatabaseExecutor [threads=1"));
+		} finally {
+			Database.getInstance().setExecutor(null);
+			seeder.closeConnection();
+		}
+	}
+
+	/**
+	 * The DAOs' async methods run on the executor, and without one they run on
+	 * the calling thread.
+	 */
+	@Test
+	void testAsync() throws Exception {
+		Seeder seeder = new Seeder("jdbc:sqlite::memory:");
+		Database database = Database.getInstance(seeder.getConnection());
+		try {
+			assertEquals("The Shawshank Redemption", new MovieDAO().getMovieByIdAsync(1).get().getTitle());
+			assertEquals(0, executor.getSubmitted());
+
+			database.setExecutor(executor);
+			assertEquals("db-1", database.async(() -> Thread.currentThread().getName()).get());
+			assertEquals(3, new MovieDAO().getMoviesByIdsAsync(List.of(1, 2, 3)).get().size());
+			assertEquals(2, executor.getSubmitted());
+		} finally {
+			database.setExecutor(null);
+			seeder.closeConnection();
+		}
+	}
+
+	private Object call(InterruptibleWork work) {
+		try {
+			return executor.call(() -> {
+				try {
+					return work.run();
+				} catch (InterruptedException e) {
+					throw new SQLException(e);
+				}
+			});
+		} catch (SQLException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private interface InterruptibleWork {
+		Object run() throws InterruptedException;
+	}
+
+	@AfterEach
+	void tearDown() {
+		executor.shutdown();
+	}
+}
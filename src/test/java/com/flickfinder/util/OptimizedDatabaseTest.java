@@ -0,0 +1,85 @@
+package com.flickfinder.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.flickfinder.dao.MovieDAO;
+
+/**
+ * Tests for the indexed copy of the database.
+ */
+class OptimizedDatabaseTest {
+
+	private static final String STARS_BY_MOVIE = "select * from people, stars where stars.movie_id = ? and stars.person_id = people.id";
+
+	@TempDir
+	Path dir;
+
+	/**
+	 * The copy answers the stars lookup from a covering index, leaves the source
+	 * alone and returns the same rows.
+	 */
+	@Test
+	void testPrepare() throws Exception {
+		Path source = dir.resolve("movies.db");
+		Seeder seeder = new Seeder("jdbc:sqlite:" + source);
+		seeder.closeConnection();
+
+		Path copy = OptimizedDatabase.prepare(source, dir.resolve("movies-optimized.db"));
+		assertFalse(Files.exists(dir.resolve("movies-optimized.db.partial")));
+
+		try (Connection original = DriverManager.getConnection("jdbc:sqlite:" + source);
+				Connection optimized = DriverManager.getConnection("jdbc:sqlite:" + copy)) {
+			List<String> before = OptimizedDatabase.explain(original, STARS_BY_MOVIE);
+			List<String> after = OptimizedDatabase.explain(optimized, STARS_BY_MOVIE);
+			assertFalse(before.toString().contains("stars_movie"));
+			assertTrue(after.toString().contains("COVERING INDEX stars_movie"), after.toString());
+
+			Database.getInstance(original);
+			List<String> expected = new MovieDAO().getStarsByMovie(1).stream().map(p -> p.getName()).toList();
+			Database.getInstance(optimized);
+			List<String> actual = new MovieDAO().getStarsByMovie(1).stream().map(p -> p.getName()).toList();
+			assertEquals(expected, actual);
+		}
+	}
+
+	/**
+	 * A copy is reused while the source is unchanged and made again when it
+	 * changes.
+	 */
+	@Test
+	void testReuse() throws Exception {
+		Path source = dir.resolve("movies.db");
+		Seeder seeder = new Seeder("jdbc:sqlite:" + source);
+		seeder.closeConnection();
+		Path copy = dir.resolve("movies-optimized.db");
+
+		OptimizedDatabase.prepare(source, copy);
+		String first = OptimizedDatabase.checksum(copy);
+		OptimizedDatabase.prepare(source, copy);
+		assertEquals(first, OptimizedDatabase.checksum(copy));
+
+		try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + source);
+				Statement stmt = connection.createStatement()) {
+			stmt.execute("insert into movies (id, title, year) values (6, 'Schindler''s List', 1993)");
+		}
+		OptimizedDatabase.prepare(source, copy);
+		assertNotEquals(first, OptimizedDatabase.checksum(copy));
+		try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + copy);
+				Statement stmt = connection.createStatement()) {
+			assertTrue(stmt.executeQuery("select * from movies where id = 6").next());
+		}
+	}
+}
@@ -0,0 +1,153 @@
+package com.flickfinder.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.flickfinder.dao.MovieDAO;
+import com.flickfinder.metrics.Metrics;
+
+/**
+ * Tests for coalescing concurrent identical lookups.
+ */
+class SingleFlightTest {
+
+	/**
+	 * Callers share the work in flight, a failure reaches all of them, and a key
+	 * is forgotten once its work is done.
+	 */
+	@Test
+	void testRun() {
+		SingleFlight singleFlight = new SingleFlight();
+		AtomicInteger started = new AtomicInteger();
+		CompletableFuture<String> pending = new CompletableFuture<>();
+
+		CompletableFuture<String> first = singleFlight.run("a", () -> {
+			started.incrementAndGet();
+			return pending;
+		});
+		CompletableFuture<String> second = singleFlight.run("a", () -> {
+			started.incrementAndGet();
+			return CompletableFuture.completedFuture("other");
+		});
+		assertNotSame(first, second);
+		assertEquals(1, singleFlight.getInFlight());
+		pending.complete("shared");
+		assertEquals("shared", first.join());
+		assertEquals("shared", second.join());
+		assertEquals(0, singleFlight.getInFlight());
+
+		assertEquals("again", singleFlight.run("a", () -> {
+			started.incrementAndGet();
+			return CompletableFuture.completedFuture("again");
+		}).join());
+		assertEquals(2, started.get());
+
+		CompletableFuture<String> failed = singleFlight.run("b",
+				() -> CompletableFuture.failedFuture(new SQLException("no such table")));
+		ExecutionException error = assertThrows(ExecutionException.class, failed::get);
+		assertEquals("no such table", error.getCause().getMessage());
+
+		assertEquals(4, singleFlight.getCalls());
+		assertEquals(1, singleFlight.getCoalesced());
+	}
+
+	/**
+	 * Bursts of concurrent requests for the same few movies run one query per key
+	 * per burst, and every caller gets the result.
+	 */
+	@Test
+	void testBurstsRunOneQueryPerKey() throws Exception {
+		int bursts = 3;
+		int keys = 5;
+		int callers = 16;
+		int callsPerCaller = 50;
+
+		Seeder seeder = new Seeder("jdbc:sqlite::memory:");
+		Database database = Database.getInstance(seeder.getConnection());
+		DatabaseExecutor executor = new DatabaseExecutor(1, DatabaseExecutor.DEFAULT_QUEUE_CAPACITY);
+		database.setExecutor(executor);
+		ExecutorService clients = Executors.newFixedThreadPool(callers);
+		try {
+			MovieDAO movieDAO = new MovieDAO();
+			Map<Integer, String> titles = new HashMap<>();
+			Map<Integer, Integer> casts = new HashMap<>();
+			for (int id = 1; id <= keys; id++) {
+				titles.put(id, movieDAO.getMovieById(id).getTitle());
+				casts.put(id, movieDAO.getStarsByMovie(id).size());
+			}
+			Metrics.Query byId = Metrics.getInstance().query("MovieDAO.getMovieById");
+			Metrics.Query stars = Metrics.getInstance().query("MovieDAO.getStarsByMovie");
+			long byIdBefore = byId.getLatency().getCount();
+			long starsBefore = stars.getLatency().getCount();
+
+			for (int burst = 0; burst < bursts; burst++) {
+				// hold the only database thread, so every lookup in the burst is still in
+				// flight when the others arrive
+				CountDownLatch release = new CountDownLatch(1);
+				CompletableFuture<Object> blocker = executor.submit(() -> {
+					try {
+						release.await();
+					} catch (InterruptedException e) {
+						throw new SQLException(e);
+					}
+					return null;
+				});
+
+				CountDownLatch start = new CountDownLatch(1);
+				List<Future<List<CompletableFuture<?>>>> sent = new ArrayList<>();
+				for (int c = 0; c < callers; c++) {
+					sent.add(clients.submit(() -> {
+						start.await();
+						List<CompletableFuture<?>> lookups = new ArrayList<>();
+						for (int i = 0; i < callsPerCaller; i++) {
+							int id = 1 + i % keys;
+							lookups.add(movieDAO.getMovieByIdAsync(id)
+									.thenAccept(movie -> assertEquals(titles.get(id), movie.getTitle())));
+							lookups.add(movieDAO.getStarsByMovieAsync(id)
+									.thenAccept(people -> assertEquals(casts.get(id), people.size())));
+						}
+						return lookups;
+					}));
+				}
+				start.countDown();
+				List<CompletableFuture<?>> lookups = new ArrayList<>();
+				for (Future<List<CompletableFuture<?>>> caller : sent) {
+					lookups.addAll(caller.get());
+				}
+				release.countDown();
+				blocker.get();
+				CompletableFuture.allOf(lookups.toArray(new CompletableFuture<?>[0])).get();
+
+				assertEquals((long) keys * (burst + 1), byId.getLatency().getCount() - byIdBefore);
+				assertEquals((long) keys * (burst + 1), stars.getLatency().getCount() - starsBefore);
+			}
+
+			SingleFlight singleFlight = database.getSingleFlight();
+			long calls = (long) bursts * callers * callsPerCaller * 2;
+			assertEquals(calls, singleFlight.getCalls());
+			assertEquals(calls - (long) bursts * keys * 2, singleFlight.getCoalesced());
+			assertEquals(0, singleFlight.getInFlight());
+		} finally {
+			clients.shutdown();
+			database.setExecutor(null);
+			executor.shutdown();
+			seeder.closeConnection();
+		}
+	}
+}
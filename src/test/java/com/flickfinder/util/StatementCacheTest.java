@@ -0,0 +1,85 @@
+package com.flickfinder.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the prepared statement cache.
+ */
+class StatementCacheTest {
+
+	/**
+	 * Seeder
+	 */
+	Seeder seeder;
+
+	/**
+	 * The cache under test, it holds at most two statements.
+	 */
+	StatementCache cache;
+
+	/**
+	 * Seeds an in-memory database and creates a cache for its connection.
+	 */
+	@BeforeEach
+	void setUp() {
+		seeder = new Seeder("jdbc:sqlite::memory:");
+		cache = new StatementCache(seeder.getConnection(), 2);
+	}
+
+	/**
+	 * The same SQL returns the same statement.
+	 */
+	@Test
+	void testReusesStatements() throws SQLException {
+		PreparedStatement first = cache.prepare("select * from movies where id = ?");
+		PreparedStatement second = cache.prepare("select * from movies where id = ?");
+		assertSame(first, second);
+		assertEquals(1, cache.size());
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+	}
+
+	/**
+	 * The least recently used statement is closed when the cache is full.
+	 */
+	@Test
+	void testEvictsLeastRecentlyUsed() throws SQLException {
+		PreparedStatement movies = cache.prepare("select * from movies");
+		PreparedStatement people = cache.prepare("select * from people");
+		cache.prepare("select * from movies");
+		cache.prepare("select * from stars");
+
+		assertEquals(2, cache.size());
+		assertEquals(1, cache.getEvictions());
+		assertTrue(people.isClosed());
+		assertSame(movies, cache.prepare("select * from movies"));
+	}
+
+	/**
+	 * Closing the cache closes every statement.
+	 */
+	@Test
+	void testClose() throws SQLException {
+		PreparedStatement movies = cache.prepare("select * from movies");
+		cache.close();
+		assertTrue(movies.isClosed());
+		assertEquals(0, cache.size());
+	}
+
+	/**
+	 * Close connection after each test method.
+	 */
+	@AfterEach
+	void tearDown() {
+		seeder.closeConnection();
+	}
+}